@@ -0,0 +1,71 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.kpelykh.docker.client.utils.CompressArchiveUtil;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Build context tarballs as created by {@code DockerClient.build(File)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveBenchmark {
+
+    @Param({"100"})
+    public int files;
+
+    @Param({"4096", "1048576"})
+    public int fileSize;
+
+    private File base;
+    private List<File> content;
+
+    @Setup
+    public void setUp() throws IOException {
+        base = new File(FileUtils.getTempDirectory(), "docker-java-bench-" + System.nanoTime());
+        content = new ArrayList<File>();
+        Random random = new Random(42);
+        byte[] data = new byte[fileSize];
+        for (int i = 0; i < files; i++) {
+            random.nextBytes(data);
+            File file = new File(base, "dir" + (i % 10) + "/file" + i);
+            FileUtils.writeByteArrayToFile(file, data);
+            content.add(file);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        FileUtils.deleteQuietly(base);
+    }
+
+    @Benchmark
+    public long archive() throws IOException {
+        File tar = CompressArchiveUtil.archiveTARFiles(base, content, base.getName());
+        long size = tar.length();
+        tar.delete();
+        return size;
+    }
+}
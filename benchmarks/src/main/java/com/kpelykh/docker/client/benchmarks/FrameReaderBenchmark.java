@@ -0,0 +1,71 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.utils.FrameReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Demultiplexing 4 MiB of attach/logs output cut into frames of the given size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameReaderBenchmark {
+
+    private static final int TOTAL = 4 * 1024 * 1024;
+
+    @Param({"80", "8192"})
+    public int frameSize;
+
+    private byte[] stream;
+
+    @Setup
+    public void setUp() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(TOTAL + TOTAL / frameSize * 8 + 8);
+        byte[] payload = new byte[frameSize];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) ('a' + i % 26);
+        }
+        for (int written = 0, n = 0; written < TOTAL; written += frameSize, n++) {
+            out.write(n % 4 == 3 ? 2 : 1);
+            out.write(0);
+            out.write(0);
+            out.write(0);
+            out.write(frameSize >>> 24);
+            out.write(frameSize >>> 16);
+            out.write(frameSize >>> 8);
+            out.write(frameSize);
+            out.write(payload, 0, frameSize);
+        }
+        stream = out.toByteArray();
+    }
+
+    @Benchmark
+    public long demultiplex() throws IOException {
+        FrameReader reader = new FrameReader(new ByteArrayInputStream(stream));
+        long bytes = 0;
+        Frame frame;
+        while ((frame = reader.readFrame()) != null) {
+            bytes += frame.getPayload().length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,81 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.model.ImageCreateResponse;
+import com.kpelykh.docker.client.test.stub.StubDockerDaemon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Image import from a file on disk: {@link DockerClient#importImage(String, String, File)} sends it
+ * with {@code transferTo}, the {@link java.io.InputStream} variant goes through Jersey.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class ImportBenchmark {
+
+    @Param({"67108864"})
+    public long size;
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+    private File image;
+
+    @Setup
+    public void setUp() throws IOException, DockerException {
+        RequestLogging.mute();
+
+        daemon = new StubDockerDaemon();
+        dockerClient = daemon.newClient();
+
+        image = File.createTempFile("docker-java-bench", ".tar");
+        RandomAccessFile file = new RandomAccessFile(image, "rw");
+        try {
+            file.setLength(size);
+        } finally {
+            file.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        daemon.close();
+        image.delete();
+    }
+
+    @Benchmark
+    public ImageCreateResponse fromFile() throws DockerException {
+        return dockerClient.importImage("bench/file", "latest", image);
+    }
+
+    @Benchmark
+    public ImageCreateResponse fromStream() throws DockerException, IOException {
+        FileInputStream in = new FileInputStream(image);
+        try {
+            return dockerClient.importImage("bench/stream", "latest", in);
+        } finally {
+            in.close();
+        }
+    }
+}
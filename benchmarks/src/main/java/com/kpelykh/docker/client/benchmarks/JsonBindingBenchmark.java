@@ -0,0 +1,89 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding of list and inspect responses, as done by the Jackson provider behind every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBindingBenchmark {
+
+    private static final TypeReference<List<Container>> CONTAINERS = new TypeReference<List<Container>>() {
+    };
+    private static final TypeReference<List<Image>> IMAGES = new TypeReference<List<Image>>() {
+    };
+
+    @Param({"10", "1000"})
+    public int count;
+
+    private ObjectMapper mapper;
+    private ObjectReader containerReader;
+    private byte[] containers;
+    private byte[] images;
+    private byte[] inspect;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        containerReader = mapper.reader(Container.class);
+        containers = mapper.writeValueAsBytes(Payloads.containers(mapper, count));
+        images = mapper.writeValueAsBytes(Payloads.images(mapper, count));
+        inspect = mapper.writeValueAsBytes(Payloads.inspect(mapper, 0));
+    }
+
+    @Benchmark
+    public List<Container> containers() throws IOException {
+        return mapper.readValue(containers, CONTAINERS);
+    }
+
+    /**
+     * Binds one container at a time like {@code DockerClient.iterateContainers}; compare
+     * allocations with {@code -prof gc}.
+     */
+    @Benchmark
+    public int containersStreamed() throws IOException {
+        MappingIterator<Container> it = containerReader.readValues(containers);
+        int count = 0;
+        while (it.hasNextValue()) {
+            it.nextValue();
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public List<Image> images() throws IOException {
+        return mapper.readValue(images, IMAGES);
+    }
+
+    @Benchmark
+    public ContainerInspectResponse inspect() throws IOException {
+        return mapper.readValue(inspect, ContainerInspectResponse.class);
+    }
+}
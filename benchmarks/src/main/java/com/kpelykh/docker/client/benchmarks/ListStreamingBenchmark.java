@@ -0,0 +1,84 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.ItemCallback;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.test.stub.StubDockerDaemon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listing a host with many containers, materialized versus streamed one container at a time.
+ * Run with {@code -prof gc} to compare the allocation rate and per-operation allocations
+ * ({@code gc.alloc.rate.norm}); the streamed variant only ever holds one container.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx512m")
+public class ListStreamingBenchmark {
+
+    @Param({"20000"})
+    public int containers;
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+
+    @Setup
+    public void setUp() throws IOException, DockerException {
+        RequestLogging.mute();
+
+        daemon = new StubDockerDaemon();
+        daemon.addContainers(containers, "busybox");
+        dockerClient = daemon.newClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        daemon.close();
+    }
+
+    @Benchmark
+    public int materialized() {
+        List<Container> list = dockerClient.listContainers(true);
+        int running = 0;
+        for (Container container : list) {
+            if (container.getStatus().startsWith("Up")) {
+                running++;
+            }
+        }
+        return running;
+    }
+
+    @Benchmark
+    public int streamed() throws DockerException {
+        final int[] running = new int[1];
+        dockerClient.listContainers(true, new ItemCallback<Container>() {
+            @Override
+            public boolean onItem(Container container) {
+                if (container.getStatus().startsWith("Up")) {
+                    running[0]++;
+                }
+                return true;
+            }
+        });
+        return running[0];
+    }
+}
@@ -0,0 +1,86 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Responses shaped like those of a real daemon, generated deterministically.
+ */
+final class Payloads {
+
+    private Payloads() {
+    }
+
+    static String id(int i) {
+        return String.format("%016x%016x%016x%016x", i * 0x9E3779B97F4A7C15L, i * 31L, i * 17L, (long) i);
+    }
+
+    static ArrayNode containers(ObjectMapper mapper, int count) {
+        ArrayNode list = mapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode container = list.addObject();
+            container.put("Id", id(i));
+            container.put("Image", "registry.example.com/team/service:" + (i % 10));
+            container.put("Command", "/bin/sh -c 'exec /usr/local/bin/service --port 8080'");
+            container.put("Created", 1400000000L + i);
+            container.put("Status", "Up " + (i % 60) + " minutes");
+            container.set("Ports", ports(mapper, 2));
+            container.putArray("Names").add("/service_" + i);
+        }
+        return list;
+    }
+
+    static ArrayNode images(ObjectMapper mapper, int count) {
+        ArrayNode list = mapper.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode image = list.addObject();
+            image.put("Id", id(i));
+            image.put("ParentId", id(i + 1));
+            image.putArray("RepoTags").add("registry.example.com/team/image" + i + ":latest");
+            image.put("Created", 1400000000L + i);
+            image.put("Size", 1024L * i);
+            image.put("VirtualSize", 1024L * 1024 * i);
+        }
+        return list;
+    }
+
+    static ObjectNode inspect(ObjectMapper mapper, int i) {
+        ObjectNode inspect = mapper.createObjectNode();
+        inspect.put("ID", id(i));
+        inspect.put("Created", "2014-05-13T10:15:30.123456789Z");
+        inspect.put("Path", "/usr/local/bin/service");
+        inspect.putArray("Args").add("--port").add("8080");
+        ObjectNode config = inspect.putObject("Config");
+        config.put("Hostname", id(i).substring(0, 12));
+        config.put("Image", "registry.example.com/team/service:1");
+        config.putArray("Cmd").add("/usr/local/bin/service").add("--port").add("8080");
+        config.putArray("Env").add("PATH=/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin").add("HOME=/");
+        ObjectNode state = inspect.putObject("State");
+        state.put("Running", true);
+        state.put("Pid", 4242);
+        state.put("ExitCode", 0);
+        state.put("StartedAt", "2014-05-13T10:15:31.123456789Z");
+        state.put("FinishedAt", "0001-01-01T00:00:00Z");
+        inspect.put("Image", id(i + 1));
+        ObjectNode network = inspect.putObject("NetworkSettings");
+        network.put("IPAddress", "172.17.0." + (i % 250 + 2));
+        network.put("IPPrefixLen", 16);
+        network.put("Gateway", "172.17.42.1");
+        network.put("Bridge", "docker0");
+        network.set("Ports", ports(mapper, 2));
+        inspect.put("Name", "/service_" + i);
+        inspect.put("Driver", "aufs");
+        return inspect;
+    }
+
+    static ObjectNode ports(ObjectMapper mapper, int count) {
+        ObjectNode ports = mapper.createObjectNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode binding = ports.putArray((8080 + i) + "/tcp").addObject();
+            binding.put("HostIp", "0.0.0.0");
+            binding.put("HostPort", String.valueOf(49153 + i));
+        }
+        return ports;
+    }
+}
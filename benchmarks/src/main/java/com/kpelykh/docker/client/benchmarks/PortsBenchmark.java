@@ -0,0 +1,54 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kpelykh.docker.client.model.Ports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of the custom {@link Ports} (de)serializers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PortsBenchmark {
+
+    @Param({"1", "16"})
+    public int count;
+
+    private ObjectMapper mapper;
+    private byte[] json;
+    private Ports ports;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        json = mapper.writeValueAsBytes(Payloads.ports(mapper, count));
+        ports = mapper.readValue(json, Ports.class);
+    }
+
+    @Benchmark
+    public Ports deserialize() throws IOException {
+        return mapper.readValue(json, Ports.class);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(ports);
+    }
+}
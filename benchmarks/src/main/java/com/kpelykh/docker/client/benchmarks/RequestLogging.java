@@ -0,0 +1,23 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.sun.jersey.api.client.filter.LoggingFilter;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Silences the request/response dump of Jersey's {@link LoggingFilter}, which would otherwise
+ * dominate round trip measurements.
+ */
+final class RequestLogging {
+
+    // held strongly, the log manager only keeps weak references to configured loggers
+    private static final Logger LOGGER = Logger.getLogger(LoggingFilter.class.getName());
+
+    private RequestLogging() {
+    }
+
+    static void mute() {
+        LOGGER.setLevel(Level.WARNING);
+    }
+}
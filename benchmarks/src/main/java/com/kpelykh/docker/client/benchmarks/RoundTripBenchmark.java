@@ -0,0 +1,78 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.test.stub.StubDockerDaemon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request round trips through {@link DockerClient} against the in-process stub daemon, so the
+ * numbers reflect client overhead rather than the daemon.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RoundTripBenchmark {
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+    private ContainerConfig config;
+
+    @Setup
+    public void setUp() throws IOException, DockerException {
+        RequestLogging.mute();
+
+        daemon = new StubDockerDaemon();
+        daemon.addContainers(100, "busybox");
+        dockerClient = daemon.newClient();
+
+        config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"true"});
+    }
+
+    @TearDown
+    public void tearDown() {
+        daemon.close();
+    }
+
+    @Benchmark
+    public int ping() throws DockerException {
+        return dockerClient.ping();
+    }
+
+    @Benchmark
+    public List<Container> listContainers() {
+        return dockerClient.listContainers(true);
+    }
+
+    @Benchmark
+    public int createStartWaitRemove() throws DockerException {
+        String id = dockerClient.createContainer(config).getId();
+        dockerClient.startContainer(id);
+        int exitCode = dockerClient.waitContainer(id);
+        dockerClient.removeContainer(id);
+        return exitCode;
+    }
+}
@@ -0,0 +1,63 @@
+package com.kpelykh.docker.client.benchmarks;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerSnapshot;
+import com.kpelykh.docker.client.utils.StringInterner;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retained heap of a container list held as bound {@link Container}s versus
+ * {@link ContainerSnapshot}s. Not a JMH benchmark, footprint is measured after full collections:
+ * <pre>java -cp target/benchmarks.jar com.kpelykh.docker.client.benchmarks.SnapshotFootprint 20000</pre>
+ */
+public class SnapshotFootprint {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        ObjectMapper mapper = new ObjectMapper();
+        byte[] json = mapper.writeValueAsBytes(Payloads.containers(mapper, count));
+
+        long before = usedHeap();
+        List<Container> containers = bind(mapper, json);
+        long bound = usedHeap() - before;
+        containers.clear();
+
+        before = usedHeap();
+        List<ContainerSnapshot> snapshots = snapshots(mapper, json);
+        long compact = usedHeap() - before;
+
+        System.out.printf("%d containers: bound %d bytes (%d/container), snapshots %d bytes (%d/container)%n",
+                snapshots.size(), bound, bound / count, compact, compact / count);
+    }
+
+    private static List<Container> bind(ObjectMapper mapper, byte[] json) throws IOException {
+        return mapper.reader(Container.class).<Container>readValues(json).readAll();
+    }
+
+    private static List<ContainerSnapshot> snapshots(ObjectMapper mapper, byte[] json) throws IOException {
+        StringInterner interner = new StringInterner();
+        List<ContainerSnapshot> snapshots = new ArrayList<ContainerSnapshot>();
+        MappingIterator<Container> containers = mapper.reader(Container.class).readValues(json);
+        while (containers.hasNextValue()) {
+            snapshots.add(ContainerSnapshot.of(containers.nextValue(), interner));
+        }
+        return snapshots;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
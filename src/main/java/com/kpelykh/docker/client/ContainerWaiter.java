@@ -0,0 +1,316 @@
+package com.kpelykh.docker.client;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.Event;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import com.kpelykh.docker.client.utils.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Waits for many containers at once.
+ * <p>
+ * Instead of blocking one pooled connection and one thread per container in
+ * {@link DockerClient#waitContainer(String)}, a single {@link EventStream} watches for {@code die}
+ * events and the exit code of the dead container is looked up with a short inspect call. Containers
+ * that are not resolved through events within {@code recheckAfterMillis} are inspected again every
+ * {@code recheckAfterMillis}, which catches deaths that raced with the event stream, or happened
+ * while it reconnected, while long running containers just stay pending. Inspect calls run on a
+ * fixed size pool, so connection and thread usage is capped regardless of the number of containers.
+ */
+public class ContainerWaiter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerWaiter.class);
+
+    // the daemon reports either short or full ids in events
+    private static final int SHORT_ID_LENGTH = 12;
+
+    private static final int RECENT_DEATHS = 4096;
+
+    private final DockerClient dockerClient;
+    private final EventStream events;
+    private final long recheckAfterMillis;
+    private final ExecutorService inspectPool;
+    private final Thread dispatcher;
+
+    private final ConcurrentMap<String, ExitCodeFuture> pending = new ConcurrentHashMap<String, ExitCodeFuture>();
+
+    // die events nobody waited for yet, guarded by itself
+    private final Map<String, String> recentDeaths = new LinkedHashMap<String, String>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > RECENT_DEATHS;
+        }
+    };
+
+    private volatile boolean closed;
+
+    public ContainerWaiter(DockerClient dockerClient) {
+        this(dockerClient, 4, 30000);
+    }
+
+    /**
+     * @param inspectThreads     number of concurrent inspect calls used to fetch exit codes
+     * @param recheckAfterMillis interval at which containers not seen dying are inspected again
+     */
+    public ContainerWaiter(DockerClient dockerClient, int inspectThreads, long recheckAfterMillis) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkArgument(inspectThreads > 0, "inspectThreads must be positive: %s", inspectThreads);
+        Preconditions.checkArgument(recheckAfterMillis > 0, "recheckAfterMillis must be positive: %s", recheckAfterMillis);
+
+        this.dockerClient = dockerClient;
+        this.recheckAfterMillis = recheckAfterMillis;
+        this.inspectPool = Executors.newFixedThreadPool(inspectThreads, new NamedThreadFactory("docker-wait-inspect"));
+
+        // start a second early so that deaths racing with our construction are replayed
+        this.events = dockerClient.eventStream(System.currentTimeMillis() / 1000 - 1, 0);
+
+        this.dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "docker-wait-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * @return a future completed with the exit code of the container once it stops
+     */
+    public Future<Integer> waitFor(String containerId) {
+        return waitFor(containerId, null);
+    }
+
+    /**
+     * @param listener notified on the thread that resolved the exit code, may be null
+     * @return a future completed with the exit code of the container once it stops
+     */
+    public Future<Integer> waitFor(String containerId, Listener listener) {
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+        Preconditions.checkState(!closed, "ContainerWaiter is closed");
+
+        String key = key(containerId);
+        ExitCodeFuture future = new ExitCodeFuture(containerId, listener);
+        boolean dead;
+        synchronized (recentDeaths) {
+            ExitCodeFuture existing = pending.putIfAbsent(key, future);
+            if (existing != null) {
+                return existing;
+            }
+            dead = recentDeaths.remove(key) != null;
+        }
+        if (dead) {
+            resolve(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * @return futures of the given containers, in iteration order of {@code containerIds}
+     */
+    public Map<String, Future<Integer>> waitForAll(Collection<String> containerIds) {
+        Map<String, Future<Integer>> futures = new LinkedHashMap<String, Future<Integer>>();
+        for (String containerId : containerIds) {
+            futures.put(containerId, waitFor(containerId));
+        }
+        return futures;
+    }
+
+    /**
+     * @return the number of containers still waited for
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stop waiting; futures still pending are cancelled and their listeners get a
+     * {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        events.close();
+        dispatcher.interrupt();
+        inspectPool.shutdownNow();
+        for (ExitCodeFuture future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    private void dispatch() {
+        long scanInterval = Math.max(recheckAfterMillis / 4, 10);
+        long nextScan = System.currentTimeMillis() + scanInterval;
+        try {
+            while (!closed) {
+                Event event = events.poll(scanInterval, TimeUnit.MILLISECONDS);
+                if (event != null && "die".equals(event.getStatus()) && event.getId() != null) {
+                    onDeath(event.getId());
+                }
+
+                long now = System.currentTimeMillis();
+                if (now >= nextScan) {
+                    scan(now);
+                    nextScan = now + scanInterval;
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        }
+    }
+
+    private void onDeath(String containerId) {
+        String key = key(containerId);
+        ExitCodeFuture future;
+        synchronized (recentDeaths) {
+            future = pending.get(key);
+            if (future == null) {
+                recentDeaths.put(key, containerId);
+            }
+        }
+        if (future != null) {
+            resolve(key, future);
+        }
+    }
+
+    private void scan(long now) {
+        for (Map.Entry<String, ExitCodeFuture> entry : pending.entrySet()) {
+            ExitCodeFuture future = entry.getValue();
+            if (now - future.checkedAt >= recheckAfterMillis && future.startCheck()) {
+                future.checkedAt = now;
+                inspect(entry.getKey(), future, false);
+            }
+        }
+    }
+
+    private void resolve(String key, ExitCodeFuture future) {
+        inspect(key, future, true);
+    }
+
+    /**
+     * Look up the exit code of the container, which is left pending if it still runs, e.g. because
+     * it was restarted in the meantime or a recheck found it alive.
+     *
+     * @param died whether a die event was seen, so that failing to inspect fails the future
+     */
+    private void inspect(final String key, final ExitCodeFuture future, final boolean died) {
+        try {
+            inspectPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ContainerInspectResponse inspect = dockerClient.inspectContainer(future.containerId);
+                        if (inspect.getState() != null && inspect.getState().running) {
+                            return;
+                        }
+                        if (future.claim()) {
+                            future.set(inspect.getState() != null ? inspect.getState().exitCode : -1);
+                            pending.remove(key, future);
+                        }
+                    } catch (Exception e) {
+                        if ((died || e instanceof NotFoundException) && future.claim()) {
+                            future.setException(e);
+                            pending.remove(key, future);
+                        } else {
+                            LOGGER.debug("Failed to inspect {}, checking again later", future.containerId, e);
+                        }
+                    } finally {
+                        if (!died) {
+                            future.endCheck();
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+            if (!died) {
+                future.endCheck();
+            }
+        }
+    }
+
+    private static String key(String containerId) {
+        return containerId.length() > SHORT_ID_LENGTH ? containerId.substring(0, SHORT_ID_LENGTH) : containerId;
+    }
+
+    /**
+     * Callback for containers resolved by a {@link ContainerWaiter}.
+     */
+    public interface Listener {
+
+        void onExit(String containerId, int exitCode);
+
+        void onFailure(String containerId, Throwable cause);
+    }
+
+    private static final class ExitCodeFuture extends SettableFuture<Integer> {
+
+        final String containerId;
+
+        // when the container was last inspected, only written by the dispatcher
+        volatile long checkedAt = System.currentTimeMillis();
+
+        private final Listener listener;
+        private final AtomicBoolean resolving = new AtomicBoolean();
+        private final AtomicBoolean checking = new AtomicBoolean();
+
+        ExitCodeFuture(String containerId, Listener listener) {
+            this.containerId = containerId;
+            this.listener = listener;
+        }
+
+        /**
+         * @return true if the caller is the first to start resolving the exit code
+         */
+        boolean claim() {
+            return resolving.compareAndSet(false, true);
+        }
+
+        /**
+         * @return true unless a recheck is in flight or the exit code is already being resolved
+         */
+        boolean startCheck() {
+            return !resolving.get() && checking.compareAndSet(false, true);
+        }
+
+        void endCheck() {
+            checking.set(false);
+        }
+
+        @Override
+        protected void done() {
+            if (listener == null) {
+                return;
+            }
+            if (isCancelled()) {
+                listener.onFailure(containerId, new CancellationException("ContainerWaiter closed while waiting for " + containerId));
+                return;
+            }
+            try {
+                listener.onExit(containerId, get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                listener.onFailure(containerId, e.getCause());
+            }
+        }
+    }
+}
@@ -1,11 +1,33 @@
 package com.kpelykh.docker.client;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.base.Preconditions;
 import com.kpelykh.docker.client.model.*;
+import com.kpelykh.docker.client.stream.Publisher;
+import com.kpelykh.docker.client.stream.StreamPublisher;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.kpelykh.docker.client.utils.CallScopeFilter;
+import com.kpelykh.docker.client.utils.ChannelCopier;
+import com.kpelykh.docker.client.utils.CircuitBreaker;
+import com.kpelykh.docker.client.utils.CircuitBreakerFilter;
+import com.kpelykh.docker.client.utils.CircuitBreakerPolicy;
 import com.kpelykh.docker.client.utils.CompressArchiveUtil;
+import com.kpelykh.docker.client.utils.ConnectionPolicy;
+import com.kpelykh.docker.client.utils.DirectConnection;
+import com.kpelykh.docker.client.utils.FrameReader;
+import com.kpelykh.docker.client.utils.IdleConnectionEvictor;
+import com.kpelykh.docker.client.utils.JsonArrayIterator;
 import com.kpelykh.docker.client.utils.JsonClientFilter;
+import com.kpelykh.docker.client.utils.ProgressListener;
+import com.kpelykh.docker.client.utils.RetryFilter;
+import com.kpelykh.docker.client.utils.RetryPolicy;
+import com.kpelykh.docker.client.utils.StringInterner;
+import com.kpelykh.docker.client.utils.TarExtractor;
 import com.sun.jersey.api.client.*;
 import com.sun.jersey.api.client.WebResource.Builder;
 import com.sun.jersey.api.client.config.ClientConfig;
@@ -20,28 +42,43 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.client.HttpClient;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.commons.io.IOUtils.closeQuietly;
 
@@ -52,17 +89,39 @@ public class DockerClient {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(DockerClient.class);
 
+	private static final ObjectReader CONTAINER_READER = new ObjectMapper().reader(Container.class);
+	private static final ObjectReader IMAGE_READER = new ObjectMapper().reader(Image.class);
+	private static final ObjectReader EVENT_READER = new ObjectMapper().reader(Event.class);
+	private static final ObjectReader PROGRESS_READER = new ObjectMapper().reader(ProgressMessage.class);
+
+	private static final int CONNECT_TIMEOUT = 10000;
+	private static final long IMPORT_CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int EXEC_EXIT_POLLS = 50;
+	private static final long EXEC_EXIT_POLL_MILLIS = 10;
+
     private Client client;
+	private URI serverUrl;
 	private String restEndpointUrl;
 	private AuthConfig authConfig;
+	private RetryFilter retryFilter;
+	private CircuitBreakerFilter circuitBreakerFilter;
+	private CallScopeFilter scopeFilter;
 
 	public DockerClient() throws DockerException {
-		this(Config.createConfig());
+		this(Config.createConfig(), new ConnectionPolicy());
 	}
 
 	public DockerClient(String serverUrl) throws DockerException {
-        this(configWithServerUrl(serverUrl));
-    }
+		this(serverUrl, new ConnectionPolicy());
+	}
+
+	/**
+	 * @param policy pool size and timeouts of the connections to the daemon, see
+	 *               {@link ConnectionPolicy#forHighConcurrency()} for thousands of concurrent calls
+	 */
+	public DockerClient(String serverUrl, ConnectionPolicy policy) throws DockerException {
+		this(configWithServerUrl(serverUrl), policy);
+	}
 
     private static Config configWithServerUrl(String serverUrl) throws DockerException {
         final Config c = Config.createConfig();
@@ -70,7 +129,8 @@ public class DockerClient {
         return c;
     }
 
-    private DockerClient(Config config) {
+    private DockerClient(Config config, ConnectionPolicy policy) {
+		serverUrl = config.url;
 		restEndpointUrl = config.url + "/v" + config.version;
 		ClientConfig clientConfig = new DefaultClientConfig();
 		//clientConfig.getFeatures().put(JSONConfiguration.FEATURE_POJO_MAPPING, Boolean.TRUE);
@@ -80,15 +140,28 @@ public class DockerClient {
 		schemeRegistry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
 
 		PoolingClientConnectionManager cm = new PoolingClientConnectionManager(schemeRegistry);
-		// Increase max total connection
-		cm.setMaxTotal(1000);
-		// Increase default max connection per route
-		cm.setDefaultMaxPerRoute(1000);
+		cm.setMaxTotal(policy.getMaxConnections());
+		cm.setDefaultMaxPerRoute(policy.getMaxConnectionsPerRoute());
+
+		DefaultHttpClient httpClient = new DefaultHttpClient(cm) {
+			@Override
+			protected HttpParams determineParams(HttpRequest request) {
+				// the last point a scoped call can be seen before it waits for a connection
+				return CallScopeFilter.leaseParams(request, super.determineParams(request));
+			}
+		};
+		// the handler takes the HttpClient as it is, Jersey's timeout properties never reach it
+		HttpParams params = httpClient.getParams();
+		HttpConnectionParams.setConnectionTimeout(params, policy.getConnectTimeoutMillis());
+		HttpConnectionParams.setSoTimeout(params, policy.getReadTimeoutMillis());
+		HttpConnectionParams.setStaleCheckingEnabled(params, policy.isStaleConnectionCheck());
+		HttpClientParams.setConnectionManagerTimeout(params, policy.getLeaseTimeoutMillis());
+		httpClient.addRequestInterceptor(CallScopeFilter.INTERCEPTOR);
+		if (policy.getIdleTimeoutMillis() > 0) {
+			IdleConnectionEvictor.watch(cm, policy.getIdleTimeoutMillis());
+		}
 
-		HttpClient httpClient = new DefaultHttpClient(cm);
 		client = new ApacheHttpClient4(new ApacheHttpClient4Handler(httpClient, null, false), clientConfig);
-
-		client.setReadTimeout(10000);
 		//Experimental support for unix sockets:
 		//client = new UnixSocketClient(clientConfig);
 
@@ -96,6 +169,116 @@ public class DockerClient {
 		client.addFilter(new LoggingFilter());
 	}
 
+	private DockerClient(DockerClient parent, CallScope scope) {
+		client = parent.client;
+		serverUrl = parent.serverUrl;
+		restEndpointUrl = parent.restEndpointUrl;
+		authConfig = parent.authConfig;
+		retryFilter = parent.retryFilter;
+		circuitBreakerFilter = parent.circuitBreakerFilter;
+		scopeFilter = new CallScopeFilter(scope);
+	}
+
+	/**
+	 * A view of this client whose calls are subject to the deadline and cancellation of the
+	 * scope. The view shares connections, filters and credentials with this client and is cheap
+	 * to create, typically one per unit of work. Imports and attaches, which bypass Jersey, are
+	 * not covered by the scope.
+	 */
+	public DockerClient within(CallScope scope) {
+		return new DockerClient(this, scope);
+	}
+
+	/**
+	 * @return the scope of this view, or null for a client outside any scope
+	 */
+	public CallScope getScope() {
+		return scopeFilter == null ? null : scopeFilter.getScope();
+	}
+
+	private WebResource resource(String url) {
+		WebResource webResource = client.resource(url);
+		if (scopeFilter != null) {
+			webResource.addFilter(scopeFilter);
+		}
+		return webResource;
+	}
+
+	/**
+	 * Retry idempotent requests that fail transiently, see {@link RetryFilter}; off by default.
+	 * Like credentials, this is to be set up before the client is shared between threads.
+	 *
+	 * @return the filter, which counts requests and retries
+	 */
+	public synchronized RetryFilter enableRetries(RetryPolicy policy) {
+		disableRetries();
+		retryFilter = new RetryFilter(policy);
+		// added last, so it is the outermost filter and every attempt is logged
+		client.addFilter(retryFilter);
+		return retryFilter;
+	}
+
+	public synchronized void disableRetries() {
+		if (retryFilter != null) {
+			client.removeFilter(retryFilter);
+			retryFilter = null;
+		}
+	}
+
+	/**
+	 * @return the active retry filter, or null if retries are disabled
+	 */
+	public synchronized RetryFilter getRetryFilter() {
+		return retryFilter;
+	}
+
+	/**
+	 * Guard the requests to this daemon with a {@link CircuitBreaker}, probed with pings while open;
+	 * off by default. Like credentials, this is to be set up before the client is shared between
+	 * threads.
+	 */
+	public synchronized CircuitBreaker enableCircuitBreaker(final CircuitBreakerPolicy policy) {
+		disableCircuitBreaker();
+		CircuitBreaker breaker = new CircuitBreaker(serverUrl.toString(), policy);
+		breaker.setProbe(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				// probes of all breakers share one thread, a hung daemon must not hold it
+				CallScope scope = new CallScope(policy.getProbeIntervalMillis(), TimeUnit.MILLISECONDS);
+				try {
+					WebResource webResource = client.resource(restEndpointUrl + "/_ping");
+					webResource.setProperty(CircuitBreakerFilter.PROBE, Boolean.TRUE);
+					webResource.addFilter(new CallScopeFilter(scope));
+					ClientResponse response = webResource.get(ClientResponse.class);
+					try {
+						return response.getStatus() == 200;
+					} finally {
+						response.close();
+					}
+				} finally {
+					scope.close();
+				}
+			}
+		});
+		circuitBreakerFilter = new CircuitBreakerFilter(breaker);
+		client.addFilter(circuitBreakerFilter);
+		return breaker;
+	}
+
+	public synchronized void disableCircuitBreaker() {
+		if (circuitBreakerFilter != null) {
+			client.removeFilter(circuitBreakerFilter);
+			circuitBreakerFilter = null;
+		}
+	}
+
+	/**
+	 * @return the active circuit breaker, or null if disabled
+	 */
+	public synchronized CircuitBreaker getCircuitBreaker() {
+		return circuitBreakerFilter == null ? null : circuitBreakerFilter.getBreaker();
+	}
+
 	public void setCredentials(String username, String password, String email) {
 		if (username == null) {
 			throw new IllegalArgumentException("username is null");
@@ -117,7 +300,7 @@ public class DockerClient {
 	 */
 	public void auth() throws DockerException {
 		try {
-			client.resource(restEndpointUrl + "/auth")
+			resource(restEndpointUrl + "/auth")
 					.header("Content-Type", MediaType.APPLICATION_JSON)
 					.accept(MediaType.APPLICATION_JSON)
 					.post(authConfig());
@@ -161,7 +344,7 @@ public class DockerClient {
 	 */
 
 	public Info info() throws DockerException {
-		WebResource webResource = client.resource(restEndpointUrl + "/info");
+		WebResource webResource = resource(restEndpointUrl + "/info");
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -177,7 +360,7 @@ public class DockerClient {
 
 
 	public Version version() throws DockerException {
-		WebResource webResource = client.resource(restEndpointUrl + "/version");
+		WebResource webResource = resource(restEndpointUrl + "/version");
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -193,17 +376,84 @@ public class DockerClient {
 	
 	
 	public int ping() throws DockerException {
-		WebResource webResource = client.resource(restEndpointUrl + "/_ping");
+		WebResource webResource = resource(restEndpointUrl + "/_ping");
 	    
 		try {
 			LOGGER.trace("GET: {}", webResource);
 			ClientResponse resp = webResource.get(ClientResponse.class);
+			// release the pooled connection, it would leak otherwise
+			resp.close();
 			return resp.getStatus();
 		} catch (UniformInterfaceException exception) {
 			throw new DockerException(exception);
 		}
 	}
 
+	public ClientResponse events() throws DockerException {
+		return this.events(0, 0);
+	}
+
+	/**
+	 * Get container events from the server. The response is kept open and
+	 * streams one JSON object per event.
+	 *
+	 * @param since  only return events at or after this time (seconds since the epoch), 0 for no limit
+	 * @param until  stop streaming at this time (seconds since the epoch), 0 to stream indefinitely
+	 */
+	public ClientResponse events(long since, long until) throws DockerException {
+		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+		if (since > 0) {
+			params.add("since", String.valueOf(since));
+		}
+		if (until > 0) {
+			params.add("until", String.valueOf(until));
+		}
+
+		WebResource webResource = resource(restEndpointUrl + "/events").queryParams(params);
+
+		try {
+			LOGGER.trace("GET: {}", webResource);
+			return webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+		} catch (UniformInterfaceException exception) {
+			if (exception.getResponse().getStatus() == 500) {
+				throw new DockerException("Server error.", exception);
+			} else {
+				throw new DockerException(exception);
+			}
+		}
+	}
+
+	/**
+	 * Open a typed, reconnecting stream of events.
+	 *
+	 * @see EventStream
+	 */
+	public EventStream eventStream(long since, long until) {
+		EventStream stream = new EventStream(this, since, until, EventStream.DEFAULT_CAPACITY);
+		stream.start();
+		return stream;
+	}
+
+	/**
+	 * Publish the events, reading them only as fast as subscribers request them. Unlike
+	 * {@link #eventStream(long, long)} the stream does not reconnect.
+	 *
+	 * @see StreamPublisher
+	 */
+	public Publisher<Event> publishEvents(final long since, final long until) {
+		return new StreamPublisher<Event>(this) {
+			@Override
+			protected ClientResponse open(DockerClient dockerClient) throws DockerException {
+				return dockerClient.events(since, until);
+			}
+
+			@Override
+			protected Decoder<Event> decoder(InputStream input) throws IOException {
+				return json(EVENT_READER, input);
+			}
+		};
+	}
+
 
 	/**
 	 * * IMAGE API
@@ -233,7 +483,7 @@ public class DockerClient {
 		params.add("fromImage", repository);
 		params.add("registry", registry);
 
-		WebResource webResource = client.resource(restEndpointUrl + "/images/create").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/images/create").queryParams(params);
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -246,6 +496,26 @@ public class DockerClient {
 			}
 		}
 	}
+
+	/**
+	 * Publish the progress of pulling the image; a failed pull fails the stream.
+	 *
+	 * @see StreamPublisher
+	 */
+	public Publisher<ProgressMessage> publishPull(final String repository, final String tag) {
+		Preconditions.checkNotNull(repository, "Repository was not specified");
+		return new StreamPublisher<ProgressMessage>(this) {
+			@Override
+			protected ClientResponse open(DockerClient dockerClient) throws DockerException {
+				return dockerClient.pull(repository, tag);
+			}
+
+			@Override
+			protected Decoder<ProgressMessage> decoder(InputStream input) throws IOException {
+				return progress(PROGRESS_READER, input);
+			}
+		};
+	}
 	
 	
 	
@@ -280,7 +550,7 @@ public class DockerClient {
 		}
 		try {
 			final String registryAuth = registryAuth();
-			return client.resource(restEndpointUrl + "/images/" + name(name) + "/push")
+			return resource(restEndpointUrl + "/images/" + name(name) + "/push")
 					.header("X-Registry-Auth", registryAuth)
 					.accept(MediaType.APPLICATION_JSON)
 					.post(ClientResponse.class);
@@ -312,7 +582,7 @@ public class DockerClient {
 		params.add("tag", tag);
 		params.add("force", String.valueOf(force));
 
-		WebResource webResource = client.resource(restEndpointUrl + "/images/" + image + "/tag").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/images/" + image + "/tag").queryParams(params);
 	    
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -341,7 +611,7 @@ public class DockerClient {
 		params.add("tag", tag);
 		params.add("fromSrc", "-");
 
-		WebResource webResource = client.resource(restEndpointUrl + "/images/create").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/images/create").queryParams(params);
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -356,8 +626,127 @@ public class DockerClient {
 		}
 	}
 
+	public ImageCreateResponse importImage(String repository, String tag, File imageFile) throws DockerException {
+		return importImage(repository, tag, imageFile, null);
+	}
+
+	/**
+	 * Import an image from a tarball on disk.
+	 * <p>
+	 * Over plain http the file is sent on a dedicated connection with {@link FileChannel#transferTo},
+	 * so the kernel copies it straight from the page cache to the socket and its content never
+	 * passes through the heap. Other endpoints fall back to {@link #importImage(String, String, InputStream)}.
+	 *
+	 * @param listener notified after every chunk sent, may be null
+	 */
+	public ImageCreateResponse importImage(String repository, String tag, File imageFile, ProgressListener listener) throws DockerException {
+		Preconditions.checkNotNull(repository, "Repository was not specified");
+		Preconditions.checkNotNull(imageFile, "imageFile was not provided");
+
+		FileInputStream in = null;
+		DirectConnection connection = null;
+		try {
+			in = new FileInputStream(imageFile);
+			if (!"http".equals(serverUrl.getScheme())) {
+				return importImage(repository, tag, in);
+			}
+
+			StringBuilder uri = new StringBuilder(URI.create(restEndpointUrl).getRawPath())
+					.append("/images/create?fromSrc=-&repo=").append(URLEncoder.encode(repository, "UTF-8"));
+			if (tag != null) {
+				uri.append("&tag=").append(URLEncoder.encode(tag, "UTF-8"));
+			}
+
+			FileChannel file = in.getChannel();
+			long size = file.size();
+
+			BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", uri.toString());
+			request.setHeader("Content-Type", "application/x-tar");
+			request.setHeader("Content-Length", Long.toString(size));
+
+			// the daemon only answers once the whole image is registered, which can take a while
+			connection = new DirectConnection(serverUrl, CONNECT_TIMEOUT, 0);
+			LOGGER.trace("POST: {}", uri);
+			connection.sendHeaders(request);
+
+			long position = 0;
+			while (position < size) {
+				long count = Math.min(IMPORT_CHUNK_SIZE, size - position);
+				connection.transferFrom(file, position, count);
+				position += count;
+				if (listener != null) {
+					listener.onProgress(position, size);
+				}
+			}
+
+			return readImportResponse(connection.receiveResponse());
+		} catch (IOException e) {
+			throw new DockerException(String.format("Failed to import %s", imageFile), e);
+		} finally {
+			closeQuietly(in);
+			closeQuietly(connection);
+		}
+	}
+
+	private static ImageCreateResponse readImportResponse(HttpResponse response) throws DockerException, IOException {
+		int status = response.getStatusLine().getStatusCode();
+		if (status != 200) {
+			String body = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+			if (status == 500) {
+				throw new DockerException("Server error: " + body);
+			}
+			throw new DockerException(String.format("Import failed with status %d: %s", status, body));
+		}
+
+		// the daemon may send progress messages before the final one carrying the image id
+		ObjectMapper mapper = new ObjectMapper();
+		MappingIterator<JsonNode> messages = mapper.reader(JsonNode.class).readValues(response.getEntity().getContent());
+		try {
+			JsonNode last = null;
+			while (messages.hasNextValue()) {
+				last = messages.nextValue();
+				if (last.has("error")) {
+					throw new DockerException(last.get("error").asText());
+				}
+			}
+			if (last == null) {
+				throw new DockerException("Empty response to image import");
+			}
+			return mapper.treeToValue(last, ImageCreateResponse.class);
+		} finally {
+			messages.close();
+		}
+	}
+
+	/**
+	 * Stream an image with all its parent layers and tags as a tarball, like {@code docker save}.
+	 * The caller has to close the response.
+	 */
+	public ClientResponse exportImage(String imageName) throws DockerException {
+		Preconditions.checkState(!StringUtils.isEmpty(imageName), "Image name can't be empty");
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/images/%s/get", imageName));
+		LOGGER.trace("GET: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_OCTET_STREAM_TYPE).get(ClientResponse.class);
+		return checkStreamResponse(response, String.format("No such image %s", imageName));
+	}
+
+	/**
+	 * Write an image tarball, as returned by {@link #exportImage(String)}, into the channel.
+	 *
+	 * @param compress whether to gzip the tarball on the way
+	 * @return the size of the uncompressed tarball
+	 */
+	public long exportImage(String imageName, WritableByteChannel target, boolean compress) throws DockerException {
+		return transfer(exportImage(imageName), target, compress, imageName);
+	}
+
+	public long exportImage(String imageName, File target, boolean compress) throws DockerException {
+		return transfer(exportImage(imageName), target, compress, imageName);
+	}
+
 	public List<SearchItem> search(String search) throws DockerException {
-		WebResource webResource = client.resource(restEndpointUrl + "/images/search").queryParam("term", search);
+		WebResource webResource = resource(restEndpointUrl + "/images/search").queryParam("term", search);
 		try {
 			return webResource.accept(MediaType.APPLICATION_JSON).get(new GenericType<List<SearchItem>>() {
 			});
@@ -378,7 +767,7 @@ public class DockerClient {
 		Preconditions.checkState(!StringUtils.isEmpty(imageId), "Image ID can't be empty");
 
 		try {
-			WebResource webResource = client.resource(restEndpointUrl + "/images/" + imageId)
+			WebResource webResource = resource(restEndpointUrl + "/images/" + imageId)
 					.queryParam("force", "true");
 			LOGGER.trace("DELETE: {}", webResource);
 			webResource.delete();
@@ -408,7 +797,7 @@ public class DockerClient {
 	}
 
 	public String getVizImages() throws DockerException {
-		WebResource webResource = client.resource(restEndpointUrl + "/images/viz");
+		WebResource webResource = resource(restEndpointUrl + "/images/viz");
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -446,7 +835,25 @@ public class DockerClient {
 		params.add("filter", name);
 		params.add("all", allImages ? "1" : "0");
 
-		WebResource webResource = client.resource(restEndpointUrl + "/images/json").queryParams(params);
+		return getImages(params);
+	}
+
+	/**
+	 * List the images matching {@code filters}, which the daemon evaluates so that only those are
+	 * sent over the wire.
+	 */
+	public List<Image> getImages(boolean allImages, Filters filters) throws DockerException {
+
+		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+		params.add("all", allImages ? "1" : "0");
+		addFilters(params, filters);
+
+		return getImages(params);
+	}
+
+	private List<Image> getImages(MultivaluedMap<String, String> params) throws DockerException {
+
+		WebResource webResource = resource(restEndpointUrl + "/images/json").queryParams(params);
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -466,9 +873,57 @@ public class DockerClient {
 
 	}
 
+	/**
+	 * Iterate over the images while they are read, binding one at a time instead of materializing
+	 * the whole list. The iterator has to be closed if it is not read to the end.
+	 */
+	public JsonArrayIterator<Image> iterateImages(boolean allImages) throws DockerException {
+		return iterateImages(allImages, null);
+	}
+
+	/**
+	 * Like {@link #iterateImages(boolean)}, with the images filtered by the daemon.
+	 */
+	public JsonArrayIterator<Image> iterateImages(boolean allImages, Filters filters) throws DockerException {
+		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+		params.add("all", allImages ? "1" : "0");
+		addFilters(params, filters);
+
+		return iterate(resource(restEndpointUrl + "/images/json").queryParams(params), IMAGE_READER);
+	}
+
+	/**
+	 * Hand the images to the callback one at a time while they are read.
+	 *
+	 * @return the number of images handed to the callback
+	 */
+	public int getImages(boolean allImages, ItemCallback<Image> callback) throws DockerException {
+		return forEach(iterateImages(allImages), callback);
+	}
+
+	public int getImages(boolean allImages, Filters filters, ItemCallback<Image> callback) throws DockerException {
+		return forEach(iterateImages(allImages, filters), callback);
+	}
+
+	/**
+	 * List the images as compact {@link ImageSnapshot}s, sharing repeated strings through
+	 * {@code interner}. Reuse one interner across refreshes of the same host.
+	 */
+	public List<ImageSnapshot> getImageSnapshots(boolean allImages, final StringInterner interner) throws DockerException {
+		final List<ImageSnapshot> images = new ArrayList<ImageSnapshot>();
+		getImages(allImages, new ItemCallback<Image>() {
+			@Override
+			public boolean onItem(Image image) {
+				images.add(ImageSnapshot.of(image, interner));
+				return true;
+			}
+		});
+		return images;
+	}
+
 	public ImageInspectResponse inspectImage(String imageId) throws DockerException, NotFoundException {
 
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/images/%s/json", imageId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/images/%s/json", imageId));
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -518,7 +973,7 @@ public class DockerClient {
 		params.add("before", before);
 		params.add("size", showSize ? "1" : "0");
 
-		WebResource webResource = client.resource(restEndpointUrl + "/containers/json").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/containers/json").queryParams(params);
 		LOGGER.trace("GET: {}", webResource);
 		List<Container> containers = webResource.accept(MediaType.APPLICATION_JSON).get(new GenericType<List<Container>>() {
 		});
@@ -527,6 +982,125 @@ public class DockerClient {
 		return containers;
 	}
 
+	/**
+	 * List the containers matching {@code filters}, which the daemon evaluates so that only those
+	 * are sent over the wire.
+	 */
+	public List<Container> listContainers(boolean allContainers, Filters filters) throws DockerException {
+
+		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+		params.add("all", allContainers ? "1" : "0");
+		addFilters(params, filters);
+
+		WebResource webResource = resource(restEndpointUrl + "/containers/json").queryParams(params);
+
+		try {
+			LOGGER.trace("GET: {}", webResource);
+			List<Container> containers = webResource.accept(MediaType.APPLICATION_JSON).get(new GenericType<List<Container>>() {
+			});
+			LOGGER.trace("Response: {}", containers);
+			return containers;
+		} catch (UniformInterfaceException exception) {
+			if (exception.getResponse().getStatus() == 400) {
+				throw new DockerException("bad parameter");
+			} else if (exception.getResponse().getStatus() == 500) {
+				throw new DockerException("Server error", exception);
+			} else {
+				throw new DockerException(exception);
+			}
+		}
+	}
+
+	/**
+	 * Iterate over the containers while they are read, binding one at a time instead of
+	 * materializing the whole list. The iterator has to be closed if it is not read to the end.
+	 */
+	public JsonArrayIterator<Container> iterateContainers(boolean allContainers) throws DockerException {
+		return iterateContainers(allContainers, null);
+	}
+
+	/**
+	 * Like {@link #iterateContainers(boolean)}, with the containers filtered by the daemon.
+	 */
+	public JsonArrayIterator<Container> iterateContainers(boolean allContainers, Filters filters) throws DockerException {
+		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+		params.add("all", allContainers ? "1" : "0");
+		addFilters(params, filters);
+
+		return iterate(resource(restEndpointUrl + "/containers/json").queryParams(params), CONTAINER_READER);
+	}
+
+	/**
+	 * Hand the containers to the callback one at a time while they are read.
+	 *
+	 * @return the number of containers handed to the callback
+	 */
+	public int listContainers(boolean allContainers, ItemCallback<Container> callback) throws DockerException {
+		return forEach(iterateContainers(allContainers), callback);
+	}
+
+	public int listContainers(boolean allContainers, Filters filters, ItemCallback<Container> callback) throws DockerException {
+		return forEach(iterateContainers(allContainers, filters), callback);
+	}
+
+	/**
+	 * List the containers as compact {@link ContainerSnapshot}s, sharing repeated strings through
+	 * {@code interner}. Reuse one interner across refreshes of the same host.
+	 */
+	public List<ContainerSnapshot> listContainerSnapshots(boolean allContainers, final StringInterner interner) throws DockerException {
+		final List<ContainerSnapshot> containers = new ArrayList<ContainerSnapshot>();
+		listContainers(allContainers, new ItemCallback<Container>() {
+			@Override
+			public boolean onItem(Container container) {
+				containers.add(ContainerSnapshot.of(container, interner));
+				return true;
+			}
+		});
+		return containers;
+	}
+
+	private static void addFilters(MultivaluedMap<String, String> params, Filters filters) throws DockerException {
+		if (filters != null && !filters.isEmpty()) {
+			try {
+				// Jersey leaves quotes and brackets alone, which HttpClient refuses in a URI
+				String json = new ObjectMapper().writeValueAsString(filters);
+				params.add("filters", URLEncoder.encode(json, "UTF-8").replace("+", "%20"));
+			} catch (IOException e) {
+				throw new DockerException(e);
+			}
+		}
+	}
+
+	private <T> JsonArrayIterator<T> iterate(WebResource webResource, ObjectReader reader) throws DockerException {
+		LOGGER.trace("GET: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+		checkStreamResponse(response, String.format("Not found: %s", webResource));
+		try {
+			return new JsonArrayIterator<T>(reader, response);
+		} catch (IOException e) {
+			throw new DockerException(e);
+		}
+	}
+
+	private static <T> int forEach(JsonArrayIterator<T> items, ItemCallback<T> callback) throws DockerException {
+		Preconditions.checkNotNull(callback, "callback was not specified");
+
+		int count = 0;
+		try {
+			while (items.hasNext()) {
+				count++;
+				if (!callback.onItem(items.next())) {
+					break;
+				}
+			}
+			return count;
+		} catch (RuntimeJsonMappingException e) {
+			throw new DockerException(e);
+		} finally {
+			items.close();
+		}
+	}
+
 	public ContainerCreateResponse createContainer(ContainerConfig config) throws DockerException {
 		return createContainer(config, null);
 	}
@@ -537,7 +1111,7 @@ public class DockerClient {
 		if (name != null) {
 			params.add("name", name);
 		}
-		WebResource webResource = client.resource(restEndpointUrl + "/containers/create").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/containers/create").queryParams(params);
 
 		try {
 			LOGGER.trace("POST: {} ", webResource);
@@ -564,7 +1138,7 @@ public class DockerClient {
 
 	public void startContainer(String containerId, HostConfig hostConfig) throws DockerException, NotFoundException {
 
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/start", containerId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/start", containerId));
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -590,7 +1164,7 @@ public class DockerClient {
 
 	public ContainerInspectResponse inspectContainer(String containerId) throws DockerException, NotFoundException {
 
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/json", containerId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/json", containerId));
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -614,7 +1188,7 @@ public class DockerClient {
 	public void removeContainer(String containerId, boolean removeVolumes) throws DockerException {
 		Preconditions.checkState(!StringUtils.isEmpty(containerId), "Container ID can't be empty");
 
-		WebResource webResource = client.resource(restEndpointUrl + "/containers/" + containerId).queryParam("v", removeVolumes ? "1" : "0");
+		WebResource webResource = resource(restEndpointUrl + "/containers/" + containerId).queryParam("v", removeVolumes ? "1" : "0");
 
 		try {
 			LOGGER.trace("DELETE: {}", webResource);
@@ -647,7 +1221,7 @@ public class DockerClient {
 	}
 
 	public int waitContainer(String containerId) throws DockerException, NotFoundException {
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/wait", containerId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/wait", containerId));
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -675,6 +1249,263 @@ public class DockerClient {
 		return logContainer(containerId, true);
 	}
 
+	/**
+	 * Publish the output of the container, history first, as demultiplexed frames. Frames are
+	 * read only as fast as subscribers request them.
+	 *
+	 * @see StreamPublisher
+	 */
+	public Publisher<Frame> publishLogs(final String containerId) {
+		return new StreamPublisher<Frame>(this) {
+			@Override
+			protected ClientResponse open(DockerClient dockerClient) throws DockerException {
+				return dockerClient.logContainerStream(containerId);
+			}
+
+			@Override
+			protected Decoder<Frame> decoder(InputStream input) {
+				return frames(input);
+			}
+		};
+	}
+
+	/**
+	 * Get the output of the container from its logs, which unlike attaching can start at a time or
+	 * with the last lines only. The output is multiplexed as described in {@link FrameReader}.
+	 *
+	 * @return the response, which must be closed
+	 * @see LogTail
+	 */
+	public ClientResponse logs(String containerId, LogOptions options) throws DockerException, NotFoundException {
+		Preconditions.checkNotNull(containerId, "containerId was not specified");
+		Preconditions.checkNotNull(options, "options were not specified");
+
+		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
+		params.add("stdout", options.isStdout() ? "1" : "0");
+		params.add("stderr", options.isStderr() ? "1" : "0");
+		if (options.isFollow()) {
+			params.add("follow", "1");
+		}
+		if (options.isTimestamps()) {
+			params.add("timestamps", "1");
+		}
+		params.add("tail", options.getTail() < 0 ? "all" : String.valueOf(options.getTail()));
+		if (options.getSince() > 0) {
+			params.add("since", String.valueOf(options.getSince()));
+		}
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/logs", containerId))
+				.queryParams(params);
+
+		LOGGER.trace("GET: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_OCTET_STREAM_TYPE).get(ClientResponse.class);
+		return checkStreamResponse(response, String.format("No such container %s", containerId));
+	}
+
+	/**
+	 * Read the output of the container line by line, resuming after dropped connections.
+	 *
+	 * @see LogTail
+	 */
+	public LogTail tailLogs(String containerId, LogOptions options) {
+		return new LogTail(this, containerId, options, LogCursor.START);
+	}
+
+	/**
+	 * Continue reading the output of the container after the position of an earlier tail.
+	 */
+	public LogTail tailLogs(String containerId, LogOptions options, LogCursor cursor) {
+		return new LogTail(this, containerId, options, cursor);
+	}
+
+	/**
+	 * The resource usage of the container as JSON objects, one a second while it runs if
+	 * {@code stream} is set, else a single one.
+	 *
+	 * @return the response, to be closed by the caller
+	 */
+	public ClientResponse stats(String containerId, boolean stream) throws DockerException, NotFoundException {
+		Preconditions.checkNotNull(containerId, "containerId was not specified");
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/stats", containerId))
+				.queryParam("stream", stream ? "1" : "0");
+
+		LOGGER.trace("GET: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
+		return checkStreamResponse(response, String.format("No such container %s", containerId));
+	}
+
+	/**
+	 * Read the resource usage of the container sample by sample, see {@link StatsReader}.
+	 */
+	public StatsReader readStats(String containerId) {
+		return new StatsReader(this, containerId);
+	}
+
+	/**
+	 * Set up a command to run in a running container, to be started with {@link #startExec},
+	 * {@link #attachExec} or all at once with {@link #exec(String, String...)}.
+	 *
+	 * @throws DockerException if the container does not run
+	 */
+	public ExecCreateResponse createExec(String containerId, ExecConfig config) throws DockerException, NotFoundException {
+		Preconditions.checkNotNull(containerId, "containerId was not specified");
+		Preconditions.checkNotNull(config, "config was not specified");
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/exec", containerId));
+
+		LOGGER.trace("POST: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).type(MediaType.APPLICATION_JSON)
+				.post(ClientResponse.class, config);
+		try {
+			int status = response.getStatus();
+			if (status == 201 || status == 200) {
+				return response.getEntity(ExecCreateResponse.class);
+			} else if (status == 404) {
+				throw new NotFoundException(String.format("No such container %s", containerId));
+			} else if (status == 409) {
+				throw new DockerException(String.format("Container %s is not running", containerId));
+			} else if (status == 500) {
+				throw new DockerException("Server error: " + response.getEntity(String.class));
+			} else {
+				throw new DockerException(String.format("Unexpected response status %d: %s", status, response.getEntity(String.class)));
+			}
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Start an exec without input and stream its output, multiplexed as described in
+	 * {@link FrameReader} unless it has a tty. The daemon takes over the connection for the output
+	 * and closes it once the command ended, so it is not reused.
+	 *
+	 * @return the response, which must be closed
+	 */
+	public ClientResponse startExec(String execId, boolean tty) throws DockerException, NotFoundException {
+		Preconditions.checkNotNull(execId, "execId was not specified");
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/exec/%s/start", execId));
+
+		LOGGER.trace("POST: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_OCTET_STREAM_TYPE).type(MediaType.APPLICATION_JSON)
+				.post(ClientResponse.class, execStartBody(tty));
+		return checkStreamResponse(response, String.format("No such exec instance %s", execId));
+	}
+
+	/**
+	 * Start an exec on a connection of its own, upgraded to a raw stream carrying the input of the
+	 * command as well as its output, like {@code docker exec -i}. Only plain http endpoints support
+	 * this.
+	 *
+	 * @return the session, which must be closed
+	 */
+	public ExecSession attachExec(String execId, boolean tty) throws DockerException, NotFoundException {
+		Preconditions.checkNotNull(execId, "execId was not specified");
+		if (!"http".equals(serverUrl.getScheme())) {
+			throw new DockerException(String.format("Cannot attach to exec %s over %s", execId, serverUrl));
+		}
+
+		DirectConnection connection = null;
+		boolean attached = false;
+		try {
+			byte[] body = execStartBody(tty).getBytes("UTF-8");
+			String uri = URI.create(restEndpointUrl).getRawPath() + String.format("/exec/%s/start", execId);
+			BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", uri);
+			request.setHeader("Content-Type", MediaType.APPLICATION_JSON);
+			request.setHeader("Content-Length", Integer.toString(body.length));
+			request.setHeader("Connection", "Upgrade");
+			request.setHeader("Upgrade", "tcp");
+
+			// the command may wait for input or produce output at any pace
+			connection = new DirectConnection(serverUrl, CONNECT_TIMEOUT, 0);
+			LOGGER.trace("POST: {}", uri);
+			connection.sendHeaders(request);
+			OutputStream out = connection.getOutputStream();
+			out.write(body);
+			out.flush();
+
+			HttpResponse response = connection.receiveResponse();
+			int status = response.getStatusLine().getStatusCode();
+			if (status != 101 && status != 200) {
+				String text = response.getEntity() == null ? "" : EntityUtils.toString(response.getEntity());
+				throw statusException(status, text, String.format("No such exec instance %s", execId));
+			}
+			ExecSession session = new ExecSession(execId, connection, response.getEntity().getContent());
+			attached = true;
+			return session;
+		} catch (IOException e) {
+			throw new DockerException(String.format("Failed to attach to exec %s", execId), e);
+		} finally {
+			if (!attached) {
+				closeQuietly(connection);
+			}
+		}
+	}
+
+	public ExecInspectResponse inspectExec(String execId) throws DockerException, NotFoundException {
+		Preconditions.checkNotNull(execId, "execId was not specified");
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/exec/%s/json", execId));
+
+		try {
+			LOGGER.trace("GET: {}", webResource);
+			return webResource.accept(MediaType.APPLICATION_JSON).get(ExecInspectResponse.class);
+		} catch (UniformInterfaceException exception) {
+			if (exception.getResponse().getStatus() == 404) {
+				throw new NotFoundException(String.format("No such exec instance %s", execId));
+			} else if (exception.getResponse().getStatus() == 500) {
+				throw new DockerException("Server error", exception);
+			} else {
+				throw new DockerException(exception);
+			}
+		}
+	}
+
+	/**
+	 * Run a short command in a running container to its end, e.g. as a health check, without
+	 * the cost of a container of its own.
+	 * <p>
+	 * Creating and inspecting the exec go over pooled connections kept alive between calls, so
+	 * only the start, whose connection the daemon takes over, opens a new one. The output is
+	 * demultiplexed through a single buffer while it is received.
+	 */
+	public ExecResult exec(String containerId, String... cmd) throws DockerException, NotFoundException {
+		Preconditions.checkArgument(cmd.length > 0, "cmd was not specified");
+
+		String execId = createExec(containerId, new ExecConfig(cmd)).getId();
+		ByteArrayOutputStream stdout = new ByteArrayOutputStream(256);
+		ByteArrayOutputStream stderr = new ByteArrayOutputStream(256);
+		ClientResponse response = startExec(execId, false);
+		try {
+			new FrameReader(response.getEntityInputStream()).copyTo(stdout, stderr);
+		} catch (IOException e) {
+			throw new DockerException(String.format("Failed to read the output of exec %s", execId), e);
+		} finally {
+			response.close();
+		}
+
+		// the output can end a moment before the daemon records the exit code
+		ExecInspectResponse inspect = inspectExec(execId);
+		for (int i = 0; inspect.isRunning() && i < EXEC_EXIT_POLLS; i++) {
+			try {
+				Thread.sleep(EXEC_EXIT_POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DockerException(String.format("Interrupted waiting for exec %s", execId), e);
+			}
+			inspect = inspectExec(execId);
+		}
+		if (inspect.isRunning()) {
+			throw new DockerException(String.format("Exec %s still runs after its output ended", execId));
+		}
+		return new ExecResult(execId, inspect.getExitCode(), stdout.toByteArray(), stderr.toByteArray());
+	}
+
+	private static String execStartBody(boolean tty) {
+		return "{\"Detach\":false,\"Tty\":" + tty + "}";
+	}
+
 	private ClientResponse logContainer(String containerId, boolean stream) throws DockerException, NotFoundException {
 		MultivaluedMap<String, String> params = new MultivaluedMapImpl();
 		params.add("logs", "1");
@@ -684,7 +1515,7 @@ public class DockerClient {
 			params.add("stream", "1"); // this parameter keeps stream open indefinitely
 		}
 
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/attach", containerId))
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/attach", containerId))
 				.queryParams(params);
 
 		try {
@@ -708,14 +1539,14 @@ public class DockerClient {
 		copyConfig.setResource(resource);
 
 		WebResource webResource =
-				client.resource(restEndpointUrl + String.format("/containers/%s/copy", containerId));
+				resource(restEndpointUrl + String.format("/containers/%s/copy", containerId));
 
 		try {
 			LOGGER.trace("POST: " + webResource.toString());
 			WebResource.Builder builder =
-					webResource.accept(MediaType.APPLICATION_OCTET_STREAM_TYPE).type("application/json");
+					webResource.accept(MediaType.APPLICATION_OCTET_STREAM_TYPE).type(MediaType.APPLICATION_JSON);
 
-			return builder.post(ClientResponse.class, copyConfig.toString());
+			return builder.post(ClientResponse.class, copyConfig);
 		} catch (UniformInterfaceException exception) {
 			if (exception.getResponse().getStatus() == 400) {
 				throw new DockerException("bad parameter");
@@ -729,9 +1560,148 @@ public class DockerClient {
 		}
 	}
 
+	/**
+	 * Copy a file or folder out of a container, unpacking the tar stream below the given directory
+	 * while it is received.
+	 *
+	 * @return the number of files and folders written
+	 */
+	public int copyFile(String containerId, String resource, File targetDirectory) throws DockerException {
+		Preconditions.checkNotNull(targetDirectory, "targetDirectory was not specified");
+
+		ClientResponse response = copyFile(containerId, resource);
+		try {
+			checkCopyResponse(response, containerId, resource);
+			return new TarExtractor().extract(response.getEntityInputStream(), targetDirectory);
+		} catch (IOException e) {
+			throw new DockerException(String.format("Failed to extract %s from %s", resource, containerId), e);
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Copy a file or folder out of a container, handing every entry of the tar stream to the handler
+	 * while it is received.
+	 */
+	public void copyFile(String containerId, String resource, TarExtractor.EntryHandler handler) throws DockerException {
+		Preconditions.checkNotNull(handler, "handler was not specified");
+
+		ClientResponse response = copyFile(containerId, resource);
+		try {
+			checkCopyResponse(response, containerId, resource);
+			TarExtractor.extract(response.getEntityInputStream(), handler);
+		} catch (IOException e) {
+			throw new DockerException(String.format("Failed to extract %s from %s", resource, containerId), e);
+		} finally {
+			response.close();
+		}
+	}
+
+	private static void checkCopyResponse(ClientResponse response, String containerId, String resource) throws DockerException {
+		if (response.getStatus() == 404) {
+			throw new NotFoundException(String.format("No such container %s or resource %s", containerId, resource));
+		} else if (response.getStatus() != 200) {
+			throw new DockerException(String.format("Copying %s from %s failed with status %d", resource, containerId, response.getStatus()));
+		}
+	}
+
+	/**
+	 * Stream the file system of a container as a tarball, like {@code docker export}.
+	 * The caller has to close the response.
+	 */
+	public ClientResponse exportContainer(String containerId) throws DockerException {
+		Preconditions.checkState(!StringUtils.isEmpty(containerId), "Container ID can't be empty");
+
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/export", containerId));
+		LOGGER.trace("GET: {}", webResource);
+		ClientResponse response = webResource.accept(MediaType.APPLICATION_OCTET_STREAM_TYPE).get(ClientResponse.class);
+		return checkStreamResponse(response, String.format("No such container %s", containerId));
+	}
+
+	/**
+	 * Write a container tarball, as returned by {@link #exportContainer(String)}, into the channel.
+	 *
+	 * @param compress whether to gzip the tarball on the way
+	 * @return the size of the uncompressed tarball
+	 */
+	public long exportContainer(String containerId, WritableByteChannel target, boolean compress) throws DockerException {
+		return transfer(exportContainer(containerId), target, compress, containerId);
+	}
+
+	public long exportContainer(String containerId, File target, boolean compress) throws DockerException {
+		return transfer(exportContainer(containerId), target, compress, containerId);
+	}
+
+	private static long transfer(ClientResponse response, WritableByteChannel target, boolean compress, String name) throws DockerException {
+		Preconditions.checkNotNull(target, "target was not specified");
+
+		try {
+			ChannelCopier copier = new ChannelCopier();
+			InputStream in = response.getEntityInputStream();
+			return compress ? copier.copyCompressed(in, target, null) : copier.copy(in, target, null);
+		} catch (IOException e) {
+			throw new DockerException(String.format("Failed to export %s", name), e);
+		} finally {
+			response.close();
+		}
+	}
+
+	private static long transfer(ClientResponse response, File target, boolean compress, String name) throws DockerException {
+		Preconditions.checkNotNull(target, "target was not specified");
+
+		FileOutputStream out = null;
+		boolean done = false;
+		try {
+			out = new FileOutputStream(target);
+			long size = transfer(response, out.getChannel(), compress, name);
+			out.close();
+			done = true;
+			return size;
+		} catch (IOException e) {
+			response.close();
+			throw new DockerException(String.format("Failed to export %s to %s", name, target), e);
+		} finally {
+			if (!done) {
+				closeQuietly(out);
+				FileUtils.deleteQuietly(target);
+			}
+		}
+	}
+
+	/**
+	 * Check the status of a response whose body is streamed to the caller.
+	 *
+	 * @param notFoundMessage the message of the {@link NotFoundException} thrown on 404, null for
+	 *                        the body of the response
+	 * @return the response if it succeeded, otherwise it is closed
+	 */
+	public static ClientResponse checkStreamResponse(ClientResponse response, String notFoundMessage) throws DockerException {
+		int status = response.getStatus();
+		if (status == 200) {
+			return response;
+		}
+
+		try {
+			throw statusException(status, response.getEntity(String.class), notFoundMessage);
+		} finally {
+			response.close();
+		}
+	}
+
+	private static DockerException statusException(int status, String body, String notFoundMessage) {
+		if (status == 404) {
+			return new NotFoundException(notFoundMessage == null ? body : notFoundMessage);
+		} else if (status == 500) {
+			return new DockerException("Server error: " + body);
+		} else {
+			return new DockerException(String.format("Unexpected status %d: %s", status, body));
+		}
+	}
+
 	public List<ChangeLog> containerDiff(String containerId) throws DockerException, NotFoundException {
 
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/changes", containerId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/changes", containerId));
 
 		try {
 			LOGGER.trace("GET: {}", webResource);
@@ -755,7 +1725,7 @@ public class DockerClient {
 
 	public void stopContainer(String containerId, int timeout) throws DockerException {
 
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/stop", containerId))
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/stop", containerId))
 				.queryParam("t", String.valueOf(timeout));
 
 
@@ -777,7 +1747,7 @@ public class DockerClient {
 	}
 
 	public void kill(String containerId) throws DockerException {
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/kill", containerId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/kill", containerId));
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -797,7 +1767,7 @@ public class DockerClient {
 	}
 
 	public void restart(String containerId, int timeout) throws DockerException, NotFoundException {
-		WebResource webResource = client.resource(restEndpointUrl + String.format("/containers/%s/restart", containerId));
+		WebResource webResource = resource(restEndpointUrl + String.format("/containers/%s/restart", containerId));
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -827,7 +1797,7 @@ public class DockerClient {
 		params.add("author", commitConfig.getAuthor());
 		params.add("run", commitConfig.getRun());
 
-		WebResource webResource = client.resource(restEndpointUrl + "/commit").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/commit").queryParams(params);
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -931,7 +1901,7 @@ public class DockerClient {
 			throw new DockerException("Error occurred while preparing Docker context folder.", ex);
 		}
 
-		WebResource webResource = client.resource(restEndpointUrl + "/build").queryParams(params);
+		WebResource webResource = resource(restEndpointUrl + "/build").queryParams(params);
 
 		try {
 			LOGGER.trace("POST: {}", webResource);
@@ -951,4 +1921,23 @@ public class DockerClient {
 			FileUtils.deleteQuietly(dockerFolderTar);
 		}
 	}
+
+	/**
+	 * Publish the output of the build; a failed step fails the stream.
+	 *
+	 * @see StreamPublisher
+	 */
+	public Publisher<ProgressMessage> publishBuild(final File dockerFolder, final String tag) {
+		return new StreamPublisher<ProgressMessage>(this) {
+			@Override
+			protected ClientResponse open(DockerClient dockerClient) throws DockerException {
+				return dockerClient.build(dockerFolder, tag);
+			}
+
+			@Override
+			protected Decoder<ProgressMessage> decoder(InputStream input) throws IOException {
+				return progress(PROGRESS_READER, input);
+			}
+		};
+	}
 }
@@ -0,0 +1,275 @@
+package com.kpelykh.docker.client;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.Event;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Typed reader of the /events stream.
+ * <p>
+ * A dedicated reader thread parses events off the socket and hands them to consumers through a
+ * bounded ring buffer. When the buffer is full the oldest event is overwritten, so a slow consumer
+ * never stalls the reader; overwritten events are counted in {@link #getOverrunCount()}.
+ * <p>
+ * If the connection drops (including the client read timeout on a quiet daemon) the reader
+ * reconnects with {@code since} set to the time of the last event it has seen, or to the time of
+ * the first connection if none arrived yet. The daemon replays every event of that second again,
+ * and as many of them as were already delivered are skipped, so the consumer sees neither gaps
+ * nor duplicates across reconnects.
+ */
+public class EventStream implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventStream.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final ObjectReader EVENT_READER = new ObjectMapper().reader(Event.class);
+
+    private static final long MIN_RECONNECT_DELAY_MS = 100;
+    private static final long MAX_RECONNECT_DELAY_MS = 5000;
+
+    private final DockerClient dockerClient;
+    private final long until;
+    private final BlockingQueue<Event> buffer;
+
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    // second of the last event delivered and how many were delivered in it, and how many of those
+    // the current connection has yet to replay; only touched by the reader thread
+    private long cursor;
+    private int countAtCursor;
+    private int skipAtResume;
+
+    private volatile long lastEventTime;
+    private volatile boolean closed;
+    private volatile boolean done;
+    private Thread reader;
+
+    /**
+     * @param since    first event time to return (seconds since the epoch), 0 to start with live events
+     * @param until    time at which the stream ends (seconds since the epoch), 0 to never end
+     * @param capacity number of events buffered between the reader and consumers
+     */
+    public EventStream(DockerClient dockerClient, long since, long until, int capacity) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+        Preconditions.checkArgument(until == 0 || until >= since, "until %s is before since %s", until, since);
+
+        this.dockerClient = dockerClient;
+        this.cursor = since;
+        this.until = until;
+        this.buffer = new ArrayBlockingQueue<Event>(capacity);
+    }
+
+    public synchronized void start() {
+        Preconditions.checkState(reader == null, "Event stream already started");
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        }, "docker-events-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Wait for the next event.
+     *
+     * @return the next event, or null once the stream has ended and every buffered event was consumed
+     */
+    public Event take() throws InterruptedException {
+        while (true) {
+            Event event = buffer.poll(100, TimeUnit.MILLISECONDS);
+            if (event != null) {
+                return event;
+            }
+            if (isDone() && buffer.isEmpty()) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return the next event, or null if none arrived within the given time
+     */
+    public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return buffer.poll(timeout, unit);
+    }
+
+    /**
+     * Move up to {@code maxEvents} buffered events into the given collection without blocking.
+     *
+     * @return the number of events transferred
+     */
+    public int drainTo(Collection<? super Event> target, int maxEvents) {
+        return buffer.drainTo(target, maxEvents);
+    }
+
+    /**
+     * @return true once {@code until} was reached or the stream was closed
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return the time of the latest event read from the daemon, usable as {@code since} of a later stream
+     */
+    public long getLastEventTime() {
+        return lastEventTime;
+    }
+
+    /**
+     * @return the number of events overwritten because consumers fell behind
+     */
+    public long getOverrunCount() {
+        return overruns.get();
+    }
+
+    public long getReconnectCount() {
+        return reconnects.get();
+    }
+
+    /**
+     * Stop reading. A reader blocked on a quiet socket notices at the latest after the client read timeout.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        done = true;
+        Thread r;
+        synchronized (this) {
+            r = reader;
+        }
+        if (r != null) {
+            r.interrupt();
+        }
+    }
+
+    private void readLoop() {
+        long delay = MIN_RECONNECT_DELAY_MS;
+        try {
+            while (!closed) {
+                try {
+                    if (readOnce()) {
+                        return;
+                    }
+                    delay = MIN_RECONNECT_DELAY_MS;
+                } catch (DockerException e) {
+                    LOGGER.warn("Failed to open event stream: {}", e.getMessage());
+                } catch (IOException e) {
+                    LOGGER.debug("Event stream interrupted: {}", e.getMessage());
+                } catch (ClientHandlerException e) {
+                    LOGGER.debug("Event stream interrupted: {}", e.getMessage());
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unexpected error while reading events", e);
+                }
+
+                if (closed) {
+                    return;
+                }
+                reconnects.incrementAndGet();
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+            }
+        } finally {
+            done = true;
+        }
+    }
+
+    /**
+     * Read events until the connection ends.
+     *
+     * @return true if the stream is complete and must not be reopened
+     */
+    private boolean readOnce() throws DockerException, IOException {
+        ClientResponse r = dockerClient.events(cursor, until);
+        try {
+            if (r.getStatus() != 200) {
+                throw new DockerException(String.format("Unexpected response status %d from /events", r.getStatus()));
+            }
+            if (cursor == 0) {
+                // from now on: a reconnect has to replay what happened while it was away
+                cursor = connectTime(r);
+            }
+            skipAtResume = countAtCursor;
+
+            MappingIterator<Event> events = EVENT_READER.readValues(r.getEntityInputStream());
+            while (!closed && events.hasNextValue()) {
+                offer(events.nextValue());
+            }
+        } finally {
+            closeQuietly(r);
+        }
+
+        // a clean end of the response before until means the daemon went away, not that we are done
+        return until > 0 && System.currentTimeMillis() / 1000 >= until;
+    }
+
+    private void offer(Event event) {
+        if (skipAtResume > 0) {
+            if (event.getTime() == cursor) {
+                skipAtResume--;
+                return;
+            }
+            // past the replay, later events are new
+            skipAtResume = 0;
+        }
+        if (event.getTime() == cursor) {
+            countAtCursor++;
+        } else if (event.getTime() > cursor) {
+            cursor = event.getTime();
+            countAtCursor = 1;
+        }
+        lastEventTime = cursor;
+
+        while (!buffer.offer(event)) {
+            if (buffer.poll() != null) {
+                overruns.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the time of the response in seconds, by the clock of the daemon if it sent one
+     */
+    private static long connectTime(ClientResponse r) {
+        Date date = null;
+        try {
+            date = r.getResponseDate();
+        } catch (RuntimeException e) {
+            LOGGER.debug("Unreadable date of event stream response: {}", e.getMessage());
+        }
+        return (date != null ? date.getTime() : System.currentTimeMillis()) / 1000;
+    }
+
+    private static void closeQuietly(ClientResponse r) {
+        if (r != null) {
+            try {
+                r.close();
+            } catch (ClientHandlerException ignore) {
+            }
+        }
+    }
+}
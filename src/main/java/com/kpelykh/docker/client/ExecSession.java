@@ -0,0 +1,98 @@
+package com.kpelykh.docker.client;
+
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.utils.DirectConnection;
+import com.kpelykh.docker.client.utils.FrameReader;
+
+import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An exec started with {@link DockerClient#attachExec}, holding the connection the daemon took over
+ * for the raw stream: what is written to {@link #getStdin()} goes unframed to the process, its
+ * output comes back multiplexed as described in {@link FrameReader}, or raw with a tty.
+ * <p>
+ * Input and output are independent, so one thread may write while another reads. Closing the
+ * input with {@link #closeStdin()} half-closes the socket, which the process sees as end of file,
+ * while its remaining output can still be read.
+ */
+public class ExecSession implements Closeable {
+
+    private final String execId;
+    private final DirectConnection connection;
+    private final FrameReader frames;
+    private final OutputStream stdin;
+
+    private volatile boolean stdinClosed;
+
+    ExecSession(String execId, DirectConnection connection, InputStream output) throws IOException {
+        this.execId = execId;
+        this.connection = connection;
+        this.frames = new FrameReader(output);
+        this.stdin = new FilterOutputStream(connection.getOutputStream()) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                closeStdin();
+            }
+        };
+    }
+
+    public String getExecId() {
+        return execId;
+    }
+
+    /**
+     * @return the input of the process; closing it is the same as {@link #closeStdin()}
+     */
+    public OutputStream getStdin() {
+        return stdin;
+    }
+
+    /**
+     * Signal the end of the input to the process.
+     */
+    public void closeStdin() throws IOException {
+        if (!stdinClosed) {
+            stdinClosed = true;
+            connection.shutdownOutput();
+        }
+    }
+
+    /**
+     * @return the next chunk of output, or null once the process ended
+     */
+    public Frame readFrame() throws IOException {
+        return frames.readFrame();
+    }
+
+    /**
+     * Copy the remaining output until the process ends, see {@link FrameReader#copyTo}.
+     *
+     * @return the number of bytes copied
+     */
+    public long copyOutput(OutputStream stdout, OutputStream stderr) throws IOException {
+        return frames.copyTo(stdout, stderr);
+    }
+
+    public void setReadTimeout(int readTimeoutMillis) {
+        connection.setReadTimeout(readTimeoutMillis);
+    }
+
+    @Override
+    public void close() throws IOException {
+        connection.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ExecSession{" + execId + " on " + connection + '}';
+    }
+}
@@ -0,0 +1,12 @@
+package com.kpelykh.docker.client;
+
+/**
+ * Receives the items of a list response one at a time, as they are read from the daemon.
+ */
+public interface ItemCallback<T> {
+
+    /**
+     * @return {@code false} to stop reading the list
+     */
+    boolean onItem(T item);
+}
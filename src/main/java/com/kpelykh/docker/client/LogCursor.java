@@ -0,0 +1,128 @@
+package com.kpelykh.docker.client;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.LogLine;
+
+/**
+ * Position in the output of a container: the timestamp of the last line consumed and how many
+ * lines with exactly that timestamp were consumed. Immutable; the string form can be stored to
+ * resume reading in another process.
+ */
+public final class LogCursor {
+
+    /**
+     * Before the first line.
+     */
+    public static final LogCursor START = new LogCursor(-1, 0, 0);
+
+    private final long seconds;
+    private final int nanos;
+    private final int count;
+
+    private LogCursor(long seconds, int nanos, int count) {
+        this.seconds = seconds;
+        this.nanos = nanos;
+        this.count = count;
+    }
+
+    /**
+     * @param value as returned by {@link #toString()}
+     */
+    public static LogCursor parse(String value) {
+        Preconditions.checkNotNull(value, "value was not specified");
+        if (value.equals("start")) {
+            return START;
+        }
+        int dot = value.indexOf('.');
+        int slash = value.indexOf('/');
+        Preconditions.checkArgument(dot > 0 && slash > dot, "Not a log cursor: %s", value);
+        try {
+            return new LogCursor(Long.parseLong(value.substring(0, dot)),
+                    Integer.parseInt(value.substring(dot + 1, slash)),
+                    Integer.parseInt(value.substring(slash + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a log cursor: " + value, e);
+        }
+    }
+
+    public boolean isStart() {
+        return seconds < 0;
+    }
+
+    /**
+     * @return seconds since the epoch of the last line consumed
+     */
+    public long getSeconds() {
+        return seconds;
+    }
+
+    public int getNanos() {
+        return nanos;
+    }
+
+    /**
+     * @return number of lines consumed with exactly the timestamp of the cursor
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the cursor after consuming the line, which must carry a timestamp
+     */
+    public LogCursor advance(LogLine line) {
+        Preconditions.checkArgument(line.hasTimestamp(), "line has no timestamp");
+        return advance(line.getSeconds(), line.getNanos());
+    }
+
+    /**
+     * @return the cursor after consuming a line with the given timestamp
+     */
+    public LogCursor advance(long seconds, int nanos) {
+        if (seconds == this.seconds && nanos == this.nanos) {
+            return new LogCursor(seconds, nanos, count + 1);
+        }
+        return new LogCursor(seconds, nanos, 1);
+    }
+
+    /**
+     * @return negative, zero or positive if the line was written before, at or after the timestamp
+     *         of the cursor
+     */
+    public int compareTo(LogLine line) {
+        return compareTo(line.getSeconds(), line.getNanos());
+    }
+
+    /**
+     * @return negative, zero or positive if the timestamp is before, at or after the one of the
+     *         cursor
+     */
+    public int compareTo(long seconds, int nanos) {
+        if (this.seconds != seconds) {
+            return this.seconds < seconds ? 1 : -1;
+        }
+        return this.nanos == nanos ? 0 : this.nanos < nanos ? 1 : -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LogCursor)) {
+            return false;
+        }
+        LogCursor other = (LogCursor) o;
+        return seconds == other.seconds && nanos == other.nanos && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (int) (seconds ^ (seconds >>> 32)) + nanos) + count;
+    }
+
+    @Override
+    public String toString() {
+        return isStart() ? "start" : seconds + "." + nanos + "/" + count;
+    }
+}
@@ -0,0 +1,239 @@
+package com.kpelykh.docker.client;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.model.LogLine;
+import com.kpelykh.docker.client.model.LogOptions;
+import com.kpelykh.docker.client.model.StreamType;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.kpelykh.docker.client.utils.FrameReader;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Reader of the output of a container that survives dropped connections.
+ * <p>
+ * Lines are requested with timestamps, and a {@link LogCursor} keeps the timestamp of the last line
+ * returned by {@link #next()}. After a failure the logs are requested again from the second of the
+ * cursor, the daemon's {@code since} having no finer resolution, and the lines up to and including
+ * the cursor are skipped, so no line is returned twice and none is lost. The cursor can also be
+ * stored to resume in a later process. {@code tail} only applies until the first line was consumed.
+ * <p>
+ * Lines are read on the calling thread, one frame at a time.
+ */
+public class LogTail implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogTail.class);
+
+    private static final long MIN_RECONNECT_DELAY_MS = 100;
+    private static final long MAX_RECONNECT_DELAY_MS = 5000;
+    private static final int MAX_FAILURES = 5;
+
+    private final DockerClient dockerClient;
+    private final String containerId;
+    private final LogOptions options;
+
+    private final Queue<LogLine> lines = new ArrayDeque<LogLine>();
+    private final Map<StreamType, ByteArrayOutputStream> partial =
+            new EnumMap<StreamType, ByteArrayOutputStream>(StreamType.class);
+
+    private volatile LogCursor cursor;
+    private volatile CallScope connection;
+    private volatile boolean closed;
+    private ClientResponse response;
+    private FrameReader reader;
+    // where the current connection resumed, and how many lines at exactly that time are still to skip
+    private LogCursor resumedAt;
+    private int skipAtResume;
+    private boolean done;
+    private long reconnects;
+
+    /**
+     * @param cursor where to resume, {@link LogCursor#START} to read according to the options only
+     */
+    public LogTail(DockerClient dockerClient, String containerId, LogOptions options, LogCursor cursor) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+        Preconditions.checkNotNull(options, "options were not specified");
+        Preconditions.checkNotNull(cursor, "cursor was not specified");
+        this.dockerClient = dockerClient;
+        this.containerId = containerId;
+        this.options = options;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Wait for the next line.
+     *
+     * @return the next line, or null once the output ended (for a followed container, once it
+     *         stopped) or the tail was closed
+     * @throws DockerException if the container does not exist, or the logs could not be read
+     *                         again after repeated failures
+     */
+    public LogLine next() throws DockerException, InterruptedException {
+        int failures = 0;
+        long delay = MIN_RECONNECT_DELAY_MS;
+        while (true) {
+            LogLine line = lines.poll();
+            if (line != null) {
+                if (line.hasTimestamp()) {
+                    cursor = cursor.advance(line);
+                }
+                return line;
+            }
+            if (done || closed) {
+                return null;
+            }
+
+            try {
+                if (reader == null) {
+                    connect();
+                }
+                Frame frame = reader.readFrame();
+                if (frame == null) {
+                    disconnect();
+                    for (Map.Entry<StreamType, ByteArrayOutputStream> unterminated : partial.entrySet()) {
+                        if (unterminated.getValue().size() > 0) {
+                            offer(unterminated.getKey(), unterminated.getValue().toByteArray(), 0, unterminated.getValue().size());
+                        }
+                    }
+                    partial.clear();
+                    done = true;
+                } else {
+                    split(frame);
+                    failures = 0;
+                    delay = MIN_RECONNECT_DELAY_MS;
+                }
+            } catch (IOException e) {
+                delay = failed(e, ++failures, delay);
+            } catch (ClientHandlerException e) {
+                delay = failed(e, ++failures, delay);
+            }
+        }
+    }
+
+    /**
+     * @return the position after the last line returned by {@link #next()}
+     */
+    public LogCursor getCursor() {
+        return cursor;
+    }
+
+    public long getReconnectCount() {
+        return reconnects;
+    }
+
+    /**
+     * Stop reading; a thread blocked in {@link #next()} returns null.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        CallScope c = connection;
+        if (c != null) {
+            c.cancel();
+        }
+    }
+
+    private void connect() throws DockerException {
+        resumedAt = cursor;
+        LogOptions request;
+        if (resumedAt.isStart()) {
+            request = options.isTimestamps() ? options : options.toBuilder().withTimestamps().build();
+            skipAtResume = 0;
+        } else {
+            request = options.toBuilder().withTimestamps().withoutTail().withSince(resumedAt.getSeconds()).build();
+            skipAtResume = resumedAt.getCount();
+        }
+        // aborted rather than closed, which would read a followed response to its end
+        connection = CallScope.forStreams();
+        if (closed) {
+            connection.cancel();
+        }
+        response = dockerClient.within(connection).logs(containerId, request);
+        reader = new FrameReader(response.getEntityInputStream());
+    }
+
+    private void disconnect() {
+        ClientResponse r = response;
+        response = null;
+        reader = null;
+        if (connection != null) {
+            connection.cancel();
+        }
+        if (r != null) {
+            try {
+                r.close();
+            } catch (ClientHandlerException ignore) {
+            }
+        }
+    }
+
+    private long failed(Exception e, int failures, long delay) throws DockerException, InterruptedException {
+        disconnect();
+        if (closed) {
+            return delay;
+        }
+        if (failures > MAX_FAILURES) {
+            throw new DockerException(String.format("Failed to read the logs of %s %d times", containerId, failures - 1), e);
+        }
+        LOGGER.debug("Logs of {} interrupted, resuming at {}: {}", new Object[]{containerId, cursor, e.getMessage()});
+        // lines read but not returned yet are read again from the cursor
+        lines.clear();
+        partial.clear();
+        reconnects++;
+        Thread.sleep(delay);
+        return Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+    }
+
+    private void split(Frame frame) throws UnsupportedEncodingException {
+        byte[] payload = frame.getPayload();
+        int start = 0;
+        for (int i = 0; i < payload.length; i++) {
+            if (payload[i] == '\n') {
+                ByteArrayOutputStream head = partial.get(frame.getStreamType());
+                if (head != null && head.size() > 0) {
+                    head.write(payload, start, i - start);
+                    offer(frame.getStreamType(), head.toByteArray(), 0, head.size());
+                    head.reset();
+                } else {
+                    offer(frame.getStreamType(), payload, start, i - start);
+                }
+                start = i + 1;
+            }
+        }
+        if (start < payload.length) {
+            ByteArrayOutputStream head = partial.get(frame.getStreamType());
+            if (head == null) {
+                head = new ByteArrayOutputStream();
+                partial.put(frame.getStreamType(), head);
+            }
+            head.write(payload, start, payload.length - start);
+        }
+    }
+
+    private void offer(StreamType streamType, byte[] bytes, int offset, int length) throws UnsupportedEncodingException {
+        LogLine line = LogLine.parse(streamType, new String(bytes, offset, length, "UTF-8"));
+        if (line.hasTimestamp() && !resumedAt.isStart()) {
+            int position = resumedAt.compareTo(line);
+            if (position < 0 || position == 0 && skipAtResume > 0) {
+                if (position == 0) {
+                    skipAtResume--;
+                }
+                return;
+            }
+        }
+        lines.add(line);
+    }
+}
@@ -0,0 +1,24 @@
+package com.kpelykh.docker.client;
+
+import com.kpelykh.docker.client.model.StatsSample;
+
+/**
+ * Receives the samples of the containers watched by a {@link StatsMonitor}, on the thread reading
+ * the stats of the container.
+ */
+public interface StatsListener {
+
+    /**
+     * @param sample only valid during the call, it is reused for the next sample
+     */
+    void onSample(String containerId, StatsSample sample);
+
+    /**
+     * The stats of the container ended, because it stopped, it does not exist or they could not be
+     * read, or it was no longer watched.
+     *
+     * @param ring the ring of the watch that ended, as returned by {@link StatsMonitor#watch}, which
+     *             tells it from a later watch of the same container
+     */
+    void onEnd(String containerId, StatsRing ring);
+}
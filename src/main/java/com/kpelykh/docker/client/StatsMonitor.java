@@ -0,0 +1,173 @@
+package com.kpelykh.docker.client;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.StatsSample;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the recent resource usage of many containers.
+ * <p>
+ * Each watched container has a {@link StatsReader} on a thread of its own, blocked most of the time
+ * between the samples the daemon sends once a second, and a {@link StatsRing} of its latest
+ * samples. One sample instance per container is reused for every sample read, so watching even
+ * hundreds of containers produces hardly any garbage. {@link StatsListener}s see every sample as
+ * it is read. A container is watched until its stats end, typically because it stopped.
+ */
+public class StatsMonitor implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatsMonitor.class);
+
+    private final DockerClient dockerClient;
+    private final int ringCapacity;
+    private final ExecutorService readers;
+    private final ConcurrentMap<String, Watch> watches = new ConcurrentHashMap<String, Watch>();
+    private final List<StatsListener> listeners = new CopyOnWriteArrayList<StatsListener>();
+
+    private volatile boolean closed;
+
+    /**
+     * Keeping the last minute of samples.
+     */
+    public StatsMonitor(DockerClient dockerClient) {
+        this(dockerClient, 60);
+    }
+
+    /**
+     * @param ringCapacity samples kept per container
+     */
+    public StatsMonitor(DockerClient dockerClient, int ringCapacity) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkArgument(ringCapacity > 0, "ringCapacity must be positive: %s", ringCapacity);
+        this.dockerClient = dockerClient;
+        this.ringCapacity = ringCapacity;
+        this.readers = Executors.newCachedThreadPool(new NamedThreadFactory("docker-stats"));
+    }
+
+    public void addListener(StatsListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(StatsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Start reading the stats of the container, unless they are read already.
+     *
+     * @return the ring the samples of the container go to
+     */
+    public StatsRing watch(String containerId) {
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+        Preconditions.checkState(!closed, "StatsMonitor is closed");
+        Watch watch = watches.get(containerId);
+        if (watch != null && !watch.ended) {
+            return watch.ring;
+        }
+        watch = new Watch(containerId);
+        Watch existing = watches.put(containerId, watch);
+        if (existing != null) {
+            existing.reader.close();
+        }
+        readers.execute(watch);
+        return watch.ring;
+    }
+
+    /**
+     * Stop reading the stats of the container and forget its samples.
+     */
+    public void unwatch(String containerId) {
+        Watch watch = watches.remove(containerId);
+        if (watch != null) {
+            watch.reader.close();
+        }
+    }
+
+    /**
+     * @return whether the stats of the container are being read
+     */
+    public boolean isWatching(String containerId) {
+        Watch watch = watches.get(containerId);
+        return watch != null && !watch.ended;
+    }
+
+    /**
+     * @return the samples of the container, also once its stats ended, or null if it is not watched
+     */
+    public StatsRing getRing(String containerId) {
+        Watch watch = watches.get(containerId);
+        return watch == null ? null : watch.ring;
+    }
+
+    public List<String> getContainerIds() {
+        return new ArrayList<String>(watches.keySet());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Watch watch : watches.values()) {
+            watch.reader.close();
+        }
+        readers.shutdown();
+        try {
+            readers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private final class Watch implements Runnable {
+
+        final String containerId;
+        final StatsRing ring = new StatsRing(ringCapacity);
+        final StatsReader reader;
+        volatile boolean ended;
+
+        Watch(String containerId) {
+            this.containerId = containerId;
+            this.reader = new StatsReader(dockerClient, containerId);
+        }
+
+        @Override
+        public void run() {
+            StatsSample sample = new StatsSample();
+            try {
+                while (reader.next(sample)) {
+                    ring.add(sample);
+                    for (StatsListener listener : listeners) {
+                        try {
+                            listener.onSample(containerId, sample);
+                        } catch (RuntimeException e) {
+                            LOGGER.warn("Stats listener failed", e);
+                        }
+                    }
+                }
+            } catch (DockerException e) {
+                LOGGER.warn("Cannot read the stats of " + containerId, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ended = true;
+                for (StatsListener listener : listeners) {
+                    try {
+                        listener.onEnd(containerId, ring);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Stats listener failed", e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.kpelykh.docker.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.LogLine;
+import com.kpelykh.docker.client.model.StatsSample;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reader of the resource usage streamed by {@code /containers/(id)/stats}, about once a second.
+ * <p>
+ * Samples are parsed token by token straight into a {@link StatsSample} of the caller, which can be
+ * the same instance every time: field names come from the parser's symbol table, so apart from the
+ * timestamp nothing is allocated per sample. A dropped connection is opened again, the samples
+ * being snapshots that need no resuming.
+ */
+public class StatsReader implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatsReader.class);
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final long MIN_RECONNECT_DELAY_MS = 100;
+    private static final long MAX_RECONNECT_DELAY_MS = 5000;
+    private static final int MAX_FAILURES = 5;
+
+    private final DockerClient dockerClient;
+    private final String containerId;
+
+    private volatile CallScope connection;
+    private volatile boolean closed;
+    private ClientResponse response;
+    private JsonParser parser;
+    private boolean done;
+    private long samples;
+    private long reconnects;
+
+    public StatsReader(DockerClient dockerClient, String containerId) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+        this.dockerClient = dockerClient;
+        this.containerId = containerId;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    /**
+     * Wait for the next sample and read it into {@code sample}.
+     *
+     * @return false once the stream ended, because the container stopped, or the reader was closed
+     * @throws DockerException if the container does not exist, or the stats could not be read
+     *                         again after repeated failures
+     */
+    public boolean next(StatsSample sample) throws DockerException, InterruptedException {
+        Preconditions.checkNotNull(sample, "sample was not specified");
+        int failures = 0;
+        long delay = MIN_RECONNECT_DELAY_MS;
+        while (!done && !closed) {
+            try {
+                if (parser == null) {
+                    connect();
+                }
+                if (parser.nextToken() == null) {
+                    disconnect();
+                    done = true;
+                    return false;
+                }
+                parseSample(parser, sample);
+                samples++;
+                return true;
+            } catch (IOException e) {
+                delay = failed(e, ++failures, delay);
+            } catch (ClientHandlerException e) {
+                delay = failed(e, ++failures, delay);
+            }
+        }
+        return false;
+    }
+
+    public long getSampleCount() {
+        return samples;
+    }
+
+    public long getReconnectCount() {
+        return reconnects;
+    }
+
+    /**
+     * Stop reading; a thread blocked in {@link #next(StatsSample)} returns false.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        CallScope c = connection;
+        if (c != null) {
+            c.cancel();
+        }
+    }
+
+    private void connect() throws DockerException, IOException {
+        // aborted rather than closed, which would read the endless response to its end
+        connection = CallScope.forStreams();
+        if (closed) {
+            connection.cancel();
+        }
+        response = dockerClient.within(connection).stats(containerId, true);
+        parser = JSON.createParser(response.getEntityInputStream());
+    }
+
+    private void disconnect() {
+        ClientResponse r = response;
+        response = null;
+        parser = null;
+        if (connection != null) {
+            connection.cancel();
+        }
+        if (r != null) {
+            try {
+                r.close();
+            } catch (ClientHandlerException ignore) {
+            }
+        }
+    }
+
+    private long failed(Exception e, int failures, long delay) throws DockerException, InterruptedException {
+        disconnect();
+        if (closed) {
+            return delay;
+        }
+        if (failures > MAX_FAILURES) {
+            throw new DockerException(String.format("Failed to read the stats of %s %d times", containerId, failures - 1), e);
+        }
+        LOGGER.debug("Stats of {} interrupted: {}", containerId, e.getMessage());
+        reconnects++;
+        Thread.sleep(delay);
+        return Math.min(delay * 2, MAX_RECONNECT_DELAY_MS);
+    }
+
+    /**
+     * Parse the object the parser is at into the sample, e.g.
+     * <pre>{"read":"...","cpu_stats":{"cpu_usage":{"total_usage":...}},"memory_stats":{"usage":...},...}</pre>
+     */
+    private static void parseSample(JsonParser p, StatsSample sample) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a stats object, found " + p.getCurrentToken());
+        }
+        sample.clear();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if ("read".equals(name)) {
+                long[] read = p.getCurrentToken() == JsonToken.VALUE_STRING ? LogLine.parseTimestamp(p.getText()) : null;
+                sample.setTimestampNanos(read == null ? 0 : read[0] * 1000000000L + read[1]);
+            } else if ("cpu_stats".equals(name)) {
+                parseCpu(p, sample, false);
+            } else if ("precpu_stats".equals(name)) {
+                parseCpu(p, sample, true);
+            } else if ("memory_stats".equals(name)) {
+                parseMemory(p, sample);
+            } else if ("network".equals(name)) {
+                // a single interface before API 1.21
+                parseNetwork(p, sample);
+            } else if ("networks".equals(name)) {
+                if (p.getCurrentToken() == JsonToken.START_OBJECT) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        p.nextToken();
+                        parseNetwork(p, sample);
+                    }
+                }
+            } else if ("blkio_stats".equals(name)) {
+                parseBlkio(p, sample);
+            } else if ("pids_stats".equals(name)) {
+                if (p.getCurrentToken() == JsonToken.START_OBJECT) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = p.getCurrentName();
+                        p.nextToken();
+                        if ("current".equals(field)) {
+                            sample.setPids(p.getLongValue());
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseCpu(JsonParser p, StatsSample sample, boolean previous) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        long perCpu = 0;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if ("cpu_usage".equals(name) && p.getCurrentToken() == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.getCurrentName();
+                    p.nextToken();
+                    if ("total_usage".equals(field)) {
+                        if (previous) {
+                            sample.setPreviousCpuTotalUsage(p.getLongValue());
+                        } else {
+                            sample.setCpuTotalUsage(p.getLongValue());
+                        }
+                    } else if (previous) {
+                        p.skipChildren();
+                    } else if ("usage_in_kernelmode".equals(field)) {
+                        sample.setCpuKernelUsage(p.getLongValue());
+                    } else if ("usage_in_usermode".equals(field)) {
+                        sample.setCpuUserUsage(p.getLongValue());
+                    } else if ("percpu_usage".equals(field) && p.getCurrentToken() == JsonToken.START_ARRAY) {
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            perCpu++;
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else if ("system_cpu_usage".equals(name)) {
+                if (previous) {
+                    sample.setPreviousSystemCpuUsage(p.getLongValue());
+                } else {
+                    sample.setSystemCpuUsage(p.getLongValue());
+                }
+            } else if (previous) {
+                p.skipChildren();
+            } else if ("online_cpus".equals(name)) {
+                sample.setOnlineCpus(p.getLongValue());
+            } else if ("throttling_data".equals(name) && p.getCurrentToken() == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.getCurrentName();
+                    p.nextToken();
+                    if ("throttled_periods".equals(field)) {
+                        sample.setThrottledPeriods(p.getLongValue());
+                    } else if ("throttled_time".equals(field)) {
+                        sample.setThrottledTime(p.getLongValue());
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        // online_cpus is only reported since API 1.27
+        if (!previous && sample.getOnlineCpus() == 0) {
+            sample.setOnlineCpus(perCpu);
+        }
+    }
+
+    private static void parseMemory(JsonParser p, StatsSample sample) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if ("usage".equals(name)) {
+                sample.setMemoryUsage(p.getLongValue());
+            } else if ("max_usage".equals(name)) {
+                sample.setMemoryMaxUsage(p.getLongValue());
+            } else if ("limit".equals(name)) {
+                sample.setMemoryLimit(p.getLongValue());
+            } else if ("stats".equals(name) && p.getCurrentToken() == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.getCurrentName();
+                    p.nextToken();
+                    if ("cache".equals(field)) {
+                        sample.setMemoryCache(p.getLongValue());
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseNetwork(JsonParser p, StatsSample sample) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if ("rx_bytes".equals(name)) {
+                sample.setRxBytes(sample.getRxBytes() + p.getLongValue());
+            } else if ("rx_packets".equals(name)) {
+                sample.setRxPackets(sample.getRxPackets() + p.getLongValue());
+            } else if ("rx_errors".equals(name)) {
+                sample.setRxErrors(sample.getRxErrors() + p.getLongValue());
+            } else if ("rx_dropped".equals(name)) {
+                sample.setRxDropped(sample.getRxDropped() + p.getLongValue());
+            } else if ("tx_bytes".equals(name)) {
+                sample.setTxBytes(sample.getTxBytes() + p.getLongValue());
+            } else if ("tx_packets".equals(name)) {
+                sample.setTxPackets(sample.getTxPackets() + p.getLongValue());
+            } else if ("tx_errors".equals(name)) {
+                sample.setTxErrors(sample.getTxErrors() + p.getLongValue());
+            } else if ("tx_dropped".equals(name)) {
+                sample.setTxDropped(sample.getTxDropped() + p.getLongValue());
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static void parseBlkio(JsonParser p, StatsSample sample) throws IOException {
+        if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return;
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.getCurrentName();
+            p.nextToken();
+            if (!"io_service_bytes_recursive".equals(name) || p.getCurrentToken() != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            // [{"major":8,"minor":0,"op":"Read","value":1024}, ...]
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                boolean read = false;
+                boolean write = false;
+                long value = 0;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.getCurrentName();
+                    p.nextToken();
+                    if ("op".equals(field)) {
+                        read = textEquals(p, "read");
+                        write = textEquals(p, "write");
+                    } else if ("value".equals(field)) {
+                        value = p.getLongValue();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                if (read) {
+                    sample.setBlkioReadBytes(sample.getBlkioReadBytes() + value);
+                } else if (write) {
+                    sample.setBlkioWriteBytes(sample.getBlkioWriteBytes() + value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compare the current text to a lower case word ignoring case, without making a string of it.
+     */
+    private static boolean textEquals(JsonParser p, String word) throws IOException {
+        if (p.getTextLength() != word.length()) {
+            return false;
+        }
+        char[] text = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        for (int i = 0; i < word.length(); i++) {
+            if (Character.toLowerCase(text[offset + i]) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,79 @@
+package com.kpelykh.docker.client;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.StatsSample;
+
+/**
+ * The most recent samples of one container, in a ring of samples allocated up front.
+ * <p>
+ * Samples are copied in and out, so neither adding nor reading allocates and a reader never sees
+ * a sample that is being overwritten. With one writer adding about once a second, the lock is
+ * practically never contended.
+ */
+public class StatsRing {
+
+    private final StatsSample[] samples;
+    // the slot the next sample goes to
+    private int head;
+    private int size;
+    private long count;
+
+    public StatsRing(int capacity) {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+        this.samples = new StatsSample[capacity];
+        for (int i = 0; i < capacity; i++) {
+            samples[i] = new StatsSample();
+        }
+    }
+
+    /**
+     * Keep a copy of the sample, replacing the oldest one once the ring is full.
+     */
+    public synchronized void add(StatsSample sample) {
+        samples[head].copyFrom(sample);
+        head = (head + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+        count++;
+    }
+
+    /**
+     * Copy the latest sample into {@code into}.
+     *
+     * @return false if there is none yet
+     */
+    public boolean latest(StatsSample into) {
+        return get(0, into);
+    }
+
+    /**
+     * Copy a sample into {@code into}, 0 being the latest, 1 the one before and so on.
+     *
+     * @return false if the ring holds no sample that old
+     */
+    public synchronized boolean get(int ago, StatsSample into) {
+        Preconditions.checkArgument(ago >= 0, "ago must not be negative: %s", ago);
+        if (ago >= size) {
+            return false;
+        }
+        into.copyFrom(samples[(head - 1 - ago + samples.length) % samples.length]);
+        return true;
+    }
+
+    /**
+     * @return the samples held, at most the capacity
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * @return the samples ever added
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+}
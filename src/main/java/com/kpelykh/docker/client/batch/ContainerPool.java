@@ -0,0 +1,307 @@
+package com.kpelykh.docker.client.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.NotFoundException;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.HostConfig;
+import com.kpelykh.docker.client.utils.LatencyRecorder;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps created but not yet started containers ready, so that a job only pays for
+ * {@link DockerClient#startContainer(String, HostConfig)}.
+ * <p>
+ * Containers are pooled per template, two {@link ContainerConfig}s being the same template when
+ * they serialize to the same JSON. Each template is topped up to {@code warmSize} containers in the
+ * background after every acquisition. Pooled containers idle for longer than {@code maxIdleMillis}
+ * are removed and replaced by a periodic sweep, and templates nobody acquired from for that long
+ * are not refilled anymore. Since containers are created ahead of time they cannot be given a name.
+ */
+public class ContainerPool implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContainerPool.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final DockerClient dockerClient;
+    private final int warmSize;
+    private final long maxIdleMillis;
+    private final ScheduledExecutorService executor;
+
+    private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final LatencyRecorder createLatency = new LatencyRecorder();
+
+    private volatile boolean closed;
+
+    /**
+     * @param warmSize        number of containers kept ready per template
+     * @param maxIdleMillis   time after which an unused pooled container is replaced
+     * @param refillThreads   number of concurrent background create calls
+     */
+    public ContainerPool(DockerClient dockerClient, int warmSize, long maxIdleMillis, int refillThreads) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkArgument(warmSize > 0, "warmSize must be positive: %s", warmSize);
+        Preconditions.checkArgument(maxIdleMillis > 0, "maxIdleMillis must be positive: %s", maxIdleMillis);
+
+        this.dockerClient = dockerClient;
+        this.warmSize = warmSize;
+        this.maxIdleMillis = maxIdleMillis;
+        this.executor = Executors.newScheduledThreadPool(refillThreads, new NamedThreadFactory("docker-container-pool"));
+
+        long sweepInterval = Math.max(maxIdleMillis / 4, 1000);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sweep();
+            }
+        }, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start filling the pool for the given template without taking a container from it.
+     */
+    public void prewarm(ContainerConfig config) throws DockerException {
+        refill(template(config));
+    }
+
+    /**
+     * Take a ready container for the given template, creating one on the spot if the pool is empty.
+     *
+     * @return the id of a created, not started container owned by the caller
+     */
+    public String acquire(ContainerConfig config) throws DockerException {
+        Preconditions.checkState(!closed, "ContainerPool is closed");
+
+        Template template = template(config);
+        template.lastAcquired = System.currentTimeMillis();
+
+        PooledContainer pooled = template.ready.poll();
+        String containerId;
+        if (pooled != null) {
+            hits.incrementAndGet();
+            containerId = pooled.id;
+        } else {
+            misses.incrementAndGet();
+            containerId = create(template);
+        }
+
+        refill(template);
+        return containerId;
+    }
+
+    /**
+     * Take a ready container for the given template and start it. A pooled container that vanished
+     * in the meantime is skipped in favour of the next one.
+     *
+     * @return the id of the started container
+     */
+    public String acquireAndStart(ContainerConfig config, HostConfig hostConfig) throws DockerException {
+        while (true) {
+            String containerId = acquire(config);
+            try {
+                dockerClient.startContainer(containerId, hostConfig);
+                return containerId;
+            } catch (NotFoundException e) {
+                LOGGER.warn("Pooled container {} disappeared, trying the next one", containerId);
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return the number of ready containers for the given template
+     */
+    public int getReadyCount(ContainerConfig config) throws DockerException {
+        Template template = templates.get(key(config));
+        return template == null ? 0 : template.ready.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of pooled containers removed because they were idle too long or gone
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public LatencyRecorder getCreateLatency() {
+        return createLatency;
+    }
+
+    /**
+     * Stop refilling and remove every pooled container.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        for (Template template : templates.values()) {
+            synchronized (template) {
+                PooledContainer pooled;
+                while ((pooled = template.ready.poll()) != null) {
+                    remove(pooled.id);
+                }
+            }
+        }
+    }
+
+    private Template template(ContainerConfig config) throws DockerException {
+        String key = key(config);
+        Template template = templates.get(key);
+        if (template == null) {
+            // a copy of its own, the caller may go on changing the config
+            Template created = new Template(copy(key));
+            template = templates.putIfAbsent(key, created);
+            if (template == null) {
+                template = created;
+            }
+        }
+        return template;
+    }
+
+    private void refill(final Template template) {
+        int missing;
+        synchronized (template) {
+            missing = warmSize - template.ready.size() - template.creating;
+            if (closed || missing <= 0) {
+                return;
+            }
+            template.creating += missing;
+        }
+
+        Runnable createOne = new Runnable() {
+            @Override
+            public void run() {
+                String id = null;
+                try {
+                    id = create(template);
+                } catch (DockerException e) {
+                    LOGGER.warn("Failed to pre-create container for {}", template.config.getImage(), e);
+                }
+
+                boolean pooled = false;
+                synchronized (template) {
+                    template.creating--;
+                    if (id != null && !closed) {
+                        pooled = template.ready.add(new PooledContainer(id));
+                    }
+                }
+                if (id != null && !pooled) {
+                    remove(id);
+                }
+            }
+        };
+
+        for (int i = 0; i < missing; i++) {
+            try {
+                executor.execute(createOne);
+            } catch (RejectedExecutionException e) {
+                synchronized (template) {
+                    template.creating -= missing - i;
+                }
+                return;
+            }
+        }
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Template template : templates.values()) {
+            for (Iterator<PooledContainer> it = template.ready.iterator(); it.hasNext(); ) {
+                PooledContainer pooled = it.next();
+                if (now - pooled.createdAt > maxIdleMillis && template.ready.remove(pooled)) {
+                    evictions.incrementAndGet();
+                    remove(pooled.id);
+                }
+            }
+            if (now - template.lastAcquired <= maxIdleMillis) {
+                refill(template);
+            }
+        }
+    }
+
+    private String create(Template template) throws DockerException {
+        long start = System.nanoTime();
+        String id = dockerClient.createContainer(template.config).getId();
+        createLatency.recordNanos(System.nanoTime() - start);
+        return id;
+    }
+
+    private void remove(String containerId) {
+        try {
+            dockerClient.removeContainer(containerId);
+        } catch (DockerException e) {
+            LOGGER.warn("Failed to remove pooled container {}", containerId, e);
+        }
+    }
+
+    private static String key(ContainerConfig config) throws DockerException {
+        Preconditions.checkNotNull(config, "config was not specified");
+        try {
+            return MAPPER.writeValueAsString(config);
+        } catch (JsonProcessingException e) {
+            throw new DockerException(e);
+        }
+    }
+
+    private static ContainerConfig copy(String key) throws DockerException {
+        try {
+            return MAPPER.readValue(key, ContainerConfig.class);
+        } catch (IOException e) {
+            throw new DockerException(e);
+        }
+    }
+
+    private static final class Template {
+
+        final ContainerConfig config;
+        final Queue<PooledContainer> ready = new ConcurrentLinkedQueue<PooledContainer>();
+        // containers being created in the background, guarded by the template
+        int creating;
+        volatile long lastAcquired = System.currentTimeMillis();
+
+        Template(ContainerConfig config) {
+            this.config = config;
+        }
+    }
+
+    private static final class PooledContainer {
+
+        final String id;
+        final long createdAt = System.currentTimeMillis();
+
+        PooledContainer(String id) {
+            this.id = id;
+        }
+    }
+}
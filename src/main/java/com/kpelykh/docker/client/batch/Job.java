@@ -0,0 +1,88 @@
+package com.kpelykh.docker.client.batch;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.HostConfig;
+
+/**
+ * A short lived container run by a {@link JobRunner}: created, started, waited for,
+ * its output collected and finally removed.
+ */
+public class Job {
+
+    public static final int DEFAULT_MAX_LOG_BYTES = 1024 * 1024;
+
+    private final ContainerConfig containerConfig;
+    private String name;
+    private HostConfig hostConfig;
+    private boolean collectLogs = true;
+    private int maxLogBytes = DEFAULT_MAX_LOG_BYTES;
+    private boolean remove = true;
+
+    public Job(ContainerConfig containerConfig) {
+        Preconditions.checkNotNull(containerConfig, "containerConfig was not specified");
+        this.containerConfig = containerConfig;
+    }
+
+    public ContainerConfig getContainerConfig() {
+        return containerConfig;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Job setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public HostConfig getHostConfig() {
+        return hostConfig;
+    }
+
+    public Job setHostConfig(HostConfig hostConfig) {
+        this.hostConfig = hostConfig;
+        return this;
+    }
+
+    public boolean isCollectLogs() {
+        return collectLogs;
+    }
+
+    public Job setCollectLogs(boolean collectLogs) {
+        this.collectLogs = collectLogs;
+        return this;
+    }
+
+    public int getMaxLogBytes() {
+        return maxLogBytes;
+    }
+
+    /**
+     * Output beyond this many bytes per stream is discarded.
+     */
+    public Job setMaxLogBytes(int maxLogBytes) {
+        this.maxLogBytes = maxLogBytes;
+        return this;
+    }
+
+    public boolean isRemove() {
+        return remove;
+    }
+
+    public Job setRemove(boolean remove) {
+        this.remove = remove;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Job{" +
+                "image='" + containerConfig.getImage() + '\'' +
+                ", name='" + name + '\'' +
+                ", collectLogs=" + collectLogs +
+                ", remove=" + remove +
+                '}';
+    }
+}
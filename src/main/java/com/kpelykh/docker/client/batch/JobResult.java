@@ -0,0 +1,70 @@
+package com.kpelykh.docker.client.batch;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a {@link Job}.
+ */
+public class JobResult {
+
+    private final Job job;
+    private final String containerId;
+    private final int exitCode;
+    private final String stdout;
+    private final String stderr;
+    private final Map<Stage, Long> stageNanos;
+
+    JobResult(Job job, String containerId, int exitCode, String stdout, String stderr, Map<Stage, Long> stageNanos) {
+        this.job = job;
+        this.containerId = containerId;
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.stageNanos = new EnumMap<Stage, Long>(stageNanos);
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * @return the standard output of the container, or null if logs were not collected
+     */
+    public String getStdout() {
+        return stdout;
+    }
+
+    /**
+     * @return the standard error of the container, or null if logs were not collected
+     */
+    public String getStderr() {
+        return stderr;
+    }
+
+    /**
+     * @return time spent in the given stage, or -1 if the stage was skipped
+     */
+    public long getStageTime(Stage stage, TimeUnit unit) {
+        Long nanos = stageNanos.get(stage);
+        return nanos == null ? -1 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "JobResult{" +
+                "containerId='" + containerId + '\'' +
+                ", exitCode=" + exitCode +
+                ", stageNanos=" + stageNanos +
+                '}';
+    }
+}
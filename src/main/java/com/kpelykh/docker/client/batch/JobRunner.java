@@ -0,0 +1,329 @@
+package com.kpelykh.docker.client.batch;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.ContainerWaiter;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.model.StreamType;
+import com.kpelykh.docker.client.utils.FrameReader;
+import com.kpelykh.docker.client.utils.LatencyRecorder;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import com.kpelykh.docker.client.utils.SettableFuture;
+import com.sun.jersey.api.client.ClientResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs many short lived containers with overlapping stages.
+ * <p>
+ * Create and start run on a pool of launch threads. Waiting does not occupy a thread at all: it is
+ * multiplexed over a single {@link ContainerWaiter}. Once a container exits, collecting its output
+ * and removing it run on a pool of collect threads. At most {@code maxConcurrentJobs} containers
+ * exist at any time; further jobs queue up until a slot frees. All calls share the connection pool
+ * of the given {@link DockerClient}.
+ * <p>
+ * Per-stage latencies of all jobs are available from {@link #getLatency(Stage)}. Closing the runner
+ * fails the results of all jobs not finished yet with a {@link CancellationException}.
+ */
+public class JobRunner implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobRunner.class);
+
+    private final DockerClient dockerClient;
+    private final ContainerWaiter waiter;
+    private final int maxConcurrentJobs;
+    private final Semaphore slots;
+    private final ExecutorService launchPool;
+    private final ExecutorService collectPool;
+
+    private final Map<Stage, LatencyRecorder> latencies = new EnumMap<Stage, LatencyRecorder>(Stage.class);
+    private final LatencyRecorder jobLatency = new LatencyRecorder();
+    private final Set<Execution> outstanding = Collections.newSetFromMap(new ConcurrentHashMap<Execution, Boolean>());
+
+    private volatile boolean closed;
+
+    public JobRunner(DockerClient dockerClient, int maxConcurrentJobs) {
+        this(dockerClient, maxConcurrentJobs, 8, 8);
+    }
+
+    /**
+     * @param maxConcurrentJobs maximum number of containers that exist at the same time
+     * @param launchThreads     number of concurrent create/start calls
+     * @param collectThreads    number of concurrent logs/remove calls
+     */
+    public JobRunner(DockerClient dockerClient, int maxConcurrentJobs, int launchThreads, int collectThreads) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkArgument(maxConcurrentJobs > 0, "maxConcurrentJobs must be positive: %s", maxConcurrentJobs);
+
+        this.dockerClient = dockerClient;
+        this.maxConcurrentJobs = maxConcurrentJobs;
+        this.slots = new Semaphore(maxConcurrentJobs, true);
+        this.launchPool = Executors.newFixedThreadPool(launchThreads, new NamedThreadFactory("docker-job-launch"));
+        this.collectPool = Executors.newFixedThreadPool(collectThreads, new NamedThreadFactory("docker-job-collect"));
+        this.waiter = new ContainerWaiter(dockerClient);
+
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new LatencyRecorder());
+        }
+    }
+
+    /**
+     * Queue a job. The returned future fails with a {@link DockerException} if any stage fails;
+     * a container that was created is removed in that case as well (unless the job says otherwise).
+     */
+    public Future<JobResult> submit(Job job) {
+        Preconditions.checkNotNull(job, "job was not specified");
+        Preconditions.checkState(!closed, "JobRunner is closed");
+
+        final Execution execution = new Execution(job);
+        outstanding.add(execution);
+        try {
+            launchPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    launch(execution);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            complete(execution, new CancellationException("JobRunner is closed"));
+        }
+        return execution.result;
+    }
+
+    public List<Future<JobResult>> submitAll(Collection<Job> jobs) {
+        List<Future<JobResult>> results = new ArrayList<Future<JobResult>>(jobs.size());
+        for (Job job : jobs) {
+            results.add(submit(job));
+        }
+        return results;
+    }
+
+    public LatencyRecorder getLatency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    /**
+     * @return latency of whole jobs, from submission until the result is available
+     */
+    public LatencyRecorder getJobLatency() {
+        return jobLatency;
+    }
+
+    /**
+     * @return the number of jobs currently holding a container
+     */
+    public int getRunningCount() {
+        return maxConcurrentJobs - slots.availablePermits();
+    }
+
+    /**
+     * Stop launching and collecting jobs. Jobs not finished yet fail with a
+     * {@link CancellationException}; their containers are left as they are.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        launchPool.shutdownNow();
+        collectPool.shutdownNow();
+        for (Execution execution : outstanding) {
+            complete(execution, new CancellationException(String.format("JobRunner closed before %s finished", execution.job)));
+        }
+        waiter.close();
+    }
+
+    private void launch(final Execution execution) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            complete(execution, new CancellationException(String.format("JobRunner closed before %s was launched", execution.job)));
+            return;
+        }
+        execution.holdsSlot.set(true);
+        if (execution.finished.get()) {
+            // completed by close() while waiting for the slot
+            releaseSlot(execution);
+            return;
+        }
+
+        Job job = execution.job;
+        try {
+            long start = System.nanoTime();
+            execution.containerId = dockerClient.createContainer(job.getContainerConfig(), job.getName()).getId();
+            start = stageDone(execution, Stage.CREATE, start);
+
+            dockerClient.startContainer(execution.containerId, job.getHostConfig());
+            execution.waitStart = stageDone(execution, Stage.START, start);
+        } catch (Exception e) {
+            finish(execution, e);
+            return;
+        }
+
+        waiter.waitFor(execution.containerId, new ContainerWaiter.Listener() {
+            @Override
+            public void onExit(String containerId, int exitCode) {
+                execution.exitCode = exitCode;
+                collect(execution, null);
+            }
+
+            @Override
+            public void onFailure(String containerId, Throwable cause) {
+                collect(execution, cause);
+            }
+        });
+    }
+
+    private void collect(final Execution execution, final Throwable waitFailure) {
+        stageDone(execution, Stage.WAIT, execution.waitStart);
+        try {
+            collectPool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (waitFailure == null && execution.job.isCollectLogs()) {
+                        long start = System.nanoTime();
+                        try {
+                            readLogs(execution);
+                            stageDone(execution, Stage.LOGS, start);
+                        } catch (Exception e) {
+                            finish(execution, e);
+                            return;
+                        }
+                    }
+                    finish(execution, waitFailure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finish(execution, e);
+        }
+    }
+
+    private void readLogs(Execution execution) throws DockerException, IOException {
+        int limit = execution.job.getMaxLogBytes();
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+        ClientResponse response = dockerClient.logContainer(execution.containerId);
+        FrameReader reader = new FrameReader(response.getEntityInputStream());
+        try {
+            Frame frame;
+            while ((frame = reader.readFrame()) != null) {
+                ByteArrayOutputStream target = frame.getStreamType() == StreamType.STDERR ? stderr : stdout;
+                int n = Math.min(frame.getPayload().length, limit - target.size());
+                if (n > 0) {
+                    target.write(frame.getPayload(), 0, n);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        execution.stdout = toString(stdout);
+        execution.stderr = toString(stderr);
+    }
+
+    /**
+     * Removes the container if needed, releases the slot and completes the result.
+     */
+    private void finish(Execution execution, Throwable failure) {
+        if (execution.containerId != null && execution.job.isRemove() && !execution.finished.get()) {
+            long start = System.nanoTime();
+            try {
+                dockerClient.removeContainer(execution.containerId);
+                stageDone(execution, Stage.REMOVE, start);
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    LOGGER.warn("Failed to remove container {} of failed job", execution.containerId, e);
+                }
+            }
+        }
+        complete(execution, failure);
+    }
+
+    /**
+     * Release the slot and complete the result, unless that happened already.
+     */
+    private void complete(Execution execution, Throwable failure) {
+        if (!execution.finished.compareAndSet(false, true)) {
+            return;
+        }
+        outstanding.remove(execution);
+        releaseSlot(execution);
+
+        jobLatency.recordNanos(System.nanoTime() - execution.submitted);
+        if (failure == null) {
+            execution.result.set(new JobResult(execution.job, execution.containerId, execution.exitCode,
+                    execution.stdout, execution.stderr, execution.stageNanos));
+        } else if (failure instanceof DockerException || failure instanceof CancellationException) {
+            execution.result.setException(failure);
+        } else {
+            execution.result.setException(new DockerException(String.format("Job %s failed", execution.job), failure));
+        }
+    }
+
+    private void releaseSlot(Execution execution) {
+        if (execution.holdsSlot.compareAndSet(true, false)) {
+            slots.release();
+        }
+    }
+
+    private long stageDone(Execution execution, Stage stage, long start) {
+        long now = System.nanoTime();
+        execution.stageNanos.put(stage, now - start);
+        latencies.get(stage).recordNanos(now - start);
+        return now;
+    }
+
+    private static String toString(ByteArrayOutputStream out) {
+        try {
+            return out.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * State of a single job as it moves through the stages; each stage happens-before the next
+     * through the executor and future hand-offs.
+     */
+    private static final class Execution {
+
+        final Job job;
+        final SettableFuture<JobResult> result = new SettableFuture<JobResult>();
+        final Map<Stage, Long> stageNanos = new EnumMap<Stage, Long>(Stage.class);
+        final long submitted = System.nanoTime();
+        final AtomicBoolean holdsSlot = new AtomicBoolean();
+        final AtomicBoolean finished = new AtomicBoolean();
+
+        String containerId;
+        long waitStart;
+        int exitCode;
+        String stdout;
+        String stderr;
+
+        Execution(Job job) {
+            this.job = job;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.kpelykh.docker.client.batch;
+
+/**
+ * The steps a {@link Job} goes through in a {@link JobRunner}.
+ */
+public enum Stage {
+    CREATE,
+    START,
+    WAIT,
+    LOGS,
+    REMOVE
+}
@@ -0,0 +1,77 @@
+package com.kpelykh.docker.client.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per host outcome of a {@link DockerCluster} query. Hosts that failed or timed out appear in
+ * {@link #getFailures()} instead of {@link #getResults()}, so a partial answer is still usable.
+ */
+public class ClusterResult<T> {
+
+    private final Map<String, T> results;
+    private final Map<String, Exception> failures;
+    private final long elapsedNanos;
+
+    ClusterResult(Map<String, T> results, Map<String, Exception> failures, long elapsedNanos) {
+        this.results = Collections.unmodifiableMap(results);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the results by host, in registration order; hosts that returned {@code null} are left out
+     */
+    public Map<String, T> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the failures by host; a host that did not answer in time has a
+     *         {@link java.util.concurrent.TimeoutException}
+     */
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+
+    public T get(String host) {
+        return results.get(host);
+    }
+
+    /**
+     * @return whether every host answered
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Merges per host lists into one list whose items are tagged with their host.
+     */
+    public static <T> List<HostItem<T>> merge(ClusterResult<? extends Collection<T>> result) {
+        List<HostItem<T>> merged = new ArrayList<HostItem<T>>();
+        for (Map.Entry<String, ? extends Collection<T>> host : result.getResults().entrySet()) {
+            for (T item : host.getValue()) {
+                merged.add(new HostItem<T>(host.getKey(), item));
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterResult{" +
+                "results=" + results.keySet() +
+                ", failures=" + failures +
+                ", elapsedMillis=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) +
+                '}';
+    }
+}
@@ -0,0 +1,253 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.NotFoundException;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.Filters;
+import com.kpelykh.docker.client.model.Image;
+import com.kpelykh.docker.client.model.Info;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Queries many Docker hosts at once.
+ * <p>
+ * Holds one {@link DockerClient} per host and runs a query against all of them in parallel, so a
+ * fleet wide inventory takes about as long as the slowest host instead of the sum of all of them.
+ * Every host gets the same deadline; hosts that fail or miss it are reported in
+ * {@link ClusterResult#getFailures()} while the answers of the others are returned as usual.
+ * <p>
+ * Calls run on a pool of up to {@code parallelism} threads that are released when idle. The calls
+ * of a query share a {@link CallScope} ending at its deadline: a call that missed it is aborted,
+ * closing its connection, so a hung host does not keep a thread of the pool blocked.
+ */
+public class DockerCluster implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DockerCluster.class);
+
+    // hosts by name in registration order, copied on write
+    private volatile Map<String, DockerClient> hosts = Collections.emptyMap();
+
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    public DockerCluster() {
+        this(5000, 128);
+    }
+
+    /**
+     * @param timeoutMillis time every host has to answer a query
+     * @param parallelism   maximum number of concurrent calls across all hosts
+     */
+    public DockerCluster(long timeoutMillis, int parallelism) {
+        Preconditions.checkArgument(timeoutMillis > 0, "timeoutMillis must be positive: %s", timeoutMillis);
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive: %s", parallelism);
+
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("docker-cluster"));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Adds a host named after its url, e.g. {@code http://docker-17:4243}.
+     */
+    public DockerClient addHost(String url) throws DockerException {
+        DockerClient client = new DockerClient(url);
+        addHost(url, client);
+        return client;
+    }
+
+    public synchronized void addHost(String host, DockerClient client) {
+        Preconditions.checkNotNull(host, "host was not specified");
+        Preconditions.checkNotNull(client, "client was not specified");
+
+        Map<String, DockerClient> copy = new LinkedHashMap<String, DockerClient>(hosts);
+        copy.put(host, client);
+        hosts = Collections.unmodifiableMap(copy);
+    }
+
+    public synchronized DockerClient removeHost(String host) {
+        Map<String, DockerClient> copy = new LinkedHashMap<String, DockerClient>(hosts);
+        DockerClient removed = copy.remove(host);
+        hosts = Collections.unmodifiableMap(copy);
+        return removed;
+    }
+
+    /**
+     * @return the clients by host name, in registration order
+     */
+    public Map<String, DockerClient> getHosts() {
+        return hosts;
+    }
+
+    public DockerClient getClient(String host) {
+        return hosts.get(host);
+    }
+
+    public ClusterResult<List<Container>> listContainers(final boolean allContainers) {
+        return query(new HostQuery<List<Container>>() {
+            @Override
+            public List<Container> call(DockerClient client) {
+                return client.listContainers(allContainers);
+            }
+        });
+    }
+
+    public ClusterResult<List<Container>> listContainers(final boolean allContainers, final Filters filters) {
+        return query(new HostQuery<List<Container>>() {
+            @Override
+            public List<Container> call(DockerClient client) throws DockerException {
+                return client.listContainers(allContainers, filters);
+            }
+        });
+    }
+
+    public ClusterResult<List<Image>> getImages(final boolean allImages) {
+        return query(new HostQuery<List<Image>>() {
+            @Override
+            public List<Image> call(DockerClient client) throws DockerException {
+                return client.getImages(allImages);
+            }
+        });
+    }
+
+    public ClusterResult<Info> info() {
+        return query(new HostQuery<Info>() {
+            @Override
+            public Info call(DockerClient client) throws DockerException {
+                return client.info();
+            }
+        });
+    }
+
+    /**
+     * Looks for a container on all hosts.
+     *
+     * @return the inspect response of the hosts that know the container, usually a single one
+     */
+    public ClusterResult<ContainerInspectResponse> inspectContainer(final String containerId) {
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+
+        return query(new HostQuery<ContainerInspectResponse>() {
+            @Override
+            public ContainerInspectResponse call(DockerClient client) throws DockerException {
+                try {
+                    return client.inspectContainer(containerId);
+                } catch (NotFoundException e) {
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs {@code query} against every host in parallel and waits until all of them answered or
+     * the timeout passed.
+     */
+    public <T> ClusterResult<T> query(final HostQuery<T> query) {
+        Preconditions.checkNotNull(query, "query was not specified");
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        CallScope scope = new CallScope(timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            return query(query, scope, start, deadline);
+        } finally {
+            // aborts the calls still waiting for a host
+            scope.close();
+        }
+    }
+
+    private <T> ClusterResult<T> query(final HostQuery<T> query, final CallScope scope, long start, long deadline) {
+        Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+        Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+        for (Map.Entry<String, DockerClient> host : hosts.entrySet()) {
+            final String name = host.getKey();
+            final DockerClient client = host.getValue().within(scope);
+            try {
+                futures.put(name, executor.submit(new Callable<T>() {
+                    @Override
+                    public T call() throws Exception {
+                        try {
+                            return query.call(client);
+                        } catch (Exception e) {
+                            if (scope.getRemainingMillis() == 0) {
+                                // ended by the scope at the deadline
+                                throw timeout(name, e);
+                            }
+                            throw e;
+                        }
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                failures.put(name, e);
+            }
+        }
+
+        Map<String, T> results = new LinkedHashMap<String, T>();
+        List<String> timedOut = new ArrayList<String>();
+        for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+            String host = future.getKey();
+            try {
+                T result = future.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (result != null) {
+                    results.put(host, result);
+                }
+            } catch (TimeoutException e) {
+                future.getValue().cancel(true);
+                timedOut.add(host);
+                failures.put(host, timeout(host, null));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    timedOut.add(host);
+                }
+                failures.put(host, e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Map.Entry<String, Future<T>> pending : futures.entrySet()) {
+                    if (pending.getValue().cancel(true)) {
+                        failures.put(pending.getKey(), e);
+                    }
+                }
+                failures.put(host, e);
+                break;
+            }
+        }
+        if (!failures.isEmpty()) {
+            LOGGER.debug("{} of {} hosts failed, timed out: {}", failures.size(), futures.size(), timedOut);
+        }
+        return new ClusterResult<T>(results, failures, System.nanoTime() - start);
+    }
+
+    private TimeoutException timeout(String host, Exception cause) {
+        TimeoutException timeout = new TimeoutException(String.format("%s did not answer within %d ms", host, timeoutMillis));
+        timeout.initCause(cause);
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
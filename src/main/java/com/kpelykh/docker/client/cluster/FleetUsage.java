@@ -0,0 +1,374 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.StatsListener;
+import com.kpelykh.docker.client.StatsMonitor;
+import com.kpelykh.docker.client.StatsRing;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.StatsSample;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU and memory usage of containers across many hosts, rolled up per host, per label and for the
+ * whole fleet over the last second, ten seconds and minute.
+ * <p>
+ * The stats of every watched container are read by a {@link StatsMonitor} of its host. Each sample
+ * adds the CPU time used since the previous one, and the memory in use, to running totals of the
+ * container, its host, each of its labels and the fleet; see {@link UsageAccumulator}. A ticker
+ * thread snapshots all totals once a second, and the usage over a window is the difference between
+ * the live totals and the snapshot the length of the window ago, so queries cost the same however
+ * many samples a window holds and never look at a sample again. Windows span their length plus
+ * the part of the current second that passed.
+ * <p>
+ * The memory of a container counts towards the current memory of its host, labels and the fleet
+ * until its stats end; the container itself is forgotten once its usage left the longest window.
+ */
+public class FleetUsage implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FleetUsage.class);
+
+    private static final String FLEET = "fleet";
+
+    public enum Window {
+        SECOND(1), TEN_SECONDS(10), MINUTE(60);
+
+        private final int seconds;
+
+        Window(int seconds) {
+            this.seconds = seconds;
+        }
+
+        public int getSeconds() {
+            return seconds;
+        }
+    }
+
+    private final int stripes = UsageAccumulator.stripesFor(Runtime.getRuntime().availableProcessors() * 2);
+    private final ConcurrentMap<String, StatsMonitor> monitors = new ConcurrentHashMap<String, StatsMonitor>();
+    private final ConcurrentMap<String, ContainerUsage> containers = new ConcurrentHashMap<String, ContainerUsage>();
+    private final ConcurrentMap<String, UsageAccumulator> hosts = new ConcurrentHashMap<String, UsageAccumulator>();
+    private final ConcurrentMap<String, UsageAccumulator> labels = new ConcurrentHashMap<String, UsageAccumulator>();
+    private final UsageAccumulator fleet;
+    private final ScheduledExecutorService ticker;
+
+    private volatile long tick;
+    private volatile boolean closed;
+
+    public FleetUsage() {
+        this.fleet = new UsageAccumulator(stripes, 0);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("docker-fleet-usage"));
+        this.ticker.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                tick();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Watch the container with the labels it was created with.
+     */
+    public void watch(String host, DockerClient client, String containerId) throws DockerException {
+        ContainerInspectResponse container = client.inspectContainer(containerId);
+        Map<String, String> labels = container.getConfig() == null ? null : container.getConfig().getLabels();
+        watch(host, client, containerId, labels == null ? Collections.<String, String>emptyMap() : labels);
+    }
+
+    /**
+     * Watch the container, counting its usage towards the given labels.
+     */
+    public void watch(final String host, DockerClient client, String containerId, Map<String, String> labels) {
+        Preconditions.checkNotNull(host, "host was not specified");
+        Preconditions.checkNotNull(client, "client was not specified");
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+        Preconditions.checkNotNull(labels, "labels were not specified");
+        Preconditions.checkState(!closed, "FleetUsage is closed");
+
+        StatsMonitor monitor = monitors.get(host);
+        if (monitor == null) {
+            // the rings are not needed, samples are only accumulated
+            StatsMonitor created = new StatsMonitor(client, 1);
+            monitor = monitors.putIfAbsent(host, created);
+            if (monitor == null) {
+                monitor = created;
+                monitor.addListener(new StatsListener() {
+                    @Override
+                    public void onSample(String containerId, StatsSample sample) {
+                        record(host, containerId, sample);
+                    }
+
+                    @Override
+                    public void onEnd(String containerId, StatsRing ring) {
+                        ended(host, containerId, ring);
+                    }
+                });
+            } else {
+                created.close();
+            }
+        }
+
+        List<UsageAccumulator> rollups = new ArrayList<UsageAccumulator>();
+        rollups.add(accumulator(hosts, host));
+        for (Map.Entry<String, String> label : labels.entrySet()) {
+            rollups.add(accumulator(this.labels, label.getKey() + "=" + label.getValue()));
+        }
+        rollups.add(fleet);
+        ContainerUsage usage = new ContainerUsage(host, containerId, new UsageAccumulator(1, tick), rollups);
+        ContainerUsage previous = containers.put(key(host, containerId), usage);
+        if (previous != null) {
+            previous.end();
+        }
+        StatsRing ring = monitor.watch(containerId);
+        usage.ring = ring;
+        // an end before the ring was known was ignored
+        if (!monitor.isWatching(containerId) && monitor.getRing(containerId) == ring) {
+            usage.end();
+        }
+    }
+
+    /**
+     * Watch all running containers of the cluster; hosts that cannot be listed are skipped.
+     *
+     * @return the number of containers watched
+     */
+    public int watchRunning(DockerCluster cluster) {
+        int watched = 0;
+        ClusterResult<List<Container>> running = cluster.listContainers(false);
+        for (Map.Entry<String, Exception> failure : running.getFailures().entrySet()) {
+            LOGGER.warn("Cannot list the containers of " + failure.getKey(), failure.getValue());
+        }
+        for (Map.Entry<String, List<Container>> host : running.getResults().entrySet()) {
+            DockerClient client = cluster.getClient(host.getKey());
+            for (Container container : host.getValue()) {
+                try {
+                    watch(host.getKey(), client, container.getId());
+                    watched++;
+                } catch (DockerException e) {
+                    LOGGER.warn("Cannot watch " + container.getId() + " on " + host.getKey(), e);
+                }
+            }
+        }
+        return watched;
+    }
+
+    /**
+     * Stop watching the container and forget its usage.
+     */
+    public void unwatch(String host, String containerId) {
+        StatsMonitor monitor = monitors.get(host);
+        if (monitor != null) {
+            monitor.unwatch(containerId);
+        }
+        ContainerUsage usage = containers.remove(key(host, containerId));
+        if (usage != null) {
+            usage.end();
+        }
+    }
+
+    /**
+     * @return the usage of the container, or null if it is not watched
+     */
+    public Usage getContainer(String host, String containerId, Window window) {
+        ContainerUsage usage = containers.get(key(host, containerId));
+        return usage == null ? null : usage(containerId, host, usage.accumulator, window);
+    }
+
+    /**
+     * @return the usage of the host, or null if none of its containers was watched
+     */
+    public Usage getHost(String host, Window window) {
+        UsageAccumulator accumulator = hosts.get(host);
+        return accumulator == null ? null : usage(host, host, accumulator, window);
+    }
+
+    /**
+     * @return the usage of the containers with the label, or null if none of them was watched
+     */
+    public Usage getLabel(String key, String value, Window window) {
+        String label = key + "=" + value;
+        UsageAccumulator accumulator = labels.get(label);
+        return accumulator == null ? null : usage(label, null, accumulator, window);
+    }
+
+    public Usage getFleet(Window window) {
+        return usage(FLEET, null, fleet, window);
+    }
+
+    public List<String> getHosts() {
+        return new ArrayList<String>(hosts.keySet());
+    }
+
+    /**
+     * @return the {@code n} containers with the highest usage, the hungriest first
+     */
+    public List<Usage> topContainers(int n, Window window, Usage.Metric metric) {
+        Preconditions.checkArgument(n > 0, "n must be positive: %s", n);
+        Comparator<Usage> hungriestFirst = metric.descending();
+        // the least hungry of the top n at the head
+        PriorityQueue<Usage> top = new PriorityQueue<Usage>(n, Collections.reverseOrder(hungriestFirst));
+        for (ContainerUsage container : containers.values()) {
+            Usage usage = usage(container.containerId, container.host, container.accumulator, window);
+            if (top.size() < n) {
+                top.add(usage);
+            } else if (hungriestFirst.compare(usage, top.peek()) < 0) {
+                top.poll();
+                top.add(usage);
+            }
+        }
+        List<Usage> result = new ArrayList<Usage>(top);
+        Collections.sort(result, hungriestFirst);
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ticker.shutdownNow();
+        for (StatsMonitor monitor : monitors.values()) {
+            monitor.close();
+        }
+    }
+
+    private Usage usage(String name, String host, UsageAccumulator accumulator, Window window) {
+        long[] totals = new long[5];
+        accumulator.window(tick, window.getSeconds(), totals);
+        return new Usage(name, host, window, totals);
+    }
+
+    private UsageAccumulator accumulator(ConcurrentMap<String, UsageAccumulator> accumulators, String name) {
+        UsageAccumulator accumulator = accumulators.get(name);
+        if (accumulator == null) {
+            UsageAccumulator created = new UsageAccumulator(stripes, tick);
+            accumulator = accumulators.putIfAbsent(name, created);
+            if (accumulator == null) {
+                accumulator = created;
+            }
+        }
+        return accumulator;
+    }
+
+    // on the reader thread of the container
+    private void record(String host, String containerId, StatsSample sample) {
+        ContainerUsage usage = containers.get(key(host, containerId));
+        if (usage != null) {
+            usage.record(sample);
+        }
+    }
+
+    private void ended(String host, String containerId, StatsRing ring) {
+        ContainerUsage usage = containers.get(key(host, containerId));
+        // the reader of an earlier watch may end after the container was watched again
+        if (usage != null && usage.ring == ring) {
+            usage.end();
+        }
+    }
+
+    private void tick() {
+        try {
+            long next = tick + 1;
+            long now = System.nanoTime();
+            fleet.snapshot(next, now);
+            for (UsageAccumulator accumulator : hosts.values()) {
+                accumulator.snapshot(next, now);
+            }
+            for (UsageAccumulator accumulator : labels.values()) {
+                accumulator.snapshot(next, now);
+            }
+            for (Iterator<ContainerUsage> it = containers.values().iterator(); it.hasNext(); ) {
+                ContainerUsage usage = it.next();
+                usage.accumulator.snapshot(next, now);
+                if (usage.endedTick >= 0 && next - usage.endedTick > Window.MINUTE.getSeconds()) {
+                    it.remove();
+                    StatsMonitor monitor = monitors.get(usage.host);
+                    if (monitor != null && !monitor.isWatching(usage.containerId)) {
+                        monitor.unwatch(usage.containerId);
+                    }
+                }
+            }
+            tick = next;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Fleet usage tick failed", e);
+        }
+    }
+
+    private static String key(String host, String containerId) {
+        return host + "/" + containerId;
+    }
+
+    private final class ContainerUsage {
+
+        final String host;
+        final String containerId;
+        final UsageAccumulator accumulator;
+        final UsageAccumulator[] rollups;
+        // of the watch reading the stats, null until it started
+        volatile StatsRing ring;
+
+        // written by the reader thread of the container, and once by whoever ends it
+        private long lastCpu = -1;
+        private long lastMemory;
+        volatile long endedTick = -1;
+
+        ContainerUsage(String host, String containerId, UsageAccumulator accumulator, List<UsageAccumulator> rollups) {
+            this.host = host;
+            this.containerId = containerId;
+            this.accumulator = accumulator;
+            this.rollups = rollups.toArray(new UsageAccumulator[rollups.size()]);
+        }
+
+        synchronized void record(StatsSample sample) {
+            if (endedTick >= 0) {
+                return;
+            }
+            long cpu;
+            if (lastCpu < 0) {
+                // the daemon's previous sample is about a second old
+                cpu = sample.getPreviousCpuTotalUsage() > 0 ? sample.getCpuTotalUsage() - sample.getPreviousCpuTotalUsage() : 0;
+            } else {
+                cpu = sample.getCpuTotalUsage() - lastCpu;
+            }
+            // counters restart with the container
+            cpu = Math.max(cpu, 0);
+            long memory = sample.getMemoryUsage();
+            long memoryDelta = memory - lastMemory;
+            lastCpu = sample.getCpuTotalUsage();
+            lastMemory = memory;
+
+            accumulator.add(cpu, memory, memoryDelta);
+            for (UsageAccumulator rollup : rollups) {
+                rollup.add(cpu, memory, memoryDelta);
+            }
+        }
+
+        synchronized void end() {
+            if (endedTick >= 0) {
+                return;
+            }
+            endedTick = tick;
+            accumulator.addMemory(-lastMemory);
+            for (UsageAccumulator rollup : rollups) {
+                rollup.addMemory(-lastMemory);
+            }
+            lastMemory = 0;
+        }
+    }
+}
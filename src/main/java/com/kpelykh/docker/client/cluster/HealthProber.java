@@ -0,0 +1,410 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.utils.LatencyRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings many daemons every {@code intervalMillis} with very little overhead.
+ * <p>
+ * All hosts are served by a single thread multiplexing non-blocking sockets: there is one
+ * keep-alive connection per host, the {@code GET /_ping} request is encoded once and the response
+ * is parsed in place from a reused buffer, so a probe allocates next to nothing and costs no
+ * Jersey or HttpClient machinery. A probe that is not answered within {@code timeoutMillis} fails
+ * and its connection is dropped; a host is reported down after {@code downAfterFailures} failed
+ * probes in a row and up again after the first successful one. Round trip times of successful
+ * probes are recorded per host.
+ * <p>
+ * Only {@code http} endpoints are supported.
+ */
+public class HealthProber implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HealthProber.class);
+
+    private static final int RESPONSE_BUFFER_SIZE = 1024;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] HEADERS_END = "\r\n\r\n".getBytes(ASCII);
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(ASCII);
+    private static final byte[] CONTENT_LENGTH = "\r\ncontent-length:".getBytes(ASCII);
+    private static final byte[] CHUNKED = "\r\ntransfer-encoding: chunked".getBytes(ASCII);
+    private static final byte[] CONNECTION_CLOSE = "\r\nconnection: close".getBytes(ASCII);
+
+    public interface Listener {
+        void onHealthChange(String host, boolean up);
+    }
+
+    private final long intervalNanos;
+    private final long timeoutNanos;
+    private final int downAfterFailures;
+    private final Selector selector;
+    private final Thread loop;
+
+    private final Map<String, Target> targets = new ConcurrentHashMap<String, Target>();
+    private final Queue<Target> added = new ConcurrentLinkedQueue<Target>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private volatile boolean closed;
+
+    public HealthProber() throws IOException {
+        this(1000, 500, 2);
+    }
+
+    /**
+     * @param intervalMillis    time between the starts of two probes of a host
+     * @param timeoutMillis     time a probe may take, including connecting
+     * @param downAfterFailures failed probes in a row after which a host is down
+     */
+    public HealthProber(long intervalMillis, long timeoutMillis, int downAfterFailures) throws IOException {
+        Preconditions.checkArgument(intervalMillis > 0, "intervalMillis must be positive: %s", intervalMillis);
+        Preconditions.checkArgument(timeoutMillis > 0, "timeoutMillis must be positive: %s", timeoutMillis);
+        Preconditions.checkArgument(downAfterFailures > 0, "downAfterFailures must be positive: %s", downAfterFailures);
+
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.downAfterFailures = downAfterFailures;
+        this.selector = Selector.open();
+
+        this.loop = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "docker-health-prober");
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    /**
+     * Starts probing {@code serverUrl}, e.g. {@code http://docker-17:4243}, under the given name.
+     * Hosts start out down until their first probe succeeds.
+     */
+    public void addHost(String host, URI serverUrl) {
+        Preconditions.checkNotNull(host, "host was not specified");
+        Preconditions.checkArgument("http".equals(serverUrl.getScheme()), "Only http endpoints are supported: %s", serverUrl);
+        Preconditions.checkState(!closed, "HealthProber is closed");
+
+        Target target = new Target(host, serverUrl);
+        Target previous = targets.put(host, target);
+        if (previous != null) {
+            previous.removed = true;
+        }
+        added.add(target);
+        selector.wakeup();
+    }
+
+    public void removeHost(String host) {
+        Target target = targets.remove(host);
+        if (target != null) {
+            target.removed = true;
+            selector.wakeup();
+        }
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isUp(String host) {
+        Target target = targets.get(host);
+        return target != null && target.up;
+    }
+
+    /**
+     * @return round trip times of the successful probes of the host, or null for an unknown host
+     */
+    public LatencyRecorder getRoundTrips(String host) {
+        Target target = targets.get(host);
+        return target == null ? null : target.roundTrips;
+    }
+
+    /**
+     * @return round trip time of the last successful probe, or -1 if there was none
+     */
+    public long getLastRoundTrip(String host, TimeUnit unit) {
+        Target target = targets.get(host);
+        return target == null || target.lastRoundTripNanos < 0 ? -1 : unit.convert(target.lastRoundTripNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void loop() {
+        List<Target> active = new ArrayList<Target>();
+        while (!closed) {
+            try {
+                Target target;
+                while ((target = added.poll()) != null) {
+                    active.add(target);
+                }
+
+                long now = System.nanoTime();
+                long wakeUp = now + intervalNanos;
+                for (Iterator<Target> it = active.iterator(); it.hasNext(); ) {
+                    target = it.next();
+                    if (target.removed) {
+                        target.disconnect();
+                        it.remove();
+                        continue;
+                    }
+                    if (target.inFlight && now - target.startedAt >= timeoutNanos) {
+                        failed(target, "no answer within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+                    }
+                    if (!target.inFlight && now - target.nextProbeAt >= 0) {
+                        start(target, now);
+                    }
+                    wakeUp = Math.min(wakeUp, target.inFlight ? target.startedAt + timeoutNanos : target.nextProbeAt);
+                }
+
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wakeUp - System.nanoTime())));
+
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handle((Target) key.attachment(), key);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Health prober loop failed", e);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Health prober loop failed", e);
+            }
+        }
+        for (Target target : active) {
+            target.disconnect();
+        }
+        try {
+            selector.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private void start(Target target, long now) {
+        target.inFlight = true;
+        target.startedAt = now;
+        target.nextProbeAt = now + intervalNanos;
+        try {
+            if (target.channel == null) {
+                target.channel = SocketChannel.open();
+                target.channel.configureBlocking(false);
+                target.channel.socket().setTcpNoDelay(true);
+                if (target.channel.connect(target.address)) {
+                    send(target);
+                } else {
+                    target.channel.register(selector, SelectionKey.OP_CONNECT, target);
+                }
+            } else {
+                send(target);
+            }
+        } catch (IOException e) {
+            failed(target, e.toString());
+        }
+    }
+
+    private void send(Target target) throws IOException {
+        target.request.rewind();
+        target.response.clear();
+        target.sentAt = System.nanoTime();
+        target.channel.write(target.request);
+        // a request of a few dozen bytes hardly ever needs a second write
+        target.channel.register(selector, target.request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ, target);
+    }
+
+    private void handle(Target target, SelectionKey key) {
+        if (!key.isValid() || target.channel == null || key.channel() != target.channel) {
+            return;
+        }
+        try {
+            if (key.isConnectable()) {
+                target.channel.finishConnect();
+                send(target);
+            } else if (key.isWritable()) {
+                target.channel.write(target.request);
+                if (!target.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                if (target.channel.read(target.response) < 0) {
+                    failed(target, "connection closed by the daemon");
+                    return;
+                }
+                int status = parse(target.response);
+                if (status == 0) {
+                    if (!target.response.hasRemaining()) {
+                        failed(target, "response exceeds " + RESPONSE_BUFFER_SIZE + " bytes");
+                    }
+                    return;
+                }
+                key.interestOps(0);
+                if (Math.abs(status) == 200) {
+                    succeeded(target);
+                    if (status < 0) {
+                        target.disconnect();
+                    }
+                } else {
+                    failed(target, "status " + Math.abs(status));
+                }
+            }
+        } catch (IOException e) {
+            failed(target, e.toString());
+        }
+    }
+
+    /**
+     * Parses the response in the buffer without allocating.
+     *
+     * @return the status of the complete response in the buffer, negated if the daemon is going to
+     *         close the connection, or 0 while the response is incomplete
+     */
+    static int parse(ByteBuffer buffer) {
+        byte[] bytes = buffer.array();
+        int length = buffer.position();
+
+        int headersEnd = indexOf(bytes, 0, length, HEADERS_END);
+        if (headersEnd < 12) {
+            return 0;
+        }
+        int bodyStart = headersEnd + HEADERS_END.length;
+        int status = (bytes[9] - '0') * 100 + (bytes[10] - '0') * 10 + (bytes[11] - '0');
+
+        // headers are searched including the line break before them, which ends the status line
+        int contentLength = indexOf(bytes, 0, headersEnd, CONTENT_LENGTH);
+        if (contentLength >= 0) {
+            int bodyLength = 0;
+            for (int i = contentLength + CONTENT_LENGTH.length; i < headersEnd && bytes[i] != '\r'; i++) {
+                if (bytes[i] >= '0' && bytes[i] <= '9') {
+                    bodyLength = bodyLength * 10 + bytes[i] - '0';
+                }
+            }
+            if (length - bodyStart < bodyLength) {
+                return 0;
+            }
+        } else if (indexOf(bytes, 0, headersEnd, CHUNKED) >= 0 && indexOf(bytes, bodyStart, length, LAST_CHUNK) < 0) {
+            return 0;
+        }
+        return indexOf(bytes, 0, headersEnd, CONNECTION_CLOSE) >= 0 ? -status : status;
+    }
+
+    /**
+     * @param pattern lower case pattern, matched ignoring the case of {@code bytes}
+     */
+    private static int indexOf(byte[] bytes, int from, int to, byte[] pattern) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                byte b = bytes[i + j];
+                if (b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+                if (b != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private void succeeded(Target target) {
+        long rtt = System.nanoTime() - target.sentAt;
+        target.inFlight = false;
+        target.failures = 0;
+        target.lastRoundTripNanos = rtt;
+        target.roundTrips.recordNanos(rtt);
+        if (!target.up) {
+            target.up = true;
+            fire(target.host, true);
+        }
+    }
+
+    private void failed(Target target, String reason) {
+        LOGGER.debug("Probe of {} failed: {}", target.host, reason);
+        target.inFlight = false;
+        target.disconnect();
+        if (++target.failures >= downAfterFailures && target.up) {
+            target.up = false;
+            fire(target.host, false);
+        }
+    }
+
+    private void fire(String host, boolean up) {
+        LOGGER.info("{} is {}", host, up ? "up" : "down");
+        for (Listener listener : listeners) {
+            try {
+                listener.onHealthChange(host, up);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Health listener failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            loop.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Target {
+
+        final String host;
+        final InetSocketAddress address;
+        final ByteBuffer request;
+        final ByteBuffer response = ByteBuffer.allocate(RESPONSE_BUFFER_SIZE);
+        final LatencyRecorder roundTrips = new LatencyRecorder();
+
+        // owned by the loop thread
+        SocketChannel channel;
+        boolean inFlight;
+        long startedAt;
+        long sentAt;
+        long nextProbeAt = System.nanoTime();
+        int failures;
+
+        volatile boolean up;
+        volatile boolean removed;
+        volatile long lastRoundTripNanos = -1;
+
+        Target(String host, URI serverUrl) {
+            int port = serverUrl.getPort() == -1 ? 80 : serverUrl.getPort();
+            this.host = host;
+            this.address = new InetSocketAddress(serverUrl.getHost(), port);
+            this.request = ByteBuffer.wrap(("GET /_ping HTTP/1.1\r\nHost: " + serverUrl.getHost() + ":" + port + "\r\n\r\n")
+                    .getBytes(ASCII)).asReadOnlyBuffer();
+        }
+
+        void disconnect() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.kpelykh.docker.client.cluster;
+
+/**
+ * An item of a merged cluster wide list, tagged with the host it came from.
+ */
+public final class HostItem<T> {
+
+    private final String host;
+    private final T item;
+
+    public HostItem(String host, T item) {
+        this.host = host;
+        this.item = item;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    @Override
+    public String toString() {
+        return host + ": " + item;
+    }
+}
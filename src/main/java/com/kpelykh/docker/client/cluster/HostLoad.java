@@ -0,0 +1,106 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.kpelykh.docker.client.model.Info;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load of one host as seen by the last refresh of a {@link PlacementScheduler}, plus the
+ * containers placed on it since.
+ */
+public final class HostLoad {
+
+    private final String host;
+    private final int containers;
+    private final int runningContainers;
+    private final int images;
+    private final int goroutines;
+    private final int fileDescriptors;
+    private final boolean memoryLimit;
+    private final Set<String> imageNames;
+    private final long refreshedAtNanos = System.nanoTime();
+
+    private final AtomicInteger placed = new AtomicInteger();
+
+    HostLoad(String host, Info info, int runningContainers, Set<String> imageNames) {
+        this.host = host;
+        this.containers = info.getContainers();
+        this.runningContainers = runningContainers;
+        this.images = info.getImages();
+        this.goroutines = info.getNGoroutines();
+        this.fileDescriptors = info.getNFd();
+        this.memoryLimit = info.isMemoryLimit();
+        this.imageNames = Collections.unmodifiableSet(imageNames);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return all containers on the host, including the ones placed since the last refresh
+     */
+    public int getContainers() {
+        return containers + placed.get();
+    }
+
+    /**
+     * @return running containers on the host, including the ones placed since the last refresh
+     */
+    public int getRunningContainers() {
+        return runningContainers + placed.get();
+    }
+
+    public int getImages() {
+        return images;
+    }
+
+    public int getGoroutines() {
+        return goroutines;
+    }
+
+    public int getFileDescriptors() {
+        return fileDescriptors;
+    }
+
+    public boolean isMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * @return whether the host has the image, given as {@code name}, {@code name:tag} or id
+     */
+    public boolean hasImage(String image) {
+        if (image == null) {
+            return false;
+        }
+        if (imageNames.contains(image)) {
+            return true;
+        }
+        int slash = image.lastIndexOf('/');
+        return image.indexOf(':', slash + 1) < 0 && imageNames.contains(image + ":latest");
+    }
+
+    public long getAge(TimeUnit unit) {
+        return unit.convert(System.nanoTime() - refreshedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void placed() {
+        placed.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return "HostLoad{" +
+                "host='" + host + '\'' +
+                ", containers=" + getContainers() +
+                ", runningContainers=" + getRunningContainers() +
+                ", images=" + images +
+                ", goroutines=" + goroutines +
+                ", fileDescriptors=" + fileDescriptors +
+                '}';
+    }
+}
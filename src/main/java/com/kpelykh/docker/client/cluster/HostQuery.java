@@ -0,0 +1,15 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+
+/**
+ * A call made against every host of a {@link DockerCluster}.
+ */
+public interface HostQuery<T> {
+
+    /**
+     * @return the result for this host, or {@code null} if the host has nothing to contribute
+     */
+    T call(DockerClient client) throws DockerException;
+}
@@ -0,0 +1,39 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.kpelykh.docker.client.DockerClient;
+
+/**
+ * A container created by a {@link PlacementScheduler} and the host it was placed on.
+ */
+public final class Placement {
+
+    private final String host;
+    private final DockerClient client;
+    private final String containerId;
+
+    Placement(String host, DockerClient client, String containerId) {
+        this.host = host;
+        this.client = client;
+        this.containerId = containerId;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return the client of the host, for further calls on the container
+     */
+    public DockerClient getClient() {
+        return client;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    @Override
+    public String toString() {
+        return containerId + "@" + host;
+    }
+}
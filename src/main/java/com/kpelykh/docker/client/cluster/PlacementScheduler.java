@@ -0,0 +1,229 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.ItemCallback;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.HostConfig;
+import com.kpelykh.docker.client.model.Image;
+import com.kpelykh.docker.client.model.Info;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places new containers on the hosts of a {@link DockerCluster}.
+ * <p>
+ * A load view of every host (from {@code info}, the running containers and the images) is
+ * refreshed in the background every {@code refreshMillis}. Each placement scores the hosts with a
+ * {@link PlacementStrategy} and creates the container on the best one, falling back to the next
+ * best if that fails. Placements count towards the load of their host until the next refresh, so
+ * a burst of containers does not all land on the same host. Hosts that fail to refresh are left
+ * out until they answer again.
+ */
+public class PlacementScheduler implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlacementScheduler.class);
+
+    private final DockerCluster cluster;
+    private final PlacementStrategy strategy;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Map<String, HostLoad> loads = Collections.emptyMap();
+
+    public PlacementScheduler(DockerCluster cluster, PlacementStrategy strategy) {
+        this(cluster, strategy, 10000);
+    }
+
+    /**
+     * @param refreshMillis interval between refreshes of the load view
+     */
+    public PlacementScheduler(DockerCluster cluster, PlacementStrategy strategy, long refreshMillis) {
+        Preconditions.checkNotNull(cluster, "cluster was not specified");
+        Preconditions.checkNotNull(strategy, "strategy was not specified");
+        Preconditions.checkArgument(refreshMillis > 0, "refreshMillis must be positive: %s", refreshMillis);
+
+        this.cluster = cluster;
+        this.strategy = strategy;
+
+        refresh();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("docker-placement-refresh"));
+        this.refresher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Refreshing the load view failed", e);
+                }
+            }
+        }, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Refreshes the load view of all hosts now.
+     */
+    public void refresh() {
+        ClusterResult<Sample> result = cluster.query(new HostQuery<Sample>() {
+            @Override
+            public Sample call(DockerClient client) throws DockerException {
+                return sample(client);
+            }
+        });
+        for (Map.Entry<String, Exception> failure : result.getFailures().entrySet()) {
+            LOGGER.warn("Leaving out {} from placement: {}", failure.getKey(), failure.getValue().toString());
+        }
+
+        Map<String, HostLoad> refreshed = new LinkedHashMap<String, HostLoad>();
+        for (Map.Entry<String, Sample> sample : result.getResults().entrySet()) {
+            Sample s = sample.getValue();
+            refreshed.put(sample.getKey(), new HostLoad(sample.getKey(), s.info, s.running, s.imageNames));
+        }
+        this.loads = Collections.unmodifiableMap(refreshed);
+    }
+
+    private static Sample sample(DockerClient client) throws DockerException {
+        Info info = client.info();
+
+        final int[] running = new int[1];
+        client.listContainers(false, new ItemCallback<Container>() {
+            @Override
+            public boolean onItem(Container container) {
+                running[0]++;
+                return true;
+            }
+        });
+
+        final Set<String> imageNames = new HashSet<String>();
+        client.getImages(false, new ItemCallback<Image>() {
+            @Override
+            public boolean onItem(Image image) {
+                imageNames.add(image.getId());
+                if (image.getId() != null && image.getId().length() > 12) {
+                    imageNames.add(image.getId().substring(0, 12));
+                }
+                if (image.getRepoTags() != null) {
+                    Collections.addAll(imageNames, image.getRepoTags());
+                }
+                return true;
+            }
+        });
+
+        return new Sample(info, running[0], imageNames);
+    }
+
+    private static final class Sample {
+
+        final Info info;
+        final int running;
+        final Set<String> imageNames;
+
+        Sample(Info info, int running, Set<String> imageNames) {
+            this.info = info;
+            this.running = running;
+            this.imageNames = imageNames;
+        }
+    }
+
+    /**
+     * @return the current load view by host; hosts that failed the last refresh are missing
+     */
+    public Map<String, HostLoad> getLoads() {
+        Map<String, HostLoad> view = new LinkedHashMap<String, HostLoad>();
+        view.putAll(loads);
+        return view;
+    }
+
+    /**
+     * @return the hosts that may take the container, best first
+     */
+    public List<String> rank(final ContainerConfig config) {
+        final Map<String, Double> scores = new LinkedHashMap<String, Double>();
+        for (Map.Entry<String, HostLoad> load : loads.entrySet()) {
+            double score = strategy.score(load.getValue(), config);
+            if (!Double.isNaN(score)) {
+                scores.put(load.getKey(), score);
+            }
+        }
+        List<String> hosts = new ArrayList<String>(scores.keySet());
+        // stable, ties keep registration order
+        Collections.sort(hosts, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Double.compare(scores.get(b), scores.get(a));
+            }
+        });
+        return hosts;
+    }
+
+    public Placement createContainer(ContainerConfig config) throws DockerException {
+        return createContainer(config, null);
+    }
+
+    /**
+     * Creates the container on the best host, or the next best if that fails.
+     *
+     * @throws DockerException if no host is available or creating failed on all of them
+     */
+    public Placement createContainer(ContainerConfig config, String name) throws DockerException {
+        Preconditions.checkNotNull(config, "config was not specified");
+
+        List<String> hosts = rank(config);
+        if (hosts.isEmpty()) {
+            throw new DockerException(String.format("No host available for %s out of %s", config.getImage(), cluster.getHosts().keySet()));
+        }
+
+        DockerException lastFailure = null;
+        for (String host : hosts) {
+            DockerClient client = cluster.getClient(host);
+            HostLoad load = loads.get(host);
+            if (client == null || load == null) {
+                // removed from the cluster since the last refresh
+                continue;
+            }
+            try {
+                String containerId = client.createContainer(config, name).getId();
+                load.placed();
+                LOGGER.debug("Placed {} on {}", containerId, host);
+                return new Placement(host, client, containerId);
+            } catch (DockerException e) {
+                LOGGER.warn("Creating a container on {} failed, trying the next host: {}", host, e.toString());
+                lastFailure = e;
+            }
+        }
+        throw new DockerException("Creating the container failed on all hosts", lastFailure);
+    }
+
+    public void startContainer(Placement placement, HostConfig hostConfig) throws DockerException {
+        placement.getClient().startContainer(placement.getContainerId(), hostConfig);
+    }
+
+    /**
+     * Creates the container on the best host and starts it there.
+     */
+    public Placement run(ContainerConfig config, String name, HostConfig hostConfig) throws DockerException {
+        Placement placement = createContainer(config, name);
+        startContainer(placement, hostConfig);
+        return placement;
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+    }
+}
@@ -0,0 +1,61 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.ContainerConfig;
+
+/**
+ * The common {@link PlacementStrategy}s.
+ */
+public final class PlacementStrategies {
+
+    // larger than any load based score, so locality always comes first
+    private static final double LOCALITY_BONUS = 1e9;
+
+    private PlacementStrategies() {
+    }
+
+    /**
+     * Spreads containers evenly: the host with the fewest running containers wins, ties go to the
+     * host with fewer goroutines.
+     */
+    public static PlacementStrategy spread() {
+        return new PlacementStrategy() {
+            @Override
+            public double score(HostLoad load, ContainerConfig config) {
+                return -load.getRunningContainers() - load.getGoroutines() / 1e6;
+            }
+        };
+    }
+
+    /**
+     * Packs containers tightly: the busiest host that still runs fewer than
+     * {@code maxRunningContainers} wins, so that idle hosts stay idle.
+     */
+    public static PlacementStrategy binpack(final int maxRunningContainers) {
+        Preconditions.checkArgument(maxRunningContainers > 0, "maxRunningContainers must be positive: %s", maxRunningContainers);
+
+        return new PlacementStrategy() {
+            @Override
+            public double score(HostLoad load, ContainerConfig config) {
+                int running = load.getRunningContainers();
+                return running >= maxRunningContainers ? Double.NaN : running;
+            }
+        };
+    }
+
+    /**
+     * Prefers hosts that already have the image of the container, which saves the pull; among
+     * those, and if no host has it, {@code fallback} decides.
+     */
+    public static PlacementStrategy imageLocality(final PlacementStrategy fallback) {
+        Preconditions.checkNotNull(fallback, "fallback was not specified");
+
+        return new PlacementStrategy() {
+            @Override
+            public double score(HostLoad load, ContainerConfig config) {
+                double score = fallback.score(load, config);
+                return load.hasImage(config.getImage()) ? score + LOCALITY_BONUS : score;
+            }
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.kpelykh.docker.client.cluster;
+
+import com.kpelykh.docker.client.model.ContainerConfig;
+
+/**
+ * Scores hosts for a new container; see {@link PlacementStrategies} for the usual ones.
+ */
+public interface PlacementStrategy {
+
+    /**
+     * @return a score, the host with the highest one gets the container; {@link Double#NaN} if the
+     *         host must not be used
+     */
+    double score(HostLoad load, ContainerConfig config);
+}
@@ -0,0 +1,115 @@
+package com.kpelykh.docker.client.cluster;
+
+import java.util.Comparator;
+
+/**
+ * Resource usage of a container, a host, a label or the fleet over one window of a
+ * {@link FleetUsage}.
+ */
+public final class Usage {
+
+    public enum Metric {
+        CPU, MEMORY;
+
+        /**
+         * @return an order putting the hungriest first
+         */
+        public Comparator<Usage> descending() {
+            final Metric metric = this;
+            return new Comparator<Usage>() {
+                @Override
+                public int compare(Usage a, Usage b) {
+                    return Double.compare(b.get(metric), a.get(metric));
+                }
+            };
+        }
+    }
+
+    private final String name;
+    private final String host;
+    private final FleetUsage.Window window;
+    private final double cpuCores;
+    private final long memoryBytes;
+    private final long averageMemoryBytes;
+    private final long samples;
+
+    Usage(String name, String host, FleetUsage.Window window, long[] totals) {
+        this.name = name;
+        this.host = host;
+        this.window = window;
+        this.cpuCores = (double) totals[0] / totals[4];
+        this.samples = totals[2];
+        this.memoryBytes = totals[3];
+        this.averageMemoryBytes = samples == 0 ? memoryBytes : totals[1] / samples;
+    }
+
+    /**
+     * @return the container id, the host, the label as {@code key=value}, or {@code fleet}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the host of a container or a host, else null
+     */
+    public String getHost() {
+        return host;
+    }
+
+    public FleetUsage.Window getWindow() {
+        return window;
+    }
+
+    /**
+     * @return the average number of CPUs kept busy during the window
+     */
+    public double getCpuCores() {
+        return cpuCores;
+    }
+
+    /**
+     * @return the CPU usage during the window in percent of one CPU, as {@code docker stats} shows it
+     */
+    public double getCpuPercent() {
+        return cpuCores * 100;
+    }
+
+    /**
+     * @return the memory in use as of the latest samples
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * @return the memory in use on average over the samples of the window
+     */
+    public long getAverageMemoryBytes() {
+        return averageMemoryBytes;
+    }
+
+    /**
+     * @return the samples that went into the window
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    double get(Metric metric) {
+        return metric == Metric.CPU ? cpuCores : memoryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "Usage{" +
+                "name='" + name + '\'' +
+                (host == null || host.equals(name) ? "" : ", host='" + host + '\'') +
+                ", window=" + window +
+                ", cpuCores=" + cpuCores +
+                ", memoryBytes=" + memoryBytes +
+                ", averageMemoryBytes=" + averageMemoryBytes +
+                ", samples=" + samples +
+                '}';
+    }
+}
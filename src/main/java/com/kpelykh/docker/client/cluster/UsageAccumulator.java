@@ -0,0 +1,139 @@
+package com.kpelykh.docker.client.cluster;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Running totals of the resource usage of a container, a host, a label or the whole fleet, from
+ * which {@link FleetUsage} derives its rolling windows.
+ * <p>
+ * The totals only ever grow, except the memory gauge, and are spread over stripes of padded
+ * cells picked by thread, so that the readers of many containers adding to the same host or label
+ * neither lock nor contend on one cache line. Once a tick the totals are copied into a ring of
+ * snapshots by the single ticker thread; the usage over a window is then the difference between
+ * the live totals and the snapshot taken the length of the window ago, whatever number of samples
+ * went into it.
+ */
+final class UsageAccumulator {
+
+    static final int CPU_NANOS = 0;
+    static final int MEMORY_SUM = 1;
+    static final int SAMPLES = 2;
+    static final int MEMORY_NOW = 3;
+
+    private static final int SNAPSHOT_FIELDS = 3;
+    // a cache line per stripe
+    private static final int CELL_SPACING = 8;
+    // more ticks than the longest window, as a power of two
+    static final int SNAPSHOTS = 64;
+
+    private final int stripeMask;
+    private final AtomicLongArray cells;
+    private final AtomicLongArray snapshots = new AtomicLongArray(SNAPSHOTS * SNAPSHOT_FIELDS);
+    private final AtomicLongArray snapshotNanos = new AtomicLongArray(SNAPSHOTS);
+    private final AtomicLongArray snapshotTicks = new AtomicLongArray(SNAPSHOTS);
+    private final long createdTick;
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * @param stripes a power of two, 1 for a single writer
+     */
+    UsageAccumulator(int stripes, long createdTick) {
+        this.stripeMask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * CELL_SPACING);
+        this.createdTick = createdTick;
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            snapshotTicks.set(i, -1);
+        }
+    }
+
+    static int stripesFor(int threads) {
+        int stripes = 1;
+        while (stripes < threads && stripes < 64) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    void add(long cpuNanos, long memoryBytes, long memoryDelta) {
+        int base = stripe() * CELL_SPACING;
+        if (cpuNanos != 0) {
+            cells.addAndGet(base + CPU_NANOS, cpuNanos);
+        }
+        cells.addAndGet(base + MEMORY_SUM, memoryBytes);
+        cells.incrementAndGet(base + SAMPLES);
+        if (memoryDelta != 0) {
+            cells.addAndGet(base + MEMORY_NOW, memoryDelta);
+        }
+    }
+
+    void addMemory(long memoryDelta) {
+        cells.addAndGet(stripe() * CELL_SPACING + MEMORY_NOW, memoryDelta);
+    }
+
+    long sum(int field) {
+        long sum = 0;
+        for (int i = field; i < cells.length(); i += CELL_SPACING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Keep the totals as of the tick; only called by the ticker thread.
+     */
+    void snapshot(long tick, long nanos) {
+        int slot = (int) (tick & (SNAPSHOTS - 1));
+        // invalidate the slot while it is rewritten
+        snapshotTicks.set(slot, -1);
+        for (int field = 0; field < SNAPSHOT_FIELDS; field++) {
+            snapshots.set(slot * SNAPSHOT_FIELDS + field, sum(field));
+        }
+        snapshotNanos.set(slot, nanos);
+        snapshotTicks.set(slot, tick);
+    }
+
+    /**
+     * The usage since the snapshot {@code ticks} before the current tick, or since the accumulator
+     * was created if it is younger than that.
+     *
+     * @param into where the cpu nanoseconds, the sum of memory samples, the number of samples, the
+     *             current memory and the nanoseconds the values span go
+     */
+    void window(long currentTick, int ticks, long[] into) {
+        long now = System.nanoTime();
+        long baseNanos = createdNanos;
+        long cpu = 0;
+        long memory = 0;
+        long samples = 0;
+        // the oldest valid snapshot within the window
+        for (long tick = Math.max(currentTick - ticks, createdTick + 1); tick <= currentTick; tick++) {
+            int slot = (int) (tick & (SNAPSHOTS - 1));
+            if (snapshotTicks.get(slot) != tick) {
+                continue;
+            }
+            cpu = snapshots.get(slot * SNAPSHOT_FIELDS + CPU_NANOS);
+            memory = snapshots.get(slot * SNAPSHOT_FIELDS + MEMORY_SUM);
+            samples = snapshots.get(slot * SNAPSHOT_FIELDS + SAMPLES);
+            baseNanos = snapshotNanos.get(slot);
+            if (snapshotTicks.get(slot) == tick) {
+                break;
+            }
+            // overwritten while it was read
+            cpu = memory = samples = 0;
+            baseNanos = createdNanos;
+        }
+        into[0] = sum(CPU_NANOS) - cpu;
+        into[1] = sum(MEMORY_SUM) - memory;
+        into[2] = sum(SAMPLES) - samples;
+        into[3] = sum(MEMORY_NOW);
+        into[4] = Math.max(now - baseNanos, 1);
+    }
+
+    private int stripe() {
+        if (stripeMask == 0) {
+            return 0;
+        }
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & stripeMask;
+    }
+}
@@ -0,0 +1,680 @@
+package com.kpelykh.docker.client.logs;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.LogCursor;
+import com.kpelykh.docker.client.model.LogLine;
+import com.kpelykh.docker.client.model.StreamType;
+import com.kpelykh.docker.client.utils.FrameReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Follows the output of many containers on two threads, however many there are.
+ * <p>
+ * A single loop thread multiplexes one non-blocking {@code /containers/(id)/logs?follow=1}
+ * connection per container, decodes the HTTP response and the multiplexed frames in place from
+ * one read buffer, stamps every frame with the time it was read and merges all of them, in the
+ * order they were read, into a bounded buffer. A dispatch thread hands the buffered records to the
+ * {@link LogSink}s in batches of up to {@code maxBatch}. When the sinks fall behind and the buffer
+ * is full, the {@link OverflowPolicy} decides.
+ * <p>
+ * Frames are requested with timestamps. A connection that fails is opened again from the second
+ * of the last frame read, and the frames up to that one are skipped, so a reconnect neither
+ * duplicates nor loses output. A source ends when its output ends, i.e. when the container stops.
+ * <p>
+ * Only {@code http} endpoints are supported.
+ */
+public class LogAggregator implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogAggregator.class);
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADERS_SIZE = 16 * 1024;
+    // the last four bytes of a response head, CR LF CR LF
+    private static final int END_OF_HEADERS = 0x0d0a0d0a;
+    // RFC 3339 with nanoseconds and a zone offset
+    private static final int MAX_TIMESTAMP_SIZE = 36;
+    private static final long MIN_RECONNECT_DELAY_MS = 100;
+    private static final long MAX_RECONNECT_DELAY_MS = 5000;
+
+    public enum OverflowPolicy {
+        /**
+         * Stop reading until the sinks made room; TCP flow control then throttles the daemons.
+         */
+        BLOCK,
+        /**
+         * Discard the record just read.
+         */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest buffered record to make room.
+         */
+        DROP_OLDEST
+    }
+
+    private final int maxBatch;
+    private final OverflowPolicy policy;
+    private final BlockingQueue<LogRecord> buffer;
+    private final Selector selector;
+    private final Thread loop;
+    private final Thread dispatcher;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private final List<LogSink> sinks = new CopyOnWriteArrayList<LogSink>();
+    private final List<Stream> streams = new CopyOnWriteArrayList<Stream>();
+    private final Queue<Stream> added = new ConcurrentLinkedQueue<Stream>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong dispatchedBatches = new AtomicLong();
+
+    // only touched by the loop thread
+    private long sequence;
+
+    private volatile boolean closed;
+
+    /**
+     * A buffer of 65536 records, dispatched in batches of up to 1024, blocking when full.
+     */
+    public LogAggregator() throws IOException {
+        this(65536, 1024, OverflowPolicy.BLOCK);
+    }
+
+    public LogAggregator(int capacity, int maxBatch, OverflowPolicy policy) throws IOException {
+        Preconditions.checkArgument(capacity > 0, "capacity must be positive: %s", capacity);
+        Preconditions.checkArgument(maxBatch > 0, "maxBatch must be positive: %s", maxBatch);
+        Preconditions.checkNotNull(policy, "policy was not specified");
+
+        this.maxBatch = maxBatch;
+        this.policy = policy;
+        this.buffer = new ArrayBlockingQueue<LogRecord>(capacity);
+        this.selector = Selector.open();
+
+        this.loop = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "docker-log-aggregator");
+        this.loop.setDaemon(true);
+        this.dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "docker-log-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.loop.start();
+        this.dispatcher.start();
+    }
+
+    public void addSink(LogSink sink) {
+        sinks.add(sink);
+    }
+
+    public void removeSink(LogSink sink) {
+        sinks.remove(sink);
+    }
+
+    /**
+     * Collect the output of the container from its start.
+     */
+    public LogSource follow(URI serverUrl, String containerId) {
+        return follow(serverUrl, containerId, 0);
+    }
+
+    /**
+     * Collect the output of the container written at or after {@code since}, in seconds since the
+     * epoch, 0 for all of it.
+     */
+    public LogSource follow(URI serverUrl, String containerId, long since) {
+        Preconditions.checkNotNull(containerId, "containerId was not specified");
+        Preconditions.checkArgument("http".equals(serverUrl.getScheme()), "Only http endpoints are supported: %s", serverUrl);
+        Preconditions.checkArgument(since >= 0, "since must not be negative: %s", since);
+        Preconditions.checkState(!closed, "LogAggregator is closed");
+
+        Stream stream = new Stream(new LogSource(serverUrl, containerId), since);
+        streams.add(stream);
+        added.add(stream);
+        selector.wakeup();
+        return stream.source;
+    }
+
+    /**
+     * Stop collecting the output of the source; records already buffered are still dispatched.
+     */
+    public void unfollow(LogSource source) {
+        for (Stream stream : streams) {
+            if (stream.source == source) {
+                stream.removed = true;
+                streams.remove(stream);
+                selector.wakeup();
+            }
+        }
+    }
+
+    public List<LogSource> getSources() {
+        List<LogSource> sources = new ArrayList<LogSource>();
+        for (Stream stream : streams) {
+            sources.add(stream.source);
+        }
+        return sources;
+    }
+
+    /**
+     * @return records read but not yet dispatched
+     */
+    public int getBuffered() {
+        return buffer.size();
+    }
+
+    /**
+     * @return records discarded by the overflow policy, over all sources
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getDispatchedBatches() {
+        return dispatchedBatches.get();
+    }
+
+    /**
+     * Stop reading, dispatch the buffered records and wait for both threads to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            loop.join(1000);
+            dispatcher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        List<Stream> active = new ArrayList<Stream>();
+        while (!closed) {
+            try {
+                Stream stream;
+                while ((stream = added.poll()) != null) {
+                    active.add(stream);
+                }
+
+                long now = System.nanoTime();
+                long wakeUp = now + TimeUnit.SECONDS.toNanos(1);
+                for (Iterator<Stream> it = active.iterator(); it.hasNext(); ) {
+                    stream = it.next();
+                    if (stream.removed || stream.source.done) {
+                        stream.disconnect();
+                        it.remove();
+                        continue;
+                    }
+                    if (stream.channel == null) {
+                        if (now - stream.reconnectAt >= 0) {
+                            connect(stream);
+                        } else {
+                            wakeUp = Math.min(wakeUp, stream.reconnectAt);
+                        }
+                    }
+                }
+
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wakeUp - System.nanoTime())));
+
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handle((Stream) key.attachment(), key);
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Log aggregator loop failed", e);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Log aggregator loop failed", e);
+            }
+        }
+        for (Stream stream : active) {
+            stream.disconnect();
+        }
+        try {
+            selector.close();
+        } catch (IOException ignore) {
+        }
+    }
+
+    private void connect(Stream stream) {
+        try {
+            stream.reset();
+            stream.channel = SocketChannel.open();
+            stream.channel.configureBlocking(false);
+            stream.channel.socket().setTcpNoDelay(true);
+            if (stream.channel.connect(stream.address)) {
+                send(stream);
+            } else {
+                stream.channel.register(selector, SelectionKey.OP_CONNECT, stream);
+            }
+        } catch (IOException e) {
+            failed(stream, e.toString());
+        }
+    }
+
+    private void send(Stream stream) throws IOException {
+        stream.channel.write(stream.request);
+        stream.channel.register(selector, stream.request.hasRemaining() ? SelectionKey.OP_WRITE : SelectionKey.OP_READ, stream);
+    }
+
+    private void handle(Stream stream, SelectionKey key) throws InterruptedException {
+        if (!key.isValid() || stream.channel == null || key.channel() != stream.channel) {
+            return;
+        }
+        try {
+            if (key.isConnectable()) {
+                stream.channel.finishConnect();
+                send(stream);
+            } else if (key.isWritable()) {
+                stream.channel.write(stream.request);
+                if (!stream.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                readBuffer.clear();
+                int n = stream.channel.read(readBuffer);
+                if (n < 0) {
+                    if (stream.state == State.BODY && stream.remaining < 0) {
+                        ended(stream, null);
+                    } else {
+                        failed(stream, "connection closed by the daemon");
+                    }
+                    return;
+                }
+                readBuffer.flip();
+                stream.receivedMillis = System.currentTimeMillis();
+                decode(stream, readBuffer);
+            }
+        } catch (IOException e) {
+            failed(stream, e.toString());
+        }
+    }
+
+    /**
+     * Feed bytes of the response to the HTTP decoder of the stream.
+     */
+    private void decode(Stream stream, ByteBuffer bytes) throws IOException, InterruptedException {
+        while (bytes.hasRemaining() && stream.channel != null) {
+            switch (stream.state) {
+                case HEADERS: {
+                    boolean complete = stream.appendHeader(bytes.get());
+                    if (stream.headers.size() > MAX_HEADERS_SIZE) {
+                        throw new IOException("Response headers exceed " + MAX_HEADERS_SIZE + " bytes");
+                    }
+                    if (complete) {
+                        startBody(stream);
+                    }
+                    break;
+                }
+                case CHUNK_SIZE: {
+                    byte b = bytes.get();
+                    if (b == '\n') {
+                        if (stream.remaining == 0) {
+                            ended(stream, null);
+                            return;
+                        }
+                        stream.state = State.CHUNK_DATA;
+                        stream.chunkExtension = false;
+                    } else if (b == ';') {
+                        stream.chunkExtension = true;
+                    } else if (!stream.chunkExtension && Character.digit(b, 16) >= 0) {
+                        stream.remaining = stream.remaining * 16 + Character.digit(b, 16);
+                    }
+                    break;
+                }
+                case CHUNK_DATA: {
+                    int n = (int) Math.min(stream.remaining, bytes.remaining());
+                    frames(stream, bytes, n);
+                    stream.remaining -= n;
+                    if (stream.remaining == 0) {
+                        stream.state = State.CHUNK_END;
+                    }
+                    break;
+                }
+                case CHUNK_END: {
+                    if (bytes.get() == '\n') {
+                        stream.state = State.CHUNK_SIZE;
+                    }
+                    break;
+                }
+                case BODY: {
+                    int n = stream.remaining < 0 ? bytes.remaining() : (int) Math.min(stream.remaining, bytes.remaining());
+                    frames(stream, bytes, n);
+                    if (stream.remaining >= 0) {
+                        stream.remaining -= n;
+                        if (stream.remaining == 0) {
+                            ended(stream, null);
+                            return;
+                        }
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalStateException(stream.state.name());
+            }
+        }
+    }
+
+    private void startBody(Stream stream) throws IOException {
+        String headers = new String(stream.headers.toByteArray(), ASCII);
+        int status = headers.length() > 12 ? Integer.parseInt(headers.substring(9, 12)) : 0;
+        if (status == 404) {
+            ended(stream, "no such container");
+            return;
+        }
+        if (status != 200) {
+            throw new IOException("Unexpected response status " + status);
+        }
+        stream.failures = 0;
+
+        String lower = headers.toLowerCase();
+        int contentLength = lower.indexOf("\r\ncontent-length:");
+        if (lower.contains("\r\ntransfer-encoding: chunked")) {
+            stream.state = State.CHUNK_SIZE;
+            stream.remaining = 0;
+        } else if (contentLength >= 0) {
+            int end = lower.indexOf("\r\n", contentLength + 2);
+            stream.state = State.BODY;
+            stream.remaining = Long.parseLong(lower.substring(contentLength + 17, end).trim());
+            if (stream.remaining == 0) {
+                ended(stream, null);
+            }
+        } else {
+            // delimited by the end of the connection
+            stream.state = State.BODY;
+            stream.remaining = -1;
+        }
+    }
+
+    /**
+     * Feed {@code n} bytes of the body to the frame decoder of the stream.
+     */
+    private void frames(Stream stream, ByteBuffer bytes, int n) throws InterruptedException {
+        int end = bytes.position() + n;
+        while (bytes.position() < end) {
+            if (stream.raw == Boolean.TRUE) {
+                byte[] chunk = new byte[end - bytes.position()];
+                bytes.get(chunk);
+                record(stream, StreamType.RAW, chunk);
+            } else if (stream.payload == null) {
+                int k = Math.min(stream.frameHeader.length - stream.headerFill, end - bytes.position());
+                bytes.get(stream.frameHeader, stream.headerFill, k);
+                stream.headerFill += k;
+                if (stream.headerFill < stream.frameHeader.length) {
+                    return;
+                }
+                stream.headerFill = 0;
+                if (stream.raw == null) {
+                    stream.raw = !FrameReader.isHeader(stream.frameHeader);
+                    if (stream.raw) {
+                        record(stream, StreamType.RAW, stream.frameHeader.clone());
+                        continue;
+                    }
+                }
+                stream.payload = new byte[FrameReader.payloadSize(stream.frameHeader)];
+                stream.payloadFill = 0;
+                stream.payloadType = StreamType.forHeader(stream.frameHeader[0]);
+                if (stream.payload.length == 0) {
+                    stream.payload = null;
+                }
+            } else {
+                int k = Math.min(stream.payload.length - stream.payloadFill, end - bytes.position());
+                bytes.get(stream.payload, stream.payloadFill, k);
+                stream.payloadFill += k;
+                if (stream.payloadFill == stream.payload.length) {
+                    byte[] payload = stream.payload;
+                    stream.payload = null;
+                    record(stream, stream.payloadType, payload);
+                }
+            }
+        }
+    }
+
+    private void record(Stream stream, StreamType streamType, byte[] frame) throws InterruptedException {
+        LogSource source = stream.source;
+        byte[] payload = frame;
+        long timestampNanos = -1;
+        int space = -1;
+        for (int i = 0; i < Math.min(frame.length, MAX_TIMESTAMP_SIZE); i++) {
+            if (frame[i] == ' ') {
+                space = i;
+                break;
+            }
+        }
+        if (space > 0) {
+            String timestamp = new String(frame, 0, space, ASCII);
+            long[] parsed = LogLine.parseTimestamp(timestamp);
+            if (parsed != null) {
+                if (stream.replayed(parsed[0], (int) parsed[1])) {
+                    return;
+                }
+                timestampNanos = parsed[0] * 1000000000L + parsed[1];
+                payload = Arrays.copyOfRange(frame, space + 1, frame.length);
+            }
+        }
+
+        long lag = timestampNanos < 0 ? -1 : Math.max(0, stream.receivedMillis - timestampNanos / 1000000L);
+        source.read(lag, payload.length);
+        LogRecord record = new LogRecord(source, sequence++, streamType, timestampNanos, stream.receivedMillis, payload);
+        switch (policy) {
+            case BLOCK:
+                while (!buffer.offer(record, 100, TimeUnit.MILLISECONDS)) {
+                    if (closed) {
+                        drop(record);
+                        return;
+                    }
+                }
+                break;
+            case DROP_NEWEST:
+                if (!buffer.offer(record)) {
+                    drop(record);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!buffer.offer(record)) {
+                    LogRecord oldest = buffer.poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalStateException(policy.name());
+        }
+    }
+
+    private void drop(LogRecord record) {
+        record.getSource().dropped.incrementAndGet();
+        dropped.incrementAndGet();
+    }
+
+    private void ended(Stream stream, String failure) {
+        LOGGER.debug("Output of {} ended{}", stream.source, failure == null ? "" : ": " + failure);
+        stream.disconnect();
+        stream.source.failure = failure;
+        stream.source.done = true;
+    }
+
+    private void failed(Stream stream, String reason) {
+        stream.disconnect();
+        if (stream.removed || closed) {
+            return;
+        }
+        stream.failures++;
+        long delay = Math.min(MIN_RECONNECT_DELAY_MS << Math.min(stream.failures - 1, 6), MAX_RECONNECT_DELAY_MS);
+        LOGGER.debug("Output of {} interrupted, reconnecting in {} ms: {}", new Object[]{stream.source, delay, reason});
+        stream.source.reconnects.incrementAndGet();
+        stream.reconnectAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+    }
+
+    private void dispatch() {
+        List<LogRecord> batch = new ArrayList<LogRecord>(maxBatch);
+        while (!closed || !buffer.isEmpty() || loop.isAlive()) {
+            try {
+                LogRecord first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, maxBatch - 1);
+
+                for (LogSink sink : sinks) {
+                    try {
+                        sink.write(batch);
+                    } catch (IOException e) {
+                        LOGGER.warn("Log sink failed", e);
+                    } catch (RuntimeException e) {
+                        LOGGER.warn("Log sink failed", e);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                for (LogRecord record : batch) {
+                    record.getSource().dispatched(now - record.getReceivedMillis());
+                }
+                dispatchedBatches.incrementAndGet();
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private enum State {
+        HEADERS, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, BODY
+    }
+
+    private static final class Stream {
+
+        final LogSource source;
+        final InetSocketAddress address;
+        final String host;
+        final long since;
+
+        volatile boolean removed;
+
+        // owned by the loop thread
+        SocketChannel channel;
+        ByteBuffer request;
+        long reconnectAt = System.nanoTime();
+        int failures;
+        long receivedMillis;
+
+        // HTTP decoding
+        final ByteArrayOutputStream headers = new ByteArrayOutputStream(512);
+        int headersTail;
+        State state;
+        long remaining;
+        boolean chunkExtension;
+
+        // frame decoding
+        final byte[] frameHeader = new byte[8];
+        int headerFill;
+        Boolean raw;
+        byte[] payload;
+        int payloadFill;
+        StreamType payloadType;
+
+        // the last frame read, where the current connection resumed, and how many frames at
+        // exactly that time are still to skip
+        LogCursor cursor = LogCursor.START;
+        LogCursor resumedAt = LogCursor.START;
+        int skipAtResume;
+
+        Stream(LogSource source, long since) {
+            URI serverUrl = source.getServerUrl();
+            int port = serverUrl.getPort() == -1 ? 80 : serverUrl.getPort();
+            this.source = source;
+            this.address = new InetSocketAddress(serverUrl.getHost(), port);
+            this.host = serverUrl.getHost() + ":" + port;
+            this.since = since;
+        }
+
+        void reset() {
+            headers.reset();
+            headersTail = 0;
+            state = State.HEADERS;
+            remaining = 0;
+            chunkExtension = false;
+            headerFill = 0;
+            raw = null;
+            payload = null;
+            resumedAt = cursor;
+            skipAtResume = cursor.getCount();
+
+            long from = cursor.isStart() ? since : cursor.getSeconds();
+            String query = "stdout=1&stderr=1&follow=1&timestamps=1" + (from > 0 ? "&since=" + from : "");
+            request = ByteBuffer.wrap(("GET /containers/" + source.getContainerId() + "/logs?" + query + " HTTP/1.1\r\n"
+                    + "Host: " + host + "\r\n\r\n").getBytes(ASCII));
+        }
+
+        /**
+         * @return whether the byte ended the response head
+         */
+        boolean appendHeader(byte b) {
+            headers.write(b);
+            headersTail = headersTail << 8 | b & 0xff;
+            return headersTail == END_OF_HEADERS;
+        }
+
+        /**
+         * Track the time of a frame read, returning whether it was already read before the last
+         * reconnect: the daemon resumes from the start of the second of the last frame read.
+         */
+        boolean replayed(long seconds, int nanos) {
+            if (!resumedAt.isStart()) {
+                int position = resumedAt.compareTo(seconds, nanos);
+                if (position < 0 || position == 0 && skipAtResume > 0) {
+                    if (position == 0) {
+                        skipAtResume--;
+                    }
+                    return true;
+                }
+                // past the replay, later frames are new whatever their time
+                resumedAt = LogCursor.START;
+            }
+            cursor = cursor.advance(seconds, nanos);
+            return false;
+        }
+
+        void disconnect() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignore) {
+                }
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kpelykh.docker.client.logs;
+
+import com.kpelykh.docker.client.model.StreamType;
+
+import java.nio.charset.Charset;
+
+/**
+ * One frame of container output collected by a {@link LogAggregator}.
+ */
+public final class LogRecord {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final LogSource source;
+    private final long sequence;
+    private final StreamType streamType;
+    private final long timestampNanos;
+    private final long receivedMillis;
+    private final byte[] payload;
+
+    LogRecord(LogSource source, long sequence, StreamType streamType, long timestampNanos, long receivedMillis, byte[] payload) {
+        this.source = source;
+        this.sequence = sequence;
+        this.streamType = streamType;
+        this.timestampNanos = timestampNanos;
+        this.receivedMillis = receivedMillis;
+        this.payload = payload;
+    }
+
+    public LogSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return position of the record among all records of the aggregator, in the order they were
+     *         read; for records read back from a {@link MappedLogSink}, their offset in the archive
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public StreamType getStreamType() {
+        return streamType;
+    }
+
+    /**
+     * @return the time the daemon recorded the output, in nanoseconds since the epoch, or -1 if the
+     *         frame had no timestamp
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * @return the time the frame was read, in milliseconds since the epoch
+     */
+    public long getReceivedMillis() {
+        return receivedMillis;
+    }
+
+    /**
+     * @return the output, without the timestamp the daemon put in front of it
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public String getPayloadAsString() {
+        return new String(payload, UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "LogRecord{" +
+                "source=" + source +
+                ", sequence=" + sequence +
+                ", streamType=" + streamType +
+                ", payload='" + getPayloadAsString() + '\'' +
+                '}';
+    }
+}
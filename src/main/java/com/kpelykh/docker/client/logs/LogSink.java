@@ -0,0 +1,16 @@
+package com.kpelykh.docker.client.logs;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the records of a {@link LogAggregator} in batches, always on the aggregator's dispatch
+ * thread. A failing sink does not stop the others.
+ */
+public interface LogSink {
+
+    /**
+     * @param batch records in the order they were read; only valid during the call
+     */
+    void write(List<LogRecord> batch) throws IOException;
+}
@@ -0,0 +1,132 @@
+package com.kpelykh.docker.client.logs;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A container followed by a {@link LogAggregator}, with its metrics.
+ * <p>
+ * The source lag is how far behind the daemon's timestamp of a frame it was read, the dispatch
+ * lag how long a record then waited in the aggregator's buffer before the sinks got it; both are
+ * kept for the latest record and as a maximum.
+ */
+public final class LogSource {
+
+    private final URI serverUrl;
+    private final String containerId;
+
+    final AtomicLong frames = new AtomicLong();
+    final AtomicLong bytes = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong dispatched = new AtomicLong();
+    final AtomicLong reconnects = new AtomicLong();
+
+    private volatile long sourceLagMillis;
+    private volatile long maxSourceLagMillis;
+    private volatile long dispatchLagMillis;
+    private volatile long maxDispatchLagMillis;
+    volatile boolean done;
+    volatile String failure;
+
+    LogSource(URI serverUrl, String containerId) {
+        this.serverUrl = serverUrl;
+        this.containerId = containerId;
+    }
+
+    /**
+     * @return the daemon of the container, null for records read back from a {@link MappedLogSink}
+     */
+    public URI getServerUrl() {
+        return serverUrl;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    /**
+     * @return whether the output ended, because the container stopped or does not exist
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return why the source ended other than by the container stopping, or null
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getFrames() {
+        return frames.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return records discarded because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return records read but not yet handed to the sinks
+     */
+    public long getPending() {
+        return frames.get() - dispatched.get() - dropped.get();
+    }
+
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    public long getSourceLagMillis() {
+        return sourceLagMillis;
+    }
+
+    public long getMaxSourceLagMillis() {
+        return maxSourceLagMillis;
+    }
+
+    public long getDispatchLagMillis() {
+        return dispatchLagMillis;
+    }
+
+    public long getMaxDispatchLagMillis() {
+        return maxDispatchLagMillis;
+    }
+
+    // only called by the loop thread
+    void read(long lagMillis, int size) {
+        frames.incrementAndGet();
+        bytes.addAndGet(size);
+        if (lagMillis >= 0) {
+            sourceLagMillis = lagMillis;
+            if (lagMillis > maxSourceLagMillis) {
+                maxSourceLagMillis = lagMillis;
+            }
+        }
+    }
+
+    // only called by the dispatch thread
+    void dispatched(long lagMillis) {
+        dispatched.incrementAndGet();
+        dispatchLagMillis = lagMillis;
+        if (lagMillis > maxDispatchLagMillis) {
+            maxDispatchLagMillis = lagMillis;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return serverUrl == null ? containerId : serverUrl + "/" + containerId;
+    }
+}
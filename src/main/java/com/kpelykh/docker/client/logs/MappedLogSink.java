@@ -0,0 +1,356 @@
+package com.kpelykh.docker.client.logs;
+
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.model.StreamType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Archives log records in memory-mapped segment files of a directory.
+ * <p>
+ * Every record gets an offset, consecutive over the whole archive. A segment is named after the
+ * offset of its first record and pre-allocated at its full size, so appending a record is a copy
+ * into the mapping with no system call; once the next record does not fit, the segment is forced
+ * to disk and a new one started. With {@code maxSegments} the oldest segments are deleted beyond
+ * that count. Next to each segment an index maps an offset every {@value #INDEX_INTERVAL} bytes to
+ * its position, which {@link #read(long, int)} uses to find a record without scanning the segment.
+ * <p>
+ * Each record is stored as its length, offset, daemon timestamp, read time, stream type and
+ * container id followed by the payload. The length goes last, so a record torn by a crash of the
+ * process reads as the end of the segment and the archive can be reopened, and appended to, from
+ * where it ended. That does not hold for a crash of the machine: the pages of a mapping are
+ * written back in no particular order, so only the records forced to disk, when their segment was
+ * rolled or by {@link #flush()}, are safe from it.
+ * The server of a record is not stored: records read back have a source without a server url.
+ */
+public class MappedLogSink implements LogSink, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedLogSink.class);
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    // the offset of the first record, as formatted by segmentFile
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{20}\\.log");
+    // length, offset, timestamp, read time, stream type and length of the container id
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 8 + 1 + 1;
+    private static final int INDEX_INTERVAL = 4096;
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private final File directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final TreeMap<Long, File> segments = new TreeMap<Long, File>();
+    private final Map<String, LogSource> sources = new HashMap<String, LogSource>();
+
+    // the segment appended to
+    private long baseOffset;
+    private MappedByteBuffer segment;
+    private MappedByteBuffer index;
+    private int indexEntries;
+    private int indexedPosition;
+    private long nextOffset;
+    private boolean closed;
+
+    /**
+     * Segments of 64 MB, none deleted.
+     */
+    public MappedLogSink(File directory) throws IOException {
+        this(directory, 64 * 1024 * 1024, 0);
+    }
+
+    /**
+     * @param segmentBytes size of a segment; a record larger than that gets a segment of its own
+     * @param maxSegments  segments to keep, 0 for all
+     */
+    public MappedLogSink(File directory, int segmentBytes, int maxSegments) throws IOException {
+        Preconditions.checkArgument(segmentBytes >= INDEX_INTERVAL, "segmentBytes must be at least %s: %s", INDEX_INTERVAL, segmentBytes);
+        Preconditions.checkArgument(maxSegments >= 0, "maxSegments must not be negative: %s", maxSegments);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                // other files in the directory are left alone
+                return SEGMENT_NAME.matcher(name).matches();
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+        }
+        if (segments.isEmpty()) {
+            roll(0, segmentBytes);
+        } else {
+            reopen(segments.lastKey());
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the offset the next record will get
+     */
+    public synchronized long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * @return the offset of the oldest record kept
+     */
+    public synchronized long getFirstOffset() {
+        return segments.firstKey();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void write(List<LogRecord> batch) throws IOException {
+        Preconditions.checkState(!closed, "MappedLogSink is closed");
+        for (LogRecord record : batch) {
+            String containerId = record.getSource().getContainerId();
+            Preconditions.checkArgument(containerId.length() <= 255, "Container id too long: %s", containerId);
+            int size = RECORD_HEADER_SIZE + containerId.length() + record.getPayload().length;
+            if (segment.capacity() - segment.position() < size) {
+                roll(nextOffset, Math.max(segmentBytes, size));
+            }
+
+            int position = segment.position();
+            if (position - indexedPosition >= INDEX_INTERVAL && (indexEntries + 1) * INDEX_ENTRY_SIZE <= index.capacity()) {
+                index.putInt(indexEntries * INDEX_ENTRY_SIZE, (int) (nextOffset - baseOffset));
+                index.putInt(indexEntries * INDEX_ENTRY_SIZE + 4, position);
+                indexEntries++;
+                indexedPosition = position;
+            }
+
+            segment.position(position + 4);
+            segment.putLong(nextOffset);
+            segment.putLong(record.getTimestampNanos());
+            segment.putLong(record.getReceivedMillis());
+            segment.put((byte) record.getStreamType().ordinal());
+            segment.put((byte) containerId.length());
+            segment.put(containerId.getBytes(ASCII));
+            segment.put(record.getPayload());
+            // the length last: until it is written the record reads as the end of the segment
+            segment.putInt(position, size - 4);
+            nextOffset++;
+        }
+    }
+
+    /**
+     * Read back up to {@code maxRecords} records from {@code offset} on, or from the oldest record
+     * kept if that was deleted.
+     *
+     * @return the records, empty if there are none from the offset on
+     */
+    public synchronized List<LogRecord> read(long offset, int maxRecords) throws IOException {
+        Preconditions.checkState(!closed, "MappedLogSink is closed");
+        List<LogRecord> records = new ArrayList<LogRecord>();
+        offset = Math.max(offset, segments.firstKey());
+        while (records.size() < maxRecords && offset < nextOffset) {
+            long base = segments.floorKey(offset);
+            ByteBuffer bytes;
+            ByteBuffer entries;
+            if (base == baseOffset) {
+                bytes = segment.duplicate();
+                entries = index.duplicate();
+            } else {
+                bytes = map(segments.get(base), FileChannel.MapMode.READ_ONLY, -1);
+                entries = map(indexFile(base), FileChannel.MapMode.READ_ONLY, -1);
+            }
+
+            int position = lookup(entries, (int) (offset - base));
+            while (records.size() < maxRecords && position + 4 <= bytes.capacity()) {
+                int length = bytes.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                bytes.position(position + 4);
+                long recordOffset = bytes.getLong();
+                if (recordOffset >= offset) {
+                    records.add(decode(bytes, recordOffset, position + 4 + length));
+                    offset = recordOffset + 1;
+                }
+                position += 4 + length;
+            }
+            if (base == baseOffset) {
+                break;
+            }
+            // the rest is in the following segments
+            offset = Math.max(offset, segments.higherKey(base));
+        }
+        return records;
+    }
+
+    /**
+     * Force the records written so far to disk.
+     */
+    public synchronized void flush() {
+        if (!closed) {
+            segment.force();
+            index.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            flush();
+            closed = true;
+            // the mappings are released once they are garbage collected
+            segment = null;
+            index = null;
+        }
+    }
+
+    private LogRecord decode(ByteBuffer bytes, long offset, int end) {
+        long timestampNanos = bytes.getLong();
+        long receivedMillis = bytes.getLong();
+        StreamType streamType = StreamType.values()[bytes.get()];
+        byte[] id = new byte[bytes.get() & 0xff];
+        bytes.get(id);
+        byte[] payload = new byte[end - bytes.position()];
+        bytes.get(payload);
+
+        String containerId = new String(id, ASCII);
+        LogSource source = sources.get(containerId);
+        if (source == null) {
+            source = new LogSource(null, containerId);
+            sources.put(containerId, source);
+        }
+        return new LogRecord(source, offset, streamType, timestampNanos, receivedMillis, payload);
+    }
+
+    /**
+     * @return the position of the last indexed record at or before the relative offset
+     */
+    private static int lookup(ByteBuffer entries, int relativeOffset) {
+        int low = 0;
+        int high = entries.capacity() / INDEX_ENTRY_SIZE - 1;
+        int position = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entryOffset = entries.getInt(mid * INDEX_ENTRY_SIZE);
+            int entryPosition = entries.getInt(mid * INDEX_ENTRY_SIZE + 4);
+            if (entryPosition == 0 || entryOffset > relativeOffset) {
+                // unused entries are zero and sort last
+                high = mid - 1;
+            } else {
+                position = entryPosition;
+                low = mid + 1;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Finish the current segment and start one at the offset.
+     */
+    private void roll(long offset, int size) throws IOException {
+        if (segment != null) {
+            segment.force();
+            index.force();
+        }
+        File file = segmentFile(offset);
+        segment = map(file, FileChannel.MapMode.READ_WRITE, size);
+        index = map(indexFile(offset), FileChannel.MapMode.READ_WRITE, (size / INDEX_INTERVAL + 1) * INDEX_ENTRY_SIZE);
+        segments.put(offset, file);
+        baseOffset = offset;
+        nextOffset = offset;
+        indexEntries = 0;
+        indexedPosition = 0;
+
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            long oldest = segments.firstKey();
+            if (!segments.remove(oldest).delete() | !indexFile(oldest).delete()) {
+                LOGGER.warn("Cannot delete segment {} of {}", oldest, directory);
+            }
+        }
+    }
+
+    /**
+     * Continue appending to the segment where its records end.
+     */
+    private void reopen(long offset) throws IOException {
+        File file = segments.get(offset);
+        segment = map(file, FileChannel.MapMode.READ_WRITE, -1);
+        index = map(indexFile(offset), FileChannel.MapMode.READ_WRITE, (segment.capacity() / INDEX_INTERVAL + 1) * INDEX_ENTRY_SIZE);
+        baseOffset = offset;
+        nextOffset = offset;
+
+        indexEntries = 0;
+        indexedPosition = 0;
+        while ((indexEntries + 1) * INDEX_ENTRY_SIZE <= index.capacity() && index.getInt(indexEntries * INDEX_ENTRY_SIZE + 4) != 0) {
+            indexedPosition = index.getInt(indexEntries * INDEX_ENTRY_SIZE + 4);
+            indexEntries++;
+        }
+
+        int position = indexedPosition;
+        while (position + 4 <= segment.capacity()) {
+            int length = segment.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            nextOffset = segment.getLong(position + 4) + 1;
+            position += 4 + length;
+        }
+        // a record torn by a crash leaves its bytes behind the end, where a shorter record appended
+        // in its place would leave them to be read as a length; bytes already clear are not written
+        for (int i = position; i < segment.capacity(); i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        segment.position(position);
+        LOGGER.debug("Reopened segment {} of {} at offset {}", new Object[]{offset, directory, nextOffset});
+    }
+
+    private File segmentFile(long offset) {
+        return new File(directory, String.format("%020d", offset) + SEGMENT_SUFFIX);
+    }
+
+    private File indexFile(long offset) {
+        return new File(directory, String.format("%020d", offset) + INDEX_SUFFIX);
+    }
+
+    /**
+     * Map the file, pre-allocated to {@code size} bytes unless that is -1.
+     */
+    private static MappedByteBuffer map(File file, FileChannel.MapMode mode, long size) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, mode == FileChannel.MapMode.READ_ONLY ? "r" : "rw");
+        try {
+            if (size >= 0 && raf.length() < size) {
+                raf.setLength(size);
+            }
+            // the mapping stays valid once the file is closed
+            return raf.getChannel().map(mode, 0, size >= 0 ? Math.max(size, raf.length()) : raf.length());
+        } finally {
+            raf.close();
+        }
+    }
+}
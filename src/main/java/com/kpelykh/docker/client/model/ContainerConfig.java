@@ -42,6 +42,8 @@ public class ContainerConfig {
     
     @JsonProperty("OnBuild")   private int[] onBuild;
 
+    @JsonProperty("Labels")    private Map<String, String> labels;
+
     public Map<String, ?> getExposedPorts() {
         return exposedPorts;
     }
@@ -257,6 +259,15 @@ public class ContainerConfig {
     public void setDomainName(String domainName) {
 		this.domainName = domainName;
 	}
+
+    public Map<String, String> getLabels() {
+        return labels;
+    }
+
+    public ContainerConfig setLabels(Map<String, String> labels) {
+        this.labels = labels;
+        return this;
+    }
    
 
     @Override
@@ -286,6 +297,7 @@ public class ContainerConfig {
                 ", workingDir='" + workingDir + '\'' +
                 ", domainName='" + domainName + '\'' +
                 ", onBuild='" + Arrays.toString(onBuild) + '\'' +
+                ", labels=" + labels +
                 '}';
     }
 }
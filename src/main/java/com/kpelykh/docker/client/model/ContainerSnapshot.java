@@ -0,0 +1,116 @@
+package com.kpelykh.docker.client.model;
+
+import com.kpelykh.docker.client.utils.StringInterner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, compact copy of a {@link Container} for keeping large container lists in memory.
+ * <p>
+ * The id is packed into a {@link PackedId} and the strings that repeat across containers (image,
+ * command, status, port bindings) are shared through a {@link StringInterner}; names are unique
+ * per container and kept as they are.
+ */
+public final class ContainerSnapshot {
+
+    private static final Ports.Port[] NO_PORTS = new Ports.Port[0];
+
+    private final Object id;
+    private final String command;
+    private final String image;
+    private final long created;
+    private final String status;
+    private final Ports.Port[] ports;
+    private final int size;
+    private final int sizeRootFs;
+    private final String[] names;
+
+    private ContainerSnapshot(Container container, StringInterner interner) {
+        this.id = PackedId.compact(container.getId());
+        this.command = interner.intern(container.getCommand());
+        this.image = interner.intern(container.getImage());
+        this.created = container.getCreated();
+        this.status = interner.intern(container.getStatus());
+        this.ports = ports(container.getPorts(), interner);
+        this.size = container.getSize();
+        this.sizeRootFs = container.getSizeRootFs();
+        this.names = container.getNames();
+    }
+
+    public static ContainerSnapshot of(Container container, StringInterner interner) {
+        return new ContainerSnapshot(container, interner);
+    }
+
+    private static Ports.Port[] ports(Ports ports, StringInterner interner) {
+        if (ports == null || ports.getAllPorts().isEmpty()) {
+            return NO_PORTS;
+        }
+        Ports.Port[] compact = new Ports.Port[ports.getAllPorts().size()];
+        int i = 0;
+        for (Ports.Port port : ports.getAllPorts().values()) {
+            compact[i++] = new Ports.Port(interner.intern(port.getScheme()), interner.intern(port.getPort()),
+                    interner.intern(port.getHostIp()), interner.intern(port.getHostPort()));
+        }
+        return compact;
+    }
+
+    public String getId() {
+        return PackedId.expand(id);
+    }
+
+    /**
+     * @return the packed id, or {@code null} if the daemon reported a short id
+     */
+    public PackedId getPackedId() {
+        return id instanceof PackedId ? (PackedId) id : null;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getImage() {
+        return image;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public List<Ports.Port> getPorts() {
+        return Collections.unmodifiableList(Arrays.asList(ports));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getSizeRootFs() {
+        return sizeRootFs;
+    }
+
+    public String[] getNames() {
+        return names == null ? null : names.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "ContainerSnapshot{" +
+                "id='" + id + '\'' +
+                ", command='" + command + '\'' +
+                ", image='" + image + '\'' +
+                ", created=" + created +
+                ", status='" + status + '\'' +
+                ", ports=" + Arrays.toString(ports) +
+                ", size=" + size +
+                ", sizeRootFs=" + sizeRootFs +
+                ", names=" + Arrays.toString(names) +
+                '}';
+    }
+}
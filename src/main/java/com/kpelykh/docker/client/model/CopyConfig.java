@@ -57,7 +57,10 @@ public class CopyConfig {
 
     @Override
     public String toString() {
-        return "{\"HostPath\":\"" + hostPath + "\", \"Resource\":\"" + resource + "\"}";
+        return "CopyConfig{" +
+                "hostPath='" + hostPath + '\'' +
+                ", resource='" + resource + '\'' +
+                '}';
     }
 
 }
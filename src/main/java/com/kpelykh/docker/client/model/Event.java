@@ -0,0 +1,100 @@
+package com.kpelykh.docker.client.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A single entry of the /events stream, e.g.
+ * <pre>{"status":"die","id":"dfdf82bd3881","from":"base:latest","time":1374067970}</pre>
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class Event {
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("from")
+    private String from;
+
+    @JsonProperty("time")
+    private long time;
+
+    public Event() {
+    }
+
+    public Event(String status, String id, String from, long time) {
+        this.status = status;
+        this.id = id;
+        this.from = from;
+        this.time = time;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public void setFrom(String from) {
+        this.from = from;
+    }
+
+    /**
+     * @return the time of the event in seconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Event)) return false;
+
+        Event event = (Event) o;
+        return time == event.time
+                && (status != null ? status.equals(event.status) : event.status == null)
+                && (id != null ? id.equals(event.id) : event.id == null)
+                && (from != null ? from.equals(event.from) : event.from == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = status != null ? status.hashCode() : 0;
+        result = 31 * result + (id != null ? id.hashCode() : 0);
+        result = 31 * result + (from != null ? from.hashCode() : 0);
+        result = 31 * result + (int) (time ^ (time >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Event{" +
+                "status='" + status + '\'' +
+                ", id='" + id + '\'' +
+                ", from='" + from + '\'' +
+                ", time=" + time +
+                '}';
+    }
+}
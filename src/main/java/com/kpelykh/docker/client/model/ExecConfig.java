@@ -0,0 +1,108 @@
+package com.kpelykh.docker.client.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+
+/**
+ * A command to run in a running container, as sent to {@code /containers/(id)/exec}. By default
+ * its stdout and stderr are attached and its stdin is not.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExecConfig {
+
+    @JsonProperty("AttachStdin")  private boolean  attachStdin = false;
+    @JsonProperty("AttachStdout") private boolean  attachStdout = true;
+    @JsonProperty("AttachStderr") private boolean  attachStderr = true;
+    @JsonProperty("Tty")          private boolean  tty = false;
+    @JsonProperty("User")         private String   user = "";
+    @JsonProperty("Privileged")   private boolean  privileged = false;
+    @JsonProperty("Cmd")          private String[] cmd;
+
+    public ExecConfig() {
+    }
+
+    public ExecConfig(String... cmd) {
+        this.cmd = cmd;
+    }
+
+    public boolean isAttachStdin() {
+        return attachStdin;
+    }
+
+    public ExecConfig setAttachStdin(boolean attachStdin) {
+        this.attachStdin = attachStdin;
+        return this;
+    }
+
+    public boolean isAttachStdout() {
+        return attachStdout;
+    }
+
+    public ExecConfig setAttachStdout(boolean attachStdout) {
+        this.attachStdout = attachStdout;
+        return this;
+    }
+
+    public boolean isAttachStderr() {
+        return attachStderr;
+    }
+
+    public ExecConfig setAttachStderr(boolean attachStderr) {
+        this.attachStderr = attachStderr;
+        return this;
+    }
+
+    public boolean isTty() {
+        return tty;
+    }
+
+    /**
+     * With a tty, stdout and stderr are not multiplexed but come as one {@link StreamType#RAW} stream.
+     */
+    public ExecConfig setTty(boolean tty) {
+        this.tty = tty;
+        return this;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public ExecConfig setUser(String user) {
+        this.user = user;
+        return this;
+    }
+
+    public boolean isPrivileged() {
+        return privileged;
+    }
+
+    public ExecConfig setPrivileged(boolean privileged) {
+        this.privileged = privileged;
+        return this;
+    }
+
+    public String[] getCmd() {
+        return cmd;
+    }
+
+    public ExecConfig setCmd(String... cmd) {
+        this.cmd = cmd;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecConfig{" +
+                "attachStdin=" + attachStdin +
+                ", attachStdout=" + attachStdout +
+                ", attachStderr=" + attachStderr +
+                ", tty=" + tty +
+                ", user='" + user + '\'' +
+                ", privileged=" + privileged +
+                ", cmd=" + Arrays.toString(cmd) +
+                '}';
+    }
+}
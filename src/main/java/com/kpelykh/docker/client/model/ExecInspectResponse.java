@@ -0,0 +1,128 @@
+package com.kpelykh.docker.client.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Arrays;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExecInspectResponse {
+
+    @JsonProperty("ID")
+    private String id;
+
+    @JsonProperty("Running")
+    private boolean running;
+
+    @JsonProperty("ExitCode")
+    private int exitCode;
+
+    @JsonProperty("OpenStdin")
+    private boolean openStdin;
+
+    @JsonProperty("OpenStdout")
+    private boolean openStdout;
+
+    @JsonProperty("OpenStderr")
+    private boolean openStderr;
+
+    @JsonProperty("ContainerID")
+    private String containerId;
+
+    @JsonProperty("ProcessConfig")
+    private ProcessConfig processConfig;
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return the exit code once the command finished
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public boolean isOpenStdin() {
+        return openStdin;
+    }
+
+    public boolean isOpenStdout() {
+        return openStdout;
+    }
+
+    public boolean isOpenStderr() {
+        return openStderr;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public ProcessConfig getProcessConfig() {
+        return processConfig;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecInspectResponse{" +
+                "id='" + id + '\'' +
+                ", running=" + running +
+                ", exitCode=" + exitCode +
+                ", containerId='" + containerId + '\'' +
+                ", processConfig=" + processConfig +
+                '}';
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ProcessConfig {
+
+        @JsonProperty("entrypoint")
+        private String entrypoint;
+
+        @JsonProperty("arguments")
+        private String[] arguments;
+
+        @JsonProperty("tty")
+        private boolean tty;
+
+        @JsonProperty("user")
+        private String user;
+
+        @JsonProperty("privileged")
+        private boolean privileged;
+
+        public String getEntrypoint() {
+            return entrypoint;
+        }
+
+        public String[] getArguments() {
+            return arguments;
+        }
+
+        public boolean isTty() {
+            return tty;
+        }
+
+        public String getUser() {
+            return user;
+        }
+
+        public boolean isPrivileged() {
+            return privileged;
+        }
+
+        @Override
+        public String toString() {
+            return "ProcessConfig{" +
+                    "entrypoint='" + entrypoint + '\'' +
+                    ", arguments=" + Arrays.toString(arguments) +
+                    ", tty=" + tty +
+                    '}';
+        }
+    }
+}
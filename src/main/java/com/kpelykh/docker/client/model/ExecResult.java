@@ -0,0 +1,58 @@
+package com.kpelykh.docker.client.model;
+
+import java.nio.charset.Charset;
+
+/**
+ * Outcome of a command run to completion with {@link com.kpelykh.docker.client.DockerClient#exec}.
+ * With a tty all output is stdout.
+ */
+public final class ExecResult {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String execId;
+    private final int exitCode;
+    private final byte[] stdout;
+    private final byte[] stderr;
+
+    public ExecResult(String execId, int exitCode, byte[] stdout, byte[] stderr) {
+        this.execId = execId;
+        this.exitCode = exitCode;
+        this.stdout = stdout;
+        this.stderr = stderr;
+    }
+
+    public String getExecId() {
+        return execId;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public byte[] getStdout() {
+        return stdout;
+    }
+
+    public byte[] getStderr() {
+        return stderr;
+    }
+
+    public String getStdoutAsString() {
+        return new String(stdout, UTF_8);
+    }
+
+    public String getStderrAsString() {
+        return new String(stderr, UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "ExecResult{" +
+                "execId='" + execId + '\'' +
+                ", exitCode=" + exitCode +
+                ", stdout=" + stdout.length + " bytes" +
+                ", stderr=" + stderr.length + " bytes" +
+                '}';
+    }
+}
@@ -0,0 +1,134 @@
+package com.kpelykh.docker.client.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Filters evaluated by the daemon when listing containers or images, sent as the {@code filters}
+ * query parameter, e.g. <pre>{"status":["running"],"label":["env=prod"]}</pre>
+ * Values of the same filter are or-ed, different filters are and-ed.
+ * <pre>
+ * Filters filters = Filters.builder().withStatus(Filters.Status.RUNNING).withLabel("env", "prod").build();
+ * </pre>
+ */
+public final class Filters {
+
+    /**
+     * Container states understood by the {@code status} filter.
+     */
+    public enum Status {
+        CREATED, RESTARTING, RUNNING, PAUSED, EXITED;
+
+        public String value() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<String, List<String>> filters;
+
+    private Filters(Map<String, List<String>> filters) {
+        this.filters = filters;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isEmpty() {
+        return filters.isEmpty();
+    }
+
+    @JsonValue
+    public Map<String, List<String>> getFilters() {
+        return filters;
+    }
+
+    @Override
+    public String toString() {
+        return "Filters" + filters;
+    }
+
+    public static final class Builder implements IBuilder<Filters> {
+
+        private final Map<String, List<String>> filters = new LinkedHashMap<String, List<String>>();
+
+        private Builder() {
+        }
+
+        /**
+         * Containers in any of the given states.
+         */
+        public Builder withStatus(Status... statuses) {
+            for (Status status : statuses) {
+                withFilter("status", status.value());
+            }
+            return this;
+        }
+
+        /**
+         * Containers or images that have the label, whatever its value.
+         */
+        public Builder withLabel(String key) {
+            return withFilter("label", key);
+        }
+
+        public Builder withLabel(String key, String value) {
+            return withFilter("label", key + "=" + value);
+        }
+
+        /**
+         * Containers whose name contains {@code name}.
+         */
+        public Builder withName(String name) {
+            return withFilter("name", name);
+        }
+
+        /**
+         * Containers created from the image, given by name, name:tag or id.
+         */
+        public Builder withAncestor(String image) {
+            return withFilter("ancestor", image);
+        }
+
+        /**
+         * Untagged images ({@code true}) or tagged ones only ({@code false}).
+         */
+        public Builder withDangling(boolean dangling) {
+            // one or the other, a later call replaces the earlier one
+            filters.remove("dangling");
+            return withFilter("dangling", String.valueOf(dangling));
+        }
+
+        /**
+         * Any other filter the daemon supports.
+         */
+        public Builder withFilter(String name, String value) {
+            if (name == null || value == null) {
+                throw new IllegalArgumentException("filter name and value must not be null");
+            }
+            List<String> values = filters.get(name);
+            if (values == null) {
+                values = new ArrayList<String>();
+                filters.put(name, values);
+            }
+            if (!values.contains(value)) {
+                values.add(value);
+            }
+            return this;
+        }
+
+        @Override
+        public Filters build() {
+            Map<String, List<String>> copy = new LinkedHashMap<String, List<String>>();
+            for (Map.Entry<String, List<String>> filter : filters.entrySet()) {
+                copy.put(filter.getKey(), Collections.unmodifiableList(new ArrayList<String>(filter.getValue())));
+            }
+            return new Filters(Collections.unmodifiableMap(copy));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.kpelykh.docker.client.model;
+
+import java.nio.charset.Charset;
+
+/**
+ * One chunk of container output read from an attach or logs stream.
+ */
+public class Frame {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final StreamType streamType;
+    private final byte[] payload;
+
+    public Frame(StreamType streamType, byte[] payload) {
+        this.streamType = streamType;
+        this.payload = payload;
+    }
+
+    public StreamType getStreamType() {
+        return streamType;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public String getPayloadAsString() {
+        return new String(payload, UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "Frame{" +
+                "streamType=" + streamType +
+                ", payload='" + getPayloadAsString() + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,91 @@
+package com.kpelykh.docker.client.model;
+
+import com.kpelykh.docker.client.utils.StringInterner;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, compact copy of an {@link Image} for keeping large image lists in memory.
+ * <p>
+ * Image and parent ids are packed into {@link PackedId}s and repositories and tags are shared
+ * through a {@link StringInterner}.
+ */
+public final class ImageSnapshot {
+
+    private final Object id;
+    private final String[] repoTags;
+    private final String repository;
+    private final String tag;
+    private final Object parentId;
+    private final long created;
+    private final long size;
+    private final long virtualSize;
+
+    private ImageSnapshot(Image image, StringInterner interner) {
+        this.id = PackedId.compact(image.getId());
+        this.repoTags = interner.intern(image.getRepoTags());
+        this.repository = interner.intern(image.getRepository());
+        this.tag = interner.intern(image.getTag());
+        this.parentId = PackedId.compact(image.getParentId());
+        this.created = image.getCreated();
+        this.size = image.getSize();
+        this.virtualSize = image.getVirtualSize();
+    }
+
+    public static ImageSnapshot of(Image image, StringInterner interner) {
+        return new ImageSnapshot(image, interner);
+    }
+
+    public String getId() {
+        return PackedId.expand(id);
+    }
+
+    /**
+     * @return the packed id, or {@code null} if the daemon reported a short id
+     */
+    public PackedId getPackedId() {
+        return id instanceof PackedId ? (PackedId) id : null;
+    }
+
+    public String[] getRepoTags() {
+        return repoTags == null ? null : repoTags.clone();
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getParentId() {
+        return PackedId.expand(parentId);
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getVirtualSize() {
+        return virtualSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ImageSnapshot{" +
+                "id='" + id + '\'' +
+                ", repoTags=" + Arrays.toString(repoTags) +
+                ", repository='" + repository + '\'' +
+                ", tag='" + tag + '\'' +
+                ", parentId='" + parentId + '\'' +
+                ", created=" + created +
+                ", size=" + size +
+                ", virtualSize=" + virtualSize +
+                '}';
+    }
+}
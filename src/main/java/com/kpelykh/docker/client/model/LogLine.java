@@ -0,0 +1,151 @@
+package com.kpelykh.docker.client.model;
+
+/**
+ * One line of container output read from the logs endpoint, with the time the daemon recorded it
+ * if timestamps were requested, e.g. {@code 2014-05-01T12:30:00.123456789Z}.
+ */
+public class LogLine {
+
+    private final StreamType streamType;
+    private final String timestamp;
+    private final long seconds;
+    private final int nanos;
+    private final String text;
+
+    public LogLine(StreamType streamType, String timestamp, long seconds, int nanos, String text) {
+        this.streamType = streamType;
+        this.timestamp = timestamp;
+        this.seconds = seconds;
+        this.nanos = nanos;
+        this.text = text;
+    }
+
+    /**
+     * Split off the timestamp the daemon put in front of the line.
+     *
+     * @param line the line without its line break
+     */
+    public static LogLine parse(StreamType streamType, String line) {
+        int space = line.indexOf(' ');
+        if (space > 0) {
+            String timestamp = line.substring(0, space);
+            long[] parsed = parseTimestamp(timestamp);
+            if (parsed != null) {
+                return new LogLine(streamType, timestamp, parsed[0], (int) parsed[1], line.substring(space + 1));
+            }
+        }
+        return new LogLine(streamType, null, 0, 0, line);
+    }
+
+    public StreamType getStreamType() {
+        return streamType;
+    }
+
+    public boolean hasTimestamp() {
+        return timestamp != null;
+    }
+
+    /**
+     * @return the timestamp as sent by the daemon, or null
+     */
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return seconds since the epoch of the timestamp
+     */
+    public long getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @return nanoseconds within the second of the timestamp
+     */
+    public int getNanos() {
+        return nanos;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Parse an RFC 3339 timestamp with up to nanosecond precision.
+     *
+     * @return seconds since the epoch and nanoseconds, or null if this is no timestamp
+     */
+    public static long[] parseTimestamp(String s) {
+        if (s.length() < 20 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = digits(s, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || minute < 0 || second < 0) {
+            return null;
+        }
+
+        int i = 19;
+        int nanos = 0;
+        if (s.charAt(i) == '.') {
+            int scale = 100000000;
+            for (i++; i < s.length() && Character.isDigit(s.charAt(i)); i++) {
+                nanos += (s.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+
+        int offset;
+        if (i == s.length() - 1 && (s.charAt(i) == 'Z' || s.charAt(i) == 'z')) {
+            offset = 0;
+        } else if (i == s.length() - 6 && (s.charAt(i) == '+' || s.charAt(i) == '-') && s.charAt(i + 3) == ':') {
+            int hours = digits(s, i + 1, i + 3);
+            int minutes = digits(s, i + 4, i + 6);
+            if (hours < 0 || minutes < 0) {
+                return null;
+            }
+            offset = (s.charAt(i) == '+' ? 1 : -1) * (hours * 3600 + minutes * 60);
+        } else {
+            return null;
+        }
+
+        long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second - offset;
+        return new long[]{seconds, nanos};
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // days since 1970-01-01 of a date of the proleptic Gregorian calendar
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    @Override
+    public String toString() {
+        return "LogLine{" +
+                "streamType=" + streamType +
+                ", timestamp='" + timestamp + '\'' +
+                ", text='" + text + '\'' +
+                '}';
+    }
+}
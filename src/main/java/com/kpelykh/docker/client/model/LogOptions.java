@@ -0,0 +1,161 @@
+package com.kpelykh.docker.client.model;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Query of the {@code /containers/(id)/logs} endpoint.
+ * <pre>
+ * LogOptions options = LogOptions.builder().withTail(100).withTimestamps().follow().build();
+ * </pre>
+ * By default both stdout and stderr are returned, all of the history and no timestamps, and the
+ * response ends with the output written so far.
+ */
+public final class LogOptions {
+
+    private final boolean stdout;
+    private final boolean stderr;
+    private final boolean follow;
+    private final boolean timestamps;
+    private final int tail;
+    private final long since;
+
+    private LogOptions(Builder builder) {
+        this.stdout = builder.stdout;
+        this.stderr = builder.stderr;
+        this.follow = builder.follow;
+        this.timestamps = builder.timestamps;
+        this.tail = builder.tail;
+        this.since = builder.since;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean isStdout() {
+        return stdout;
+    }
+
+    public boolean isStderr() {
+        return stderr;
+    }
+
+    public boolean isFollow() {
+        return follow;
+    }
+
+    public boolean isTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @return number of lines to return from the end of the history, -1 for all of them
+     */
+    public int getTail() {
+        return tail;
+    }
+
+    /**
+     * @return only lines written at or after this time (seconds since the epoch) are returned, 0 for all
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * @return a builder starting out with these options
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.stdout = stdout;
+        builder.stderr = stderr;
+        builder.follow = follow;
+        builder.timestamps = timestamps;
+        builder.tail = tail;
+        builder.since = since;
+        return builder;
+    }
+
+    @Override
+    public String toString() {
+        return "LogOptions{" +
+                "stdout=" + stdout +
+                ", stderr=" + stderr +
+                ", follow=" + follow +
+                ", timestamps=" + timestamps +
+                ", tail=" + tail +
+                ", since=" + since +
+                '}';
+    }
+
+    public static final class Builder implements IBuilder<LogOptions> {
+
+        private boolean stdout = true;
+        private boolean stderr = true;
+        private boolean follow;
+        private boolean timestamps;
+        private int tail = -1;
+        private long since;
+
+        private Builder() {
+        }
+
+        public Builder withStdout(boolean stdout) {
+            this.stdout = stdout;
+            return this;
+        }
+
+        public Builder withStderr(boolean stderr) {
+            this.stderr = stderr;
+            return this;
+        }
+
+        /**
+         * Keep the response open and stream new output until the container stops.
+         */
+        public Builder follow() {
+            this.follow = true;
+            return this;
+        }
+
+        /**
+         * Prefix every line with the time it was written, in RFC 3339 with nanoseconds.
+         */
+        public Builder withTimestamps() {
+            this.timestamps = true;
+            return this;
+        }
+
+        /**
+         * Only the last {@code lines} lines of the history.
+         */
+        public Builder withTail(int lines) {
+            Preconditions.checkArgument(lines >= 0, "lines must not be negative: %s", lines);
+            this.tail = lines;
+            return this;
+        }
+
+        /**
+         * All of the history, which is the default.
+         */
+        public Builder withoutTail() {
+            this.tail = -1;
+            return this;
+        }
+
+        /**
+         * Only lines written at or after this time, in seconds since the epoch.
+         */
+        public Builder withSince(long since) {
+            Preconditions.checkArgument(since >= 0, "since must not be negative: %s", since);
+            this.since = since;
+            return this;
+        }
+
+        @Override
+        public LogOptions build() {
+            Preconditions.checkState(stdout || stderr, "at least one of stdout and stderr must be selected");
+            return new LogOptions(this);
+        }
+    }
+}
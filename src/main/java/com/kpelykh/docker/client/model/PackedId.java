@@ -0,0 +1,114 @@
+package com.kpelykh.docker.client.model;
+
+/**
+ * A full 64 hex character container or image id packed into four longs: 32 bytes of payload
+ * instead of a String with its own char array (about 180 bytes on a 64 bit JVM).
+ */
+public final class PackedId {
+
+    public static final int LENGTH = 64;
+
+    private final long w0;
+    private final long w1;
+    private final long w2;
+    private final long w3;
+
+    private PackedId(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * @return whether {@code id} is a full 64 character lower case hex id
+     */
+    public static boolean isPackable(String id) {
+        if (id == null || id.length() != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            if (digit(id.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code id} is not {@link #isPackable(String) packable}
+     */
+    public static PackedId parse(String id) {
+        if (!isPackable(id)) {
+            throw new IllegalArgumentException("Not a full 64 character hex id: " + id);
+        }
+        return new PackedId(word(id, 0), word(id, 16), word(id, 32), word(id, 48));
+    }
+
+    /**
+     * @return a {@link PackedId} for full ids, anything else (short ids of older daemons) as is
+     */
+    static Object compact(String id) {
+        return isPackable(id) ? parse(id) : id;
+    }
+
+    static String expand(Object id) {
+        return id == null ? null : id.toString();
+    }
+
+    private static long word(String id, int offset) {
+        long word = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            word = (word << 4) | digit(id.charAt(i));
+        }
+        return word;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether this id starts with {@code prefix}, e.g. a 12 character short id
+     */
+    public boolean startsWith(String prefix) {
+        return prefix.length() <= LENGTH && toString().startsWith(prefix);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PackedId)) return false;
+        PackedId other = (PackedId) o;
+        return w0 == other.w0 && w1 == other.w1 && w2 == other.w2 && w3 == other.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        // ids are random, any word is well distributed
+        return (int) (w0 ^ (w0 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        char[] hex = new char[LENGTH];
+        toHex(w0, hex, 0);
+        toHex(w1, hex, 16);
+        toHex(w2, hex, 32);
+        toHex(w3, hex, 48);
+        return new String(hex);
+    }
+
+    private static void toHex(long word, char[] hex, int offset) {
+        for (int i = offset + 15; i >= offset; i--) {
+            hex[i] = Character.forDigit((int) (word & 0xf), 16);
+            word >>>= 4;
+        }
+    }
+}
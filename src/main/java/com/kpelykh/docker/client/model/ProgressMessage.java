@@ -0,0 +1,107 @@
+package com.kpelykh.docker.client.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One message of the progress streamed by pull, push and build, e.g.
+ * <pre>{"status":"Downloading","progressDetail":{"current":1024,"total":2048},"id":"511136ea3c5a"}</pre>
+ * or, from a build,
+ * <pre>{"stream":"Step 0 : FROM busybox\n"}</pre>
+ * A failure is reported in-band as a message with an error, after which the stream ends.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ProgressMessage {
+
+    @JsonProperty("status")
+    private String status;
+
+    @JsonProperty("id")
+    private String id;
+
+    @JsonProperty("progress")
+    private String progress;
+
+    @JsonProperty("progressDetail")
+    private ProgressDetail progressDetail;
+
+    @JsonProperty("stream")
+    private String stream;
+
+    @JsonProperty("error")
+    private String error;
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the layer the message is about, if any
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the progress bar as rendered by the daemon
+     */
+    public String getProgress() {
+        return progress;
+    }
+
+    public ProgressDetail getProgressDetail() {
+        return progressDetail;
+    }
+
+    /**
+     * @return output of a build step
+     */
+    public String getStream() {
+        return stream;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ProgressMessage{" +
+                "status='" + status + '\'' +
+                ", id='" + id + '\'' +
+                ", progressDetail=" + progressDetail +
+                ", stream='" + stream + '\'' +
+                ", error='" + error + '\'' +
+                '}';
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ProgressDetail {
+
+        @JsonProperty("current")
+        private long current;
+
+        @JsonProperty("total")
+        private long total;
+
+        public long getCurrent() {
+            return current;
+        }
+
+        /**
+         * @return the total, 0 if unknown
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            return current + "/" + total;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.kpelykh.docker.client.model;
+
+/**
+ * One sample of the resource usage of a container, as streamed by {@code /containers/(id)/stats}.
+ * <p>
+ * Unlike the other model classes this one is mutable and holds primitives only: a reader fills the
+ * same instance sample after sample, so following many containers once a second allocates next to
+ * nothing. Network counters are summed over all interfaces, block I/O over all devices. Values the
+ * daemon did not report are 0.
+ */
+public final class StatsSample {
+
+    private long timestampNanos;
+    private long cpuTotalUsage;
+    private long cpuKernelUsage;
+    private long cpuUserUsage;
+    private long systemCpuUsage;
+    private long onlineCpus;
+    private long throttledPeriods;
+    private long throttledTime;
+    private long previousCpuTotalUsage;
+    private long previousSystemCpuUsage;
+    private long memoryUsage;
+    private long memoryMaxUsage;
+    private long memoryLimit;
+    private long memoryCache;
+    private long rxBytes;
+    private long rxPackets;
+    private long rxErrors;
+    private long rxDropped;
+    private long txBytes;
+    private long txPackets;
+    private long txErrors;
+    private long txDropped;
+    private long blkioReadBytes;
+    private long blkioWriteBytes;
+    private long pids;
+
+    /**
+     * Reset all values to 0.
+     */
+    public void clear() {
+        timestampNanos = 0;
+        cpuTotalUsage = 0;
+        cpuKernelUsage = 0;
+        cpuUserUsage = 0;
+        systemCpuUsage = 0;
+        onlineCpus = 0;
+        throttledPeriods = 0;
+        throttledTime = 0;
+        previousCpuTotalUsage = 0;
+        previousSystemCpuUsage = 0;
+        memoryUsage = 0;
+        memoryMaxUsage = 0;
+        memoryLimit = 0;
+        memoryCache = 0;
+        rxBytes = 0;
+        rxPackets = 0;
+        rxErrors = 0;
+        rxDropped = 0;
+        txBytes = 0;
+        txPackets = 0;
+        txErrors = 0;
+        txDropped = 0;
+        blkioReadBytes = 0;
+        blkioWriteBytes = 0;
+        pids = 0;
+    }
+
+    public void copyFrom(StatsSample other) {
+        timestampNanos = other.timestampNanos;
+        cpuTotalUsage = other.cpuTotalUsage;
+        cpuKernelUsage = other.cpuKernelUsage;
+        cpuUserUsage = other.cpuUserUsage;
+        systemCpuUsage = other.systemCpuUsage;
+        onlineCpus = other.onlineCpus;
+        throttledPeriods = other.throttledPeriods;
+        throttledTime = other.throttledTime;
+        previousCpuTotalUsage = other.previousCpuTotalUsage;
+        previousSystemCpuUsage = other.previousSystemCpuUsage;
+        memoryUsage = other.memoryUsage;
+        memoryMaxUsage = other.memoryMaxUsage;
+        memoryLimit = other.memoryLimit;
+        memoryCache = other.memoryCache;
+        rxBytes = other.rxBytes;
+        rxPackets = other.rxPackets;
+        rxErrors = other.rxErrors;
+        rxDropped = other.rxDropped;
+        txBytes = other.txBytes;
+        txPackets = other.txPackets;
+        txErrors = other.txErrors;
+        txDropped = other.txDropped;
+        blkioReadBytes = other.blkioReadBytes;
+        blkioWriteBytes = other.blkioWriteBytes;
+        pids = other.pids;
+    }
+
+    /**
+     * @return the CPU usage since the previous sample in percent of one CPU, as {@code docker stats}
+     *         shows it, or 0 without a previous sample
+     */
+    public double getCpuPercent() {
+        long cpuDelta = cpuTotalUsage - previousCpuTotalUsage;
+        long systemDelta = systemCpuUsage - previousSystemCpuUsage;
+        if (previousSystemCpuUsage == 0 || cpuDelta <= 0 || systemDelta <= 0) {
+            return 0;
+        }
+        return (double) cpuDelta / systemDelta * Math.max(onlineCpus, 1) * 100;
+    }
+
+    /**
+     * @return memory used in percent of the limit, or 0 without a limit
+     */
+    public double getMemoryPercent() {
+        return memoryLimit == 0 ? 0 : (double) memoryUsage / memoryLimit * 100;
+    }
+
+    /**
+     * @return the time the daemon took the sample, in nanoseconds since the epoch
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    public void setTimestampNanos(long timestampNanos) {
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * @return CPU time used by the container over all CPUs, in nanoseconds
+     */
+    public long getCpuTotalUsage() {
+        return cpuTotalUsage;
+    }
+
+    public void setCpuTotalUsage(long cpuTotalUsage) {
+        this.cpuTotalUsage = cpuTotalUsage;
+    }
+
+    /**
+     * @return CPU time used in kernel mode, in nanoseconds
+     */
+    public long getCpuKernelUsage() {
+        return cpuKernelUsage;
+    }
+
+    public void setCpuKernelUsage(long cpuKernelUsage) {
+        this.cpuKernelUsage = cpuKernelUsage;
+    }
+
+    /**
+     * @return CPU time used in user mode, in nanoseconds
+     */
+    public long getCpuUserUsage() {
+        return cpuUserUsage;
+    }
+
+    public void setCpuUserUsage(long cpuUserUsage) {
+        this.cpuUserUsage = cpuUserUsage;
+    }
+
+    /**
+     * @return CPU time of the host, in nanoseconds
+     */
+    public long getSystemCpuUsage() {
+        return systemCpuUsage;
+    }
+
+    public void setSystemCpuUsage(long systemCpuUsage) {
+        this.systemCpuUsage = systemCpuUsage;
+    }
+
+    /**
+     * @return CPUs available to the container
+     */
+    public long getOnlineCpus() {
+        return onlineCpus;
+    }
+
+    public void setOnlineCpus(long onlineCpus) {
+        this.onlineCpus = onlineCpus;
+    }
+
+    /**
+     * @return periods in which the container was throttled
+     */
+    public long getThrottledPeriods() {
+        return throttledPeriods;
+    }
+
+    public void setThrottledPeriods(long throttledPeriods) {
+        this.throttledPeriods = throttledPeriods;
+    }
+
+    /**
+     * @return time the container was throttled, in nanoseconds
+     */
+    public long getThrottledTime() {
+        return throttledTime;
+    }
+
+    public void setThrottledTime(long throttledTime) {
+        this.throttledTime = throttledTime;
+    }
+
+    /**
+     * @return {@link #getCpuTotalUsage()} of the previous sample
+     */
+    public long getPreviousCpuTotalUsage() {
+        return previousCpuTotalUsage;
+    }
+
+    public void setPreviousCpuTotalUsage(long previousCpuTotalUsage) {
+        this.previousCpuTotalUsage = previousCpuTotalUsage;
+    }
+
+    /**
+     * @return {@link #getSystemCpuUsage()} of the previous sample
+     */
+    public long getPreviousSystemCpuUsage() {
+        return previousSystemCpuUsage;
+    }
+
+    public void setPreviousSystemCpuUsage(long previousSystemCpuUsage) {
+        this.previousSystemCpuUsage = previousSystemCpuUsage;
+    }
+
+    /**
+     * @return memory used, in bytes
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public void setMemoryUsage(long memoryUsage) {
+        this.memoryUsage = memoryUsage;
+    }
+
+    /**
+     * @return most memory ever used, in bytes
+     */
+    public long getMemoryMaxUsage() {
+        return memoryMaxUsage;
+    }
+
+    public void setMemoryMaxUsage(long memoryMaxUsage) {
+        this.memoryMaxUsage = memoryMaxUsage;
+    }
+
+    /**
+     * @return memory limit, in bytes
+     */
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * @return page cache, in bytes
+     */
+    public long getMemoryCache() {
+        return memoryCache;
+    }
+
+    public void setMemoryCache(long memoryCache) {
+        this.memoryCache = memoryCache;
+    }
+
+    public long getRxBytes() {
+        return rxBytes;
+    }
+
+    public void setRxBytes(long rxBytes) {
+        this.rxBytes = rxBytes;
+    }
+
+    public long getRxPackets() {
+        return rxPackets;
+    }
+
+    public void setRxPackets(long rxPackets) {
+        this.rxPackets = rxPackets;
+    }
+
+    public long getRxErrors() {
+        return rxErrors;
+    }
+
+    public void setRxErrors(long rxErrors) {
+        this.rxErrors = rxErrors;
+    }
+
+    public long getRxDropped() {
+        return rxDropped;
+    }
+
+    public void setRxDropped(long rxDropped) {
+        this.rxDropped = rxDropped;
+    }
+
+    public long getTxBytes() {
+        return txBytes;
+    }
+
+    public void setTxBytes(long txBytes) {
+        this.txBytes = txBytes;
+    }
+
+    public long getTxPackets() {
+        return txPackets;
+    }
+
+    public void setTxPackets(long txPackets) {
+        this.txPackets = txPackets;
+    }
+
+    public long getTxErrors() {
+        return txErrors;
+    }
+
+    public void setTxErrors(long txErrors) {
+        this.txErrors = txErrors;
+    }
+
+    public long getTxDropped() {
+        return txDropped;
+    }
+
+    public void setTxDropped(long txDropped) {
+        this.txDropped = txDropped;
+    }
+
+    /**
+     * @return bytes read from block devices
+     */
+    public long getBlkioReadBytes() {
+        return blkioReadBytes;
+    }
+
+    public void setBlkioReadBytes(long blkioReadBytes) {
+        this.blkioReadBytes = blkioReadBytes;
+    }
+
+    /**
+     * @return bytes written to block devices
+     */
+    public long getBlkioWriteBytes() {
+        return blkioWriteBytes;
+    }
+
+    public void setBlkioWriteBytes(long blkioWriteBytes) {
+        this.blkioWriteBytes = blkioWriteBytes;
+    }
+
+    /**
+     * @return processes and threads in the container
+     */
+    public long getPids() {
+        return pids;
+    }
+
+    public void setPids(long pids) {
+        this.pids = pids;
+    }
+
+    @Override
+    public String toString() {
+        return "StatsSample{" +
+                "timestampNanos=" + timestampNanos +
+                ", cpuTotalUsage=" + cpuTotalUsage +
+                ", systemCpuUsage=" + systemCpuUsage +
+                ", onlineCpus=" + onlineCpus +
+                ", memoryUsage=" + memoryUsage +
+                ", memoryLimit=" + memoryLimit +
+                ", rxBytes=" + rxBytes +
+                ", txBytes=" + txBytes +
+                ", blkioReadBytes=" + blkioReadBytes +
+                ", blkioWriteBytes=" + blkioWriteBytes +
+                ", pids=" + pids +
+                '}';
+    }
+}
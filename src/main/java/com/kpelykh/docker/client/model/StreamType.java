@@ -0,0 +1,26 @@
+package com.kpelykh.docker.client.model;
+
+/**
+ * Origin of a chunk of container output, as encoded in the header of multiplexed attach/logs streams.
+ */
+public enum StreamType {
+    STDIN,
+    STDOUT,
+    STDERR,
+    /**
+     * Output of a container with a tty, which is not multiplexed.
+     */
+    RAW;
+
+    /**
+     * @return the stream type for the first byte of a frame header, or null if it is not a valid header
+     */
+    public static StreamType forHeader(int b) {
+        switch (b) {
+            case 0: return STDIN;
+            case 1: return STDOUT;
+            case 2: return STDERR;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.kpelykh.docker.client.stream;
+
+/**
+ * A provider of a potentially unbounded number of items, published according to the demand
+ * received from its {@link Subscriber}s.
+ * <p>
+ * This and the other interfaces of this package have the signatures and contracts of their
+ * namesakes in {@code org.reactivestreams}, so that adapting a publisher to a Reactive Streams
+ * library takes a few lines, without making that library a dependency of the client.
+ */
+public interface Publisher<T> {
+
+    /**
+     * Start streaming to the subscriber once it requests items; may be called more than once,
+     * each subscription being independent.
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
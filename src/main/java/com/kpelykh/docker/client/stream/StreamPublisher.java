@@ -0,0 +1,247 @@
+package com.kpelykh.docker.client.stream;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Preconditions;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.model.ProgressMessage;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.kpelykh.docker.client.utils.FrameReader;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the items of a streaming response, reading from the socket only as far as
+ * subscribers asked for.
+ * <p>
+ * Every subscription opens its own request once the first item is requested. Items are read and
+ * delivered on a thread of the executor while there is demand; when the demand is used up the
+ * thread returns to the executor and the rest of the response stays unread in the socket, so TCP
+ * flow control throttles the daemon instead of the output piling up in memory. Cancelling aborts
+ * the connection, which also unblocks a read waiting for a quiet container.
+ */
+public abstract class StreamPublisher<T> implements Publisher<T> {
+
+    private static final Executor READERS = Executors.newCachedThreadPool(new NamedThreadFactory("docker-stream"));
+
+    /**
+     * Reads the items of one response.
+     */
+    public interface Decoder<T> {
+
+        /**
+         * @return the next item, or null at the end of the response
+         */
+        T next() throws IOException, DockerException;
+    }
+
+    private final DockerClient dockerClient;
+    private final Executor executor;
+
+    protected StreamPublisher(DockerClient dockerClient) {
+        this(dockerClient, READERS);
+    }
+
+    /**
+     * @param executor runs the reads; a subscription takes one thread while it has demand
+     */
+    protected StreamPublisher(DockerClient dockerClient, Executor executor) {
+        Preconditions.checkNotNull(dockerClient, "dockerClient was not specified");
+        Preconditions.checkNotNull(executor, "executor was not specified");
+        this.dockerClient = dockerClient;
+        this.executor = executor;
+    }
+
+    /**
+     * Send the request of a new subscription.
+     */
+    protected abstract ClientResponse open(DockerClient dockerClient) throws DockerException;
+
+    protected abstract Decoder<T> decoder(InputStream input) throws IOException;
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        Preconditions.checkNotNull(subscriber, "subscriber was not specified");
+        new StreamSubscription(subscriber).start();
+    }
+
+    /**
+     * Demultiplexed frames of attach and logs output.
+     */
+    public static Decoder<Frame> frames(InputStream input) {
+        final FrameReader reader = new FrameReader(input);
+        return new Decoder<Frame>() {
+            @Override
+            public Frame next() throws IOException {
+                return reader.readFrame();
+            }
+        };
+    }
+
+    /**
+     * A stream of concatenated JSON objects, like events.
+     */
+    public static <T> Decoder<T> json(ObjectReader reader, InputStream input) throws IOException {
+        final MappingIterator<T> values = reader.readValues(input);
+        return new Decoder<T>() {
+            @Override
+            public T next() throws IOException {
+                return values.hasNextValue() ? values.nextValue() : null;
+            }
+        };
+    }
+
+    /**
+     * Progress of a pull, push or build; a message carrying an error fails the stream.
+     */
+    public static Decoder<ProgressMessage> progress(ObjectReader reader, InputStream input) throws IOException {
+        final Decoder<ProgressMessage> messages = json(reader, input);
+        return new Decoder<ProgressMessage>() {
+            @Override
+            public ProgressMessage next() throws IOException, DockerException {
+                ProgressMessage message = messages.next();
+                if (message != null && message.isError()) {
+                    throw new DockerException(message.getError());
+                }
+                return message;
+            }
+        };
+    }
+
+    private class StreamSubscription implements Subscription, Runnable {
+
+        private final Subscriber<? super T> subscriber;
+        private final AtomicLong requested = new AtomicLong();
+        // number of signals for the drain loop; held at 1 while onSubscribe runs, so that no
+        // item is delivered before it returned
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final CallScope scope = CallScope.forStreams();
+
+        private volatile boolean cancelled;
+        private volatile long invalidRequest;
+
+        // only touched by the drain loop
+        private ClientResponse response;
+        private Decoder<T> decoder;
+        private boolean done;
+
+        StreamSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            if (pending.decrementAndGet() != 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = n;
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            scope.cancel();
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    drain();
+                }
+                missed = pending.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (cancelled) {
+                release();
+                return;
+            }
+            if (invalidRequest != 0) {
+                release();
+                subscriber.onError(new IllegalArgumentException("Requested a non-positive number of items: " + invalidRequest));
+                return;
+            }
+            long demand = requested.get();
+            if (demand == 0) {
+                return;
+            }
+
+            try {
+                if (decoder == null) {
+                    response = DockerClient.checkStreamResponse(open(dockerClient.within(scope)), null);
+                    decoder = decoder(response.getEntityInputStream());
+                }
+                long emitted = 0;
+                while (emitted != demand) {
+                    if (cancelled) {
+                        release();
+                        return;
+                    }
+                    T item = decoder.next();
+                    if (item == null) {
+                        release();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    subscriber.onNext(item);
+                    emitted++;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+            } catch (Exception e) {
+                release();
+                if (!cancelled) {
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        private void release() {
+            done = true;
+            // an unfinished response is aborted rather than read to its end by close
+            scope.close();
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (ClientHandlerException ignore) {
+                }
+                response = null;
+            }
+        }
+    }
+}
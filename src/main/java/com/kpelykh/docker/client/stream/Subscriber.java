@@ -0,0 +1,16 @@
+package com.kpelykh.docker.client.stream;
+
+/**
+ * Receives the items of a {@link Publisher} after requesting them from its {@link Subscription}.
+ * Signals are never sent concurrently; {@link #onError} or {@link #onComplete} is the last one.
+ */
+public interface Subscriber<T> {
+
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    void onError(Throwable error);
+
+    void onComplete();
+}
@@ -0,0 +1,17 @@
+package com.kpelykh.docker.client.stream;
+
+/**
+ * The link between one {@link Publisher} and one {@link Subscriber}.
+ */
+public interface Subscription {
+
+    /**
+     * Add {@code n} items to the demand of the subscriber; {@link Long#MAX_VALUE} means unbounded.
+     */
+    void request(long n);
+
+    /**
+     * Stop sending items and release the resources of the subscription.
+     */
+    void cancel();
+}
@@ -0,0 +1,15 @@
+package com.kpelykh.docker.client.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown by calls of a {@link CallScope} that was cancelled, whether they were still to be sent or
+ * in flight. Like other connection failures it reaches callers wrapped in a
+ * {@link com.sun.jersey.api.client.ClientHandlerException}.
+ */
+public class CallCancelledException extends IOException {
+
+    public CallCancelledException(String message) {
+        super(message);
+    }
+}
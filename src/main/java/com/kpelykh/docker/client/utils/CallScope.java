@@ -0,0 +1,145 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+import org.apache.http.client.methods.AbortableHttpRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline and cancellation shared by the calls of one unit of work, made through
+ * {@link com.kpelykh.docker.client.DockerClient#within(CallScope)}.
+ * <p>
+ * Calls started after the deadline passed fail right away with a {@link SocketTimeoutException},
+ * and calls in flight wait for the daemon no longer than the time left. {@link #cancel()} aborts
+ * the requests in flight, closing their connections, and fails later calls with a
+ * {@link CallCancelledException}. Closing the scope cancels it, so a scope opened for a unit of
+ * work and closed in a finally block leaves no call of that work running behind it:
+ * <pre>
+ * CallScope scope = new CallScope(5, TimeUnit.SECONDS);
+ * try {
+ *     DockerClient scoped = dockerClient.within(scope);
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ * A call is aborted while it waits for a pooled connection as well as while it talks to the
+ * daemon, and no call waits for a connection past the deadline. Reading the body of a response that was
+ * already returned is bounded by the deadline, but only aborted in a scope {@link #forStreams()}.
+ */
+public class CallScope implements Closeable {
+
+    private final boolean bounded;
+    private final long deadlineNanos;
+    private final boolean retaining;
+    private final Set<AbortableHttpRequest> inFlight =
+            Collections.newSetFromMap(new ConcurrentHashMap<AbortableHttpRequest, Boolean>());
+    private volatile boolean cancelled;
+
+    /**
+     * A scope without a deadline, only ending by cancellation.
+     */
+    public CallScope() {
+        this(false);
+    }
+
+    private CallScope(boolean retaining) {
+        this.bounded = false;
+        this.deadlineNanos = 0;
+        this.retaining = retaining;
+    }
+
+    /**
+     * A scope whose deadline is {@code timeout} from now.
+     */
+    public CallScope(long timeout, TimeUnit unit) {
+        Preconditions.checkArgument(timeout >= 0, "timeout must not be negative: %s", timeout);
+        this.bounded = true;
+        this.deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        this.retaining = false;
+    }
+
+    /**
+     * A scope without deadline for calls whose response is read after the call returned, like
+     * streams: their requests stay abortable until the scope is closed.
+     */
+    public static CallScope forStreams() {
+        return new CallScope(true);
+    }
+
+    public boolean hasDeadline() {
+        return bounded;
+    }
+
+    /**
+     * @return milliseconds until the deadline, 0 once it passed, or {@link Long#MAX_VALUE} for a
+     *         scope without deadline
+     */
+    public long getRemainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return number of requests in flight that {@link #cancel()} would abort
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * Abort the calls in flight and fail all later ones.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (AbortableHttpRequest request : inFlight) {
+            request.abort();
+        }
+    }
+
+    @Override
+    public void close() {
+        cancel();
+    }
+
+    /**
+     * @throws IOException if the scope was cancelled or its deadline passed
+     */
+    void check() throws IOException {
+        if (cancelled) {
+            throw new CallCancelledException("Call scope was cancelled");
+        }
+        if (bounded && deadlineNanos - System.nanoTime() <= 0) {
+            throw new SocketTimeoutException("Deadline of call scope passed");
+        }
+    }
+
+    void register(AbortableHttpRequest request) throws IOException {
+        inFlight.add(request);
+        // a cancel racing with the add either sees the request or is seen here
+        if (cancelled) {
+            inFlight.remove(request);
+        }
+        check();
+    }
+
+    boolean isRetaining() {
+        return retaining;
+    }
+
+    void unregister(AbortableHttpRequest request) {
+        inFlight.remove(request);
+    }
+}
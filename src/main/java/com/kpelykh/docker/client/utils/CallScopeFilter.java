@@ -0,0 +1,178 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.methods.AbortableHttpRequest;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.DefaultedHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+
+/**
+ * Subjects the requests of a resource to a {@link CallScope}.
+ * <p>
+ * Jersey does not hand the HttpClient request or its connection to filters, so the filter
+ * publishes the scope of the call to the calling thread, where the HttpClient picks it up twice.
+ * Before a connection is leased, {@link #leaseParams} registers the request with the scope, so
+ * that cancelling it also abandons the wait for a pooled connection, and bounds that wait by the
+ * time left. Once a connection was leased, {@link #INTERCEPTOR} lowers its socket timeout to the
+ * time left. HttpClient resets the timeout before every request, so pooled connections do not
+ * keep it. Both have to be hooked into the HttpClient, the former from
+ * {@code AbstractHttpClient#determineParams}.
+ */
+public class CallScopeFilter extends ClientFilter {
+
+    private static final ThreadLocal<Call> CURRENT = new ThreadLocal<Call>();
+
+    public static final HttpRequestInterceptor INTERCEPTOR = new HttpRequestInterceptor() {
+        @Override
+        public void process(HttpRequest request, HttpContext context) throws IOException {
+            Call call = CURRENT.get();
+            if (call == null) {
+                return;
+            }
+            HttpRequest original = request instanceof RequestWrapper ? ((RequestWrapper) request).getOriginal() : request;
+            if (original instanceof AbortableHttpRequest) {
+                call.attach((AbortableHttpRequest) original);
+            } else {
+                call.scope.check();
+            }
+            HttpConnection connection = (HttpConnection) context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+            if (connection != null && call.scope.hasDeadline()) {
+                int remaining = (int) Math.max(1, Math.min(call.scope.getRemainingMillis(), Integer.MAX_VALUE));
+                int timeout = connection.getSocketTimeout();
+                if (timeout == 0 || remaining < timeout) {
+                    connection.setSocketTimeout(remaining);
+                }
+            }
+        }
+    };
+
+    /**
+     * Register the request of the current call, if any, with its scope before a connection is
+     * leased for it, and bound the wait for the connection by the deadline of the scope.
+     *
+     * @param request the request as passed to the HttpClient
+     * @param params the parameters the request is going to be executed with
+     * @return the parameters to execute the request with instead
+     */
+    public static HttpParams leaseParams(HttpRequest request, HttpParams params) {
+        Call call = CURRENT.get();
+        if (call == null) {
+            return params;
+        }
+        if (request instanceof AbortableHttpRequest) {
+            try {
+                call.attach((AbortableHttpRequest) request);
+            } catch (IOException e) {
+                // cancelled meanwhile: an aborted request fails before it leases a connection,
+                // a passed deadline fails at the lease below
+                if (call.scope.isCancelled()) {
+                    ((AbortableHttpRequest) request).abort();
+                }
+            }
+        }
+        if (!call.scope.hasDeadline()) {
+            return params;
+        }
+        long remaining = Math.max(1, call.scope.getRemainingMillis());
+        long timeout = HttpClientParams.getConnectionManagerTimeout(params);
+        if (timeout != 0 && timeout <= remaining) {
+            return params;
+        }
+        HttpParams bounded = new BasicHttpParams();
+        bounded.setLongParameter(ClientPNames.CONN_MANAGER_TIMEOUT, remaining);
+        return new DefaultedHttpParams(bounded, params);
+    }
+
+    private final CallScope scope;
+
+    public CallScopeFilter(CallScope scope) {
+        Preconditions.checkNotNull(scope, "scope was not specified");
+        this.scope = scope;
+    }
+
+    public CallScope getScope() {
+        return scope;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        try {
+            scope.check();
+        } catch (IOException e) {
+            throw new ClientHandlerException(e);
+        }
+        Call previous = CURRENT.get();
+        Call call = new Call(scope);
+        CURRENT.set(call);
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        try {
+            return getNext().handle(request);
+        } catch (ClientHandlerException e) {
+            if (scope.isCancelled() && !interrupted) {
+                // HttpClient interrupts the thread when the wait for a connection is aborted
+                Thread.interrupted();
+            }
+            // an aborted request fails with whatever the closed socket threw
+            if (scope.isCancelled() && !(e.getCause() instanceof CallCancelledException)) {
+                CallCancelledException cancelled = new CallCancelledException("Call scope was cancelled");
+                cancelled.initCause(e.getCause());
+                throw new ClientHandlerException(cancelled);
+            }
+            throw e;
+        } finally {
+            call.release();
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * One call, which may send several requests when retried.
+     */
+    private static class Call {
+
+        final CallScope scope;
+        private AbortableHttpRequest request;
+
+        Call(CallScope scope) {
+            this.scope = scope;
+        }
+
+        void attach(AbortableHttpRequest request) throws IOException {
+            if (request == this.request) {
+                scope.check();
+                return;
+            }
+            // the request of a failed attempt has no response to abort any more
+            if (this.request != null) {
+                scope.unregister(this.request);
+            }
+            this.request = request;
+            scope.register(request);
+        }
+
+        void release() {
+            if (request != null && !scope.isRetaining()) {
+                scope.unregister(request);
+                request = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.kpelykh.docker.client.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies large streams, such as image exports, into a channel.
+ * <p>
+ * Data is read off the stream in large chunks into a reused heap array, which is written straight to
+ * the channel. Compression uses gzip at {@link Deflater#BEST_SPEED}, which keeps up with a local
+ * daemon far better than the default level for a modest loss in ratio. Instances reuse their array
+ * and are therefore not thread safe.
+ */
+public class ChannelCopier {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private final byte[] chunk;
+
+    public ChannelCopier() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public ChannelCopier(int bufferSize) {
+        this.chunk = new byte[bufferSize];
+    }
+
+    /**
+     * Copy the stream into the channel. Neither is closed.
+     *
+     * @param listener notified after every chunk with the number of bytes read so far, may be null
+     * @return the number of bytes read from the stream
+     */
+    public long copy(InputStream in, WritableByteChannel out, ProgressListener listener) throws IOException {
+        long total = 0;
+        int n;
+        while ((n = in.read(chunk)) >= 0) {
+            write(out, chunk, 0, n);
+            total += n;
+            if (listener != null) {
+                listener.onProgress(total, -1);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Copy the stream into the channel, gzip compressing it on the way. Neither is closed, but the
+     * gzip trailer is written.
+     *
+     * @param listener notified after every chunk with the number of bytes read so far, may be null
+     * @return the number of uncompressed bytes read from the stream
+     */
+    public long copyCompressed(InputStream in, final WritableByteChannel out, ProgressListener listener) throws IOException {
+        OutputStream channelOut = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ChannelCopier.write(out, b, off, len);
+            }
+        };
+
+        FastGzipOutputStream gzip = new FastGzipOutputStream(channelOut, chunk.length);
+        try {
+            long total = 0;
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                gzip.write(chunk, 0, n);
+                total += n;
+                if (listener != null) {
+                    listener.onProgress(total, -1);
+                }
+            }
+            gzip.finish();
+            return total;
+        } finally {
+            gzip.release();
+        }
+    }
+
+    private static void write(WritableByteChannel out, byte[] b, int off, int len) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+
+        FastGzipOutputStream(OutputStream out, int size) throws IOException {
+            super(out, size);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+        /**
+         * Free the native deflater without closing the underlying stream.
+         */
+        void release() {
+            def.end();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker of one daemon endpoint, following a {@link CircuitBreakerPolicy}.
+ * <p>
+ * While closed, the outcomes of the last calls are kept in a ring buffer. While open, calls are
+ * rejected without touching the network and an optional probe (typically a ping) runs on a
+ * scheduler shared by all breakers; a successful probe half-opens the circuit early. State changes
+ * are published to {@link Listener}s, outside of the breaker's lock. The lock is a
+ * {@link ReentrantLock} rather than a monitor, so that callers blocked on it do not pin a carrier
+ * thread when the client runs on virtual threads.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final ScheduledExecutorService PROBES =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("docker-circuit-probe"));
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public interface Listener {
+        void onStateChange(CircuitBreaker breaker, State from, State to);
+    }
+
+    private final String endpoint;
+    private final CircuitBreakerPolicy policy;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // all guarded by lock
+    private final boolean[] window;
+    private int windowPosition;
+    private int windowCalls;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int trialsInFlight;
+    private int trialSuccesses;
+    private ScheduledFuture<?> probing;
+
+    private volatile Callable<Boolean> probe;
+
+    public CircuitBreaker(String endpoint, CircuitBreakerPolicy policy) {
+        Preconditions.checkNotNull(policy, "policy was not specified");
+        this.endpoint = endpoint;
+        this.policy = policy;
+        this.window = new boolean[policy.getWindowSize()];
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @param probe checks whether the endpoint is back while the circuit is open, returning
+     *              {@code true} if it is; it runs on a thread shared by all breakers, so it must
+     *              give up within the probe interval
+     */
+    public void setProbe(Callable<Boolean> probe) {
+        this.probe = probe;
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return failure rate of the calls in the window
+     */
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return windowCalls == 0 ? 0 : (double) windowFailures / windowCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of calls rejected while the circuit was open
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return whether a call may go through; every permitted call must be followed by
+     *         {@link #onSuccess()} or {@link #onFailure()}
+     */
+    public boolean tryAcquire() {
+        State from;
+        State to;
+        boolean permitted;
+        lock.lock();
+        try {
+            from = state;
+            if (state == State.OPEN
+                    && System.nanoTime() - openedAtNanos >= TimeUnit.MILLISECONDS.toNanos(policy.getOpenMillis())) {
+                halfOpen();
+            }
+            if (state == State.OPEN) {
+                permitted = false;
+            } else if (state == State.HALF_OPEN) {
+                permitted = trialsInFlight + trialSuccesses < policy.getHalfOpenTrials();
+                if (permitted) {
+                    trialsInFlight++;
+                }
+            } else {
+                permitted = true;
+            }
+            to = state;
+        } finally {
+            lock.unlock();
+        }
+        if (!permitted) {
+            rejected.incrementAndGet();
+        }
+        fire(from, to);
+        return permitted;
+    }
+
+    public void onSuccess() {
+        State from;
+        State to;
+        lock.lock();
+        try {
+            from = state;
+            if (state == State.HALF_OPEN) {
+                trialsInFlight = Math.max(0, trialsInFlight - 1);
+                if (++trialSuccesses >= policy.getHalfOpenTrials()) {
+                    close();
+                }
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+            to = state;
+        } finally {
+            lock.unlock();
+        }
+        fire(from, to);
+    }
+
+    public void onFailure() {
+        State from;
+        State to;
+        lock.lock();
+        try {
+            from = state;
+            if (state == State.HALF_OPEN) {
+                open();
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (windowCalls >= policy.getMinimumCalls()
+                        && windowFailures >= policy.getFailureRateThreshold() * windowCalls) {
+                    open();
+                }
+            }
+            to = state;
+        } finally {
+            lock.unlock();
+        }
+        fire(from, to);
+    }
+
+    private void record(boolean failure) {
+        if (windowCalls == window.length) {
+            if (window[windowPosition]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowPosition] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowPosition = (windowPosition + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        trialsInFlight = 0;
+        trialSuccesses = 0;
+        Callable<Boolean> probe = this.probe;
+        if (probe != null && probing == null && policy.getProbeIntervalMillis() > 0) {
+            probing = PROBES.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    probe();
+                }
+            }, policy.getProbeIntervalMillis(), policy.getProbeIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void halfOpen() {
+        state = State.HALF_OPEN;
+        trialsInFlight = 0;
+        trialSuccesses = 0;
+        stopProbing();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowCalls = 0;
+        windowFailures = 0;
+        windowPosition = 0;
+        stopProbing();
+    }
+
+    private void stopProbing() {
+        if (probing != null) {
+            probing.cancel(false);
+            probing = null;
+        }
+    }
+
+    private void probe() {
+        boolean up;
+        try {
+            up = Boolean.TRUE.equals(probe.call());
+        } catch (Exception e) {
+            up = false;
+        }
+        if (!up) {
+            return;
+        }
+        State from;
+        lock.lock();
+        try {
+            from = state;
+            if (state != State.OPEN) {
+                return;
+            }
+            halfOpen();
+        } finally {
+            lock.unlock();
+        }
+        fire(from, State.HALF_OPEN);
+    }
+
+    private void fire(State from, State to) {
+        if (from == to) {
+            return;
+        }
+        LOGGER.info("Circuit of {} went from {} to {}", endpoint, from, to);
+        for (Listener listener : listeners) {
+            try {
+                listener.onStateChange(this, from, to);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Circuit breaker listener failed", e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{" +
+                "endpoint='" + endpoint + '\'' +
+                ", state=" + getState() +
+                ", failureRate=" + getFailureRate() +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * Guards the requests of a client with a {@link CircuitBreaker}.
+ * <p>
+ * Connection failures, timeouts and 500, 502, 503 and 504 responses count as failures. While the
+ * circuit is open requests fail right away with a {@link CircuitOpenException} wrapped in a
+ * {@link ClientHandlerException}. Requests with the {@link #PROBE} property set bypass the breaker.
+ */
+public class CircuitBreakerFilter extends ClientFilter {
+
+    /**
+     * Request property marking health probes, which must get through an open circuit.
+     */
+    public static final String PROBE = CircuitBreakerFilter.class.getName() + ".probe";
+
+    private final CircuitBreaker breaker;
+
+    public CircuitBreakerFilter(CircuitBreaker breaker) {
+        Preconditions.checkNotNull(breaker, "breaker was not specified");
+        this.breaker = breaker;
+    }
+
+    public CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        if (Boolean.TRUE.equals(request.getProperties().get(PROBE))) {
+            return getNext().handle(request);
+        }
+        if (!breaker.tryAcquire()) {
+            throw new ClientHandlerException(new CircuitOpenException(String.format("Circuit of %s is %s",
+                    breaker.getEndpoint(), breaker.getState())));
+        }
+
+        ClientResponse response;
+        try {
+            response = getNext().handle(request);
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+        int status = response.getStatus();
+        if (status == 500 || status == 502 || status == 503 || status == 504) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+        return response;
+    }
+}
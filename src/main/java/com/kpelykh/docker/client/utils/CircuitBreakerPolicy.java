@@ -0,0 +1,98 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings of a {@link CircuitBreaker}.
+ * <p>
+ * The circuit opens once at least {@code minimumCalls} of the last {@code windowSize} calls were
+ * made and {@code failureRateThreshold} of them failed. It stays open for {@code openMillis}, or
+ * until a ping probe, sent every {@code probeIntervalMillis}, succeeds. It then half-opens and lets
+ * {@code halfOpenTrials} calls through; if all of them succeed the circuit closes, otherwise it
+ * opens again.
+ */
+public class CircuitBreakerPolicy {
+
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private double failureRateThreshold = 0.5;
+    private long openMillis = 30000;
+    private long probeIntervalMillis = 1000;
+    private int halfOpenTrials = 3;
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public CircuitBreakerPolicy setWindowSize(int windowSize) {
+        Preconditions.checkArgument(windowSize > 0, "windowSize must be positive: %s", windowSize);
+        this.windowSize = windowSize;
+        return this;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public CircuitBreakerPolicy setMinimumCalls(int minimumCalls) {
+        Preconditions.checkArgument(minimumCalls > 0, "minimumCalls must be positive: %s", minimumCalls);
+        this.minimumCalls = minimumCalls;
+        return this;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public CircuitBreakerPolicy setFailureRateThreshold(double failureRateThreshold) {
+        Preconditions.checkArgument(failureRateThreshold > 0 && failureRateThreshold <= 1,
+                "failureRateThreshold must be in (0, 1]: %s", failureRateThreshold);
+        this.failureRateThreshold = failureRateThreshold;
+        return this;
+    }
+
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    public CircuitBreakerPolicy setOpenMillis(long openMillis) {
+        Preconditions.checkArgument(openMillis >= 0, "openMillis must not be negative: %s", openMillis);
+        this.openMillis = openMillis;
+        return this;
+    }
+
+    public long getProbeIntervalMillis() {
+        return probeIntervalMillis;
+    }
+
+    /**
+     * @param probeIntervalMillis interval between ping probes while open, 0 to not probe
+     */
+    public CircuitBreakerPolicy setProbeIntervalMillis(long probeIntervalMillis) {
+        Preconditions.checkArgument(probeIntervalMillis >= 0, "probeIntervalMillis must not be negative: %s", probeIntervalMillis);
+        this.probeIntervalMillis = probeIntervalMillis;
+        return this;
+    }
+
+    public int getHalfOpenTrials() {
+        return halfOpenTrials;
+    }
+
+    public CircuitBreakerPolicy setHalfOpenTrials(int halfOpenTrials) {
+        Preconditions.checkArgument(halfOpenTrials > 0, "halfOpenTrials must be positive: %s", halfOpenTrials);
+        this.halfOpenTrials = halfOpenTrials;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreakerPolicy{" +
+                "windowSize=" + windowSize +
+                ", minimumCalls=" + minimumCalls +
+                ", failureRateThreshold=" + failureRateThreshold +
+                ", openMillis=" + openMillis +
+                ", probeIntervalMillis=" + probeIntervalMillis +
+                ", halfOpenTrials=" + halfOpenTrials +
+                '}';
+    }
+}
@@ -0,0 +1,15 @@
+package com.kpelykh.docker.client.utils;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request to an endpoint whose {@link CircuitBreaker} is open. Like
+ * other connection failures it reaches callers wrapped in a
+ * {@link com.sun.jersey.api.client.ClientHandlerException}.
+ */
+public class CircuitOpenException extends IOException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
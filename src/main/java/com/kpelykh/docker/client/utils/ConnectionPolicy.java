@@ -0,0 +1,134 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Transport settings of a {@link com.kpelykh.docker.client.DockerClient}: the size of its
+ * connection pool and the timeouts of its sockets.
+ * <p>
+ * The defaults keep the behaviour of the plain constructors: a pool of up to 1000 connections, a
+ * connect timeout of ten seconds and no read timeout, since waits and attaches may legitimately
+ * block for as long as a container runs. Timeouts of individual calls are better expressed with a
+ * {@link CallScope}. {@link #forHighConcurrency()} suits many threads issuing blocking calls at once.
+ */
+public class ConnectionPolicy {
+
+    private int maxConnections = 1000;
+    private int maxConnectionsPerRoute = 1000;
+    private int connectTimeoutMillis = 10000;
+    private int readTimeoutMillis;
+    private long leaseTimeoutMillis;
+    private long idleTimeoutMillis;
+    private boolean staleConnectionCheck = true;
+
+    /**
+     * Thousands of threads blocked in calls at once: callers beyond the pool size queue for a
+     * connection for up to 30 seconds instead of forever, and rather than checking every pooled
+     * connection before reuse, which costs a blocking read per request, connections idle for 30
+     * seconds are closed in the background.
+     */
+    public static ConnectionPolicy forHighConcurrency() {
+        return new ConnectionPolicy()
+                .setLeaseTimeoutMillis(30000)
+                .setIdleTimeoutMillis(30000)
+                .setStaleConnectionCheck(false);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public ConnectionPolicy setMaxConnections(int maxConnections) {
+        Preconditions.checkArgument(maxConnections > 0, "maxConnections must be positive: %s", maxConnections);
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public ConnectionPolicy setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        Preconditions.checkArgument(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive: %s", maxConnectionsPerRoute);
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * @param connectTimeoutMillis timeout of establishing a connection, 0 for none
+     */
+    public ConnectionPolicy setConnectTimeoutMillis(int connectTimeoutMillis) {
+        Preconditions.checkArgument(connectTimeoutMillis >= 0, "connectTimeoutMillis must not be negative: %s", connectTimeoutMillis);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * @param readTimeoutMillis longest wait for data from the daemon, 0 for none
+     */
+    public ConnectionPolicy setReadTimeoutMillis(int readTimeoutMillis) {
+        Preconditions.checkArgument(readTimeoutMillis >= 0, "readTimeoutMillis must not be negative: %s", readTimeoutMillis);
+        this.readTimeoutMillis = readTimeoutMillis;
+        return this;
+    }
+
+    public long getLeaseTimeoutMillis() {
+        return leaseTimeoutMillis;
+    }
+
+    /**
+     * @param leaseTimeoutMillis longest wait for a connection of the exhausted pool, 0 for none
+     */
+    public ConnectionPolicy setLeaseTimeoutMillis(long leaseTimeoutMillis) {
+        Preconditions.checkArgument(leaseTimeoutMillis >= 0, "leaseTimeoutMillis must not be negative: %s", leaseTimeoutMillis);
+        this.leaseTimeoutMillis = leaseTimeoutMillis;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @param idleTimeoutMillis pooled connections idle for this long are closed, 0 to keep them
+     */
+    public ConnectionPolicy setIdleTimeoutMillis(long idleTimeoutMillis) {
+        Preconditions.checkArgument(idleTimeoutMillis >= 0, "idleTimeoutMillis must not be negative: %s", idleTimeoutMillis);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public boolean isStaleConnectionCheck() {
+        return staleConnectionCheck;
+    }
+
+    /**
+     * @param staleConnectionCheck whether to check that a pooled connection is still open before
+     *                             reusing it
+     */
+    public ConnectionPolicy setStaleConnectionCheck(boolean staleConnectionCheck) {
+        this.staleConnectionCheck = staleConnectionCheck;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPolicy{" +
+                "maxConnections=" + maxConnections +
+                ", maxConnectionsPerRoute=" + maxConnectionsPerRoute +
+                ", connectTimeoutMillis=" + connectTimeoutMillis +
+                ", readTimeoutMillis=" + readTimeoutMillis +
+                ", leaseTimeoutMillis=" + leaseTimeoutMillis +
+                ", idleTimeoutMillis=" + idleTimeoutMillis +
+                ", staleConnectionCheck=" + staleConnectionCheck +
+                '}';
+    }
+}
@@ -0,0 +1,135 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.DefaultHttpClientConnection;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.protocol.HTTP;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A single HTTP/1.1 connection to the daemon over a plain {@link SocketChannel}, for calls that need
+ * the socket itself rather than going through Jersey, e.g. to send a file with
+ * {@link FileChannel#transferTo} so that its content never enters the JVM heap.
+ * <p>
+ * Only {@code http} endpoints are supported. Instances are not thread safe.
+ */
+public class DirectConnection implements Closeable {
+
+    private final String host;
+    private final SocketChannel channel;
+    private final DefaultHttpClientConnection connection = new DefaultHttpClientConnection();
+
+    /**
+     * @param readTimeoutMillis socket read timeout, 0 to wait forever
+     */
+    public DirectConnection(URI serverUrl, int connectTimeoutMillis, int readTimeoutMillis) throws IOException {
+        Preconditions.checkArgument("http".equals(serverUrl.getScheme()), "Only http endpoints are supported: %s", serverUrl);
+
+        int port = serverUrl.getPort() == -1 ? 80 : serverUrl.getPort();
+        this.host = serverUrl.getHost() + ":" + port;
+        this.channel = SocketChannel.open();
+        try {
+            Socket socket = channel.socket();
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(readTimeoutMillis);
+            socket.connect(new InetSocketAddress(serverUrl.getHost(), port), connectTimeoutMillis);
+            connection.bind(socket, new BasicHttpParams());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Send the request line and headers, adding the {@code Host} header. Any body has to be written
+     * by the caller afterwards.
+     */
+    public void sendHeaders(HttpRequest request) throws IOException {
+        request.setHeader(HTTP.TARGET_HOST, host);
+        try {
+            connection.sendRequestHeader(request);
+        } catch (HttpException e) {
+            throw new IOException(e);
+        }
+        connection.flush();
+    }
+
+    /**
+     * Write {@code count} bytes of the file starting at {@code position} to the connection, letting
+     * the kernel copy them straight from the page cache to the socket where supported.
+     *
+     * @throws EOFException if the file ends before {@code count} bytes were sent
+     */
+    public void transferFrom(FileChannel file, long position, long count) throws IOException {
+        long sent = 0;
+        while (sent < count) {
+            long transferred = file.transferTo(position + sent, count - sent, channel);
+            if (transferred == 0 && position + sent >= file.size()) {
+                throw new EOFException(String.format("File ended after %d of %d bytes", sent, count));
+            }
+            sent += transferred;
+        }
+    }
+
+    /**
+     * Read the status line and headers of the response and attach its body as entity.
+     */
+    public HttpResponse receiveResponse() throws IOException {
+        try {
+            HttpResponse response = connection.receiveResponseHeader();
+            connection.receiveResponseEntity(response);
+            return response;
+        } catch (HttpException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the stream writing straight to the socket, for a request body or, once the daemon
+     *         took over the connection, raw input to a process
+     */
+    public OutputStream getOutputStream() throws IOException {
+        return channel.socket().getOutputStream();
+    }
+
+    /**
+     * Signal the end of the input while the response can still be read.
+     */
+    public void shutdownOutput() throws IOException {
+        channel.socket().shutdownOutput();
+    }
+
+    public void setReadTimeout(int readTimeoutMillis) {
+        connection.setSocketTimeout(readTimeoutMillis);
+    }
+
+    public boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            connection.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DirectConnection{" + host + '}';
+    }
+}
@@ -0,0 +1,176 @@
+package com.kpelykh.docker.client.utils;
+
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.model.StreamType;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Demultiplexes the output of attach and logs calls.
+ * <p>
+ * Without a tty the daemon prefixes every chunk with an 8 byte header: the stream type, three
+ * zero bytes and the big endian payload length. With a tty the output is passed through unframed;
+ * this is detected from the first header and the rest is then returned as {@link StreamType#RAW}
+ * frames of whatever size the socket delivers.
+ */
+public class FrameReader implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int RAW_CHUNK_SIZE = 8192;
+
+    private final InputStream input;
+    private final byte[] header = new byte[HEADER_SIZE];
+    private byte[] buffer;
+
+    private Boolean raw;
+
+    public FrameReader(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * @return the next frame, or null at the end of the stream
+     */
+    public Frame readFrame() throws IOException {
+        if (raw == null) {
+            int headerSize = readFully(header, 0, HEADER_SIZE);
+            if (headerSize == 0) {
+                return null;
+            }
+            raw = headerSize < HEADER_SIZE || !isHeader(header);
+            if (raw) {
+                return new Frame(StreamType.RAW, Arrays.copyOf(header, headerSize));
+            }
+            return readPayload();
+        }
+
+        if (raw) {
+            byte[] chunk = new byte[RAW_CHUNK_SIZE];
+            int n = input.read(chunk);
+            if (n < 0) {
+                return null;
+            }
+            return new Frame(StreamType.RAW, n == chunk.length ? chunk : Arrays.copyOf(chunk, n));
+        }
+
+        int headerSize = readFully(header, 0, HEADER_SIZE);
+        if (headerSize == 0) {
+            return null;
+        }
+        if (headerSize < HEADER_SIZE) {
+            throw new EOFException("Stream ended within a frame header");
+        }
+        return readPayload();
+    }
+
+    /**
+     * Copy the rest of the stream to the two outputs, stdout and {@link StreamType#RAW} frames to
+     * {@code stdout} and stderr frames to {@code stderr}. Unlike {@link #readFrame()} no frame is
+     * allocated: payloads pass through one buffer reused for the lifetime of the reader.
+     *
+     * @return the number of payload bytes copied
+     */
+    public long copyTo(OutputStream stdout, OutputStream stderr) throws IOException {
+        if (buffer == null) {
+            buffer = new byte[RAW_CHUNK_SIZE];
+        }
+        long copied = 0;
+        if (raw == null) {
+            int headerSize = readFully(header, 0, HEADER_SIZE);
+            if (headerSize == 0) {
+                return 0;
+            }
+            raw = headerSize < HEADER_SIZE || !isHeader(header);
+            if (raw) {
+                stdout.write(header, 0, headerSize);
+                copied += headerSize;
+            } else {
+                copied += copyPayload(stdout, stderr);
+            }
+        }
+
+        if (raw) {
+            int n;
+            while ((n = input.read(buffer)) >= 0) {
+                stdout.write(buffer, 0, n);
+                copied += n;
+            }
+            return copied;
+        }
+
+        int headerSize;
+        while ((headerSize = readFully(header, 0, HEADER_SIZE)) > 0) {
+            if (headerSize < HEADER_SIZE) {
+                throw new EOFException("Stream ended within a frame header");
+            }
+            copied += copyPayload(stdout, stderr);
+        }
+        return copied;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    /**
+     * @return whether the first four bytes are those of a frame header
+     */
+    public static boolean isHeader(byte[] header) {
+        return StreamType.forHeader(header[0]) != null && header[1] == 0 && header[2] == 0 && header[3] == 0;
+    }
+
+    /**
+     * @return payload size encoded in a frame header
+     */
+    public static int payloadSize(byte[] header) {
+        return ((header[4] & 0xff) << 24) | ((header[5] & 0xff) << 16) | ((header[6] & 0xff) << 8) | (header[7] & 0xff);
+    }
+
+    private Frame readPayload() throws IOException {
+        StreamType streamType = StreamType.forHeader(header[0]);
+        int size = payloadSize(header);
+        if (size < 0) {
+            throw new IOException("Invalid frame size " + (size & 0xffffffffL));
+        }
+        byte[] payload = new byte[size];
+        if (readFully(payload, 0, size) < size) {
+            throw new EOFException("Stream ended within a frame payload");
+        }
+        return new Frame(streamType, payload);
+    }
+
+    private int copyPayload(OutputStream stdout, OutputStream stderr) throws IOException {
+        int size = payloadSize(header);
+        if (size < 0) {
+            throw new IOException("Invalid frame size " + (size & 0xffffffffL));
+        }
+        OutputStream target = StreamType.forHeader(header[0]) == StreamType.STDERR ? stderr : stdout;
+        for (int remaining = size; remaining > 0; ) {
+            int n = input.read(buffer, 0, Math.min(remaining, buffer.length));
+            if (n < 0) {
+                throw new EOFException("Stream ended within a frame payload");
+            }
+            target.write(buffer, 0, n);
+            remaining -= n;
+        }
+        return size;
+    }
+
+    private int readFully(byte[] buffer, int offset, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int n = input.read(buffer, offset + read, length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+}
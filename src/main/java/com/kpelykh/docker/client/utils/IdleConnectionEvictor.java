@@ -0,0 +1,59 @@
+package com.kpelykh.docker.client.utils;
+
+import org.apache.http.conn.ClientConnectionManager;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes the idle connections of connection pools on a single thread shared by all of them. Pools
+ * are only weakly referenced, so a client that is no longer used does not have to be closed for
+ * its pool to be collected.
+ */
+public final class IdleConnectionEvictor {
+
+    private static final ScheduledExecutorService EVICTOR =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("docker-idle-evictor"));
+
+    private IdleConnectionEvictor() {
+    }
+
+    /**
+     * Close the connections of the pool that were idle for {@code idleMillis}, checking every half
+     * of that time.
+     */
+    public static void watch(ClientConnectionManager connectionManager, long idleMillis) {
+        Eviction eviction = new Eviction(connectionManager, idleMillis);
+        long period = Math.max(idleMillis / 2, 1);
+        eviction.task = EVICTOR.scheduleWithFixedDelay(eviction, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private static class Eviction implements Runnable {
+
+        private final WeakReference<ClientConnectionManager> connectionManager;
+        private final long idleMillis;
+        private volatile ScheduledFuture<?> task;
+
+        Eviction(ClientConnectionManager connectionManager, long idleMillis) {
+            this.connectionManager = new WeakReference<ClientConnectionManager>(connectionManager);
+            this.idleMillis = idleMillis;
+        }
+
+        @Override
+        public void run() {
+            ClientConnectionManager connectionManager = this.connectionManager.get();
+            if (connectionManager == null) {
+                // if the task is not assigned yet, a later run cancels it
+                if (task != null) {
+                    task.cancel(false);
+                }
+                return;
+            }
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.kpelykh.docker.client.utils;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sun.jersey.api.client.ClientResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Binds the elements of a JSON array response one at a time while it is read, so that a list of
+ * tens of thousands of containers never has to be held in memory at once.
+ * <p>
+ * The response is closed once the last element was read, or by {@link #close()} when iterating
+ * stops early. Binding errors surface as unchecked exceptions from {@link #hasNext()}.
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+    private final ClientResponse response;
+    private final MappingIterator<T> elements;
+
+    public JsonArrayIterator(ObjectReader reader, ClientResponse response) throws IOException {
+        this.response = response;
+        try {
+            this.elements = reader.readValues(response.getEntityInputStream());
+        } catch (IOException e) {
+            response.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        boolean hasNext = false;
+        try {
+            hasNext = elements.hasNext();
+            return hasNext;
+        } finally {
+            if (!hasNext) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public T next() {
+        return elements.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        response.close();
+    }
+}
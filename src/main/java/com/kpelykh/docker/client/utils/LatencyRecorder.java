@@ -0,0 +1,98 @@
+package com.kpelykh.docker.client.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free latency histogram with power-of-two microsecond buckets.
+ * <p>
+ * Recording is a handful of atomic increments, so it can sit on hot paths. Percentiles are
+ * reported as the upper bound of the bucket they fall into, i.e. they are accurate within a
+ * factor of two, which is plenty to spot regressions and outliers.
+ */
+public class LatencyRecorder {
+
+    // bucket i holds samples in [2^(i-1), 2^i) microseconds, the last one everything above
+    private static final int BUCKETS = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long duration, TimeUnit unit) {
+        recordNanos(unit.toNanos(duration));
+    }
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+
+        long max;
+        while (nanos > (max = maxNanos.get())) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMean(TimeUnit unit) {
+        long n = count.get();
+        return n == 0 ? 0 : (double) totalNanos.get() / n / unit.toNanos(1);
+    }
+
+    public long getMax(TimeUnit unit) {
+        return unit.convert(maxNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket the given percentile falls into
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(unit.convert(1L << i, TimeUnit.MICROSECONDS), getMax(unit));
+            }
+        }
+        return getMax(unit);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyRecorder{" +
+                "count=" + getCount() +
+                ", meanMs=" + String.format("%.3f", getMean(TimeUnit.MILLISECONDS)) +
+                ", p50Ms=" + getPercentile(50, TimeUnit.MILLISECONDS) +
+                ", p99Ms=" + getPercentile(99, TimeUnit.MILLISECONDS) +
+                ", maxMs=" + getMax(TimeUnit.MILLISECONDS) +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package com.kpelykh.docker.client.utils;
+
+/**
+ * Callback for long running transfers.
+ */
+public interface ProgressListener {
+
+    /**
+     * @param transferred bytes transferred so far
+     * @param total       total number of bytes, or -1 if unknown
+     */
+    void onProgress(long transferred, long total);
+}
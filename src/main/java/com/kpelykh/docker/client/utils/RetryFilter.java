@@ -0,0 +1,221 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Retries idempotent requests that failed transiently, following a {@link RetryPolicy}.
+ * <p>
+ * A request is idempotent if repeating it has no further effect: all reads, stop, kill and wait,
+ * and removing containers and images. Create, start, commit, build, push, import and the like are
+ * never retried, and neither are requests streaming their entity from a file or stream.
+ * <p>
+ * Transient failures are connection errors (refused, reset, no response) and 500, 502, 503 and
+ * 504 responses. Read timeouts are not retried: a daemon that is too slow to answer within the
+ * timeout will hardly answer faster the second time.
+ */
+public class RetryFilter extends ClientFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryFilter.class);
+
+    private static final Pattern VERSION_PREFIX = Pattern.compile("^/v[0-9.]+");
+    private static final Pattern IDEMPOTENT_POST = Pattern.compile("^/containers/[^/]+/(stop|kill|wait)$");
+    private static final Pattern IDEMPOTENT_DELETE = Pattern.compile("^/(containers/[^/]+|images/.+)$");
+
+    private final RetryPolicy policy;
+    private final Random random = new Random();
+
+    // retry budget in thousandths of a retry; updated lock-free so that callers never block on it
+    private final AtomicLong budget;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong budgetDenied = new AtomicLong();
+
+    public RetryFilter(RetryPolicy policy) {
+        Preconditions.checkNotNull(policy, "policy was not specified");
+        this.policy = policy;
+        this.budget = new AtomicLong(policy.getBudgetBurst() * 1000L);
+    }
+
+    public RetryPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return whether the request may be repeated without further effect
+     */
+    public static boolean isIdempotent(String method, String path) {
+        path = VERSION_PREFIX.matcher(path).replaceFirst("");
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return true;
+        } else if ("POST".equals(method)) {
+            return IDEMPOTENT_POST.matcher(path).matches();
+        } else if ("DELETE".equals(method)) {
+            return IDEMPOTENT_DELETE.matcher(path).matches();
+        }
+        return false;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) throws ClientHandlerException {
+        requests.incrementAndGet();
+        deposit();
+
+        Object entity = request.getEntity();
+        if (policy.getMaxAttempts() == 1
+                || entity instanceof InputStream || entity instanceof File
+                || !isIdempotent(request.getMethod(), request.getURI().getPath())) {
+            return getNext().handle(request);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            boolean last = attempt == policy.getMaxAttempts();
+            ClientResponse response;
+            try {
+                response = getNext().handle(request);
+            } catch (ClientHandlerException e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                if (last) {
+                    exhausted.incrementAndGet();
+                    throw e;
+                }
+                if (!retry(request, attempt, e.getCause().toString())) {
+                    throw e;
+                }
+                continue;
+            }
+            if (!isTransient(response.getStatus())) {
+                if (attempt > 1) {
+                    recovered.incrementAndGet();
+                }
+                return response;
+            }
+            if (last) {
+                exhausted.incrementAndGet();
+                return response;
+            }
+            if (!retry(request, attempt, "status " + response.getStatus())) {
+                return response;
+            }
+            response.close();
+        }
+    }
+
+    private boolean retry(ClientRequest request, int attempt, String reason) {
+        if (!withdraw()) {
+            budgetDenied.incrementAndGet();
+            LOGGER.debug("Not retrying {} {} after {}: retry budget exhausted", request.getMethod(), request.getURI(), reason);
+            return false;
+        }
+        long delay = (long) (random.nextDouble() * policy.delayBound(attempt));
+        LOGGER.debug("Retrying {} {} in {} ms after {}", request.getMethod(), request.getURI(), delay, reason);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        retries.incrementAndGet();
+        return true;
+    }
+
+    private static boolean isTransient(ClientHandlerException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof SocketTimeoutException) {
+            return false;
+        }
+        // ConnectException and resets are SocketExceptions, NoHttpResponseException comes from HttpClient
+        return cause instanceof SocketException
+                || (cause != null && cause.getClass().getName().equals("org.apache.http.NoHttpResponseException"));
+    }
+
+    private static boolean isTransient(int status) {
+        return status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    private void deposit() {
+        long max = policy.getBudgetBurst() * 1000L;
+        long current;
+        do {
+            current = budget.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(current + (long) (policy.getBudgetRatio() * 1000), max)));
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < 1000) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - 1000));
+        return true;
+    }
+
+    /**
+     * @return number of requests that went through this filter
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of retries made
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return number of requests that succeeded after at least one retry
+     */
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    /**
+     * @return number of requests that still failed after all their attempts
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * @return number of retries skipped because the retry budget was used up
+     */
+    public long getBudgetDenied() {
+        return budgetDenied.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryFilter{" +
+                "requests=" + requests +
+                ", retries=" + retries +
+                ", recovered=" + recovered +
+                ", exhausted=" + exhausted +
+                ", budgetDenied=" + budgetDenied +
+                '}';
+    }
+}
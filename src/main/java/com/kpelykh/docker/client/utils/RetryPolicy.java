@@ -0,0 +1,99 @@
+package com.kpelykh.docker.client.utils;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Settings of a {@link RetryFilter}.
+ * <p>
+ * Delays grow exponentially from {@code baseDelayMillis} up to {@code maxDelayMillis} and are fully
+ * jittered, i.e. each one is drawn uniformly from zero up to the exponential bound, so clients
+ * that failed together do not retry together. The retry budget caps retries at
+ * {@code budgetRatio} of all requests (plus a burst of {@code budgetBurst}), so a daemon that is
+ * down is not hammered with a multiple of the normal load.
+ */
+public class RetryPolicy {
+
+    private int maxAttempts = 3;
+    private long baseDelayMillis = 50;
+    private long maxDelayMillis = 2000;
+    private double budgetRatio = 0.1;
+    private int budgetBurst = 10;
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts attempts per request including the first one
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        Preconditions.checkArgument(maxAttempts > 0, "maxAttempts must be positive: %s", maxAttempts);
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public RetryPolicy setBaseDelayMillis(long baseDelayMillis) {
+        Preconditions.checkArgument(baseDelayMillis >= 0, "baseDelayMillis must not be negative: %s", baseDelayMillis);
+        this.baseDelayMillis = baseDelayMillis;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public RetryPolicy setMaxDelayMillis(long maxDelayMillis) {
+        Preconditions.checkArgument(maxDelayMillis >= 0, "maxDelayMillis must not be negative: %s", maxDelayMillis);
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * @param budgetRatio retries allowed per request on average, e.g. 0.1 for one in ten
+     */
+    public RetryPolicy setBudgetRatio(double budgetRatio) {
+        Preconditions.checkArgument(budgetRatio >= 0, "budgetRatio must not be negative: %s", budgetRatio);
+        this.budgetRatio = budgetRatio;
+        return this;
+    }
+
+    public int getBudgetBurst() {
+        return budgetBurst;
+    }
+
+    /**
+     * @param budgetBurst retries allowed in a row before the ratio kicks in
+     */
+    public RetryPolicy setBudgetBurst(int budgetBurst) {
+        Preconditions.checkArgument(budgetBurst >= 0, "budgetBurst must not be negative: %s", budgetBurst);
+        this.budgetBurst = budgetBurst;
+        return this;
+    }
+
+    /**
+     * @return the upper bound of the delay before the given retry, starting at 1
+     */
+    long delayBound(int retry) {
+        long bound = baseDelayMillis << Math.min(retry - 1, 30);
+        return bound < 0 || bound > maxDelayMillis ? maxDelayMillis : bound;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{" +
+                "maxAttempts=" + maxAttempts +
+                ", baseDelayMillis=" + baseDelayMillis +
+                ", maxDelayMillis=" + maxDelayMillis +
+                ", budgetRatio=" + budgetRatio +
+                ", budgetBurst=" + budgetBurst +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.kpelykh.docker.client.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * A {@link java.util.concurrent.Future} completed explicitly through {@link #set(Object)} or
+ * {@link #setException(Throwable)} instead of by running a task. Subclasses may override
+ * {@link #done()} to be notified on completion.
+ */
+public class SettableFuture<V> extends FutureTask<V> {
+
+    public SettableFuture() {
+        super(SettableFuture.<V>neverRun());
+    }
+
+    @Override
+    public void set(V value) {
+        super.set(value);
+    }
+
+    @Override
+    public void setException(Throwable cause) {
+        super.setException(cause);
+    }
+
+    /**
+     * Not supported, the future is only completed through the setters.
+     */
+    @Override
+    public void run() {
+        throw new UnsupportedOperationException("SettableFuture can only be completed explicitly");
+    }
+
+    private static <V> Callable<V> neverRun() {
+        return new Callable<V>() {
+            @Override
+            public V call() {
+                throw new IllegalStateException("SettableFuture can only be completed explicitly");
+            }
+        };
+    }
+}
@@ -0,0 +1,65 @@
+package com.kpelykh.docker.client.utils;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock free pool that deduplicates strings which repeat across many objects, such as
+ * image names, commands and status texts of the containers on a host.
+ * <p>
+ * The pool is a direct mapped table: a string that collides with a different one simply replaces
+ * it, so memory stays fixed no matter how many distinct values pass through and nothing is
+ * pinned forever as with {@link String#intern()}. Values that are seen often win their slot and
+ * end up shared; rare ones cost one table write.
+ */
+public class StringInterner {
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public StringInterner(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.table = new AtomicReferenceArray<String>(size);
+        this.mask = size - 1;
+    }
+
+    public StringInterner() {
+        this(4096);
+    }
+
+    /**
+     * @return a pooled string equal to {@code value}, or {@code value} itself
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        int h = value.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        String pooled = table.get(slot);
+        if (pooled != null && pooled.equals(value)) {
+            return pooled;
+        }
+        table.lazySet(slot, value);
+        return value;
+    }
+
+    public String[] intern(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        String[] interned = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            interned[i] = intern(values[i]);
+        }
+        return interned;
+    }
+}
@@ -0,0 +1,121 @@
+package com.kpelykh.docker.client.utils;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Unpacks tar streams as they arrive, without holding more than one chunk of the archive in memory.
+ * <p>
+ * Entry data is read off the stream in large chunks into a reused heap array, which is written
+ * straight to a {@link FileChannel}. Instances reuse that array and are therefore not thread safe.
+ */
+public class TarExtractor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TarExtractor.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Callback for each entry of a tar stream.
+     */
+    public interface EntryHandler {
+
+        /**
+         * @param entry   header of the entry
+         * @param content data of the entry, positioned at its start; must not be closed
+         */
+        void onEntry(TarArchiveEntry entry, InputStream content) throws IOException;
+    }
+
+    private final byte[] chunk;
+
+    public TarExtractor() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    public TarExtractor(int bufferSize) {
+        this.chunk = new byte[bufferSize];
+    }
+
+    /**
+     * Extract every entry of the given tar stream below {@code targetDirectory}. Entries that would
+     * end up outside of it are rejected, symbolic and hard links are skipped.
+     *
+     * @return the number of entries written
+     */
+    public int extract(InputStream tar, final File targetDirectory) throws IOException {
+        final File root = targetDirectory.getCanonicalFile();
+        if (!root.isDirectory() && !root.mkdirs()) {
+            throw new IOException("Cannot create directory " + root);
+        }
+
+        final int[] count = new int[1];
+        extract(tar, new EntryHandler() {
+            @Override
+            public void onEntry(TarArchiveEntry entry, InputStream content) throws IOException {
+                File target = new File(root, entry.getName()).getCanonicalFile();
+                if (!target.equals(root) && !target.getPath().startsWith(root.getPath() + File.separator)) {
+                    throw new IOException(String.format("Entry %s is outside of %s", entry.getName(), root));
+                }
+
+                if (entry.isDirectory()) {
+                    if (!target.isDirectory() && !target.mkdirs()) {
+                        throw new IOException("Cannot create directory " + target);
+                    }
+                } else if (entry.isSymbolicLink() || entry.isLink()) {
+                    LOGGER.warn("Skipping link {} -> {}", entry.getName(), entry.getLinkName());
+                    return;
+                } else {
+                    File parent = target.getParentFile();
+                    if (!parent.isDirectory() && !parent.mkdirs()) {
+                        throw new IOException("Cannot create directory " + parent);
+                    }
+                    writeFile(content, target);
+                    if ((entry.getMode() & 0100) != 0) {
+                        target.setExecutable(true, false);
+                    }
+                }
+                target.setLastModified(entry.getModTime().getTime());
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Hand every entry of the given tar stream to the handler as it is read. The stream is consumed
+     * but not closed.
+     */
+    public static void extract(InputStream tar, EntryHandler handler) throws IOException {
+        TarArchiveInputStream entries = new TarArchiveInputStream(tar);
+        TarArchiveEntry entry;
+        while ((entry = entries.getNextTarEntry()) != null) {
+            handler.onEntry(entry, entries);
+        }
+    }
+
+    private void writeFile(InputStream content, File target) throws IOException {
+        FileOutputStream out = new FileOutputStream(target);
+        try {
+            FileChannel channel = out.getChannel();
+            int n;
+            while ((n = content.read(chunk)) >= 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, n);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
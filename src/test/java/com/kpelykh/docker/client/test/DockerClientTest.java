@@ -3,6 +3,7 @@ package com.kpelykh.docker.client.test;
 import static ch.lambdaj.Lambda.filter;
 import static ch.lambdaj.Lambda.selectUnique;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
@@ -24,8 +25,11 @@ import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.net.DatagramSocket;
 import java.net.ServerSocket;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.LineIterator;
@@ -41,13 +45,21 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import com.kpelykh.docker.client.ContainerWaiter;
 import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.EventStream;
+import com.kpelykh.docker.client.batch.ContainerPool;
+import com.kpelykh.docker.client.batch.Job;
+import com.kpelykh.docker.client.batch.JobResult;
+import com.kpelykh.docker.client.batch.JobRunner;
+import com.kpelykh.docker.client.batch.Stage;
 import com.kpelykh.docker.client.model.ChangeLog;
 import com.kpelykh.docker.client.model.CommitConfig;
 import com.kpelykh.docker.client.model.Container;
 import com.kpelykh.docker.client.model.ContainerConfig;
 import com.kpelykh.docker.client.model.ContainerCreateResponse;
 import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.Event;
 import com.kpelykh.docker.client.model.Image;
 import com.kpelykh.docker.client.model.ImageInspectResponse;
 import com.kpelykh.docker.client.model.Info;
@@ -297,6 +309,118 @@ public class DockerClientTest extends AbstractDockerClientTest {
 
 	}
 
+	@Test
+	public void testWaitManyContainers() throws Exception {
+		ContainerWaiter waiter = new ContainerWaiter(dockerClient);
+		try {
+			List<Future<Integer>> exitCodes = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 5; i++) {
+				ContainerConfig containerConfig = new ContainerConfig();
+				containerConfig.setImage("busybox");
+				containerConfig.setCmd(new String[] { "sh", "-c", "exit " + i });
+
+				ContainerCreateResponse container = dockerClient
+						.createContainer(containerConfig);
+				tmpContainers.add(container.getId());
+
+				dockerClient.startContainer(container.getId());
+				exitCodes.add(waiter.waitFor(container.getId()));
+			}
+
+			for (int i = 0; i < exitCodes.size(); i++) {
+				assertThat(exitCodes.get(i).get(30, TimeUnit.SECONDS), equalTo(i));
+			}
+			assertThat(waiter.getPendingCount(), equalTo(0));
+		} finally {
+			waiter.close();
+		}
+	}
+
+	@Test
+	public void testJobRunner() throws Exception {
+		JobRunner runner = new JobRunner(dockerClient, 4);
+		try {
+			List<Future<JobResult>> results = new ArrayList<Future<JobResult>>();
+			for (int i = 0; i < 10; i++) {
+				ContainerConfig containerConfig = new ContainerConfig();
+				containerConfig.setImage("busybox");
+				containerConfig.setCmd(new String[] { "/bin/echo", "job " + i });
+				results.add(runner.submit(new Job(containerConfig)));
+			}
+
+			for (int i = 0; i < results.size(); i++) {
+				JobResult result = results.get(i).get(60, TimeUnit.SECONDS);
+				LOG.info("Job result: {}", result);
+				assertThat(result.getExitCode(), equalTo(0));
+				assertThat(result.getStdout(), containsString("job " + i));
+			}
+
+			assertThat(runner.getLatency(Stage.CREATE).getCount(), equalTo(10L));
+			assertThat(runner.getLatency(Stage.REMOVE).getCount(), equalTo(10L));
+			assertThat(runner.getRunningCount(), equalTo(0));
+		} finally {
+			runner.close();
+		}
+	}
+
+	@Test
+	public void testContainerPool() throws Exception {
+		ContainerConfig containerConfig = new ContainerConfig();
+		containerConfig.setImage("busybox");
+		containerConfig.setCmd(new String[] { "true" });
+
+		ContainerPool pool = new ContainerPool(dockerClient, 2, 60000, 2);
+		try {
+			pool.prewarm(containerConfig);
+			for (int i = 0; i < 50 && pool.getReadyCount(containerConfig) < 2; i++) {
+				Thread.sleep(100);
+			}
+			assertThat(pool.getReadyCount(containerConfig), equalTo(2));
+
+			String containerId = pool.acquireAndStart(containerConfig, null);
+			tmpContainers.add(containerId);
+
+			assertThat(dockerClient.waitContainer(containerId), equalTo(0));
+			assertThat(pool.getHitCount(), equalTo(1L));
+			assertThat(pool.getMissCount(), equalTo(0L));
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testEventStream() throws DockerException, InterruptedException {
+		long since = System.currentTimeMillis() / 1000 - 1;
+
+		ContainerConfig containerConfig = new ContainerConfig();
+		containerConfig.setImage("busybox");
+		containerConfig.setCmd(new String[] { "true" });
+
+		ContainerCreateResponse container = dockerClient
+				.createContainer(containerConfig);
+		LOG.info("Created container: {}", container.toString());
+		tmpContainers.add(container.getId());
+
+		dockerClient.startContainer(container.getId());
+		dockerClient.waitContainer(container.getId());
+
+		EventStream events = dockerClient.eventStream(since, 0);
+		try {
+			List<String> statuses = new ArrayList<String>();
+			while (!statuses.contains("die")) {
+				Event event = events.poll(10, TimeUnit.SECONDS);
+				assertThat(event, is(notNullValue()));
+				LOG.info("Event: {}", event);
+				if (container.getId().startsWith(event.getId())) {
+					statuses.add(event.getStatus());
+				}
+			}
+			assertThat(statuses, contains("create", "start", "die"));
+		} finally {
+			events.close();
+		}
+	}
+
 	@Test
 	public void testLogs() throws DockerException, IOException {
 
@@ -349,6 +473,31 @@ public class DockerClientTest extends AbstractDockerClientTest {
 		assertThat(testChangeLog, hasField("kind", equalTo(1)));
 	}
 
+	@Test
+	public void testExportContainer() throws DockerException, IOException {
+		ContainerConfig containerConfig = new ContainerConfig();
+		containerConfig.setImage("busybox");
+		containerConfig.setCmd(new String[] { "touch", "/exported" });
+
+		ContainerCreateResponse container = dockerClient.createContainer(containerConfig);
+		tmpContainers.add(container.getId());
+		dockerClient.startContainer(container.getId());
+		assertThat(dockerClient.waitContainer(container.getId()), equalTo(0));
+
+		File tarball = File.createTempFile("export", ".tar");
+		File gzipped = File.createTempFile("export", ".tar.gz");
+		try {
+			long size = dockerClient.exportContainer(container.getId(), tarball, false);
+			assertThat(tarball.length(), equalTo(size));
+
+			dockerClient.exportContainer(container.getId(), gzipped, true);
+			assertThat(gzipped.length(), lessThan(size));
+		} finally {
+			tarball.delete();
+			gzipped.delete();
+		}
+	}
+
 	@Test
 	public void testStopContainer() throws DockerException {
 
@@ -0,0 +1,223 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.utils.CallCancelledException;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.kpelykh.docker.client.utils.ConnectionPolicy;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * A thousand threads issuing blocking inspect and wait calls at once through a pool much smaller
+ * than that, each call bounded by a {@link CallScope}.
+ */
+public class BlockingStressTest {
+
+    private static final int CALLERS = 1000;
+    private static final int CONNECTIONS = 64;
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        dockerClient = new DockerClient(daemon.getUrl(), ConnectionPolicy.forHighConcurrency()
+                .setMaxConnections(CONNECTIONS).setMaxConnectionsPerRoute(CONNECTIONS));
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        daemon.close();
+    }
+
+    @Test
+    public void testConcurrentInspectAndWait() throws Exception {
+        daemon.setRunMillis(300);
+        final List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < CALLERS; i++) {
+            ids.add(dockerClient.createContainer(config()).getId());
+        }
+
+        final CountDownLatch ready = new CountDownLatch(CALLERS);
+        final CountDownLatch go = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(CALLERS);
+        final AtomicInteger exited = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int i = 0; i < CALLERS; i++) {
+            final String id = ids.get(i);
+            Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    CallScope scope = new CallScope(60, TimeUnit.SECONDS);
+                    try {
+                        DockerClient scoped = dockerClient.within(scope);
+                        ready.countDown();
+                        go.await();
+                        scoped.startContainer(id);
+                        assertThat(scoped.inspectContainer(id).getId(), equalTo(id));
+                        if (scoped.waitContainer(id) == 0) {
+                            exited.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        scope.close();
+                        done.countDown();
+                    }
+                }
+            }, "stress-caller-" + i);
+            caller.setDaemon(true);
+            caller.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        assertThat(done.await(60, TimeUnit.SECONDS), is(true));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(failure.get(), nullValue());
+        assertThat(exited.get(), equalTo(CALLERS));
+        // callers queue for pooled connections instead of opening one each
+        assertThat(daemon.getConnectionCount(), lessThanOrEqualTo(CONNECTIONS));
+        assertThat(elapsed, lessThan(60000L));
+    }
+
+    @Test
+    public void testDeadlineBoundsQueuedCallers() throws Exception {
+        daemon.setRunMillis(60000);
+        final String id = dockerClient.createContainer(config()).getId();
+        dockerClient.startContainer(id);
+
+        // more waits than connections: the queued ones must give up at the deadline as well
+        final CallScope scope = new CallScope(500, TimeUnit.MILLISECONDS);
+        final DockerClient scoped = dockerClient.within(scope);
+        final CountDownLatch done = new CountDownLatch(CONNECTIONS * 2);
+        final AtomicInteger timedOut = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < CONNECTIONS * 2; i++) {
+            Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        scoped.waitContainer(id);
+                    } catch (DockerException expected) {
+                        timedOut.incrementAndGet();
+                    } catch (RuntimeException expected) {
+                        timedOut.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "stress-waiter-" + i);
+            caller.setDaemon(true);
+            caller.start();
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(timedOut.get(), equalTo(CONNECTIONS * 2));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(5000L));
+        assertThat(dockerClient.inspectContainer(id).getState().running, is(true));
+    }
+
+    @Test
+    public void testScopeBoundsWaitForConnection() throws Exception {
+        daemon.setRunMillis(60000);
+        final String id = dockerClient.createContainer(config()).getId();
+        dockerClient.startContainer(id);
+
+        // every connection held by the waits of another scope
+        CallScope holders = new CallScope();
+        final DockerClient holding = dockerClient.within(holders);
+        for (int i = 0; i < CONNECTIONS; i++) {
+            Thread holder = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        holding.waitContainer(id);
+                    } catch (Exception expected) {
+                    }
+                }
+            }, "stress-holder-" + i);
+            holder.setDaemon(true);
+            holder.start();
+        }
+        long until = System.currentTimeMillis() + 10000;
+        while (daemon.getConnectionCount() < CONNECTIONS + 1 && System.currentTimeMillis() < until) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(200);
+
+        try {
+            // the pool waits 30 seconds for a connection, the deadline much less
+            long start = System.nanoTime();
+            try {
+                dockerClient.within(new CallScope(300, TimeUnit.MILLISECONDS)).inspectContainer(id);
+                throw new AssertionError("expected the deadline to pass");
+            } catch (Exception expected) {
+            }
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(5000L));
+
+            final CallScope cancelled = new CallScope();
+            Thread canceller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException ignored) {
+                    }
+                    cancelled.cancel();
+                }
+            }, "stress-canceller");
+            canceller.setDaemon(true);
+            start = System.nanoTime();
+            canceller.start();
+            try {
+                dockerClient.within(cancelled).inspectContainer(id);
+                throw new AssertionError("expected the call to be cancelled");
+            } catch (Exception expected) {
+                assertThat(isCancellation(expected), is(true));
+            }
+            assertThat(Thread.currentThread().isInterrupted(), is(false));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(5000L));
+            assertThat(cancelled.getInFlight(), equalTo(0));
+        } finally {
+            holders.cancel();
+        }
+        assertThat(dockerClient.inspectContainer(id).getState().running, is(true));
+    }
+
+    private static boolean isCancellation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CallCancelledException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ContainerConfig config() {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"sleep", "1"});
+        return config;
+    }
+}
@@ -0,0 +1,119 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.cluster.ClusterResult;
+import com.kpelykh.docker.client.cluster.DockerCluster;
+import com.kpelykh.docker.client.cluster.HostItem;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.Info;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Runs {@link DockerCluster} against several {@link StubDockerDaemon}s.
+ */
+public class DockerClusterTest {
+
+    private final List<StubDockerDaemon> daemons = new ArrayList<StubDockerDaemon>();
+    private DockerCluster cluster;
+
+    @BeforeMethod
+    public void beforeMethod() throws IOException, DockerException {
+        cluster = new DockerCluster(1000, 16);
+        for (int i = 0; i < 8; i++) {
+            StubDockerDaemon daemon = new StubDockerDaemon();
+            daemon.addContainers(i + 1, "busybox");
+            daemons.add(daemon);
+            cluster.addHost("host-" + i, daemon.newClient());
+        }
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        cluster.close();
+        for (StubDockerDaemon daemon : daemons) {
+            daemon.close();
+        }
+        daemons.clear();
+    }
+
+    @Test
+    public void testFanOut() {
+        assertThat(cluster.info().isComplete(), is(true));
+        for (StubDockerDaemon daemon : daemons) {
+            daemon.setLatency(100, TimeUnit.MILLISECONDS);
+        }
+
+        ClusterResult<List<Container>> containers = cluster.listContainers(true);
+        assertThat(containers.isComplete(), is(true));
+        assertThat(containers.get("host-3"), hasSize(4));
+        // in parallel, not one host after the other
+        assertThat(containers.getElapsed(TimeUnit.MILLISECONDS), lessThan(500L));
+
+        List<HostItem<Container>> merged = ClusterResult.merge(containers);
+        assertThat(merged, hasSize(36));
+        assertThat(merged.get(0).getHost(), equalTo("host-0"));
+        assertThat(merged.get(35).getHost(), equalTo("host-7"));
+    }
+
+    @Test
+    public void testPartialFailure() {
+        daemons.get(2).setLatency(3, TimeUnit.SECONDS);
+        daemons.get(5).failNext("/info", 500, 1);
+
+        ClusterResult<Info> info = cluster.info();
+        assertThat(info.isComplete(), is(false));
+        assertThat(info.getResults().keySet(), contains("host-0", "host-1", "host-3", "host-4", "host-6", "host-7"));
+        assertThat(info.getFailures().get("host-2"), instanceOf(TimeoutException.class));
+        assertThat(info.getFailures().get("host-5"), instanceOf(DockerException.class));
+        assertThat(info.getElapsed(TimeUnit.MILLISECONDS), lessThan(2500L));
+    }
+
+    @Test
+    public void testHungHostReleasesThread() throws DockerException {
+        DockerCluster single = new DockerCluster(300, 1);
+        try {
+            single.addHost("hung", daemons.get(0).newClient());
+            daemons.get(0).setLatency(60, TimeUnit.SECONDS);
+            assertThat(single.info().getFailures().get("hung"), instanceOf(TimeoutException.class));
+
+            // the only thread of the pool is free again for the next query
+            single.removeHost("hung");
+            single.addHost("healthy", daemons.get(1).newClient());
+            assertThat(single.info().isComplete(), is(true));
+        } finally {
+            single.close();
+        }
+    }
+
+    @Test
+    public void testInspectFindsHost() throws DockerException {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"true"});
+        // stub ids are a per daemon sequence, the ninth one only exists on the last host
+        String id = cluster.getClient("host-7").createContainer(config).getId();
+
+        ClusterResult<ContainerInspectResponse> inspect = cluster.inspectContainer(id);
+        assertThat(inspect.isComplete(), is(true));
+        assertThat(inspect.getResults().keySet(), contains("host-7"));
+        assertThat(inspect.get("host-7").getId(), equalTo(id));
+    }
+}
@@ -0,0 +1,196 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.ExecSession;
+import com.kpelykh.docker.client.NotFoundException;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.ExecConfig;
+import com.kpelykh.docker.client.model.ExecInspectResponse;
+import com.kpelykh.docker.client.model.ExecResult;
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.model.StreamType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Commands run in containers of the stub daemon, one shot and interactively over a hijacked
+ * connection.
+ */
+public class ExecTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecTest.class);
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+    private String containerId;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        daemon.setRunMillis(60000);
+        dockerClient = daemon.newClient();
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"top"});
+        containerId = dockerClient.createContainer(config).getId();
+        dockerClient.startContainer(containerId);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        daemon.close();
+    }
+
+    @Test
+    public void testExec() throws Exception {
+        ExecResult result = dockerClient.exec(containerId, "echo", "hello", "world");
+        assertThat(result.getExitCode(), equalTo(0));
+        assertThat(result.getStdoutAsString(), equalTo("hello world\n"));
+        assertThat(result.getStderr().length, equalTo(0));
+
+        ExecInspectResponse inspect = dockerClient.inspectExec(result.getExecId());
+        assertThat(inspect.isRunning(), is(false));
+        assertThat(inspect.getContainerId(), equalTo(containerId));
+        assertThat(inspect.getProcessConfig().getEntrypoint(), equalTo("echo"));
+        assertThat(inspect.getProcessConfig().getArguments(), arrayContaining("hello", "world"));
+
+        result = dockerClient.exec(containerId, "cat", "/nonexistent");
+        assertThat(result.getExitCode(), equalTo(1));
+        assertThat(result.getStdout().length, equalTo(0));
+        assertThat(result.getStderrAsString(), equalTo("cat: can't open '/nonexistent': No such file or directory\n"));
+
+        assertThat(dockerClient.exec(containerId, "false").getExitCode(), equalTo(1));
+    }
+
+    @Test
+    public void testStartWithTty() throws Exception {
+        String execId = dockerClient.createExec(containerId, new ExecConfig("echo", "hi").setTty(true)).getId();
+        ExecSession session = dockerClient.attachExec(execId, true);
+        try {
+            Frame frame = session.readFrame();
+            assertThat(frame.getStreamType(), equalTo(StreamType.RAW));
+            assertThat(new String(frame.getPayload(), "UTF-8"), equalTo("hi\n"));
+            assertThat(session.readFrame(), nullValue());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void testInteractive() throws Exception {
+        ExecConfig config = new ExecConfig("cat").setAttachStdin(true);
+        String execId = dockerClient.createExec(containerId, config).getId();
+        ExecSession session = dockerClient.attachExec(execId, false);
+        try {
+            session.setReadTimeout(5000);
+            // every line comes back before the next one is sent
+            for (int i = 0; i < 10; i++) {
+                String line = "line " + i + "\n";
+                session.getStdin().write(line.getBytes("UTF-8"));
+                session.getStdin().flush();
+                Frame frame = session.readFrame();
+                assertThat(frame.getStreamType(), equalTo(StreamType.STDOUT));
+                assertThat(new String(frame.getPayload(), "UTF-8"), equalTo(line));
+            }
+            session.getStdin().write("last\n".getBytes("UTF-8"));
+            session.closeStdin();
+
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            assertThat(session.copyOutput(stdout, stderr), equalTo(5L));
+            assertThat(stdout.toString("UTF-8"), equalTo("last\n"));
+        } finally {
+            session.close();
+        }
+        assertThat(dockerClient.inspectExec(execId).getExitCode(), equalTo(0));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        try {
+            dockerClient.exec("nosuchcontainer", "true");
+            throw new AssertionError("expected NotFoundException");
+        } catch (NotFoundException expected) {
+        }
+        try {
+            dockerClient.inspectExec("nosuchexec");
+            throw new AssertionError("expected NotFoundException");
+        } catch (NotFoundException expected) {
+        }
+        try {
+            dockerClient.attachExec("nosuchexec", false);
+            throw new AssertionError("expected NotFoundException");
+        } catch (NotFoundException expected) {
+        }
+
+        dockerClient.stopContainer(containerId);
+        try {
+            dockerClient.exec(containerId, "true");
+            throw new AssertionError("expected DockerException");
+        } catch (DockerException expected) {
+            assertThat(expected instanceof NotFoundException, is(false));
+        }
+    }
+
+    @Test
+    public void testCommandsPerSecond() throws Exception {
+        final int threads = 4;
+        final int commands = 250;
+        // warm up the connection pool
+        dockerClient.exec(containerId, "true");
+        int connections = daemon.getConnectionCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    int ok = 0;
+                    for (int i = 0; i < commands; i++) {
+                        ExecResult result = dockerClient.exec(containerId, "echo", String.valueOf(i));
+                        if (result.getExitCode() == 0 && result.getStdoutAsString().equals(i + "\n")) {
+                            ok++;
+                        }
+                    }
+                    return ok;
+                }
+            }));
+        }
+        int ok = 0;
+        for (Future<Integer> result : results) {
+            ok += result.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        assertThat(ok, equalTo(threads * commands));
+        // a new connection for every start, while create and inspect share a few pooled ones
+        assertThat(daemon.getConnectionCount() - connections, lessThanOrEqualTo(ok + 2 * threads));
+        double perSecond = ok * 1e9 / elapsed;
+        LOGGER.info("{} execs in {} ms, {} commands/s", ok, TimeUnit.NANOSECONDS.toMillis(elapsed), (long) perSecond);
+        assertThat(perSecond, greaterThan(50.0));
+    }
+}
@@ -0,0 +1,149 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.cluster.FleetUsage;
+import com.kpelykh.docker.client.cluster.Usage;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+/**
+ * Usage of containers on two stub daemons rolled up by a {@link FleetUsage}. Every container uses a
+ * tenth of a CPU, the one with 4096 CPU shares four times that.
+ */
+public class FleetUsageTest {
+
+    private static final long MB = 1024 * 1024;
+
+    private StubDockerDaemon web;
+    private StubDockerDaemon db;
+    private DockerClient webClient;
+    private DockerClient dbClient;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        web = new StubDockerDaemon();
+        db = new StubDockerDaemon();
+        for (StubDockerDaemon daemon : new StubDockerDaemon[]{web, db}) {
+            daemon.setStatsInterval(100, TimeUnit.MILLISECONDS);
+            daemon.setRunMillis(60000);
+        }
+        webClient = web.newClient();
+        dbClient = db.newClient();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        web.close();
+        db.close();
+    }
+
+    @Test
+    public void testRollups() throws Exception {
+        FleetUsage usage = new FleetUsage();
+        String hungry = start(webClient, "web", 4096);
+        List<String> webIds = new ArrayList<String>(Collections.singletonList(hungry));
+        webIds.add(start(webClient, "web", 0));
+        webIds.add(start(webClient, "web", 0));
+        List<String> dbIds = new ArrayList<String>();
+        dbIds.add(start(dbClient, "db", 0));
+        dbIds.add(start(dbClient, "db", 0));
+        for (String id : webIds) {
+            usage.watch("web-host", webClient, id);
+        }
+        for (String id : dbIds) {
+            usage.watch("db-host", dbClient, id);
+        }
+
+        Thread.sleep(2500);
+
+        for (FleetUsage.Window window : new FleetUsage.Window[]{FleetUsage.Window.SECOND, FleetUsage.Window.TEN_SECONDS}) {
+            assertCores(usage.getFleet(window), 0.8);
+            assertCores(usage.getHost("web-host", window), 0.6);
+            assertCores(usage.getHost("db-host", window), 0.2);
+            assertCores(usage.getLabel("team", "web", window), 0.6);
+            assertCores(usage.getLabel("team", "db", window), 0.2);
+            assertCores(usage.getContainer("web-host", hungry, window), 0.4);
+        }
+
+        Usage fleet = usage.getFleet(FleetUsage.Window.MINUTE);
+        assertThat(fleet.getSamples(), greaterThan(50L));
+        assertThat(fleet.getMemoryBytes(), greaterThan(5 * MB));
+        assertThat(fleet.getMemoryBytes(), lessThan(6 * MB));
+        assertThat(fleet.getAverageMemoryBytes(), lessThan(fleet.getMemoryBytes() / 5));
+
+        List<Usage> top = usage.topContainers(2, FleetUsage.Window.SECOND, Usage.Metric.CPU);
+        assertThat(top, hasSize(2));
+        assertThat(top.get(0).getName(), equalTo(hungry));
+        assertThat(top.get(0).getHost(), equalTo("web-host"));
+        assertThat(top.get(1).getCpuCores(), lessThan(top.get(0).getCpuCores()));
+        assertThat(usage.topContainers(10, FleetUsage.Window.MINUTE, Usage.Metric.MEMORY), hasSize(5));
+
+        // stopped containers no longer count towards the memory in use
+        for (String id : webIds) {
+            webClient.stopContainer(id);
+        }
+        for (String id : dbIds) {
+            dbClient.stopContainer(id);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (usage.getFleet(FleetUsage.Window.SECOND).getMemoryBytes() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(usage.getFleet(FleetUsage.Window.SECOND).getMemoryBytes(), equalTo(0L));
+        assertThat(usage.getHost("web-host", FleetUsage.Window.SECOND).getMemoryBytes(), equalTo(0L));
+        assertThat(usage.getContainer("web-host", hungry, FleetUsage.Window.MINUTE), notNullValue());
+        usage.close();
+    }
+
+    @Test
+    public void testWatchAgain() throws Exception {
+        FleetUsage usage = new FleetUsage();
+        try {
+            String id = start(webClient, "web", 0);
+            usage.watch("web-host", webClient, id);
+            Thread.sleep(300);
+
+            // the reader of an earlier watch may end after the next one started
+            for (int i = 0; i < 50; i++) {
+                usage.unwatch("web-host", id);
+                usage.watch("web-host", webClient, id, Collections.singletonMap("team", "web"));
+            }
+            Thread.sleep(1500);
+            assertThat(usage.getContainer("web-host", id, FleetUsage.Window.SECOND).getMemoryBytes(), greaterThan(0L));
+            assertThat(usage.getFleet(FleetUsage.Window.SECOND).getMemoryBytes(),
+                    equalTo(usage.getContainer("web-host", id, FleetUsage.Window.SECOND).getMemoryBytes()));
+        } finally {
+            usage.close();
+        }
+    }
+
+    private static void assertCores(Usage usage, double cores) {
+        assertThat(usage + " cores", usage.getCpuCores(), closeTo(cores, cores * 0.4));
+    }
+
+    private static String start(DockerClient client, String team, int cpuShares) throws Exception {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"top"});
+        config.setCpuShares(cpuShares);
+        config.setLabels(Collections.singletonMap("team", team));
+        String id = client.createContainer(config).getId();
+        client.startContainer(id);
+        return id;
+    }
+}
@@ -0,0 +1,90 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.cluster.HealthProber;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Probes a {@link StubDockerDaemon} with {@link HealthProber}.
+ */
+public class HealthProberTest {
+
+    private StubDockerDaemon daemon;
+    private HealthProber prober;
+    private final List<String> changes = new CopyOnWriteArrayList<String>();
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        prober = new HealthProber(20, 500, 2);
+        prober.addListener(new HealthProber.Listener() {
+            @Override
+            public void onHealthChange(String host, boolean up) {
+                changes.add(host + (up ? " up" : " down"));
+            }
+        });
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        prober.close();
+        daemon.close();
+        changes.clear();
+    }
+
+    @Test
+    public void testUpDownUp() throws Exception {
+        prober.addHost("stub", URI.create(daemon.getUrl()));
+        awaitProbes(5);
+        assertThat(prober.isUp("stub"), is(true));
+        assertThat(prober.getLastRoundTrip("stub", TimeUnit.MILLISECONDS), lessThan(500L));
+
+        daemon.failNext("/_ping", 500, 2);
+        long probes = prober.getRoundTrips("stub").getCount();
+        awaitProbes(probes + 3);
+        assertThat(changes, contains("stub up", "stub down", "stub up"));
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        prober.addHost("stub", URI.create(daemon.getUrl()));
+        awaitProbes(20);
+        assertThat(daemon.getRequestCount(), greaterThanOrEqualTo(20L));
+        assertThat(daemon.getConnectionCount(), is(1));
+        assertThat(changes, contains("stub up"));
+    }
+
+    @Test
+    public void testUnreachableHost() throws Exception {
+        StubDockerDaemon gone = new StubDockerDaemon();
+        String url = gone.getUrl();
+        gone.close();
+
+        prober.addHost("gone", URI.create(url));
+        prober.addHost("stub", URI.create(daemon.getUrl()));
+        awaitProbes(5);
+        assertThat(prober.isUp("gone"), is(false));
+        assertThat(prober.getLastRoundTrip("gone", TimeUnit.MILLISECONDS), is(-1L));
+        assertThat(changes, contains("stub up"));
+    }
+
+    private void awaitProbes(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (prober.getRoundTrips("stub").getCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(prober.getRoundTrips("stub").getCount(), greaterThanOrEqualTo(count));
+    }
+}
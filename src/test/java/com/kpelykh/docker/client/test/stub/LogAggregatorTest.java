@@ -0,0 +1,208 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.logs.LogAggregator;
+import com.kpelykh.docker.client.logs.LogRecord;
+import com.kpelykh.docker.client.logs.LogSink;
+import com.kpelykh.docker.client.logs.LogSource;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.StreamType;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Many containers followed by one {@link LogAggregator} against the stub daemon.
+ */
+public class LogAggregatorTest {
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+    private URI serverUrl;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        dockerClient = daemon.newClient();
+        serverUrl = URI.create(daemon.getUrl());
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        daemon.close();
+    }
+
+    @Test
+    public void testFollowManyContainers() throws Exception {
+        daemon.setLogLines(200);
+        daemon.setRunMillis(1000);
+        LogAggregator aggregator = new LogAggregator();
+        RecordingSink sink = new RecordingSink(0);
+        aggregator.addSink(sink);
+
+        List<LogSource> sources = new ArrayList<LogSource>();
+        for (int i = 0; i < 50; i++) {
+            String id = dockerClient.createContainer(config()).getId();
+            dockerClient.startContainer(id);
+            sources.add(aggregator.follow(serverUrl, id));
+        }
+        awaitDone(sources);
+        aggregator.close();
+
+        Map<LogSource, List<LogRecord>> bySource = sink.bySource();
+        long lastSequence = -1;
+        for (LogRecord record : sink.records) {
+            assertThat(record.getSequence(), greaterThan(lastSequence));
+            lastSequence = record.getSequence();
+        }
+        for (LogSource source : sources) {
+            assertThat(source.getFailure(), nullValue());
+            List<LogRecord> records = bySource.get(source);
+            assertThat(records, hasSize(200));
+            for (int i = 0; i < 200; i++) {
+                LogRecord record = records.get(i);
+                assertThat(record.getPayloadAsString(), equalTo("line " + i + "\n"));
+                assertThat(record.getStreamType(), equalTo(i % 3 == 2 ? StreamType.STDERR : StreamType.STDOUT));
+                assertThat(record.getTimestampNanos(), greaterThan(0L));
+            }
+            assertThat(source.getFrames(), equalTo(200L));
+            assertThat(source.getDispatched(), equalTo(200L));
+            assertThat(source.getPending(), equalTo(0L));
+            assertThat(source.getMaxSourceLagMillis(), greaterThanOrEqualTo(0L));
+            assertThat(source.getDispatchLagMillis(), lessThanOrEqualTo(source.getMaxDispatchLagMillis()));
+        }
+        // records of many sources share batches
+        assertThat(aggregator.getDispatchedBatches(), lessThanOrEqualTo((long) sink.records.size()));
+        assertThat(aggregator.getDropped(), equalTo(0L));
+    }
+
+    @Test
+    public void testReconnectWithoutDuplicates() throws Exception {
+        daemon.setLogLines(100);
+        String id = dockerClient.createContainer(config()).getId();
+        daemon.cutLogs(31, 2);
+
+        LogAggregator aggregator = new LogAggregator();
+        RecordingSink sink = new RecordingSink(0);
+        aggregator.addSink(sink);
+        LogSource source = aggregator.follow(serverUrl, id);
+        awaitDone(source);
+        aggregator.close();
+
+        assertThat(source.getReconnects(), equalTo(2L));
+        List<LogRecord> records = sink.bySource().get(source);
+        assertThat(records, hasSize(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(records.get(i).getPayloadAsString(), equalTo("line " + i + "\n"));
+        }
+    }
+
+    @Test
+    public void testDropNewestWhenSinksFallBehind() throws Exception {
+        daemon.setLogLines(200);
+        LogAggregator aggregator = new LogAggregator(16, 4, LogAggregator.OverflowPolicy.DROP_NEWEST);
+        RecordingSink sink = new RecordingSink(20);
+        aggregator.addSink(sink);
+
+        List<LogSource> sources = new ArrayList<LogSource>();
+        for (int i = 0; i < 5; i++) {
+            sources.add(aggregator.follow(serverUrl, dockerClient.createContainer(config()).getId()));
+        }
+        awaitDone(sources);
+        aggregator.close();
+
+        long dropped = 0;
+        for (LogSource source : sources) {
+            assertThat(source.getFrames(), equalTo(200L));
+            assertThat(source.getDispatched() + source.getDropped(), equalTo(200L));
+            dropped += source.getDropped();
+        }
+        assertThat(dropped, greaterThan(0L));
+        assertThat(aggregator.getDropped(), equalTo(dropped));
+        assertThat((long) sink.records.size(), equalTo(1000L - dropped));
+    }
+
+    @Test
+    public void testUnknownContainer() throws Exception {
+        LogAggregator aggregator = new LogAggregator();
+        LogSource source = aggregator.follow(serverUrl, "nosuchcontainer");
+        awaitDone(source);
+        aggregator.close();
+
+        assertThat(source.getFailure(), equalTo("no such container"));
+        assertThat(source.getFrames(), equalTo(0L));
+    }
+
+    private static void awaitDone(List<LogSource> sources) throws InterruptedException {
+        for (LogSource source : sources) {
+            awaitDone(source);
+        }
+    }
+
+    private static void awaitDone(LogSource source) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (!source.isDone() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(source + " done", source.isDone(), is(true));
+    }
+
+    private static ContainerConfig config() {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"sleep", "1"});
+        return config;
+    }
+
+    private static class RecordingSink implements LogSink {
+
+        final List<LogRecord> records = new ArrayList<LogRecord>();
+        private final long delayMillis;
+
+        RecordingSink(long delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void write(List<LogRecord> batch) throws IOException {
+            // only called by the dispatch thread, which is joined before the records are read
+            records.addAll(batch);
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        Map<LogSource, List<LogRecord>> bySource() {
+            Map<LogSource, List<LogRecord>> bySource = new HashMap<LogSource, List<LogRecord>>();
+            for (LogRecord record : records) {
+                List<LogRecord> list = bySource.get(record.getSource());
+                if (list == null) {
+                    list = new ArrayList<LogRecord>();
+                    bySource.put(record.getSource(), list);
+                }
+                list.add(record);
+            }
+            return bySource;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.logs.LogAggregator;
+import com.kpelykh.docker.client.logs.LogRecord;
+import com.kpelykh.docker.client.logs.LogSource;
+import com.kpelykh.docker.client.logs.MappedLogSink;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.StreamType;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Output of containers on the stub daemon archived by a {@link MappedLogSink}.
+ */
+public class MappedLogSinkTest {
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+    private File directory;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        dockerClient = daemon.newClient();
+        directory = File.createTempFile("docker-logs", "");
+        assertThat(directory.delete() && directory.mkdir(), is(true));
+    }
+
+    @AfterMethod
+    public void afterMethod() throws Exception {
+        daemon.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void testArchiveRotatesAndReadsBack() throws Exception {
+        daemon.setLogLines(300);
+        MappedLogSink sink = new MappedLogSink(directory, 16 * 1024, 0);
+        List<String> ids = archive(sink, 10);
+
+        assertThat(sink.getNextOffset(), equalTo(3000L));
+        assertThat(sink.getSegmentCount(), greaterThan(1));
+
+        List<LogRecord> records = sink.read(0, Integer.MAX_VALUE);
+        assertThat(records, hasSize(3000));
+        Map<String, Integer> lines = new HashMap<String, Integer>();
+        for (int i = 0; i < records.size(); i++) {
+            LogRecord record = records.get(i);
+            assertThat(record.getSequence(), equalTo((long) i));
+            assertThat(record.getSource().getServerUrl(), nullValue());
+            String id = record.getSource().getContainerId();
+            int line = lines.containsKey(id) ? lines.get(id) : 0;
+            assertThat(record.getPayloadAsString(), equalTo("line " + line + "\n"));
+            assertThat(record.getStreamType(), equalTo(line % 3 == 2 ? StreamType.STDERR : StreamType.STDOUT));
+            assertThat(record.getTimestampNanos(), greaterThan(0L));
+            lines.put(id, line + 1);
+        }
+        for (String id : ids) {
+            assertThat(lines.get(id), equalTo(300));
+        }
+
+        // found through the index, across a segment boundary
+        List<LogRecord> page = sink.read(1998, 5);
+        assertThat(page, hasSize(5));
+        for (int i = 0; i < 5; i++) {
+            assertThat(page.get(i).getSequence(), equalTo(1998L + i));
+        }
+        assertThat(sink.read(3000, 10).isEmpty(), is(true));
+        sink.close();
+    }
+
+    @Test
+    public void testReopenAppends() throws Exception {
+        daemon.setLogLines(100);
+        MappedLogSink sink = new MappedLogSink(directory, 16 * 1024, 0);
+        archive(sink, 3);
+        sink.close();
+        // files of others in the directory are not taken for segments
+        File foreign = new File(directory, "app.log");
+        FileUtils.writeStringToFile(foreign, "not a segment");
+
+        MappedLogSink reopened = new MappedLogSink(directory, 16 * 1024, 0);
+        assertThat(reopened.getNextOffset(), equalTo(300L));
+        archive(reopened, 2);
+        List<LogRecord> records = reopened.read(0, Integer.MAX_VALUE);
+        assertThat(records, hasSize(500));
+        for (int i = 0; i < records.size(); i++) {
+            assertThat(records.get(i).getSequence(), equalTo((long) i));
+        }
+        reopened.close();
+        assertThat(foreign.isFile(), is(true));
+    }
+
+    @Test
+    public void testReopenAfterTornRecord() throws Exception {
+        daemon.setLogLines(50);
+        MappedLogSink sink = new MappedLogSink(directory, 16 * 1024, 0);
+        archive(sink, 2);
+        sink.close();
+
+        // a record written up to its length when the process died
+        File[] segments = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log");
+            }
+        });
+        Arrays.sort(segments);
+        RandomAccessFile file = new RandomAccessFile(segments[segments.length - 1], "rw");
+        try {
+            long position = 0;
+            file.seek(position);
+            int length;
+            while ((length = file.readInt()) != 0) {
+                position += 4 + length;
+                file.seek(position);
+            }
+            byte[] payload = new byte[1000];
+            Arrays.fill(payload, (byte) 'x');
+            file.seek(position + 4);
+            file.writeLong(100);
+            file.writeLong(System.currentTimeMillis() * 1000000L);
+            file.writeLong(System.currentTimeMillis());
+            file.writeByte(StreamType.STDOUT.ordinal());
+            file.writeByte(4);
+            file.write("torn".getBytes("US-ASCII"));
+            file.write(payload);
+        } finally {
+            file.close();
+        }
+
+        // records shorter than the torn one take its place
+        daemon.setLogLines(1);
+        MappedLogSink reopened = new MappedLogSink(directory, 16 * 1024, 0);
+        assertThat(reopened.getNextOffset(), equalTo(100L));
+        archive(reopened, 1);
+        assertThat(reopened.read(0, Integer.MAX_VALUE), hasSize(101));
+        reopened.close();
+
+        MappedLogSink again = new MappedLogSink(directory, 16 * 1024, 0);
+        assertThat(again.getNextOffset(), equalTo(101L));
+        assertThat(again.read(100, 10).get(0).getPayloadAsString(), equalTo("line 0\n"));
+        again.close();
+    }
+
+    @Test
+    public void testRetention() throws Exception {
+        daemon.setLogLines(300);
+        MappedLogSink sink = new MappedLogSink(directory, 16 * 1024, 2);
+        archive(sink, 10);
+
+        assertThat(sink.getSegmentCount(), equalTo(2));
+        assertThat(directory.list().length, equalTo(4));
+        assertThat(sink.getFirstOffset(), greaterThan(0L));
+        List<LogRecord> records = sink.read(0, Integer.MAX_VALUE);
+        assertThat(records.get(0).getSequence(), equalTo(sink.getFirstOffset()));
+        assertThat((long) records.size(), equalTo(3000L - sink.getFirstOffset()));
+        sink.close();
+    }
+
+    /**
+     * Follow {@code count} new containers into the sink until their output ended.
+     */
+    private List<String> archive(MappedLogSink sink, int count) throws Exception {
+        LogAggregator aggregator = new LogAggregator();
+        aggregator.addSink(sink);
+        List<String> ids = new ArrayList<String>();
+        List<LogSource> sources = new ArrayList<LogSource>();
+        for (int i = 0; i < count; i++) {
+            String id = dockerClient.createContainer(config()).getId();
+            ids.add(id);
+            sources.add(aggregator.follow(URI.create(daemon.getUrl()), id));
+        }
+        for (LogSource source : sources) {
+            long deadline = System.currentTimeMillis() + 20000;
+            while (!source.isDone() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        aggregator.close();
+        return ids;
+    }
+
+    private static ContainerConfig config() {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"true"});
+        return config;
+    }
+}
@@ -0,0 +1,112 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.cluster.DockerCluster;
+import com.kpelykh.docker.client.cluster.Placement;
+import com.kpelykh.docker.client.cluster.PlacementScheduler;
+import com.kpelykh.docker.client.cluster.PlacementStrategies;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Runs {@link PlacementScheduler} against three {@link StubDockerDaemon}s running two, one and no
+ * containers.
+ */
+public class PlacementSchedulerTest {
+
+    private final List<StubDockerDaemon> daemons = new ArrayList<StubDockerDaemon>();
+    private DockerCluster cluster;
+    private PlacementScheduler scheduler;
+
+    @BeforeMethod
+    public void beforeMethod() throws IOException, DockerException {
+        cluster = new DockerCluster(2000, 8);
+        for (int i = 0; i < 3; i++) {
+            StubDockerDaemon daemon = new StubDockerDaemon();
+            daemon.setRunMillis(60000);
+            daemons.add(daemon);
+            DockerClient client = daemon.newClient();
+            cluster.addHost("host-" + i, client);
+            for (int running = 0; running < 2 - i; running++) {
+                client.startContainer(client.createContainer(config("busybox")).getId());
+            }
+        }
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        cluster.close();
+        for (StubDockerDaemon daemon : daemons) {
+            daemon.close();
+        }
+        daemons.clear();
+    }
+
+    @Test
+    public void testSpread() throws DockerException {
+        scheduler = new PlacementScheduler(cluster, PlacementStrategies.spread());
+        assertThat(scheduler.rank(config("busybox")), contains("host-2", "host-1", "host-0"));
+
+        List<String> hosts = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            hosts.add(scheduler.run(config("busybox"), null, null).getHost());
+        }
+        assertThat(hosts, contains("host-2", "host-1", "host-2"));
+
+        scheduler.refresh();
+        for (int i = 0; i < 3; i++) {
+            assertThat(scheduler.getLoads().get("host-" + i).getRunningContainers(), equalTo(2));
+        }
+    }
+
+    @Test
+    public void testBinpack() throws DockerException {
+        scheduler = new PlacementScheduler(cluster, PlacementStrategies.binpack(3));
+
+        List<String> hosts = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            hosts.add(scheduler.createContainer(config("busybox")).getHost());
+        }
+        assertThat(hosts, contains("host-0", "host-1", "host-1", "host-2"));
+    }
+
+    @Test
+    public void testImageLocality() throws DockerException {
+        daemons.get(0).addImage("stub/app", "1.0");
+        scheduler = new PlacementScheduler(cluster, PlacementStrategies.imageLocality(PlacementStrategies.spread()));
+
+        Placement placement = scheduler.createContainer(config("stub/app:1.0"));
+        assertThat(placement.getHost(), equalTo("host-0"));
+        assertThat(placement.getClient().inspectContainer(placement.getContainerId()).getId(), equalTo(placement.getContainerId()));
+        assertThat(scheduler.createContainer(config("busybox")).getHost(), equalTo("host-2"));
+    }
+
+    @Test
+    public void testFallsBackToNextHost() throws DockerException {
+        scheduler = new PlacementScheduler(cluster, PlacementStrategies.spread());
+        daemons.get(2).failNext("/containers/create", 500, 1);
+
+        assertThat(scheduler.createContainer(config("busybox")).getHost(), equalTo("host-1"));
+    }
+
+    private static ContainerConfig config(String image) {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage(image);
+        config.setCmd(new String[]{"sleep", "60"});
+        return config;
+    }
+}
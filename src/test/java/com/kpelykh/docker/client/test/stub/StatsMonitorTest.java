@@ -0,0 +1,159 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.NotFoundException;
+import com.kpelykh.docker.client.StatsListener;
+import com.kpelykh.docker.client.StatsMonitor;
+import com.kpelykh.docker.client.StatsReader;
+import com.kpelykh.docker.client.StatsRing;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.StatsSample;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Stats of containers on the stub daemon, read with a {@link StatsReader} and a {@link StatsMonitor}.
+ */
+public class StatsMonitorTest {
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        daemon.setStatsInterval(20, TimeUnit.MILLISECONDS);
+        dockerClient = daemon.newClient();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        daemon.close();
+    }
+
+    @Test
+    public void testReadStats() throws Exception {
+        daemon.setRunMillis(60000);
+        String id = dockerClient.createContainer(config()).getId();
+        dockerClient.startContainer(id);
+
+        StatsReader reader = dockerClient.readStats(id);
+        StatsSample sample = new StatsSample();
+        for (int n = 0; n < 5; n++) {
+            assertThat(reader.next(sample), is(true));
+            assertThat(sample.getTimestampNanos(), greaterThan(0L));
+            assertThat(sample.getCpuTotalUsage(), equalTo((n + 1) * 10000000L));
+            assertThat(sample.getCpuKernelUsage() + sample.getCpuUserUsage(), equalTo(sample.getCpuTotalUsage()));
+            assertThat(sample.getSystemCpuUsage(), equalTo((n + 1) * 1000000000L));
+            assertThat(sample.getPreviousCpuTotalUsage(), equalTo(n * 10000000L));
+            assertThat(sample.getOnlineCpus(), equalTo(2L));
+            assertThat(sample.getThrottledPeriods(), equalTo((n + 1) / 2L));
+            assertThat(sample.getMemoryUsage(), equalTo(1024 * 1024 + n * 4096L));
+            assertThat(sample.getMemoryLimit(), equalTo(64 * 1024 * 1024L));
+            assertThat(sample.getMemoryCache(), equalTo(4096L));
+            // two interfaces
+            assertThat(sample.getRxBytes(), equalTo(n * 2000L));
+            assertThat(sample.getTxPackets(), equalTo(n * 10L));
+            assertThat(sample.getRxDropped(), equalTo(n * 2L));
+            assertThat(sample.getBlkioReadBytes(), equalTo(n * 512L));
+            assertThat(sample.getBlkioWriteBytes(), equalTo(n * 256L));
+            assertThat(sample.getPids(), equalTo(3L));
+            if (n > 0) {
+                assertThat(sample.getCpuPercent(), closeTo(2.0, 0.001));
+            }
+        }
+        assertThat(sample.getMemoryPercent(), closeTo(100.0 * (1024 * 1024 + 4 * 4096) / (64 * 1024 * 1024), 0.001));
+        reader.close();
+        assertThat(reader.next(sample), is(false));
+        assertThat(reader.getSampleCount(), equalTo(5L));
+    }
+
+    @Test
+    public void testStatsEndWithContainer() throws Exception {
+        String id = dockerClient.createContainer(config()).getId();
+        StatsReader reader = dockerClient.readStats(id);
+        StatsSample sample = new StatsSample();
+        // a container that does not run has a single sample
+        assertThat(reader.next(sample), is(true));
+        assertThat(reader.next(sample), is(false));
+
+        try {
+            dockerClient.readStats("nosuchcontainer").next(sample);
+            throw new AssertionError("expected NotFoundException");
+        } catch (NotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void testMonitorManyContainers() throws Exception {
+        daemon.setRunMillis(500);
+        StatsMonitor monitor = new StatsMonitor(dockerClient, 8);
+        final ConcurrentMap<String, AtomicLong> seen = new ConcurrentHashMap<String, AtomicLong>();
+        final CountDownLatch ended = new CountDownLatch(50);
+        monitor.addListener(new StatsListener() {
+            @Override
+            public void onSample(String containerId, StatsSample sample) {
+                seen.putIfAbsent(containerId, new AtomicLong());
+                seen.get(containerId).incrementAndGet();
+            }
+
+            @Override
+            public void onEnd(String containerId, StatsRing ring) {
+                ended.countDown();
+            }
+        });
+
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            String id = dockerClient.createContainer(config()).getId();
+            dockerClient.startContainer(id);
+            ids.add(id);
+            monitor.watch(id);
+        }
+        assertThat(ended.await(20, TimeUnit.SECONDS), is(true));
+
+        StatsSample latest = new StatsSample();
+        StatsSample before = new StatsSample();
+        for (String id : ids) {
+            assertThat(monitor.isWatching(id), is(false));
+            StatsRing ring = monitor.getRing(id);
+            assertThat(ring.getCount(), equalTo(seen.get(id).get()));
+            assertThat(ring.getCount(), greaterThan(8L));
+            assertThat(ring.size(), equalTo(8));
+            assertThat(ring.latest(latest), is(true));
+            assertThat(ring.get(7, before), is(true));
+            assertThat(ring.get(8, before), is(false));
+            // the ring keeps the last samples in order
+            assertThat(ring.get(1, before), is(true));
+            assertThat(latest.getCpuTotalUsage() - before.getCpuTotalUsage(), equalTo(10000000L));
+            assertThat(latest.getCpuTotalUsage(), equalTo(ring.getCount() * 10000000L));
+        }
+        assertThat(monitor.getContainerIds().size(), equalTo(50));
+        monitor.unwatch(ids.get(0));
+        assertThat(monitor.getRing(ids.get(0)), nullValue());
+        monitor.close();
+    }
+
+    private static ContainerConfig config() {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"top"});
+        return config;
+    }
+}
@@ -0,0 +1,1499 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.utils.NamedThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process fake of the Docker remote API, serving HTTP on a random loopback port.
+ * <p>
+ * It implements the endpoints {@link DockerClient} uses with in-memory containers and images, so
+ * that tests and benchmarks run offline and reproducibly. Containers exit {@link #setRunMillis run
+ * millis} after being started with the configured exit code, and every state change is published on
+ * {@code /events}. Response latency, the size of logs, copies and exports, and failures can be
+ * configured. Failures picked at random use a seeded generator.
+ * <p>
+ * Clients connect to a small front end that passes requests on to a JDK {@link HttpServer}, except
+ * for exec starts: like the daemon it takes over their connection for the raw stream, which the
+ * JDK server has no way to do.
+ */
+public class StubDockerDaemon implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StubDockerDaemon.class);
+
+    private static final Pattern VERSION_PREFIX = Pattern.compile("^/v[0-9.]+");
+    private static final Pattern CONTAINER = Pattern.compile("^/containers/([^/]+)(?:/([a-z]+))?$");
+    private static final Pattern IMAGE = Pattern.compile("^/images/(.+?)(?:/(json|get|tag|push))?$");
+    private static final Pattern EXEC = Pattern.compile("^/exec/([^/]+)/json$");
+    private static final Pattern EXEC_START = Pattern.compile("^/exec/([^/]+)/start$");
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    private static final String JSON = "application/json";
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final String TAR = "application/x-tar";
+    private static final String RAW_STREAM = "application/vnd.docker.raw-stream";
+
+    static {
+        // headers and body go out in separate writes, which would otherwise run into delayed acks
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ServerSocket front;
+    private final ExecutorService frontExecutor;
+    private final Set<Socket> sockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final ExecutorService executor;
+    private final ScheduledExecutorService scheduler;
+    private final Random random;
+
+    // containers and images by id, both guarded by this
+    private final Map<String, StubContainer> containers = new LinkedHashMap<String, StubContainer>();
+    private final Map<String, StubImage> images = new LinkedHashMap<String, StubImage>();
+    private final Map<String, StubExec> execs = new ConcurrentHashMap<String, StubExec>();
+    private final List<ObjectNode> events = new ArrayList<ObjectNode>();
+    private final List<BlockingQueue<ObjectNode>> eventListeners = new CopyOnWriteArrayList<BlockingQueue<ObjectNode>>();
+    private final List<Fault> faults = new CopyOnWriteArrayList<Fault>();
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong logBytes = new AtomicLong();
+    private final Set<InetSocketAddress> connections = Collections.newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+
+    private volatile long latencyMillis;
+    private volatile int payloadSize = 1024;
+    private volatile long runMillis;
+    private volatile int exitCode;
+    private volatile double failureRate;
+    private volatile int logLines;
+    private volatile long statsIntervalMillis = 1000;
+    private volatile int cutLogsAfter;
+    private final AtomicInteger logCuts = new AtomicInteger();
+    private volatile boolean closed;
+
+    public StubDockerDaemon() throws IOException {
+        this(42);
+    }
+
+    /**
+     * @param seed seed for randomly injected failures
+     */
+    public StubDockerDaemon(long seed) throws IOException {
+        this.random = new Random(seed);
+        // request bodies are drained after parsing, so the parser must not close them
+        mapper.configure(JsonParser.Feature.AUTO_CLOSE_SOURCE, false);
+        this.executor = Executors.newCachedThreadPool(new NamedThreadFactory("stub-docker-http"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("stub-docker-run"));
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 128);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    dispatch(exchange);
+                } catch (Exception e) {
+                    LOGGER.warn("Stub failed to handle {}", exchange.getRequestURI(), e);
+                    try {
+                        respond(exchange, 500, TEXT, String.valueOf(e.getMessage()));
+                    } catch (IOException ignored) {
+                        // headers were sent already
+                    }
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        this.front = new ServerSocket(0, 128, InetAddress.getByName("127.0.0.1"));
+        this.frontExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("stub-docker-front"));
+        frontExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        });
+
+        addImage("busybox", "latest");
+    }
+
+    /**
+     * @return the url to hand to {@link DockerClient#DockerClient(String)}
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + front.getLocalPort();
+    }
+
+    public DockerClient newClient() throws DockerException {
+        return new DockerClient(getUrl());
+    }
+
+    /**
+     * Delay every response, except the event stream, by this long.
+     */
+    public void setLatency(long latency, TimeUnit unit) {
+        this.latencyMillis = unit.toMillis(latency);
+    }
+
+    /**
+     * Size of container logs, copied files and exported tarballs.
+     */
+    public void setPayloadSize(int payloadSize) {
+        this.payloadSize = payloadSize;
+    }
+
+    /**
+     * How long started containers run before they exit.
+     */
+    public void setRunMillis(long runMillis) {
+        this.runMillis = runMillis;
+    }
+
+    public void setExitCode(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * Fail this fraction of all requests with a 500.
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Containers created from now on have this many lines of output on {@code /logs}, written when
+     * the container was created. Two lines share each timestamp and every third goes to stderr.
+     */
+    public void setLogLines(int logLines) {
+        this.logLines = logLines;
+    }
+
+    /**
+     * How often {@code /stats} streams a sample of a running container; the daemon sends one a second.
+     */
+    public void setStatsInterval(long interval, TimeUnit unit) {
+        this.statsIntervalMillis = unit.toMillis(interval);
+    }
+
+    /**
+     * Drop the connection of the next {@code times} {@code /logs} responses after {@code lines} lines.
+     */
+    public void cutLogs(int lines, int times) {
+        this.cutLogsAfter = lines;
+        this.logCuts.set(times);
+    }
+
+    /**
+     * Fail the next {@code times} requests whose path, without the version prefix, matches the
+     * pattern with the given status.
+     */
+    public void failNext(String pathPattern, int status, int times) {
+        faults.add(new Fault(Pattern.compile(pathPattern), status, times));
+    }
+
+    /**
+     * @return the number of requests received so far
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return payload bytes of logs written to clients so far, which stalls once a client stops reading
+     */
+    public long getLogBytesSent() {
+        return logBytes.get();
+    }
+
+    /**
+     * @return number of client connections accepted so far
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * Add {@code count} exited containers at once, e.g. to produce huge container lists.
+     */
+    public synchronized void addContainers(int count, String image) {
+        for (int i = 0; i < count; i++) {
+            ObjectNode config = mapper.createObjectNode();
+            config.put("Image", image);
+            config.putArray("Cmd").add("true");
+            StubContainer container = new StubContainer(nextId(), "/stub_" + ids.get(), config);
+            container.finish(0);
+            containers.put(container.id, container);
+        }
+    }
+
+    public synchronized String addImage(String repository, String tag) {
+        StubImage image = new StubImage(nextId(), repository + ":" + tag);
+        images.put(image.id, image);
+        return image.id;
+    }
+
+    public synchronized int getContainerCount() {
+        return containers.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        IOUtils.closeQuietly(front);
+        for (Socket socket : sockets) {
+            IOUtils.closeQuietly(socket);
+        }
+        server.stop(0);
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+        frontExecutor.shutdownNow();
+    }
+
+    private void accept() {
+        while (!closed) {
+            final Socket client;
+            try {
+                client = front.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    LOGGER.warn("Stub stopped accepting connections", e);
+                }
+                return;
+            }
+            connections.add((InetSocketAddress) client.getRemoteSocketAddress());
+            sockets.add(client);
+            frontExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    serve(client);
+                }
+            });
+        }
+    }
+
+    /**
+     * Pass the requests of a client connection on to the HTTP server over a connection of its own,
+     * and its responses back as they are, until an exec start takes the connection over.
+     */
+    private void serve(final Socket client) {
+        Socket backend = null;
+        final AtomicBoolean hijacked = new AtomicBoolean();
+        try {
+            client.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+            OutputStream backendOut = null;
+            String head;
+            while ((head = readHead(in)) != null) {
+                String[] requestLine = head.substring(0, head.indexOf("\r\n")).split(" ");
+                Map<String, String> headers = parseHeaders(head);
+                String path = VERSION_PREFIX.matcher(URI.create(requestLine[1]).getRawPath()).replaceFirst("");
+                Matcher matcher = EXEC_START.matcher(path);
+                if (requestLine[0].equals("POST") && matcher.matches()) {
+                    // responses to earlier requests were read by the client before it sent this one
+                    hijacked.set(true);
+                    IOUtils.closeQuietly(backend);
+                    startExec(matcher.group(1), headers, in, out);
+                    return;
+                }
+
+                if (backend == null) {
+                    backend = new Socket(InetAddress.getByName("127.0.0.1"), server.getAddress().getPort());
+                    backend.setTcpNoDelay(true);
+                    sockets.add(backend);
+                    backendOut = new BufferedOutputStream(backend.getOutputStream());
+                    relay(backend, client, hijacked);
+                }
+                backendOut.write(head.getBytes("ISO-8859-1"));
+                copyBody(in, backendOut, headers);
+                backendOut.flush();
+            }
+        } catch (Exception e) {
+            LOGGER.trace("Stub connection ended", e);
+        } finally {
+            IOUtils.closeQuietly(client);
+            IOUtils.closeQuietly(backend);
+            sockets.remove(client);
+            if (backend != null) {
+                sockets.remove(backend);
+            }
+        }
+    }
+
+    private void relay(final Socket backend, final Socket client, final AtomicBoolean hijacked) {
+        frontExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InputStream in = backend.getInputStream();
+                    OutputStream out = client.getOutputStream();
+                    byte[] buffer = new byte[64 * 1024];
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    LOGGER.trace("Stub connection ended", e);
+                }
+                if (!hijacked.get()) {
+                    IOUtils.closeQuietly(client);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the request line and headers including the empty line, or null at the end of the stream
+     */
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(512);
+        int last = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            head.write(b);
+            last = (last << 8) | b;
+            if (last == 0x0d0a0d0a) {
+                return head.toString("ISO-8859-1");
+            }
+            if (head.size() > MAX_HEAD_SIZE) {
+                throw new IOException("Request head too large");
+            }
+        }
+        if (head.size() > 0) {
+            throw new IOException("Stream ended within a request head");
+        }
+        return null;
+    }
+
+    /**
+     * @return the headers of the request by lower case name
+     */
+    private static Map<String, String> parseHeaders(String head) {
+        Map<String, String> headers = new HashMap<String, String>();
+        String[] lines = head.split("\r\n");
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    private static void copyBody(InputStream in, OutputStream out, Map<String, String> headers) throws IOException {
+        if ("chunked".equalsIgnoreCase(headers.get("transfer-encoding"))) {
+            while (true) {
+                String sizeLine = readLine(in);
+                out.write((sizeLine + "\r\n").getBytes("ISO-8859-1"));
+                int semicolon = sizeLine.indexOf(';');
+                long size = Long.parseLong((semicolon < 0 ? sizeLine : sizeLine.substring(0, semicolon)).trim(), 16);
+                if (size == 0) {
+                    String trailer;
+                    do {
+                        trailer = readLine(in);
+                        out.write((trailer + "\r\n").getBytes("ISO-8859-1"));
+                    } while (!trailer.isEmpty());
+                    return;
+                }
+                copy(in, out, size + 2);
+            }
+        } else if (headers.containsKey("content-length")) {
+            copy(in, out, Long.parseLong(headers.get("content-length")));
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Stream ended within a chunk");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(count, 64 * 1024) + 1];
+        while (count > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(count, buffer.length));
+            if (n < 0) {
+                throw new IOException("Stream ended within a request body");
+            }
+            out.write(buffer, 0, n);
+            count -= n;
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] bytes) throws IOException {
+        int read = 0;
+        while (read < bytes.length) {
+            int n = in.read(bytes, read, bytes.length - read);
+            if (n < 0) {
+                throw new IOException("Stream ended within a request body");
+            }
+            read += n;
+        }
+    }
+
+    private void dispatch(HttpExchange exchange) throws Exception {
+        requests.incrementAndGet();
+
+        String method = exchange.getRequestMethod();
+        String path = VERSION_PREFIX.matcher(exchange.getRequestURI().getRawPath()).replaceFirst("");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        if (path.equals("/events")) {
+            streamEvents(exchange, query);
+            return;
+        }
+
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        if (injectFault(exchange, path)) {
+            return;
+        }
+
+        Matcher matcher;
+        if (path.equals("/_ping")) {
+            respond(exchange, 200, TEXT, "OK");
+        } else if (path.equals("/version")) {
+            ObjectNode version = mapper.createObjectNode();
+            version.put("Version", "0.11.1-stub");
+            version.put("ApiVersion", "1.11");
+            version.put("GitCommit", "stub");
+            version.put("GoVersion", "go1.2.1");
+            version.put("Os", "linux");
+            version.put("Arch", "amd64");
+            version.put("KernelVersion", System.getProperty("os.version"));
+            respondJson(exchange, 200, version);
+        } else if (path.equals("/info")) {
+            ObjectNode info = mapper.createObjectNode();
+            synchronized (this) {
+                info.put("Containers", containers.size());
+                info.put("Images", images.size());
+            }
+            info.put("Driver", "stub");
+            info.put("ExecutionDriver", "stub");
+            info.put("NEventsListener", eventListeners.size());
+            respondJson(exchange, 200, info);
+        } else if (path.equals("/containers/json") && method.equals("GET")) {
+            listContainers(exchange, query);
+        } else if (path.equals("/containers/create") && method.equals("POST")) {
+            createContainer(exchange, query);
+        } else if ((matcher = CONTAINER.matcher(path)).matches()) {
+            StubContainer container = findContainer(matcher.group(1));
+            if (container == null) {
+                drain(exchange);
+                respond(exchange, 404, TEXT, "No such container: " + matcher.group(1));
+            } else {
+                handleContainer(exchange, method, container, matcher.group(2), query);
+            }
+        } else if ((matcher = EXEC.matcher(path)).matches()) {
+            StubExec exec = execs.get(matcher.group(1));
+            if (exec == null) {
+                drain(exchange);
+                respond(exchange, 404, TEXT, "No such exec instance: " + matcher.group(1));
+            } else {
+                respondJson(exchange, 200, exec.inspect());
+            }
+        } else if (path.equals("/images/json") && method.equals("GET")) {
+            listImages(exchange, query);
+        } else if (path.equals("/images/create") && method.equals("POST")) {
+            createImage(exchange, query);
+        } else if (path.equals("/build") && method.equals("POST")) {
+            build(exchange, query);
+        } else if ((matcher = IMAGE.matcher(path)).matches()) {
+            StubImage image = findImage(URLDecoder.decode(matcher.group(1), "UTF-8"));
+            if (image == null) {
+                respond(exchange, 404, TEXT, "No such image: " + matcher.group(1));
+            } else {
+                handleImage(exchange, method, image, matcher.group(2));
+            }
+        } else {
+            drain(exchange);
+            respond(exchange, 404, TEXT, "page not found");
+        }
+    }
+
+    private boolean injectFault(HttpExchange exchange, String path) throws IOException {
+        for (Fault fault : faults) {
+            if (fault.pattern.matcher(path).matches() && fault.remaining.getAndDecrement() > 0) {
+                drain(exchange);
+                respond(exchange, fault.status, TEXT, "injected failure");
+                return true;
+            }
+        }
+
+        boolean fail;
+        synchronized (random) {
+            fail = failureRate > 0 && random.nextDouble() < failureRate;
+        }
+        if (fail) {
+            drain(exchange);
+            respond(exchange, 500, TEXT, "injected failure");
+        }
+        return fail;
+    }
+
+    private void listContainers(HttpExchange exchange, Map<String, String> query) throws IOException {
+        boolean all = "1".equals(query.get("all")) || "true".equals(query.get("all"));
+        JsonNode filters = filters(exchange, query, "status", "label", "name", "ancestor");
+        if (filters == null) {
+            return;
+        }
+        ArrayNode list = mapper.createArrayNode();
+        synchronized (this) {
+            for (StubContainer container : containers.values()) {
+                if ((all || container.running || filters.has("status")) && container.matches(filters)) {
+                    list.add(container.summary());
+                }
+            }
+        }
+        respondJson(exchange, 200, list);
+    }
+
+    /**
+     * @return the parsed {@code filters} parameter, or {@code null} after rejecting unknown filters
+     */
+    private JsonNode filters(HttpExchange exchange, Map<String, String> query, String... supported) throws IOException {
+        JsonNode filters = query.containsKey("filters") ? mapper.readTree(query.get("filters")) : mapper.createObjectNode();
+        Iterator<String> names = filters.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!Arrays.asList(supported).contains(name)) {
+                respond(exchange, 400, TEXT, "Invalid filter '" + name + "'");
+                return null;
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * @return whether every filter has at least one value accepted by {@code test}
+     */
+    private static boolean matchesAll(JsonNode filters, FilterTest test) {
+        Iterator<Map.Entry<String, JsonNode>> fields = filters.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> filter = fields.next();
+            boolean matched = false;
+            for (JsonNode value : filter.getValue()) {
+                matched |= test.accepts(filter.getKey(), value.asText());
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private interface FilterTest {
+        boolean accepts(String filter, String value);
+    }
+
+    private void createContainer(HttpExchange exchange, Map<String, String> query) throws IOException {
+        JsonNode config = mapper.readTree(exchange.getRequestBody());
+        String image = config.path("Image").asText();
+        if (findImage(image) == null) {
+            respond(exchange, 404, TEXT, "No such image: " + image);
+            return;
+        }
+
+        String id = nextId();
+        String name = query.containsKey("name") ? "/" + query.get("name") : "/stub_" + ids.get();
+        StubContainer container = new StubContainer(id, name, config);
+        synchronized (this) {
+            containers.put(id, container);
+        }
+        publish("create", container);
+
+        ObjectNode response = mapper.createObjectNode();
+        response.put("Id", id);
+        response.putArray("Warnings");
+        respondJson(exchange, 201, response);
+    }
+
+    private void handleContainer(HttpExchange exchange, String method, final StubContainer container, String action,
+                                 Map<String, String> query) throws Exception {
+        if (action == null && method.equals("DELETE")) {
+            synchronized (this) {
+                containers.remove(container.id);
+            }
+            publish("destroy", container);
+            respond(exchange, 204, TEXT, null);
+        } else if ("json".equals(action)) {
+            respondJson(exchange, 200, container.inspect());
+        } else if ("start".equals(action) || "restart".equals(action)) {
+            drain(exchange);
+            start(container);
+            respond(exchange, 204, TEXT, null);
+        } else if ("stop".equals(action) || "kill".equals(action)) {
+            drain(exchange);
+            if (container.running) {
+                die(container, "kill".equals(action) ? 137 : 0);
+            }
+            respond(exchange, 204, TEXT, null);
+        } else if ("logs".equals(action) && method.equals("GET")) {
+            respondLogLines(exchange, container, query);
+        } else if ("stats".equals(action) && method.equals("GET")) {
+            respondStats(exchange, container, !"0".equals(query.get("stream")));
+        } else if ("wait".equals(action)) {
+            drain(exchange);
+            container.exited.await();
+            ObjectNode response = mapper.createObjectNode();
+            response.put("StatusCode", container.exitCode);
+            respondJson(exchange, 200, response);
+        } else if ("exec".equals(action) && method.equals("POST")) {
+            createExec(exchange, container);
+        } else if ("attach".equals(action)) {
+            drain(exchange);
+            respondLogs(exchange);
+        } else if ("copy".equals(action)) {
+            JsonNode copy = mapper.readTree(exchange.getRequestBody());
+            String resource = copy.path("Resource").asText();
+            respondTar(exchange, resource.substring(resource.lastIndexOf('/') + 1));
+        } else if ("export".equals(action)) {
+            respondTar(exchange, "rootfs");
+        } else if ("changes".equals(action)) {
+            respondJson(exchange, 200, mapper.createArrayNode());
+        } else {
+            drain(exchange);
+            respond(exchange, 404, TEXT, "page not found");
+        }
+    }
+
+    private void createExec(HttpExchange exchange, StubContainer container) throws IOException {
+        JsonNode config = mapper.readTree(exchange.getRequestBody());
+        if (!container.running) {
+            respond(exchange, 409, TEXT, "Container " + container.id + " is not running");
+            return;
+        }
+        if (config.path("Cmd").size() == 0) {
+            respond(exchange, 500, TEXT, "No exec command specified");
+            return;
+        }
+        StubExec exec = new StubExec(nextId(), container, config);
+        execs.put(exec.id, exec);
+
+        ObjectNode response = mapper.createObjectNode();
+        response.put("Id", exec.id);
+        respondJson(exchange, 201, response);
+    }
+
+    /**
+     * Run a command of the exec on the connection, which like the daemon the stub takes over: the
+     * output goes straight to the socket, the rest of the input is read by the command, and the
+     * connection is closed with the end of the output. Commands are {@code echo}, {@code cat},
+     * {@code true} and {@code false}.
+     */
+    private void startExec(String execId, Map<String, String> headers, InputStream in, OutputStream out) throws Exception {
+        requests.incrementAndGet();
+        byte[] body = new byte[Integer.parseInt(headers.containsKey("content-length") ? headers.get("content-length") : "0")];
+        readFully(in, body);
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+
+        StubExec exec = execs.get(execId);
+        if (exec == null) {
+            writeResponse(out, "404 Not Found", "No such exec instance: " + execId);
+            return;
+        }
+        synchronized (exec) {
+            if (exec.started) {
+                writeResponse(out, "409 Conflict", "Exec " + exec.id + " has already run");
+                return;
+            }
+            exec.started = true;
+            exec.running = true;
+        }
+        JsonNode start = body.length == 0 ? mapper.createObjectNode() : mapper.readTree(body);
+        boolean tty = start.path("Tty").asBoolean(exec.tty);
+        String head = "Upgrade".equalsIgnoreCase(headers.get("connection"))
+                ? "HTTP/1.1 101 UPGRADED\r\nConnection: Upgrade\r\nUpgrade: tcp\r\n"
+                : "HTTP/1.1 200 OK\r\n";
+        out.write((head + "Content-Type: " + RAW_STREAM + "\r\n\r\n").getBytes("UTF-8"));
+        out.flush();
+
+        String[] cmd = exec.cmd;
+        int code = 0;
+        if (cmd[0].equals("echo")) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 1; i < cmd.length; i++) {
+                line.append(i > 1 ? " " : "").append(cmd[i]);
+            }
+            writeExecOutput(out, 1, line.append('\n').toString().getBytes("UTF-8"), tty);
+        } else if (cmd[0].equals("cat") && cmd.length > 1) {
+            String error = "cat: can't open '" + cmd[1] + "': No such file or directory\n";
+            writeExecOutput(out, 2, error.getBytes("UTF-8"), tty);
+            code = 1;
+        } else if (cmd[0].equals("cat")) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while (exec.attachStdin && (n = in.read(buffer)) >= 0) {
+                writeExecOutput(out, 1, Arrays.copyOf(buffer, n), tty);
+            }
+        } else if (cmd[0].equals("false")) {
+            code = 1;
+        } else if (!cmd[0].equals("true")) {
+            String error = "exec: \"" + cmd[0] + "\": executable file not found in $PATH\n";
+            writeExecOutput(out, 2, error.getBytes("UTF-8"), tty);
+            code = 127;
+        }
+        exec.exitCode = code;
+        exec.running = false;
+        out.flush();
+    }
+
+    private static void writeResponse(OutputStream out, String status, String text) throws IOException {
+        byte[] body = text.getBytes("UTF-8");
+        String head = "HTTP/1.1 " + status + "\r\nContent-Type: " + TEXT + "\r\nContent-Length: " + body.length
+                + "\r\nConnection: close\r\n\r\n";
+        out.write(head.getBytes("UTF-8"));
+        out.write(body);
+        out.flush();
+    }
+
+    private void writeExecOutput(OutputStream out, int stream, byte[] bytes, boolean tty) throws IOException {
+        if (!tty) {
+            int n = bytes.length;
+            out.write(new byte[]{(byte) stream, 0, 0, 0, (byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n});
+        }
+        out.write(bytes);
+        out.flush();
+    }
+
+    private void start(final StubContainer container) {
+        synchronized (container) {
+            if (container.running) {
+                return;
+            }
+            container.start();
+        }
+        publish("start", container);
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                die(container, exitCode);
+            }
+        }, runMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void die(StubContainer container, int code) {
+        synchronized (container) {
+            if (!container.running) {
+                return;
+            }
+            container.finish(code);
+        }
+        publish("die", container);
+    }
+
+    private void listImages(HttpExchange exchange, Map<String, String> query) throws IOException {
+        JsonNode filters = filters(exchange, query, "dangling", "label");
+        if (filters == null) {
+            return;
+        }
+        ArrayNode list = mapper.createArrayNode();
+        synchronized (this) {
+            for (final StubImage image : images.values()) {
+                boolean matches = matchesAll(filters, new FilterTest() {
+                    @Override
+                    public boolean accepts(String filter, String value) {
+                        // stub images carry no labels
+                        return filter.equals("dangling") && Boolean.parseBoolean(value) == image.repoTag.equals("<none>:<none>");
+                    }
+                });
+                if (!matches) {
+                    continue;
+                }
+                ObjectNode node = list.addObject();
+                node.put("Id", image.id);
+                node.putArray("RepoTags").add(image.repoTag);
+                node.put("Created", image.created);
+                node.put("Size", payloadSize);
+                node.put("VirtualSize", payloadSize);
+            }
+        }
+        respondJson(exchange, 200, list);
+    }
+
+    private void createImage(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long size = drain(exchange);
+        String repository = query.containsKey("repo") ? query.get("repo") : query.get("fromImage");
+        String tag = query.containsKey("tag") ? query.get("tag") : "latest";
+        if ("-".equals(query.get("fromSrc"))) {
+            String id = addImage(repository, tag);
+            LOGGER.debug("Stub imported {} bytes as {}:{}", new Object[]{size, repository, tag});
+            ObjectNode response = mapper.createObjectNode();
+            response.put("status", id);
+            respondJson(exchange, 200, response);
+            return;
+        }
+
+        // a pull streams its progress; like the daemon, failures are reported in-band
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        writeProgress(out, "status", "Pulling repository " + repository);
+        if (repository.startsWith("missing/")) {
+            writeProgress(out, "error", "Error: image " + repository + " not found");
+            return;
+        }
+        String id = addImage(repository, tag);
+        for (int i = 1; i <= 4; i++) {
+            ObjectNode progress = mapper.createObjectNode();
+            progress.put("status", "Downloading");
+            progress.put("id", id.substring(0, 12));
+            progress.putObject("progressDetail").put("current", payloadSize * i / 4).put("total", payloadSize);
+            out.write(mapper.writeValueAsBytes(progress));
+        }
+        writeProgress(out, "status", "Download complete");
+    }
+
+    /**
+     * Every line of the Dockerfile in the context is a step; {@code RUN false} fails the build.
+     */
+    private void build(HttpExchange exchange, Map<String, String> query) throws IOException {
+        List<String> steps = new ArrayList<String>();
+        TarArchiveInputStream tar = new TarArchiveInputStream(exchange.getRequestBody());
+        for (TarArchiveEntry entry = tar.getNextTarEntry(); entry != null; entry = tar.getNextTarEntry()) {
+            if (entry.getName().equals("Dockerfile")) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(tar, "UTF-8"));
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    if (line.trim().length() > 0) {
+                        steps.add(line.trim());
+                    }
+                }
+            }
+        }
+        drain(exchange);
+
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < steps.size(); i++) {
+            writeProgress(out, "stream", "Step " + i + " : " + steps.get(i) + "\n");
+            if (steps.get(i).equals("RUN false")) {
+                writeProgress(out, "error", "The command [/bin/sh -c false] returned a non-zero code: 1");
+                return;
+            }
+        }
+        String tag = query.get("t");
+        String id = tag == null ? addImage("<none>", "<none>") : addImage(tag.split(":")[0], tag.contains(":") ? tag.split(":")[1] : "latest");
+        writeProgress(out, "stream", "Successfully built " + id.substring(0, 12) + "\n");
+    }
+
+    private void writeProgress(OutputStream out, String field, String value) throws IOException {
+        ObjectNode message = mapper.createObjectNode();
+        message.put(field, value);
+        out.write(mapper.writeValueAsBytes(message));
+        out.flush();
+    }
+
+    private void handleImage(HttpExchange exchange, String method, StubImage image, String action) throws IOException {
+        if (action == null && method.equals("DELETE")) {
+            synchronized (this) {
+                images.remove(image.id);
+            }
+            ArrayNode response = mapper.createArrayNode();
+            response.addObject().put("Deleted", image.id);
+            respondJson(exchange, 200, response);
+        } else if ("json".equals(action)) {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("id", image.id);
+            node.put("created", iso(image.created * 1000));
+            node.put("Size", payloadSize);
+            respondJson(exchange, 200, node);
+        } else if ("get".equals(action)) {
+            respondTar(exchange, image.id + "/layer.tar");
+        } else {
+            drain(exchange);
+            respond(exchange, 404, TEXT, "page not found");
+        }
+    }
+
+    private void streamEvents(HttpExchange exchange, Map<String, String> query) throws IOException {
+        long since = query.containsKey("since") ? Long.parseLong(query.get("since")) : 0;
+        long until = query.containsKey("until") ? Long.parseLong(query.get("until")) : 0;
+
+        BlockingQueue<ObjectNode> queue = new LinkedBlockingQueue<ObjectNode>();
+        List<ObjectNode> history;
+        synchronized (this) {
+            history = new ArrayList<ObjectNode>(events);
+            eventListeners.add(queue);
+        }
+
+        try {
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            if (since > 0) {
+                for (ObjectNode event : history) {
+                    writeEvent(out, event, since, until);
+                }
+            }
+            out.flush();
+
+            while (!closed && (until == 0 || System.currentTimeMillis() / 1000 < until)) {
+                ObjectNode event = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    writeEvent(out, event, since, until);
+                    out.flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            // the stub is shutting down
+        } finally {
+            eventListeners.remove(queue);
+        }
+    }
+
+    private void writeEvent(OutputStream out, ObjectNode event, long since, long until) throws IOException {
+        long time = event.get("time").asLong();
+        if (time >= since && (until == 0 || time <= until)) {
+            out.write(mapper.writeValueAsBytes(event));
+        }
+    }
+
+    private void publish(String status, StubContainer container) {
+        ObjectNode event = mapper.createObjectNode();
+        event.put("status", status);
+        event.put("id", container.id);
+        event.put("from", container.image);
+        event.put("time", System.currentTimeMillis() / 1000);
+        synchronized (this) {
+            events.add(event);
+        }
+        for (BlockingQueue<ObjectNode> listener : eventListeners) {
+            listener.add(event);
+        }
+    }
+
+    /**
+     * Multiplexed stdout frames with {@code payloadSize} bytes in total.
+     */
+    private void respondLogs(HttpExchange exchange) throws IOException {
+        int size = payloadSize;
+        int frames = (size + 8191) / 8192;
+        exchange.getResponseHeaders().set("Content-Type", RAW_STREAM);
+        exchange.sendResponseHeaders(200, size == 0 ? -1 : size + frames * 8L);
+
+        OutputStream out = exchange.getResponseBody();
+        byte[] header = new byte[8];
+        header[0] = 1;
+        byte[] payload = filler(Math.min(size, 8192));
+        for (int remaining = size; remaining > 0; remaining -= payload.length) {
+            int n = Math.min(remaining, payload.length);
+            header[4] = (byte) (n >>> 24);
+            header[5] = (byte) (n >>> 16);
+            header[6] = (byte) (n >>> 8);
+            header[7] = (byte) n;
+            out.write(header);
+            out.write(payload, 0, n);
+            logBytes.addAndGet(n);
+        }
+    }
+
+    /**
+     * The log lines of the container that match the query, as multiplexed frames of one line each.
+     */
+    private void respondLogLines(HttpExchange exchange, StubContainer container, Map<String, String> query) throws IOException {
+        boolean stdout = !"0".equals(query.get("stdout"));
+        boolean stderr = !"0".equals(query.get("stderr"));
+        boolean timestamps = "1".equals(query.get("timestamps"));
+        int tail = query.containsKey("tail") && !"all".equals(query.get("tail")) ? Integer.parseInt(query.get("tail")) : -1;
+        long since = query.containsKey("since") ? Long.parseLong(query.get("since")) : 0;
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        List<byte[]> frames = new ArrayList<byte[]>();
+        for (int i = 0; i < container.logLines; i++) {
+            boolean error = i % 3 == 2;
+            long nanos = container.created * 1000000L + (i / 2) * 1000L;
+            if (error ? !stderr : !stdout) {
+                continue;
+            }
+            if (nanos / 1000000000L < since) {
+                continue;
+            }
+            String line = "line " + i + "\n";
+            if (timestamps) {
+                line = format.format(new Date(nanos / 1000000L)) + String.format(".%09dZ ", nanos % 1000000000L) + line;
+            }
+            byte[] payload = line.getBytes("UTF-8");
+            byte[] frame = new byte[8 + payload.length];
+            frame[0] = (byte) (error ? 2 : 1);
+            frame[6] = (byte) (payload.length >>> 8);
+            frame[7] = (byte) payload.length;
+            System.arraycopy(payload, 0, frame, 8, payload.length);
+            frames.add(frame);
+        }
+        if (tail >= 0 && tail < frames.size()) {
+            frames = frames.subList(frames.size() - tail, frames.size());
+        }
+
+        long length = 0;
+        for (byte[] frame : frames) {
+            length += frame.length;
+        }
+        int limit = frames.size();
+        boolean cut = logCuts.getAndDecrement() > 0;
+        if (cut) {
+            limit = Math.min(limit, cutLogsAfter);
+        }
+        // a followed, uncut response is chunked and stays open while the container runs
+        boolean follow = "1".equals(query.get("follow")) && !cut;
+        exchange.getResponseHeaders().set("Content-Type", RAW_STREAM);
+        exchange.sendResponseHeaders(200, follow ? 0 : length == 0 ? -1 : length);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < limit; i++) {
+            out.write(frames.get(i));
+        }
+        out.flush();
+        if (follow) {
+            try {
+                while (container.running && !closed && !container.exited.await(100, TimeUnit.MILLISECONDS)) {
+                    // the output was all written when the container was created
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.close();
+        }
+        // closing the exchange short of the announced length drops the connection
+    }
+
+    /**
+     * Stats samples, one per interval while the container runs if streamed, else a single one.
+     */
+    private void respondStats(HttpExchange exchange, StubContainer container, boolean stream) throws IOException, InterruptedException {
+        drain(exchange);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int n = 0; ; n++) {
+            out.write(mapper.writeValueAsBytes(statsSample(container, n)));
+            out.write('\n');
+            out.flush();
+            if (!stream || !container.running || closed || container.exited.await(statsIntervalMillis, TimeUnit.MILLISECONDS)) {
+                break;
+            }
+        }
+        out.close();
+    }
+
+    /**
+     * The n-th stats sample of a container: counters grow linearly with n, over two CPUs, two network
+     * interfaces and one block device, next to fields that readers have to skip. CPU time grows by
+     * 10 ms a sample, times the container's {@code CpuShares} in units of 1024.
+     */
+    private ObjectNode statsSample(StubContainer container, int n) {
+        int weight = Math.max(container.config.path("CpuShares").asInt() / 1024, 1);
+        ObjectNode sample = mapper.createObjectNode();
+        sample.put("read", iso(System.currentTimeMillis()));
+        sample.put("cpu_stats", cpuStats(n + 1, weight));
+        sample.put("precpu_stats", cpuStats(n, weight));
+
+        ObjectNode memory = sample.putObject("memory_stats");
+        memory.put("usage", 1024 * 1024 + n * 4096L);
+        memory.put("max_usage", 1024 * 1024 + n * 4096L);
+        memory.put("limit", 64 * 1024 * 1024L);
+        ObjectNode memoryDetail = memory.putObject("stats");
+        memoryDetail.put("cache", 4096);
+        memoryDetail.put("rss", 1024 * 1024 + n * 4096L);
+        memoryDetail.putArray("unknown").add(1).addObject().put("nested", true);
+        memory.put("failcnt", 0);
+
+        ObjectNode networks = sample.putObject("networks");
+        for (String name : new String[]{"eth0", "eth1"}) {
+            ObjectNode network = networks.putObject(name);
+            network.put("rx_bytes", n * 1000L);
+            network.put("rx_packets", n * 10L);
+            network.put("rx_errors", 0);
+            network.put("rx_dropped", n);
+            network.put("tx_bytes", n * 500L);
+            network.put("tx_packets", n * 5L);
+            network.put("tx_errors", 0);
+            network.put("tx_dropped", 0);
+        }
+
+        ObjectNode blkio = sample.putObject("blkio_stats");
+        ArrayNode bytes = blkio.putArray("io_service_bytes_recursive");
+        String[] ops = {"Read", "Write", "Sync", "Async", "Total"};
+        long[] values = {n * 512L, n * 256L, n * 768L, 0, n * 768L};
+        for (int i = 0; i < ops.length; i++) {
+            bytes.addObject().put("major", 8).put("minor", 0).put("op", ops[i]).put("value", values[i]);
+        }
+        blkio.putArray("io_serviced_recursive").addObject().put("major", 8).put("minor", 0).put("op", "Read").put("value", n);
+        blkio.putNull("io_queue_recursive");
+
+        sample.putObject("pids_stats").put("current", 3);
+        return sample;
+    }
+
+    private ObjectNode cpuStats(int n, int weight) {
+        ObjectNode cpu = mapper.createObjectNode();
+        if (n == 0) {
+            return cpu;
+        }
+        long total = n * 10000000L * weight;
+        ObjectNode usage = cpu.putObject("cpu_usage");
+        usage.put("total_usage", total);
+        usage.putArray("percpu_usage").add(total / 2).add(total / 2);
+        usage.put("usage_in_kernelmode", total / 4);
+        usage.put("usage_in_usermode", total / 4 * 3);
+        cpu.put("system_cpu_usage", n * 1000000000L);
+        ObjectNode throttling = cpu.putObject("throttling_data");
+        throttling.put("periods", n);
+        throttling.put("throttled_periods", n / 2);
+        throttling.put("throttled_time", n / 2 * 1000L);
+        return cpu;
+    }
+
+    /**
+     * A tar stream with a single file of {@code payloadSize} bytes.
+     */
+    private void respondTar(HttpExchange exchange, String name) throws IOException {
+        drain(exchange);
+        exchange.getResponseHeaders().set("Content-Type", TAR);
+        exchange.sendResponseHeaders(200, 0);
+
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(exchange.getResponseBody());
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setSize(payloadSize);
+        tar.putArchiveEntry(entry);
+        byte[] payload = filler(Math.min(payloadSize, 64 * 1024));
+        for (int remaining = payloadSize; remaining > 0; remaining -= payload.length) {
+            tar.write(payload, 0, Math.min(remaining, payload.length));
+        }
+        tar.closeArchiveEntry();
+        tar.finish();
+    }
+
+    private void respondJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        respond(exchange, status, JSON, mapper.writeValueAsString(body));
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        drain(exchange);
+        // DockerClient's JsonClientFilter expects a content type on every response
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            byte[] bytes = body.getBytes("UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static long drain(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        long size = 0;
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) >= 0) {
+            size += n;
+        }
+        return size;
+    }
+
+    private synchronized StubContainer findContainer(String idOrName) {
+        for (StubContainer container : containers.values()) {
+            if (container.id.startsWith(idOrName) || container.name.equals("/" + idOrName)) {
+                return container;
+            }
+        }
+        return null;
+    }
+
+    private synchronized StubImage findImage(String idOrName) {
+        String repoTag = idOrName.contains(":") ? idOrName : idOrName + ":latest";
+        for (StubImage image : images.values()) {
+            if (image.id.startsWith(idOrName) || image.repoTag.equals(repoTag)) {
+                return image;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deterministic 64 hex digit ids that, like real ones, differ in their first characters.
+     */
+    private String nextId() {
+        long a = mix(ids.incrementAndGet());
+        long b = mix(a);
+        long c = mix(b);
+        return String.format("%016x%016x%016x%016x", a, b, c, mix(c));
+    }
+
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> query = new HashMap<String, String>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static byte[] filler(int size) {
+        byte[] line = "stub output line\n".getBytes();
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = line[i % line.length];
+        }
+        return bytes;
+    }
+
+    private static String iso(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(millis));
+    }
+
+    private final class StubContainer {
+
+        final String id;
+        final String name;
+        final String image;
+        final JsonNode config;
+        final long created = System.currentTimeMillis();
+        final CountDownLatch exited = new CountDownLatch(1);
+        final int logLines = StubDockerDaemon.this.logLines;
+
+        volatile boolean running;
+        volatile int exitCode;
+        volatile long startedAt;
+        volatile long finishedAt;
+
+        StubContainer(String id, String name, JsonNode config) {
+            this.id = id;
+            this.name = name;
+            this.image = config.path("Image").asText();
+            this.config = config;
+        }
+
+        void start() {
+            running = true;
+            startedAt = System.currentTimeMillis();
+        }
+
+        void finish(int code) {
+            exitCode = code;
+            running = false;
+            finishedAt = System.currentTimeMillis();
+            exited.countDown();
+        }
+
+        boolean matches(JsonNode filters) {
+            return matchesAll(filters, new FilterTest() {
+                @Override
+                public boolean accepts(String filter, String value) {
+                    if (filter.equals("status")) {
+                        return value.equals(running ? "running" : startedAt == 0 && finishedAt == 0 ? "created" : "exited");
+                    } else if (filter.equals("label")) {
+                        int eq = value.indexOf('=');
+                        JsonNode label = config.path("Labels").path(eq < 0 ? value : value.substring(0, eq));
+                        return label.isTextual() && (eq < 0 || label.asText().equals(value.substring(eq + 1)));
+                    } else if (filter.equals("name")) {
+                        return name.contains(value);
+                    } else {
+                        StubImage ancestor = findImage(value);
+                        return image.equals(value) || (ancestor != null && ancestor == findImage(image));
+                    }
+                }
+            });
+        }
+
+        ObjectNode summary() {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("Id", id);
+            node.put("Image", image);
+            node.put("Command", command());
+            node.put("Created", created / 1000);
+            node.put("Status", running ? "Up" : "Exited (" + exitCode + ")");
+            node.putArray("Ports");
+            node.putArray("Names").add(name);
+            return node;
+        }
+
+        ObjectNode inspect() {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("ID", id);
+            node.put("Created", iso(created));
+            node.put("Path", config.path("Cmd").path(0).asText());
+            ArrayNode args = node.putArray("Args");
+            for (int i = 1; i < config.path("Cmd").size(); i++) {
+                args.add(config.path("Cmd").get(i));
+            }
+            node.set("Config", config);
+            ObjectNode state = node.putObject("State");
+            state.put("Running", running);
+            state.put("Pid", running ? 1000 + (int) (ids.get() % 30000) : 0);
+            state.put("ExitCode", exitCode);
+            state.put("StartedAt", startedAt == 0 ? "0001-01-01T00:00:00Z" : iso(startedAt));
+            state.put("FinishedAt", finishedAt == 0 ? "0001-01-01T00:00:00Z" : iso(finishedAt));
+            state.put("Ghost", false);
+            StubImage stubImage = findImage(image);
+            node.put("Image", stubImage == null ? image : stubImage.id);
+            node.put("Name", name);
+            node.put("Driver", "stub");
+            return node;
+        }
+
+        private String command() {
+            StringBuilder command = new StringBuilder();
+            for (JsonNode part : config.path("Cmd")) {
+                if (command.length() > 0) {
+                    command.append(' ');
+                }
+                command.append(part.asText());
+            }
+            return command.toString();
+        }
+    }
+
+    private final class StubExec {
+
+        final String id;
+        final StubContainer container;
+        final String[] cmd;
+        final boolean tty;
+        final boolean attachStdin;
+
+        // guarded by this
+        boolean started;
+        volatile boolean running;
+        volatile int exitCode;
+
+        StubExec(String id, StubContainer container, JsonNode config) {
+            this.id = id;
+            this.container = container;
+            this.cmd = new String[config.path("Cmd").size()];
+            for (int i = 0; i < cmd.length; i++) {
+                cmd[i] = config.path("Cmd").get(i).asText();
+            }
+            this.tty = config.path("Tty").asBoolean();
+            this.attachStdin = config.path("AttachStdin").asBoolean();
+        }
+
+        ObjectNode inspect() {
+            ObjectNode node = mapper.createObjectNode();
+            node.put("ID", id);
+            node.put("Running", running);
+            node.put("ExitCode", exitCode);
+            node.put("OpenStdin", attachStdin);
+            node.put("OpenStdout", true);
+            node.put("OpenStderr", true);
+            node.put("ContainerID", container.id);
+            ObjectNode process = node.putObject("ProcessConfig");
+            process.put("entrypoint", cmd[0]);
+            ArrayNode arguments = process.putArray("arguments");
+            for (int i = 1; i < cmd.length; i++) {
+                arguments.add(cmd[i]);
+            }
+            process.put("tty", tty);
+            process.put("user", "");
+            process.put("privileged", false);
+            return node;
+        }
+    }
+
+    private static final class StubImage {
+
+        final String id;
+        final String repoTag;
+        final long created = System.currentTimeMillis() / 1000;
+
+        StubImage(String id, String repoTag) {
+            this.id = id;
+            this.repoTag = repoTag;
+        }
+    }
+
+    private static final class Fault {
+
+        final Pattern pattern;
+        final int status;
+        final AtomicInteger remaining;
+
+        Fault(Pattern pattern, int status, int times) {
+            this.pattern = pattern;
+            this.status = status;
+            this.remaining = new AtomicInteger(times);
+        }
+    }
+}
@@ -0,0 +1,804 @@
+package com.kpelykh.docker.client.test.stub;
+
+import com.kpelykh.docker.client.ContainerWaiter;
+import com.kpelykh.docker.client.DockerClient;
+import com.kpelykh.docker.client.DockerException;
+import com.kpelykh.docker.client.EventStream;
+import com.kpelykh.docker.client.ItemCallback;
+import com.kpelykh.docker.client.LogCursor;
+import com.kpelykh.docker.client.LogTail;
+import com.kpelykh.docker.client.NotFoundException;
+import com.kpelykh.docker.client.batch.ContainerPool;
+import com.kpelykh.docker.client.batch.Job;
+import com.kpelykh.docker.client.batch.JobResult;
+import com.kpelykh.docker.client.batch.JobRunner;
+import com.kpelykh.docker.client.model.Container;
+import com.kpelykh.docker.client.model.ContainerConfig;
+import com.kpelykh.docker.client.model.ContainerCreateResponse;
+import com.kpelykh.docker.client.model.ContainerSnapshot;
+import com.kpelykh.docker.client.model.Event;
+import com.kpelykh.docker.client.model.Filters;
+import com.kpelykh.docker.client.model.ContainerInspectResponse;
+import com.kpelykh.docker.client.model.Image;
+import com.kpelykh.docker.client.model.ImageCreateResponse;
+import com.kpelykh.docker.client.model.ImageSnapshot;
+import com.kpelykh.docker.client.model.Frame;
+import com.kpelykh.docker.client.model.LogLine;
+import com.kpelykh.docker.client.model.LogOptions;
+import com.kpelykh.docker.client.model.StreamType;
+import com.kpelykh.docker.client.model.PackedId;
+import com.kpelykh.docker.client.model.ProgressMessage;
+import com.kpelykh.docker.client.stream.Subscriber;
+import com.kpelykh.docker.client.stream.Subscription;
+import com.kpelykh.docker.client.utils.JsonArrayIterator;
+import com.kpelykh.docker.client.utils.CallCancelledException;
+import com.kpelykh.docker.client.utils.CallScope;
+import com.kpelykh.docker.client.utils.CircuitBreaker;
+import com.kpelykh.docker.client.utils.CircuitBreakerPolicy;
+import com.kpelykh.docker.client.utils.CircuitOpenException;
+import com.kpelykh.docker.client.utils.FrameReader;
+import com.kpelykh.docker.client.utils.ProgressListener;
+import com.kpelykh.docker.client.utils.RetryFilter;
+import com.kpelykh.docker.client.utils.RetryPolicy;
+import com.kpelykh.docker.client.utils.StringInterner;
+import com.kpelykh.docker.client.utils.TarExtractor;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+
+/**
+ * Runs {@link DockerClient} against {@link StubDockerDaemon}; needs neither a daemon nor a network.
+ */
+public class StubDockerDaemonTest {
+
+    private StubDockerDaemon daemon;
+    private DockerClient dockerClient;
+
+    @BeforeMethod
+    public void beforeMethod() throws Exception {
+        daemon = new StubDockerDaemon();
+        dockerClient = daemon.newClient();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        daemon.close();
+    }
+
+    @Test
+    public void testPingAndVersion() throws DockerException {
+        assertThat(dockerClient.ping(), equalTo(200));
+        assertThat(dockerClient.version().getApiVersion(), equalTo("1.11"));
+        assertThat(dockerClient.info().getImages(), equalTo(1));
+    }
+
+    @Test
+    public void testEventStreamKeepsRepeatedEvents() throws Exception {
+        daemon.setRunMillis(10);
+        String id = dockerClient.createContainer(config("true")).getId();
+        EventStream events = dockerClient.eventStream(0, 0);
+        try {
+            // connected by then, the stream only has live events
+            Thread.sleep(300);
+            // a container dying twice within a second, both events are delivered
+            for (int i = 0; i < 2; i++) {
+                dockerClient.startContainer(id);
+                dockerClient.waitContainer(id);
+            }
+            int dies = 0;
+            Event event;
+            while ((event = events.poll(1, TimeUnit.SECONDS)) != null) {
+                if ("die".equals(event.getStatus())) {
+                    dies++;
+                }
+            }
+            assertThat(dies, equalTo(2));
+        } finally {
+            events.close();
+        }
+    }
+
+    @Test
+    public void testContainerLifecycle() throws DockerException {
+        daemon.setExitCode(3);
+
+        ContainerCreateResponse container = dockerClient.createContainer(config("echo", "hello"));
+        dockerClient.startContainer(container.getId());
+        assertThat(dockerClient.waitContainer(container.getId()), equalTo(3));
+
+        ContainerInspectResponse inspect = dockerClient.inspectContainer(container.getId());
+        assertThat(inspect.getId(), equalTo(container.getId()));
+        assertThat(inspect.getPath(), equalTo("echo"));
+        assertThat(inspect.getState().exitCode, equalTo(3));
+        assertThat(dockerClient.listContainers(true), hasSize(1));
+        assertThat(dockerClient.listContainers(false), hasSize(0));
+
+        dockerClient.removeContainer(container.getId());
+        assertThat(dockerClient.listContainers(true), hasSize(0));
+    }
+
+    @Test
+    public void testStreamingList() throws DockerException {
+        daemon.addContainers(5000, "busybox");
+
+        final List<String> ids = new ArrayList<String>();
+        int count = dockerClient.listContainers(true, new ItemCallback<Container>() {
+            @Override
+            public boolean onItem(Container container) {
+                ids.add(container.getId());
+                return true;
+            }
+        });
+        assertThat(count, equalTo(5000));
+        assertThat(ids, hasSize(5000));
+
+        int seen = dockerClient.listContainers(true, new ItemCallback<Container>() {
+            @Override
+            public boolean onItem(Container container) {
+                return !container.getId().equals(ids.get(9));
+            }
+        });
+        assertThat(seen, equalTo(10));
+
+        JsonArrayIterator<Image> images = dockerClient.iterateImages(false);
+        assertThat(images.hasNext(), is(true));
+        assertThat(images.next().getRepoTags()[0], equalTo("busybox:latest"));
+        assertThat(images.hasNext(), is(false));
+    }
+
+    @Test
+    public void testSnapshots() throws DockerException {
+        daemon.addContainers(100, "busybox");
+
+        List<Container> containers = dockerClient.listContainers(true);
+        List<ContainerSnapshot> snapshots = dockerClient.listContainerSnapshots(true, new StringInterner(64));
+        assertThat(snapshots, hasSize(100));
+        for (int i = 0; i < containers.size(); i++) {
+            ContainerSnapshot snapshot = snapshots.get(i);
+            assertThat(snapshot.getId(), equalTo(containers.get(i).getId()));
+            assertThat(snapshot.getPackedId(), equalTo(PackedId.parse(containers.get(i).getId())));
+            assertThat(snapshot.getImage(), sameInstance(snapshots.get(0).getImage()));
+            assertThat(snapshot.getCommand(), equalTo(containers.get(i).getCommand()));
+        }
+
+        List<ImageSnapshot> images = dockerClient.getImageSnapshots(false, new StringInterner());
+        assertThat(images.get(0).getRepoTags()[0], equalTo("busybox:latest"));
+        assertThat(images.get(0).getId(), equalTo(dockerClient.getImages().get(0).getId()));
+    }
+
+    @Test
+    public void testFilters() throws DockerException {
+        daemon.setRunMillis(60000);
+        daemon.addImage("stub/app", "1.0");
+        daemon.addContainers(50, "busybox");
+        Map<String, String> labels = new HashMap<String, String>();
+        labels.put("env", "prod");
+        ContainerConfig labelled = config("sleep", "60").setImage("stub/app:1.0").setLabels(labels);
+        String prod = dockerClient.createContainer(labelled, "prod_app").getId();
+        dockerClient.startContainer(prod);
+
+        Filters running = Filters.builder().withStatus(Filters.Status.RUNNING).build();
+        assertThat(dockerClient.listContainers(true, running), hasSize(1));
+        assertThat(dockerClient.listContainers(true, Filters.builder().withStatus(Filters.Status.EXITED).build()), hasSize(50));
+
+        Filters filters = Filters.builder().withLabel("env", "prod").withAncestor("stub/app:1.0").withName("prod").build();
+        List<Container> matched = dockerClient.listContainers(true, filters);
+        assertThat(matched, hasSize(1));
+        assertThat(matched.get(0).getId(), equalTo(prod));
+        assertThat(dockerClient.listContainers(true, Filters.builder().withLabel("env", "dev").build()), hasSize(0));
+
+        assertThat(dockerClient.getImages(false, Filters.builder().withDangling(true).build()), hasSize(0));
+        assertThat(dockerClient.getImages(false, Filters.builder().withDangling(false).build()), hasSize(2));
+        assertThat(dockerClient.getImages(false, Filters.builder().withDangling(true).withDangling(false).build()), hasSize(2));
+        Filters dangling = Filters.builder().withDangling(true).withFilter("dangling", "false").build();
+        assertThat(dangling.getFilters().get("dangling"), contains("true", "false"));
+
+        try {
+            dockerClient.listContainers(true, Filters.builder().withFilter("bogus", "1").build());
+            throw new AssertionError("unknown filter was not rejected");
+        } catch (DockerException expected) {
+            // the daemon answers 400
+        }
+    }
+
+    @Test
+    public void testInjectedFailure() throws DockerException {
+        daemon.failNext("/containers/create", 500, 1);
+        try {
+            dockerClient.createContainer(config("true"));
+            throw new AssertionError("injected failure was not reported");
+        } catch (DockerException expected) {
+            // the next call succeeds
+        }
+        dockerClient.createContainer(config("true"));
+        assertThat(daemon.getContainerCount(), equalTo(1));
+    }
+
+    @Test
+    public void testRetries() throws DockerException {
+        RetryFilter retries = dockerClient.enableRetries(new RetryPolicy().setBaseDelayMillis(10).setBudgetBurst(3));
+
+        daemon.failNext("/info", 500, 2);
+        assertThat(dockerClient.info().getImages(), equalTo(1));
+        assertThat(retries.getRetries(), equalTo(2L));
+        assertThat(retries.getRecovered(), equalTo(1L));
+
+        // not idempotent, never retried
+        daemon.failNext("/containers/create", 503, 1);
+        try {
+            dockerClient.createContainer(config("true"));
+            throw new AssertionError("create was retried");
+        } catch (DockerException expected) {
+            assertThat(retries.getRetries(), equalTo(2L));
+        }
+
+        // one retry left in the budget
+        daemon.failNext("/version", 500, 3);
+        try {
+            dockerClient.version();
+            throw new AssertionError("retry budget was not enforced");
+        } catch (DockerException expected) {
+            assertThat(retries.getRetries(), equalTo(3L));
+            assertThat(retries.getBudgetDenied(), equalTo(1L));
+        }
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        CircuitBreaker breaker = dockerClient.enableCircuitBreaker(new CircuitBreakerPolicy()
+                .setWindowSize(10).setMinimumCalls(4).setOpenMillis(60000).setProbeIntervalMillis(50).setHalfOpenTrials(2));
+        final List<String> transitions = new CopyOnWriteArrayList<String>();
+        breaker.addListener(new CircuitBreaker.Listener() {
+            @Override
+            public void onStateChange(CircuitBreaker breaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+                transitions.add(from + "->" + to);
+            }
+        });
+
+        daemon.failNext("/info", 503, 4);
+        for (int i = 0; i < 4; i++) {
+            try {
+                dockerClient.info();
+                throw new AssertionError("injected failure was not reported");
+            } catch (DockerException expected) {
+                // counted by the breaker
+            }
+        }
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+
+        daemon.failNext("/_ping", 500, 3);
+        try {
+            dockerClient.version();
+            throw new AssertionError("open circuit let a request through");
+        } catch (ClientHandlerException expected) {
+            assertThat(expected.getCause(), instanceOf(CircuitOpenException.class));
+        }
+
+        // the probe half-opens the circuit once pings succeed again, long before openMillis
+        long deadline = System.currentTimeMillis() + 5000;
+        while (breaker.getState() == CircuitBreaker.State.OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        dockerClient.info();
+        dockerClient.version();
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.CLOSED));
+        assertThat(transitions, contains("CLOSED->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"));
+        assertThat(breaker.getRejected(), equalTo(1L));
+    }
+
+    @Test
+    public void testProbeOfHungDaemon() throws Exception {
+        CircuitBreaker breaker = dockerClient.enableCircuitBreaker(new CircuitBreakerPolicy()
+                .setWindowSize(10).setMinimumCalls(4).setOpenMillis(60000).setProbeIntervalMillis(100));
+        daemon.failNext("/info", 503, 4);
+        for (int i = 0; i < 4; i++) {
+            try {
+                dockerClient.info();
+                throw new AssertionError("injected failure was not reported");
+            } catch (DockerException expected) {
+                // counted by the breaker
+            }
+        }
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.OPEN));
+
+        // pings hang for a minute, each probe gives up after its interval
+        daemon.setLatency(60, TimeUnit.SECONDS);
+        Thread.sleep(500);
+        daemon.setLatency(0, TimeUnit.MILLISECONDS);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (breaker.getState() == CircuitBreaker.State.OPEN && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(breaker.getState(), equalTo(CircuitBreaker.State.HALF_OPEN));
+    }
+
+    @Test
+    public void testLatency() throws DockerException {
+        daemon.setLatency(50, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        dockerClient.version();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(50L));
+    }
+
+    @Test
+    public void testCallScopeDeadline() throws DockerException {
+        daemon.setRunMillis(60000);
+        String id = dockerClient.createContainer(config("sleep", "60")).getId();
+        dockerClient.startContainer(id);
+
+        CallScope scope = new CallScope(300, TimeUnit.MILLISECONDS);
+        DockerClient scoped = dockerClient.within(scope);
+        assertThat(scoped.inspectContainer(id).getState().running, is(true));
+        long start = System.nanoTime();
+        try {
+            scoped.waitContainer(id);
+            throw new AssertionError("wait outlived the deadline of its scope");
+        } catch (DockerException expected) {
+            assertThat(rootCause(expected), instanceOf(SocketTimeoutException.class));
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(5000L));
+
+        // the connection used by the inspect went back to the pool, without the scope's timeout
+        daemon.setLatency(500, TimeUnit.MILLISECONDS);
+        assertThat(dockerClient.inspectContainer(id).getState().running, is(true));
+    }
+
+    @Test
+    public void testCallScopeCancel() throws Exception {
+        daemon.setRunMillis(60000);
+        final String id = dockerClient.createContainer(config("sleep", "60")).getId();
+        dockerClient.startContainer(id);
+
+        CallScope scope = new CallScope();
+        final DockerClient scoped = dockerClient.within(scope);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> wait = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws DockerException {
+                    return scoped.waitContainer(id);
+                }
+            });
+            long deadline = System.currentTimeMillis() + 5000;
+            while (scope.getInFlight() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            scope.close();
+            try {
+                wait.get(5, TimeUnit.SECONDS);
+                throw new AssertionError("cancelled wait returned");
+            } catch (ExecutionException expected) {
+                assertThat(rootCause(expected), instanceOf(CallCancelledException.class));
+            }
+            assertThat(scope.getInFlight(), equalTo(0));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try {
+            scoped.inspectContainer(id);
+            throw new AssertionError("cancelled scope let a call through");
+        } catch (ClientHandlerException expected) {
+            assertThat(expected.getCause(), instanceOf(CallCancelledException.class));
+        }
+        assertThat(dockerClient.inspectContainer(id).getState().running, is(true));
+    }
+
+    @Test
+    public void testLogPublisherBackpressure() throws Exception {
+        daemon.setPayloadSize(64 * 1024 * 1024);
+        String id = dockerClient.createContainer(config("true")).getId();
+
+        RecordingSubscriber<Frame> slow = new RecordingSubscriber<Frame>(1);
+        dockerClient.publishLogs(id).subscribe(slow);
+        slow.awaitItems(1);
+        Thread.sleep(300);
+        // the reader stopped with the demand, so socket buffers filled and the stub stalled
+        assertThat(slow.items, hasSize(1));
+        assertThat(daemon.getLogBytesSent(), lessThan(32L * 1024 * 1024));
+
+        slow.subscription.request(3);
+        slow.awaitItems(4);
+        slow.subscription.cancel();
+        Thread.sleep(100);
+        assertThat(slow.items, hasSize(4));
+        assertThat(slow.done.getCount(), equalTo(1L));
+
+        daemon.setPayloadSize(1024 * 1024);
+        RecordingSubscriber<Frame> fast = new RecordingSubscriber<Frame>(Long.MAX_VALUE);
+        dockerClient.publishLogs(id).subscribe(fast);
+        assertThat(fast.done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(fast.error, nullValue());
+        long size = 0;
+        for (Frame frame : fast.items) {
+            size += frame.getPayload().length;
+        }
+        assertThat(size, equalTo(1024L * 1024));
+    }
+
+    @Test
+    public void testProgressPublishers() throws Exception {
+        RecordingSubscriber<ProgressMessage> pull = new RecordingSubscriber<ProgressMessage>(Long.MAX_VALUE);
+        dockerClient.publishPull("stub/pulled", "1.0").subscribe(pull);
+        assertThat(pull.done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(pull.error, nullValue());
+        assertThat(pull.items, hasSize(6));
+        assertThat(pull.items.get(4).getProgressDetail().getCurrent(), equalTo(1024L));
+        assertThat(pull.items.get(5).getStatus(), equalTo("Download complete"));
+        assertThat(dockerClient.inspectImage("stub/pulled:1.0").getId(), notNullValue());
+
+        RecordingSubscriber<ProgressMessage> missing = new RecordingSubscriber<ProgressMessage>(Long.MAX_VALUE);
+        dockerClient.publishPull("missing/image", "latest").subscribe(missing);
+        assertThat(missing.done.await(10, TimeUnit.SECONDS), is(true));
+        assertThat(missing.error, instanceOf(DockerException.class));
+        assertThat(missing.items, hasSize(1));
+
+        File context = new File(FileUtils.getTempDirectory(), "stub-build-" + System.nanoTime());
+        try {
+            FileUtils.writeStringToFile(new File(context, "Dockerfile"), "FROM busybox\nRUN true\n");
+            RecordingSubscriber<ProgressMessage> build = new RecordingSubscriber<ProgressMessage>(Long.MAX_VALUE);
+            dockerClient.publishBuild(context, "stub/built").subscribe(build);
+            assertThat(build.done.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(build.error, nullValue());
+            assertThat(build.items, hasSize(3));
+            assertThat(build.items.get(2).getStream(), startsWith("Successfully built"));
+
+            FileUtils.writeStringToFile(new File(context, "Dockerfile"), "FROM busybox\nRUN false\n");
+            RecordingSubscriber<ProgressMessage> failed = new RecordingSubscriber<ProgressMessage>(Long.MAX_VALUE);
+            dockerClient.publishBuild(context, "stub/failed").subscribe(failed);
+            assertThat(failed.done.await(10, TimeUnit.SECONDS), is(true));
+            assertThat(failed.error, instanceOf(DockerException.class));
+        } finally {
+            FileUtils.deleteQuietly(context);
+        }
+    }
+
+    @Test
+    public void testLogs() throws Exception {
+        daemon.setLogLines(100);
+        String id = dockerClient.createContainer(config("true")).getId();
+
+        List<Frame> frames = readFrames(dockerClient.logs(id, LogOptions.builder().withTail(5).build()));
+        assertThat(frames, hasSize(5));
+        assertThat(frames.get(4).getPayloadAsString(), equalTo("line 99\n"));
+
+        frames = readFrames(dockerClient.logs(id, LogOptions.builder().withStdout(false).withTimestamps().build()));
+        assertThat(frames, hasSize(33));
+        assertThat(frames.get(0).getStreamType(), equalTo(StreamType.STDERR));
+        LogLine line = LogLine.parse(StreamType.STDERR, frames.get(0).getPayloadAsString().trim());
+        assertThat(line.getText(), equalTo("line 2"));
+        // nanosecond timestamps of lines written in the millisecond the container was created
+        assertThat(line.getTimestamp(), startsWith(dockerClient.inspectContainer(id).getCreated().substring(0, 23)));
+        assertThat(line.getNanos() % 1000000, equalTo(1000));
+
+        try {
+            dockerClient.logs("missing", LogOptions.builder().build());
+            throw new AssertionError("logs of a missing container");
+        } catch (NotFoundException expected) {
+            // no such container
+        }
+    }
+
+    @Test
+    public void testLogTailResumes() throws Exception {
+        daemon.setLogLines(100);
+        String id = dockerClient.createContainer(config("true")).getId();
+        daemon.cutLogs(30, 2);
+
+        LogTail tail = dockerClient.tailLogs(id, LogOptions.builder().build());
+        LogCursor afterTen = null;
+        List<String> lines = new ArrayList<String>();
+        for (LogLine line = tail.next(); line != null; line = tail.next()) {
+            lines.add(line.getText());
+            if (lines.size() == 10) {
+                afterTen = tail.getCursor();
+            }
+        }
+        assertThat(tail.getReconnectCount(), equalTo(2L));
+        assertThat(lines, hasSize(100));
+        for (int i = 0; i < 100; i++) {
+            assertThat(lines.get(i), equalTo("line " + i));
+        }
+
+        // lines 8 and 9 share a timestamp, the stored cursor tells them apart
+        assertThat(afterTen.getCount(), equalTo(2));
+        LogTail resumed = dockerClient.tailLogs(id, LogOptions.builder().withTail(1).build(), LogCursor.parse(afterTen.toString()));
+        assertThat(resumed.next().getText(), equalTo("line 10"));
+        resumed.close();
+        assertThat(resumed.next(), nullValue());
+    }
+
+    @Test
+    public void testWaitManyContainers() throws Exception {
+        daemon.setRunMillis(200);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            String id = dockerClient.createContainer(config("sleep", "1")).getId();
+            dockerClient.startContainer(id);
+            ids.add(id);
+        }
+
+        ContainerWaiter waiter = new ContainerWaiter(dockerClient);
+        try {
+            for (Future<Integer> exitCode : waiter.waitForAll(ids).values()) {
+                assertThat(exitCode.get(10, TimeUnit.SECONDS), equalTo(0));
+            }
+        } finally {
+            waiter.close();
+        }
+    }
+
+    @Test
+    public void testWaitOutlivesRecheck() throws Exception {
+        // blocking waits would fail, containers running past the recheck must stay event driven
+        daemon.failNext("/containers/[^/]+/wait", 500, 1000);
+        daemon.setRunMillis(1000);
+        List<String> ids = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            String id = dockerClient.createContainer(config("sleep", "1")).getId();
+            dockerClient.startContainer(id);
+            ids.add(id);
+        }
+
+        ContainerWaiter waiter = new ContainerWaiter(dockerClient, 2, 100);
+        try {
+            for (Future<Integer> exitCode : waiter.waitForAll(ids).values()) {
+                assertThat(exitCode.get(10, TimeUnit.SECONDS), equalTo(0));
+            }
+        } finally {
+            waiter.close();
+        }
+    }
+
+    @Test
+    public void testContainerPoolCopiesConfig() throws Exception {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(new String[]{"true"});
+        ContainerConfig same = new ContainerConfig();
+        same.setImage("busybox");
+        same.setCmd(new String[]{"true"});
+
+        ContainerPool pool = new ContainerPool(dockerClient, 2, 60000, 2);
+        try {
+            pool.prewarm(config);
+            // changing the config afterwards leaves the pooled containers alone
+            config.setCmd(new String[]{"false"});
+            for (int i = 0; i < 50 && pool.getReadyCount(same) < 2; i++) {
+                Thread.sleep(100);
+            }
+            assertThat(pool.getReadyCount(same), equalTo(2));
+            for (int i = 0; i < 2; i++) {
+                assertThat(dockerClient.inspectContainer(pool.acquire(same)).getPath(), equalTo("true"));
+            }
+            assertThat(pool.getHitCount(), equalTo(2L));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testCloseFailsOutstandingJobs() throws Exception {
+        daemon.setRunMillis(60000);
+        JobRunner runner = new JobRunner(dockerClient, 2);
+        List<Future<JobResult>> results = new ArrayList<Future<JobResult>>();
+        for (int i = 0; i < 5; i++) {
+            results.add(runner.submit(new Job(config("sleep", "60"))));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (runner.getRunningCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(runner.getRunningCount(), equalTo(2));
+
+        runner.close();
+        for (Future<JobResult> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                throw new AssertionError("expected the job to be cancelled");
+            } catch (ExecutionException expected) {
+                assertThat(expected.getCause(), instanceOf(CancellationException.class));
+            }
+        }
+        assertThat(runner.getRunningCount(), equalTo(0));
+    }
+
+    @Test
+    public void testCopyAndExport() throws DockerException, IOException {
+        daemon.setPayloadSize(3 * 1024 * 1024 + 17);
+        String id = dockerClient.createContainer(config("true")).getId();
+
+        File target = new File(FileUtils.getTempDirectory(), "stub-copy-" + System.nanoTime());
+        File tarball = File.createTempFile("stub-export", ".tar.gz");
+        try {
+            assertThat(dockerClient.copyFile(id, "/var/log/data.bin", target), equalTo(1));
+            assertThat(new File(target, "data.bin").length(), equalTo(3L * 1024 * 1024 + 17));
+
+            long size = dockerClient.exportContainer(id, tarball, true);
+            assertThat(size, greaterThanOrEqualTo(3L * 1024 * 1024 + 17));
+            assertThat(tarball.length(), lessThan(size));
+        } finally {
+            FileUtils.deleteQuietly(target);
+            tarball.delete();
+        }
+    }
+
+    @Test
+    public void testExtractRejectsEscapesAndSkipsLinks() throws IOException {
+        File parent = new File(FileUtils.getTempDirectory(), "stub-extract-" + System.nanoTime());
+        File target = new File(parent, "target");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            TarArchiveOutputStream tar = new TarArchiveOutputStream(bytes);
+            putEntry(tar, new TarArchiveEntry("data.txt"), "data");
+            TarArchiveEntry link = new TarArchiveEntry("passwd", TarConstants.LF_SYMLINK);
+            link.setLinkName("/etc/passwd");
+            putEntry(tar, link, "");
+            tar.finish();
+
+            assertThat(new TarExtractor().extract(new ByteArrayInputStream(bytes.toByteArray()), target), equalTo(1));
+            assertThat(FileUtils.readFileToString(new File(target, "data.txt")), equalTo("data"));
+            assertThat(new File(target, "passwd").exists(), is(false));
+
+            bytes = new ByteArrayOutputStream();
+            tar = new TarArchiveOutputStream(bytes);
+            putEntry(tar, new TarArchiveEntry("../escape"), "escape");
+            tar.finish();
+
+            try {
+                new TarExtractor().extract(new ByteArrayInputStream(bytes.toByteArray()), target);
+                throw new AssertionError("expected the escaping entry to be rejected");
+            } catch (IOException expected) {
+                assertThat(expected.getMessage(), containsString("../escape"));
+            }
+            assertThat(parent.list(), equalTo(new String[]{"target"}));
+        } finally {
+            FileUtils.deleteQuietly(parent);
+        }
+    }
+
+    private static void putEntry(TarArchiveOutputStream tar, TarArchiveEntry entry, String content) throws IOException {
+        byte[] data = content.getBytes("UTF-8");
+        entry.setSize(data.length);
+        tar.putArchiveEntry(entry);
+        tar.write(data);
+        tar.closeArchiveEntry();
+    }
+
+    @Test
+    public void testImportImageFromFile() throws DockerException, IOException {
+        File image = File.createTempFile("stub-image", ".tar");
+        RandomAccessFile file = new RandomAccessFile(image, "rw");
+        file.setLength(20 * 1024 * 1024);
+        file.close();
+
+        final AtomicLong progress = new AtomicLong();
+        try {
+            ImageCreateResponse response = dockerClient.importImage("stub/imported", "1.0", image, new ProgressListener() {
+                @Override
+                public void onProgress(long transferred, long total) {
+                    progress.set(transferred);
+                }
+            });
+            assertThat(dockerClient.inspectImage("stub/imported:1.0").getId(), startsWith(response.getId()));
+            assertThat(progress.get(), is(image.length()));
+        } finally {
+            image.delete();
+        }
+    }
+
+    /**
+     * Requests {@code initialDemand} items on subscription and records what it receives.
+     */
+    private static class RecordingSubscriber<T> implements Subscriber<T> {
+
+        final List<T> items = new CopyOnWriteArrayList<T>();
+        final CountDownLatch done = new CountDownLatch(1);
+        private final long initialDemand;
+        volatile Subscription subscription;
+        volatile Throwable error;
+
+        RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(T item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error = error;
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+
+        void awaitItems(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 10000;
+            while (items.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(items, hasSize(count));
+        }
+    }
+
+    private static List<Frame> readFrames(ClientResponse response) throws IOException {
+        List<Frame> frames = new ArrayList<Frame>();
+        FrameReader reader = new FrameReader(response.getEntityInputStream());
+        try {
+            for (Frame frame = reader.readFrame(); frame != null; frame = reader.readFrame()) {
+                frames.add(frame);
+            }
+        } finally {
+            reader.close();
+        }
+        return frames;
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        while (e.getCause() != null && !(e instanceof IOException)) {
+            e = e.getCause();
+        }
+        return e;
+    }
+
+    private static ContainerConfig config(String... cmd) {
+        ContainerConfig config = new ContainerConfig();
+        config.setImage("busybox");
+        config.setCmd(cmd);
+        return config;
+    }
+}